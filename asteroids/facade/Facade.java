@@ -332,14 +332,14 @@ public class Facade implements IFacade {
 	 * Return all ships located within <code>world</code>.
 	 */
 	public Set<? extends Ship> getWorldShips(World world) throws ModelException {
-		return (Set<? extends Ship>) world.getEntitiesOfTheClass("Ship");
+		return (Set<? extends Ship>) world.getEntitiesOfType(EntityType.SHIP);
 	}
 
 	/**
 	 * Return all bullets located in <code>world</code>.
 	 */
 	public Set<? extends Bullet> getWorldBullets(World world) throws ModelException {
-		return (Set<? extends Bullet>) world.getEntitiesOfTheClass("Bullet");
+		return (Set<? extends Bullet>) world.getEntitiesOfType(EntityType.BULLET);
 	}
 
 	/**
@@ -488,7 +488,9 @@ public class Facade implements IFacade {
 	 * returned if no collision will occur.
 	 */
 	public double getTimeNextCollision(World world) throws ModelException {
-		return world.getTimeToNextCollision();
+		CollisionEvent collision = world.getNextCollision();
+		if (collision == null) return Double.POSITIVE_INFINITY;
+		return collision.getTime();
 	}
 
 	/**
@@ -497,7 +499,9 @@ public class Facade implements IFacade {
 	 * will occur.
 	 */
 	public double[] getPositionNextCollision(World world) throws ModelException {
-		return world.getNextCollisionPos();
+		CollisionEvent collision = world.getNextCollision();
+		if (collision == null) return new double[]{Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY};
+		return collision.getPosition();
 	}
 
 	/**
@@ -540,7 +544,7 @@ public class Facade implements IFacade {
 	 * Return all asteroids located in <code>world</code>.
 	 */
 	public Set<? extends Asteroid> getWorldAsteroids(World world) throws ModelException{
-		return (Set<? extends Asteroid>) world.getEntitiesOfTheClass("Asteroid");
+		return (Set<? extends Asteroid>) world.getEntitiesOfType(EntityType.ASTEROID);
 	}
 
 	/**
@@ -559,11 +563,19 @@ public class Facade implements IFacade {
 		catch(IllegalArgumentException ex){throw new ModelException(ex.getMessage());}	
 	}
 
+	/**
+	 * Add all <code>entities</code> to <code>world</code> at once, or none of them if some can't be placed.
+	 */
+	public void addEntitiesToWorld(World world, Collection<? extends Entity> entities) throws ModelException{
+		try{world.addEntities(entities);}
+		catch(IllegalArgumentException ex){throw new ModelException(ex.getMessage());}
+	}
+
 	/**
 	 * Return all planetoids located in <code>world</code>.
 	 */
 	public Set<? extends Planetoid> getWorldPlanetoids(World world) throws ModelException{
-		return (Set<? extends Planetoid>) world.getEntitiesOfTheClass("Planetoid");
+		return (Set<? extends Planetoid>) world.getEntitiesOfType(EntityType.PLANETOID);
 	}
 
 	/**
@@ -0,0 +1,672 @@
+package asteroids.model;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+import be.kuleuven.cs.som.annotate.*;
+
+/**
+ * A class of dynamic bounding volume trees over the entities of a world. Each leaf holds a single entity
+ * together with a fattened axis-aligned bounding box around it, and each internal node holds the union of
+ * the boxes of its two children. The tree answers spatial queries about the world by only descending into
+ * the nodes whose boxes can contain an answer.
+ * 	An entity which moves within its fattened box doesn't change the tree. Otherwise its leaf is taken out
+ * 	and inserted again at the place where it enlarges the boxes the least, and the tree is rebalanced by
+ * 	rotations along the way to the root, so its height stays logarithmic in the number of entities.
+ * 	Internal nodes which are taken out are kept for later insertions, so moving entities doesn't allocate.
+ *
+ * @invar	The box of each leaf contains the bounding box of its entity.
+ * 			| for each leaf in the tree
+ * 			|	leaf.minX <= leaf.entity.getX() - leaf.entity.getRadius() && ...
+ * @invar	The box of each internal node is the union of the boxes of its children, and its height
+ * 			is one more than the largest height of its children.
+ * 			| @ implementation
+ * @invar	The heights of the children of each internal node differ at most by one after each change.
+ * 			| @ implementation
+ *
+ * @version 1.0
+ * @author 	Brent De Bleser & Jesse Geens
+ */
+class AabbTree {
+
+	/**
+	 * Constant containing the part of its radius by which the box of an entity is fattened.
+	 */
+	private final static double FAT_RADIUS_FACTOR = 0.5;
+
+	/**
+	 * Constant containing the time over which the displacement of an entity is added to its fattened box.
+	 */
+	private final static double FAT_PREDICTION_TIME = 0.1;
+
+	/**
+	 * Create a new, empty tree.
+	 *
+	 * @post	The tree doesn't contain any entities.
+	 * 			| new.getNbEntities() == 0
+	 */
+	@Raw
+	AabbTree(){
+	}
+
+	/**
+	 * Return the number of entities in this tree.
+	 */
+	@Basic
+	int getNbEntities(){
+		return this.leaves.size();
+	}
+
+	/**
+	 * Return the height of this tree, being zero for an empty tree or a single leaf.
+	 */
+	@Basic
+	int getHeight(){
+		return this.root == null ? 0 : this.root.height;
+	}
+
+	/**
+	 * Add the given entity to this tree.
+	 *
+	 * @param 	entity
+	 * 			The entity to add.
+	 * @post	The tree contains a leaf for the entity, whose box is the fattened box of the entity.
+	 * 			| @ implementation
+	 */
+	void insert(Entity entity){
+		Node leaf = new Node();
+		leaf.entity = entity;
+		leaves.put(entity, leaf);
+		fatten(leaf);
+		insertLeaf(leaf);
+	}
+
+	/**
+	 * Add the given entities to this tree at once.
+	 *
+	 * @param 	entities
+	 * 			The entities to add.
+	 * @effect	If this tree isn't empty, each entity is inserted in turn.
+	 * 			| if getNbEntities() > 0
+	 * 			|	then for each entity in entities
+	 * 			|		insert(entity)
+	 * @post	Otherwise the tree contains a leaf for each entity, whose box is the fattened box of the entity.
+	 * 			The leaves are sorted along a Z-order curve through their centres, and the tree is built by
+	 * 			halving the sorted leaves, so entities which are close end up under the same nodes.
+	 * 			| @ implementation
+	 * @note	Building the tree at once avoids searching the place of each leaf and rebalancing after it.
+	 */
+	void insertAll(Collection<? extends Entity> entities){
+		if (root != null){
+			for (Entity entity : entities) insert(entity);
+			return;
+		}
+		if (entities.isEmpty()) return;
+		Node[] nodes = new Node[entities.size()];
+		double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+		int count = 0;
+		for (Entity entity : entities){
+			Node leaf = new Node();
+			leaf.entity = entity;
+			leaves.put(entity, leaf);
+			fatten(leaf);
+			nodes[count++] = leaf;
+			minX = Math.min(minX, entity.getX());
+			minY = Math.min(minY, entity.getY());
+			maxX = Math.max(maxX, entity.getX());
+			maxY = Math.max(maxY, entity.getY());
+		}
+		// Each key holds the position on the curve in its high bits and the index of the leaf in its low bits,
+		// so the leaves are sorted by sorting the keys.
+		int indexBits = Math.max(1, 32 - Integer.numberOfLeadingZeros(count - 1));
+		int gridBits = (63 - indexBits) / 2;
+		double scaleX = maxX > minX ? ((1L << gridBits) - 1) / (maxX - minX) : 0;
+		double scaleY = maxY > minY ? ((1L << gridBits) - 1) / (maxY - minY) : 0;
+		long[] keys = new long[count];
+		for (int i = 0; i < count; i++){
+			Entity entity = nodes[i].entity;
+			long curve = interleave((long) ((entity.getX() - minX) * scaleX))
+					| interleave((long) ((entity.getY() - minY) * scaleY)) << 1;
+			keys[i] = curve << indexBits | i;
+		}
+		Arrays.sort(keys);
+		Node[] sorted = new Node[count];
+		long indexMask = (1L << indexBits) - 1;
+		for (int i = 0; i < count; i++) sorted[i] = nodes[(int) (keys[i] & indexMask)];
+		nodes = sorted;
+		root = build(nodes, 0, nodes.length);
+		root.parent = null;
+	}
+
+	/**
+	 * Return the root of a balanced subtree over the given leaves from the given start up to the given end.
+	 */
+	private Node build(Node[] leaves, int start, int end){
+		if (end - start == 1){
+			leaves[start].height = 0;
+			return leaves[start];
+		}
+		int middle = (start + end) >>> 1;
+		Node node = obtainNode();
+		node.child1 = build(leaves, start, middle);
+		node.child2 = build(leaves, middle, end);
+		node.child1.parent = node;
+		node.child2.parent = node;
+		node.refit();
+		return node;
+	}
+
+	/**
+	 * Return the given coordinate on the grid of a Z-order curve, with a zero bit inserted before each of its bits.
+	 */
+	private static long interleave(long coordinate){
+		coordinate &= 0xFFFFFFFFL;
+		coordinate = (coordinate | (coordinate << 16)) & 0x0000FFFF0000FFFFL;
+		coordinate = (coordinate | (coordinate << 8)) & 0x00FF00FF00FF00FFL;
+		coordinate = (coordinate | (coordinate << 4)) & 0x0F0F0F0F0F0F0F0FL;
+		coordinate = (coordinate | (coordinate << 2)) & 0x3333333333333333L;
+		return (coordinate | (coordinate << 1)) & 0x5555555555555555L;
+	}
+
+	/**
+	 * Remove the given entity from this tree.
+	 *
+	 * @param 	entity
+	 * 			The entity to remove.
+	 * @post	The tree doesn't contain the entity anymore.
+	 * 			| @ implementation
+	 */
+	void remove(Entity entity){
+		Node leaf = leaves.remove(entity);
+		if (leaf != null) removeLeaf(leaf);
+	}
+
+	/**
+	 * Take the new position and radius of the given entity into account.
+	 *
+	 * @param 	entity
+	 * 			The entity which has moved.
+	 * @post	If the bounding box of the entity doesn't fit in the box of its leaf anymore, the leaf gets the
+	 * 			new fattened box of the entity and is moved to its best place in the tree.
+	 * 			| @ implementation
+	 */
+	void update(Entity entity){
+		Node leaf = leaves.get(entity);
+		if (leaf == null) return;
+		double x = entity.getX(), y = entity.getY(), radius = entity.getRadius();
+		if (leaf.minX <= x - radius && leaf.minY <= y - radius && x + radius <= leaf.maxX && y + radius <= leaf.maxY) return;
+		removeLeaf(leaf);
+		fatten(leaf);
+		insertLeaf(leaf);
+	}
+
+	/**
+	 * Remove all entities from this tree.
+	 *
+	 * @post	The tree doesn't contain any entities.
+	 * 			| new.getNbEntities() == 0
+	 */
+	void clear(){
+		leaves.clear();
+		root = null;
+	}
+
+	/**
+	 * Collect the entities of this tree whose circle intersects the given circle.
+	 *
+	 * @param 	x
+	 * 			The x coordinate of the centre of the circle.
+	 * @param 	y
+	 * 			The y coordinate of the centre of the circle.
+	 * @param 	radius
+	 * 			The radius of the circle.
+	 * @param 	result
+	 * 			The list to add the entities to.
+	 * @post	Each entity whose centre lies within the given radius plus its own radius from the given centre
+	 * 			is added to the result.
+	 * 			| for each entity in the tree
+	 * 			|	if Math.hypot(entity.getX() - x, entity.getY() - y) <= radius + entity.getRadius()
+	 * 			|		then result.contains(entity)
+	 */
+	void queryCircle(double x, double y, double radius, List<Entity> result){
+		if (root == null) return;
+		Deque<Node> stack = new ArrayDeque<Node>();
+		stack.push(root);
+		while (!stack.isEmpty()){
+			Node node = stack.pop();
+			if (node.minX > x + radius || node.maxX < x - radius || node.minY > y + radius || node.maxY < y - radius) continue;
+			if (node.isLeaf()){
+				Entity entity = node.entity;
+				if (Math.hypot(entity.getX() - x, entity.getY() - y) <= radius + entity.getRadius()) result.add(entity);
+			}
+			else {
+				stack.push(node.child2);
+				stack.push(node.child1);
+			}
+		}
+	}
+
+	/**
+	 * Collect the entities of this tree whose bounding box overlaps with the given box.
+	 *
+	 * @param 	minX
+	 * 			The smallest x coordinate of the box.
+	 * @param 	minY
+	 * 			The smallest y coordinate of the box.
+	 * @param 	maxX
+	 * 			The largest x coordinate of the box.
+	 * @param 	maxY
+	 * 			The largest y coordinate of the box.
+	 * @param 	result
+	 * 			The list to add the entities to.
+	 * @post	Each entity whose bounding box overlaps with the given box, borders included, is added to the result.
+	 * 			| for each entity in the tree
+	 * 			|	if entity.getX() - entity.getRadius() <= maxX && entity.getX() + entity.getRadius() >= minX
+	 * 			|		&& entity.getY() - entity.getRadius() <= maxY && entity.getY() + entity.getRadius() >= minY
+	 * 			|		then result.contains(entity)
+	 */
+	void queryAABB(double minX, double minY, double maxX, double maxY, List<Entity> result){
+		if (root == null) return;
+		Deque<Node> stack = new ArrayDeque<Node>();
+		stack.push(root);
+		while (!stack.isEmpty()){
+			Node node = stack.pop();
+			if (node.minX > maxX || node.maxX < minX || node.minY > maxY || node.maxY < minY) continue;
+			if (node.isLeaf()){
+				Entity entity = node.entity;
+				double x = entity.getX(), y = entity.getY(), radius = entity.getRadius();
+				if (x - radius <= maxX && x + radius >= minX && y - radius <= maxY && y + radius >= minY) result.add(entity);
+			}
+			else {
+				stack.push(node.child2);
+				stack.push(node.child1);
+			}
+		}
+	}
+
+	/**
+	 * Return the first entity of this tree hit by the given ray.
+	 *
+	 * @param 	x
+	 * 			The x coordinate of the origin of the ray.
+	 * @param 	y
+	 * 			The y coordinate of the origin of the ray.
+	 * @param 	directionX
+	 * 			The x component of the direction of the ray.
+	 * @param 	directionY
+	 * 			The y component of the direction of the ray.
+	 * @param 	maxDistance
+	 * 			The length of the ray.
+	 * @return	The entity whose circle is hit first by the ray within the given length, or null if the ray
+	 * 			doesn't hit any entity. An entity containing the origin is hit at distance zero.
+	 * 			| @ implementation
+	 * @note	The direction doesn't have to be normalized, but it may not be zero.
+	 */
+	Entity raycast(double x, double y, double directionX, double directionY, double maxDistance){
+		if (root == null) return null;
+		double length = Math.hypot(directionX, directionY);
+		double ux = directionX / length, uy = directionY / length;
+		double best = maxDistance;
+		Entity hit = null;
+		Deque<Node> stack = new ArrayDeque<Node>();
+		stack.push(root);
+		while (!stack.isEmpty()){
+			Node node = stack.pop();
+			if (!rayHitsBox(x, y, ux, uy, best, node)) continue;
+			if (node.isLeaf()){
+				double distance = getRayDistance(x, y, ux, uy, node.entity);
+				if (distance <= best && (hit == null || distance < best)){
+					best = distance;
+					hit = node.entity;
+				}
+			}
+			else {
+				stack.push(node.child2);
+				stack.push(node.child1);
+			}
+		}
+		return hit;
+	}
+
+	/**
+	 * Collect the given number of entities of this tree, satisfying the given predicate, whose centres
+	 * are the closest to the given point.
+	 *
+	 * @param 	x
+	 * 			The x coordinate of the point.
+	 * @param 	y
+	 * 			The y coordinate of the point.
+	 * @param 	k
+	 * 			The largest number of entities to collect.
+	 * @param 	predicate
+	 * 			The predicate the collected entities must satisfy.
+	 * @param 	result
+	 * 			The list to add the entities to.
+	 * @post	At most k entities satisfying the predicate are added to the result, in the order of increasing
+	 * 			distance between their centre and the given point, and no entity satisfying the predicate which
+	 * 			isn't added is closer than the last one added.
+	 * 			| @ implementation
+	 */
+	void nearest(double x, double y, int k, Predicate<? super Entity> predicate, List<Entity> result){
+		if (root == null || k <= 0) return;
+		PriorityQueue<Entry> queue = new PriorityQueue<Entry>();
+		queue.add(new Entry(getDistanceToBox(x, y, root), root));
+		int found = 0;
+		while (!queue.isEmpty() && found < k){
+			Entry entry = queue.poll();
+			Node node = entry.node;
+			if (node.isLeaf()){
+				if (entry.exact){
+					if (predicate.test(node.entity)){
+						result.add(node.entity);
+						found++;
+					}
+				}
+				else queue.add(new Entry(Math.hypot(node.entity.getX() - x, node.entity.getY() - y), node, true));
+			}
+			else {
+				queue.add(new Entry(getDistanceToBox(x, y, node.child1), node.child1));
+				queue.add(new Entry(getDistanceToBox(x, y, node.child2), node.child2));
+			}
+		}
+	}
+
+	/**
+	 * Give the given leaf the fattened bounding box of its entity.
+	 */
+	private static void fatten(Node leaf){
+		Entity entity = leaf.entity;
+		double radius = entity.getRadius();
+		double margin = radius * (1 + FAT_RADIUS_FACTOR) + Math.hypot(entity.getVX(), entity.getVY()) * FAT_PREDICTION_TIME;
+		if (!Helper.isValidDouble(margin)) margin = radius;
+		leaf.minX = entity.getX() - margin;
+		leaf.minY = entity.getY() - margin;
+		leaf.maxX = entity.getX() + margin;
+		leaf.maxY = entity.getY() + margin;
+	}
+
+	/**
+	 * Insert the given leaf next to the node where it enlarges the perimeters of the boxes the least.
+	 */
+	private void insertLeaf(Node leaf){
+		leaf.parent = null;
+		leaf.height = 0;
+		if (root == null){
+			root = leaf;
+			return;
+		}
+
+		Node sibling = root;
+		while (!sibling.isLeaf()){
+			double perimeter = sibling.getPerimeter();
+			double combinedPerimeter = getUnionPerimeter(sibling, leaf);
+			double cost = 2 * combinedPerimeter;
+			double inheritanceCost = 2 * (combinedPerimeter - perimeter);
+			double cost1 = getDescendCost(sibling.child1, leaf) + inheritanceCost;
+			double cost2 = getDescendCost(sibling.child2, leaf) + inheritanceCost;
+			if (cost < cost1 && cost < cost2) break;
+			sibling = cost1 < cost2 ? sibling.child1 : sibling.child2;
+		}
+
+		Node oldParent = sibling.parent;
+		Node newParent = obtainNode();
+		newParent.parent = oldParent;
+		newParent.child1 = sibling;
+		newParent.child2 = leaf;
+		sibling.parent = newParent;
+		leaf.parent = newParent;
+		if (oldParent == null) root = newParent;
+		else if (oldParent.child1 == sibling) oldParent.child1 = newParent;
+		else oldParent.child2 = newParent;
+		newParent.refit();
+		refitUpwards(newParent);
+	}
+
+	/**
+	 * Take the given leaf out of this tree, replacing its parent by its sibling.
+	 */
+	private void removeLeaf(Node leaf){
+		if (leaf == root){
+			root = null;
+			return;
+		}
+		Node parent = leaf.parent;
+		Node grandParent = parent.parent;
+		Node sibling = parent.child1 == leaf ? parent.child2 : parent.child1;
+		if (grandParent == null){
+			root = sibling;
+			sibling.parent = null;
+		}
+		else {
+			if (grandParent.child1 == parent) grandParent.child1 = sibling;
+			else grandParent.child2 = sibling;
+			sibling.parent = grandParent;
+			refitUpwards(grandParent);
+		}
+		recycle(parent);
+		leaf.parent = null;
+	}
+
+	/**
+	 * Balance and refit the given node and all of its ancestors.
+	 */
+	private void refitUpwards(Node node){
+		while (node != null){
+			node = balance(node);
+			node.refit();
+			node = node.parent;
+		}
+	}
+
+	/**
+	 * Rotate the child of the given node up if the heights of its children differ by more than one.
+	 *
+	 * @return	The node which takes the place of the given node.
+	 */
+	private Node balance(Node a){
+		if (a.isLeaf() || a.height < 2) return a;
+		Node b = a.child1;
+		Node c = a.child2;
+		int difference = c.height - b.height;
+		if (difference > 1) return rotateUp(a, c, b, false);
+		if (difference < -1) return rotateUp(a, b, c, true);
+		return a;
+	}
+
+	/**
+	 * Rotate the given high child of the given node up, giving the node the lowest child of the high child.
+	 *
+	 * @param 	a
+	 * 			The node to rotate down.
+	 * @param 	high
+	 * 			The child of the node which is too high.
+	 * @param 	low
+	 * 			The other child of the node.
+	 * @param 	highIsFirst
+	 * 			Whether the high child is the first child of the node.
+	 * @return	The high child, which takes the place of the given node.
+	 */
+	private Node rotateUp(Node a, Node high, Node low, boolean highIsFirst){
+		Node f = high.child1;
+		Node g = high.child2;
+		high.child1 = a;
+		high.parent = a.parent;
+		a.parent = high;
+		if (high.parent == null) root = high;
+		else if (high.parent.child1 == a) high.parent.child1 = high;
+		else high.parent.child2 = high;
+
+		Node kept = f.height > g.height ? f : g;
+		Node given = kept == f ? g : f;
+		high.child2 = kept;
+		if (highIsFirst) a.child1 = given;
+		else a.child2 = given;
+		given.parent = a;
+		a.refit();
+		high.refit();
+		return high;
+	}
+
+	/**
+	 * Return the cost of descending into the given child when inserting the given leaf.
+	 */
+	private static double getDescendCost(Node child, Node leaf){
+		if (child.isLeaf()) return getUnionPerimeter(child, leaf);
+		return getUnionPerimeter(child, leaf) - child.getPerimeter();
+	}
+
+	/**
+	 * Return the perimeter of the union of the boxes of both given nodes.
+	 */
+	private static double getUnionPerimeter(Node node1, Node node2){
+		double width = Math.max(node1.maxX, node2.maxX) - Math.min(node1.minX, node2.minX);
+		double height = Math.max(node1.maxY, node2.maxY) - Math.min(node1.minY, node2.minY);
+		return 2 * (width + height);
+	}
+
+	/**
+	 * Return the distance between the given point and the box of the given node, being zero if the point
+	 * lies within the box.
+	 */
+	private static double getDistanceToBox(double x, double y, Node node){
+		double dx = Math.max(0, Math.max(node.minX - x, x - node.maxX));
+		double dy = Math.max(0, Math.max(node.minY - y, y - node.maxY));
+		return Math.hypot(dx, dy);
+	}
+
+	/**
+	 * Check whether the ray with the given origin and unit direction hits the box of the given node
+	 * within the given distance.
+	 */
+	private static boolean rayHitsBox(double x, double y, double ux, double uy, double maxDistance, Node node){
+		double enter = 0;
+		double exit = maxDistance;
+		if (ux == 0){
+			if (x < node.minX || x > node.maxX) return false;
+		}
+		else {
+			double t1 = (node.minX - x) / ux, t2 = (node.maxX - x) / ux;
+			enter = Math.max(enter, Math.min(t1, t2));
+			exit = Math.min(exit, Math.max(t1, t2));
+		}
+		if (uy == 0){
+			if (y < node.minY || y > node.maxY) return false;
+		}
+		else {
+			double t1 = (node.minY - y) / uy, t2 = (node.maxY - y) / uy;
+			enter = Math.max(enter, Math.min(t1, t2));
+			exit = Math.min(exit, Math.max(t1, t2));
+		}
+		return enter <= exit;
+	}
+
+	/**
+	 * Return the distance along the ray with the given origin and unit direction to the first point of
+	 * the circle of the given entity, zero if the origin lies within the circle, or positive infinity if
+	 * the ray misses the circle.
+	 */
+	private static double getRayDistance(double x, double y, double ux, double uy, Entity entity){
+		double fx = x - entity.getX(), fy = y - entity.getY();
+		double radius = entity.getRadius();
+		double c = fx * fx + fy * fy - radius * radius;
+		if (c <= 0) return 0;
+		double b = fx * ux + fy * uy;
+		if (b > 0) return Double.POSITIVE_INFINITY;
+		double d = b * b - c;
+		if (d < 0) return Double.POSITIVE_INFINITY;
+		return -b - Math.sqrt(d);
+	}
+
+	/**
+	 * Return an internal node, reusing a recycled node if there is one.
+	 */
+	private Node obtainNode(){
+		if (pool.isEmpty()) return new Node();
+		return pool.remove(pool.size() - 1);
+	}
+
+	/**
+	 * Give the given internal node back to the pool of recycled nodes.
+	 */
+	private void recycle(Node node){
+		node.parent = null;
+		node.child1 = null;
+		node.child2 = null;
+		pool.add(node);
+	}
+
+	/**
+	 * Variable containing the root of this tree, or null if the tree is empty.
+	 */
+	private Node root = null;
+
+	/**
+	 * Map containing the leaf of each entity in this tree.
+	 */
+	private final Map<Entity, Node> leaves = new HashMap<Entity, Node>();
+
+	/**
+	 * List containing the recycled internal nodes.
+	 */
+	private final List<Node> pool = new ArrayList<Node>();
+
+	/**
+	 * A class of nodes of the tree. A node is a leaf if and only if it holds an entity.
+	 */
+	private static class Node {
+
+		private boolean isLeaf(){
+			return entity != null;
+		}
+
+		private double getPerimeter(){
+			return 2 * ((maxX - minX) + (maxY - minY));
+		}
+
+		/**
+		 * Make the box and height of this internal node fit its children.
+		 */
+		private void refit(){
+			if (isLeaf()) return;
+			minX = Math.min(child1.minX, child2.minX);
+			minY = Math.min(child1.minY, child2.minY);
+			maxX = Math.max(child1.maxX, child2.maxX);
+			maxY = Math.max(child1.maxY, child2.maxY);
+			height = 1 + Math.max(child1.height, child2.height);
+		}
+
+		private double minX, minY, maxX, maxY;
+		private Node parent;
+		private Node child1;
+		private Node child2;
+		private int height;
+		private Entity entity;
+	}
+
+	/**
+	 * A class of entries of the queue of a nearest neighbour search, ordered by their distance.
+	 * The distance of an inexact entry is a lower bound for the distances of the entities below its node.
+	 */
+	private static class Entry implements Comparable<Entry> {
+
+		private Entry(double distance, Node node){
+			this(distance, node, false);
+		}
+
+		private Entry(double distance, Node node, boolean exact){
+			this.distance = distance;
+			this.node = node;
+			this.exact = exact;
+		}
+
+		@Override
+		public int compareTo(Entry other){
+			return Double.compare(this.distance, other.distance);
+		}
+
+		private final double distance;
+		private final Node node;
+		private final boolean exact;
+	}
+}
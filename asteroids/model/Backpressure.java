@@ -0,0 +1,29 @@
+package asteroids.model;
+
+/**
+ * An enumeration of the ways a collision pipeline handles a collision when its buffer is full.
+ *
+ * @version 1.0
+ * @author 	Brent De Bleser & Jesse Geens
+ */
+public enum Backpressure {
+
+	/**
+	 * Wait until the listener has consumed enough collisions to make room. No collision is lost,
+	 * but the evolving world stalls behind a slow listener.
+	 */
+	BLOCK,
+
+	/**
+	 * Drop the oldest collision which hasn't been delivered yet. The world never waits, and the
+	 * listener hears the most recent collisions.
+	 */
+	DROP_OLDEST,
+
+	/**
+	 * Merge the collision into the latest collision of the running step, which hasn't been handed to
+	 * the listener yet. If every buffered collision has already been handed over, the collision is dropped.
+	 * The world never waits, and a burst of collisions reaches the listener as its last collision.
+	 */
+	COALESCE
+}
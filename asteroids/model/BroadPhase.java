@@ -0,0 +1,79 @@
+package asteroids.model;
+
+import java.util.List;
+
+/**
+ * An interface for broad phases of collision prediction. A broad phase keeps track of the entities
+ * of a world and only hands out the entities which could possibly meet a given entity within a given time.
+ *
+ * @version 1.1
+ * @author 	Brent De Bleser & Jesse Geens
+ */
+interface BroadPhase {
+
+	/**
+	 * Return the number of entities stored in this broad phase.
+	 */
+	int getNbEntities();
+
+	/**
+	 * Add the given entity to this broad phase.
+	 *
+	 * @param 	entity
+	 * 			The entity to add.
+	 */
+	void insert(Entity entity);
+
+	/**
+	 * Remove the given entity from this broad phase.
+	 *
+	 * @param 	entity
+	 * 			The entity to remove.
+	 */
+	void remove(Entity entity);
+
+	/**
+	 * Take the new position and radius of the given entity into account after it has moved.
+	 *
+	 * @param 	entity
+	 * 			The entity which has moved.
+	 */
+	void update(Entity entity);
+
+	/**
+	 * Remove all entities from this broad phase.
+	 */
+	void clear();
+
+	/**
+	 * Recompute the bounds on the radii and speeds of the entities in this broad phase, and reorganize
+	 * the broad phase for the current state of its entities if needed.
+	 */
+	void refreshBounds();
+
+	/**
+	 * Take the radius and speed of the given entity into account in the bounds of this broad phase.
+	 *
+	 * @param 	entity
+	 * 			The entity whose radius and speed must be covered.
+	 */
+	void includeInBounds(Entity entity);
+
+	/**
+	 * Collect all entities of this broad phase which could meet the given entity within the given time.
+	 *
+	 * @param 	entity
+	 * 			The entity to find candidates for.
+	 * @param 	horizon
+	 * 			The time within which the candidates could meet the entity.
+	 * @param 	result
+	 * 			The list to store the candidates in. The list is cleared first.
+	 * @post	The result contains every entity, other than the given entity, whose swept circle could
+	 * 			overlap with the swept circle of the given entity within the given time. The result may
+	 * 			contain entities which can't meet the given entity, and it may contain an entity more than once.
+	 * @note	The bounds must have been refreshed since the speeds of the entities last changed.
+	 * @note	Collecting candidates doesn't change the broad phase, so several threads may collect candidates
+	 * 			at the same time, each in their own list, as long as no entity changes.
+	 */
+	void collectCandidates(Entity entity, double horizon, List<Entity> result);
+}
@@ -0,0 +1,37 @@
+package asteroids.model;
+
+/**
+ * An enumeration of the broad phases a world can use to predict collisions.
+ * 	A uniform grid suits worlds whose entities are spread over both axes, a sweep along
+ * 	the x-axis suits long and thin worlds.
+ *
+ * @version 1.0
+ * @author 	Brent De Bleser & Jesse Geens
+ */
+public enum BroadPhaseType {
+
+	/**
+	 * A uniform grid hashing the centres of the entities.
+	 */
+	SPATIAL_HASH {
+		@Override
+		BroadPhase create(){
+			return new SpatialHash();
+		}
+	},
+
+	/**
+	 * A list of entities sorted along the x-axis, kept sorted by insertion sort.
+	 */
+	SWEEP_AND_PRUNE {
+		@Override
+		BroadPhase create(){
+			return new SweepAndPrune();
+		}
+	};
+
+	/**
+	 * Return a new, empty broad phase of this type.
+	 */
+	abstract BroadPhase create();
+}
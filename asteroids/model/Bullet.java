@@ -181,22 +181,34 @@ public class Bullet extends Entity{
 	 * 		   on which it is loaded.
 	 * 		   | if getWolrd() == null
 	 * 		   |	then 	source.removeBulletFromShip(this)
+	 * @effect If the world of the bullet isn't null, the termination is an action of the bullet in it.
+	 * 		   | if getWorld() != null
+	 * 		   |	then	getWorld().beginAction(this, ReplayFormat.TERMINATE, 0)
+	 * @effect If the world of the bullet isn't null, the world is notified of the termination.
+	 * 		   | if getWorld() != null
+	 * 		   |	then	getWorld().entityTerminated(this)
 	 * 
 	 */
 	@Override 
 	public void terminate() {
-		
-		if(getSuperWorld() != null){
-			getSuperWorld().removeEntityFromWorld(this);
-			this.setSuperWorld(null);
+		World world = getSuperWorld();
+		if (world != null) world.beginAction(this, ReplayFormat.TERMINATE, 0);
+		try{
+			if(getSuperWorld() != null){
+				getSuperWorld().removeEntityFromWorld(this);
+				this.setSuperWorld(null);
+			}
+			else if (source != null){
+				source.removeBulletFromShip(this);
+			}
+			
+			this.source = null;
+			this.isTerminated = true;
+			if (world != null) world.entityTerminated(this);
 		}
-		else if (source != null){
-			source.removeBulletFromShip(this);
+		finally{
+			if (world != null) world.endAction();
 		}
-		
-		this.source = null;
-		this.isTerminated = true;
-		
 	}
 	
  
@@ -239,17 +251,22 @@ public class Bullet extends Entity{
 	 *			|		then	Bullet bullet = (Bullet) entity
 	 *			|		 		bullet.terminate()
 	 *			| else 	then	skr.terminate()
+	 * @effect	The world of the entity is notified of the termination of the entity, as it was removed from that
+	 * 			world before it was terminated.
+	 * 			| entity.getSuperWorld().entityTerminated(entity)
      */
     public void bulletCollideSomethingElse(Entity entity){
 
 		this.getSuperWorld().removeEntityFromWorld(this);
 		this.terminate();
-		entity.getSuperWorld().removeEntityFromWorld(entity);
+		World world = entity.getSuperWorld();
+		world.removeEntityFromWorld(entity);
 
 		if (entity instanceof Planetoid) {Planetoid planetoid = (Planetoid) entity; planetoid.terminate();}
 		if (entity instanceof Ship) {Ship ship = (Ship) entity; ship.terminate();}
 		if (entity instanceof Bullet) {Bullet bullet = (Bullet) entity; bullet.terminate();}
 		else {entity.terminate();}
+		world.entityTerminated(entity);
     }
 	
 	/**
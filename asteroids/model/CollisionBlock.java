@@ -0,0 +1,227 @@
+package asteroids.model;
+
+import java.util.Arrays;
+
+import be.kuleuven.cs.som.annotate.*;
+
+/**
+ * A class of blocks of slots of an entity storage, for which the time to a collision with a single
+ * entity is computed at once.
+ * 	The relative positions, velocities and radii of the block are first gathered into contiguous lanes,
+ * 	after which the quadratic solve runs as one straight loop over these lanes without calls or branches
+ * 	that leave the loop. Such a loop can be compiled to vector instructions by the just-in-time compiler.
+ *
+ * @invar	The number of slots in the block never exceeds its capacity.
+ * 			| 0 <= getSize() <= getCapacity()
+ *
+ * @version 1.0
+ * @author 	Brent De Bleser & Jesse Geens
+ */
+class CollisionBlock {
+
+	/**
+	 * Constant containing the initial capacity of the lanes.
+	 */
+	private final static int INITIAL_CAPACITY = 64;
+
+	/**
+	 * Create a new, empty block.
+	 *
+	 * @post	The block doesn't contain any slots.
+	 * 			| new.getSize() == 0
+	 */
+	@Raw
+	CollisionBlock(){
+		allocate(INITIAL_CAPACITY);
+	}
+
+	/**
+	 * Return the number of slots in this block.
+	 */
+	@Basic
+	int getSize(){
+		return this.size;
+	}
+
+	/**
+	 * Variable containing the number of slots in this block.
+	 */
+	private int size = 0;
+
+	/**
+	 * Return the number of slots this block can hold without growing.
+	 */
+	@Basic
+	int getCapacity(){
+		return this.slots.length;
+	}
+
+	/**
+	 * Return the slot at the given index of this block.
+	 */
+	@Basic
+	int getSlot(int index){
+		return this.slots[index];
+	}
+
+	/**
+	 * Return the time to the collision computed for the slot at the given index of this block.
+	 *
+	 * @note	The times are only defined after they have been computed, and until the block changes.
+	 */
+	@Basic
+	double getTime(int index){
+		return this.times[index];
+	}
+
+	/**
+	 * Remove all slots from this block.
+	 *
+	 * @post	The block doesn't contain any slots.
+	 * 			| new.getSize() == 0
+	 */
+	void clear(){
+		size = 0;
+	}
+
+	/**
+	 * Add the given slot to this block.
+	 *
+	 * @param 	slot
+	 * 			The slot to add.
+	 * @post	The slot is the last slot of this block.
+	 * 			| new.getSize() == getSize() + 1 && new.getSlot(getSize()) == slot
+	 */
+	void add(int slot){
+		if (size == slots.length) allocate(2 * slots.length);
+		slots[size++] = slot;
+	}
+
+	/**
+	 * Compute the time until the entity in the given slot collides with each entity in this block.
+	 *
+	 * @param 	store
+	 * 			The storage containing the entities.
+	 * @param 	slot
+	 * 			The slot of the entity to compute the times for.
+	 * @post	The time at each index is the time until the entity in the given slot collides with the entity
+	 * 			in the slot at that index.
+	 * 			| for each i in 0..getSize()-1
+	 * 			|	new.getTime(i) == store.getTimeToCollision(slot, getSlot(i))
+	 */
+	void computeTimesToCollision(EntityStore store, int slot){
+		double x1 = store.x[slot], y1 = store.y[slot];
+		double xVelocity1 = store.vx[slot], yVelocity1 = store.vy[slot];
+		double radius1 = store.radius[slot];
+		for (int i = 0; i < size; i++){
+			int other = slots[i];
+			dx[i] = store.x[other] - x1;
+			dy[i] = store.y[other] - y1;
+			dvx[i] = store.vx[other] - xVelocity1;
+			dvy[i] = store.vy[other] - yVelocity1;
+			sumRadius[i] = radius1 + store.radius[other];
+		}
+		getTimesToCollision(dx, dy, dvx, dvy, sumRadius, times, size);
+	}
+
+	/**
+	 * Compute the time, from the given time of the scheduler of collisions, until the entity in the given slot
+	 * collides with each entity in this block.
+	 *
+	 * @param 	store
+	 * 			The storage containing the entities.
+	 * @param 	slot
+	 * 			The slot of the entity to compute the times for.
+	 * @param 	time
+	 * 			The time of the scheduler to which every entity is extrapolated.
+	 * @post	The time at each index is the time until both entities collide, with each entity extrapolated
+	 * 			to the given time.
+	 * 			| for each i in 0..getSize()-1
+	 * 			|	new.getTime(i) == store.getTimeToCollisionAt(slot, getSlot(i), time)
+	 */
+	void computeTimesToCollision(EntityStore store, int slot, double time){
+		double x1 = store.getXAt(slot, time), y1 = store.getYAt(slot, time);
+		double xVelocity1 = store.vx[slot], yVelocity1 = store.vy[slot];
+		double radius1 = store.radius[slot];
+		for (int i = 0; i < size; i++){
+			int other = slots[i];
+			double lag = time - store.scheduleTime[other];
+			dx[i] = (store.x[other] + store.vx[other] * lag) - x1;
+			dy[i] = (store.y[other] + store.vy[other] * lag) - y1;
+			dvx[i] = store.vx[other] - xVelocity1;
+			dvy[i] = store.vy[other] - yVelocity1;
+			sumRadius[i] = radius1 + store.radius[other];
+		}
+		getTimesToCollision(dx, dy, dvx, dvy, sumRadius, times, size);
+	}
+
+	/**
+	 * Compute the times to the collisions of the given number of pairs of circles with the given relative
+	 * positions, relative velocities and sums of radii.
+	 *
+	 * @param 	dx
+	 * 			The differences between the x coordinates of the pairs.
+	 * @param 	dy
+	 * 			The differences between the y coordinates of the pairs.
+	 * @param 	dvx
+	 * 			The differences between the velocities on the X-axis of the pairs.
+	 * @param 	dvy
+	 * 			The differences between the velocities on the Y-axis of the pairs.
+	 * @param 	sumRadius
+	 * 			The sums of the radii of the pairs.
+	 * @param 	times
+	 * 			The array to store the times in.
+	 * @param 	count
+	 * 			The number of pairs.
+	 * @post	Each time is the time as computed by the scalar kernel for the same pair.
+	 * 			| for each i in 0..count-1
+	 * 			|	times[i] == EntityStore.getTimeToCollision(0, 0, 0, 0, 0, dx[i], dy[i], dvx[i], dvy[i], sumRadius[i])
+	 */
+	static void getTimesToCollision(double[] dx, double[] dy, double[] dvx, double[] dvy, double[] sumRadius, double[] times, int count){
+		// As a is positive whenever the time is used, dt1 is never smaller than dt2, which reduces the
+		// case analysis of the scalar kernel to two selects.
+		for (int i = 0; i < count; i++){
+			double a1 = dvx[i];
+			double a2 = dvy[i];
+			double a = a1 * a1 + a2 * a2;
+			double b1 = dx[i];
+			double b2 = dy[i];
+			double b = 2 * ((b1 * a1) + (b2 * a2));
+			double s = sumRadius[i];
+			double c = b1 * b1 + b2 * b2 - s * s;
+			double d = b * b - (4 * a * c);
+			double root = Math.sqrt(d);
+			double dt2 = (-b - root) / (2 * a);
+			double time = (-b + root) < 0 ? Double.POSITIVE_INFINITY : (dt2 < 0 ? 0 : dt2);
+			times[i] = (a == 0.0 || d < 0) ? Double.POSITIVE_INFINITY : time;
+		}
+	}
+
+	/**
+	 * Grow the lanes of this block to the given capacity, keeping the slots already added.
+	 */
+	private void allocate(int capacity){
+		slots = slots == null ? new int[capacity] : Arrays.copyOf(slots, capacity);
+		dx = new double[capacity];
+		dy = new double[capacity];
+		dvx = new double[capacity];
+		dvy = new double[capacity];
+		sumRadius = new double[capacity];
+		times = new double[capacity];
+	}
+
+	/**
+	 * Array containing the slots of this block.
+	 */
+	private int[] slots;
+
+	/**
+	 * Arrays containing the lanes of relative positions, relative velocities and sums of radii.
+	 */
+	private double[] dx, dy, dvx, dvy, sumRadius;
+
+	/**
+	 * Array containing the computed times.
+	 */
+	private double[] times;
+}
@@ -0,0 +1,124 @@
+package asteroids.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A class comparing the scalar prediction of collisions with the prediction of a whole block of candidates at once,
+ * as the scheduler of collisions does when it reschedules an entity.
+ * 	For each number of entities, every entity of a dense field lagging behind the scheduler is predicted against the
+ * 	candidates handed out by a spatial hash which the scheduler keeps, once pair by pair and once per block. Both
+ * 	ways must find the same times.
+ * 	Run it with the number of entities as arguments, by default 1000 and 10000.
+ *
+ * @version 1.0
+ * @author 	Brent De Bleser & Jesse Geens
+ */
+class CollisionBlockBenchmark {
+
+	/**
+	 * Constant containing the number of timed rounds for each number of entities.
+	 */
+	private final static int NB_ROUNDS = 20;
+
+	/**
+	 * Constant containing the horizon within which candidates are collected.
+	 */
+	private final static double HORIZON = 1;
+
+	public static void main(String[] args){
+		int[] sizes = args.length == 0 ? new int[]{1000, 10000} : new int[args.length];
+		for (int i = 0; i < args.length; i++) sizes[i] = Integer.parseInt(args[i]);
+		for (int nbEntities : sizes) run(nbEntities);
+	}
+
+	/**
+	 * Benchmark both ways to predict collisions for a field of the given number of entities.
+	 */
+	private static void run(int nbEntities){
+		EntityStore store = new EntityStore();
+		SpatialHash hash = new SpatialHash();
+		Random random = new Random(nbEntities);
+		int columns = (int) Math.ceil(Math.sqrt(nbEntities));
+		for (int i = 0; i < nbEntities; i++){
+			Asteroid asteroid = new Asteroid(50 + 40 * (i % columns), 50 + 40 * (i / columns),
+					100 * random.nextGaussian(), 100 * random.nextGaussian(), 5 + 10 * random.nextDouble());
+			store.add(asteroid);
+			hash.insert(asteroid);
+		}
+		hash.refreshBounds();
+		double now = HORIZON / 2;
+		for (int slot = 0; slot < nbEntities; slot++) store.scheduleTime[slot] = now * random.nextDouble();
+
+		int[][] candidates = new int[nbEntities][];
+		List<Entity> result = new ArrayList<Entity>();
+		long nbPairs = 0;
+		for (int slot = 0; slot < nbEntities; slot++){
+			hash.collectCandidates(store.getEntityAt(slot), HORIZON, result);
+			candidates[slot] = new int[result.size()];
+			for (int i = 0; i < result.size(); i++) candidates[slot][i] = result.get(i).getSlot();
+			nbPairs += result.size();
+		}
+
+		CollisionBlock block = new CollisionBlock();
+		double scalarSum = 0, blockSum = 0;
+		long scalarTime = Long.MAX_VALUE, blockTime = Long.MAX_VALUE;
+		for (int round = 0; round < 2 * NB_ROUNDS; round++){
+			long start = System.nanoTime();
+			scalarSum = predictScalar(store, candidates, now);
+			long middle = System.nanoTime();
+			blockSum = predictBlock(store, candidates, now, block);
+			long end = System.nanoTime();
+			// The first half of the rounds only warms up the compiler.
+			if (round >= NB_ROUNDS){
+				scalarTime = Math.min(scalarTime, middle - start);
+				blockTime = Math.min(blockTime, end - middle);
+			}
+		}
+		if (Double.doubleToLongBits(scalarSum) != Double.doubleToLongBits(blockSum))
+			throw new IllegalStateException("Both ways predict different times.");
+		System.out.printf("entities=%d pairs=%d scalar=%.2fns/pair block=%.2fns/pair speedup=%.2f%n", nbEntities, nbPairs,
+				scalarTime / (double) nbPairs, blockTime / (double) nbPairs, scalarTime / (double) blockTime);
+	}
+
+	/**
+	 * Check whether the scheduler of collisions would predict the collision of the entities in the given slots.
+	 */
+	private static boolean isCandidate(EntityStore store, int slot, int other, double now){
+		return store.isApproachingAt(slot, other, now) && store.canMeetWithinAt(slot, other, now, HORIZON - now);
+	}
+
+	/**
+	 * Return the sum of the finite times to the collisions of all given pairs, predicted pair by pair.
+	 */
+	private static double predictScalar(EntityStore store, int[][] candidates, double now){
+		double sum = 0;
+		for (int slot = 0; slot < candidates.length; slot++){
+			for (int other : candidates[slot]){
+				if (!isCandidate(store, slot, other, now)) continue;
+				double time = store.getTimeToCollisionAt(slot, other, now);
+				if (time != Double.POSITIVE_INFINITY) sum += time;
+			}
+		}
+		return sum;
+	}
+
+	/**
+	 * Return the sum of the finite times to the collisions of all given pairs, predicted per block of candidates.
+	 */
+	private static double predictBlock(EntityStore store, int[][] candidates, double now, CollisionBlock block){
+		double sum = 0;
+		for (int slot = 0; slot < candidates.length; slot++){
+			block.clear();
+			for (int other : candidates[slot])
+				if (isCandidate(store, slot, other, now)) block.add(other);
+			block.computeTimesToCollision(store, slot, now);
+			for (int i = 0; i < block.getSize(); i++){
+				double time = block.getTime(i);
+				if (time != Double.POSITIVE_INFINITY) sum += time;
+			}
+		}
+		return sum;
+	}
+}
@@ -0,0 +1,203 @@
+package asteroids.model;
+
+import java.util.Arrays;
+
+import be.kuleuven.cs.som.annotate.*;
+
+/**
+ * A class of predicted collisions involving the time until the collision, the kind of collision,
+ * the colliding entities and the position where the collision takes place.
+ *
+ * @invar	The time of a collision event is never negative.
+ * 			| getTime() >= 0
+ * @invar	A boundary collision involves a single entity, an entity collision involves two entities.
+ * 			| (getKind() == Kind.BOUNDARY) == (getEntityB() == null)
+ *
+ * @version 1.0
+ * @author 	Brent De Bleser & Jesse Geens
+ */
+@Value
+public final class CollisionEvent {
+
+	/**
+	 * An enumeration of the kinds of collisions.
+	 */
+	public enum Kind {
+		BOUNDARY, ENTITY
+	}
+
+	/**
+	 * Initialize this new collision event as a collision of the given entity with the boundaries of its world.
+	 *
+	 * @param 	time
+	 * 			The time until the collision.
+	 * @param 	entity
+	 * 			The colliding entity.
+	 * @param 	position
+	 * 			The position where the entity hits the boundary.
+	 * @effect	This event is initialized as a boundary collision.
+	 * 			| this(Kind.BOUNDARY, time, entity, null, position)
+	 */
+	public CollisionEvent(double time, Entity entity, double[] position) throws IllegalArgumentException {
+		this(Kind.BOUNDARY, time, entity, null, position);
+	}
+
+	/**
+	 * Initialize this new collision event as a collision between the given entities.
+	 *
+	 * @param 	time
+	 * 			The time until the collision.
+	 * @param 	entityA
+	 * 			The first colliding entity.
+	 * @param 	entityB
+	 * 			The second colliding entity.
+	 * @param 	position
+	 * 			The position where both entities make contact.
+	 * @effect	This event is initialized as an entity collision.
+	 * 			| this(Kind.ENTITY, time, entityA, entityB, position)
+	 */
+	public CollisionEvent(double time, Entity entityA, Entity entityB, double[] position) throws IllegalArgumentException {
+		this(Kind.ENTITY, time, entityA, entityB, position);
+		if (entityB == null) throw new IllegalArgumentException("An entity collision needs two entities @ CollisionEvent");
+	}
+
+	/**
+	 * Initialize this new collision event with the given properties.
+	 *
+	 * @throws	IllegalArgumentException
+	 * 			The time is negative or NaN, the first entity is null or the position isn't an array of length two.
+	 * 			| !(time >= 0) || entityA == null || position == null || position.length != 2
+	 */
+	@Raw
+	private CollisionEvent(Kind kind, double time, Entity entityA, Entity entityB, double[] position) throws IllegalArgumentException {
+		if (!(time >= 0)) throw new IllegalArgumentException("Invalid time @ CollisionEvent");
+		if (entityA == null) throw new IllegalArgumentException("A collision needs an entity @ CollisionEvent");
+		if (position == null || position.length != 2) throw new IllegalArgumentException("Invalid position @ CollisionEvent");
+		this.kind = kind;
+		this.time = time;
+		this.entityA = entityA;
+		this.entityB = entityB;
+		this.position = new double[]{position[0], position[1]};
+	}
+
+	/**
+	 * Return the kind of this collision.
+	 */
+	@Basic @Immutable
+	public Kind getKind(){
+		return this.kind;
+	}
+
+	/**
+	 * Variable containing the kind of this collision.
+	 */
+	private final Kind kind;
+
+	/**
+	 * Check whether this collision is a collision with the boundaries of a world.
+	 *
+	 * @return	True if and only if the kind of this collision is a boundary collision.
+	 * 			| result == (getKind() == Kind.BOUNDARY)
+	 */
+	public boolean isBoundaryCollision(){
+		return this.kind == Kind.BOUNDARY;
+	}
+
+	/**
+	 * Return the time until this collision.
+	 */
+	@Basic @Immutable
+	public double getTime(){
+		return this.time;
+	}
+
+	/**
+	 * Variable containing the time until this collision.
+	 */
+	private final double time;
+
+	/**
+	 * Return the first entity of this collision.
+	 */
+	@Basic @Immutable
+	public Entity getEntityA(){
+		return this.entityA;
+	}
+
+	/**
+	 * Variable containing the first entity of this collision.
+	 */
+	private final Entity entityA;
+
+	/**
+	 * Return the second entity of this collision.
+	 *
+	 * @note	If this is a boundary collision, the second entity is null.
+	 */
+	@Basic @Immutable
+	public Entity getEntityB(){
+		return this.entityB;
+	}
+
+	/**
+	 * Variable containing the second entity of this collision.
+	 */
+	private final Entity entityB;
+
+	/**
+	 * Return the position of this collision.
+	 *
+	 * @note	The x coordinate is at index 0 and the y coordinate at 1.
+	 */
+	@Basic @Immutable
+	public double[] getPosition(){
+		return new double[]{this.position[0], this.position[1]};
+	}
+
+	/**
+	 * Variable containing the position of this collision.
+	 */
+	private final double[] position;
+
+	/**
+	 * Return the colliding entities of this collision.
+	 *
+	 * @return	An array of size two containing the first and the second entity of this collision.
+	 * 			| result == new Entity[]{getEntityA(), getEntityB()}
+	 */
+	public Entity[] getEntities(){
+		return new Entity[]{this.entityA, this.entityB};
+	}
+
+	/**
+	 * Checks whether this collision event is equal to a given object.
+	 *
+	 * @return 	True if and only if the object is a collision event of the same kind, with the same time,
+	 * 			the same entities and the same position.
+	 * 			| @ implementation
+	 */
+	@Override
+	public boolean equals(Object other){
+		if (other == null) return false;
+		if (this.getClass() != other.getClass()) return false;
+		CollisionEvent event = (CollisionEvent) other;
+		return this.kind == event.kind && this.time == event.time && this.entityA == event.entityA
+				&& this.entityB == event.entityB && Arrays.equals(this.position, event.position);
+	}
+
+	/**
+	 * Return the hash code of this collision event.
+	 */
+	@Override
+	public int hashCode(){
+		return Double.hashCode(time) * 31 + System.identityHashCode(entityA) * 17 + System.identityHashCode(entityB);
+	}
+
+	/**
+	 * Return a textual representation of this collision event.
+	 */
+	@Override
+	public String toString(){
+		return "[CollisionEvent: " + kind + " after " + time + " at " + Arrays.toString(position) + "]";
+	}
+}
@@ -0,0 +1,410 @@
+package asteroids.model;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import asteroids.part2.CollisionListener;
+import be.kuleuven.cs.som.annotate.*;
+
+/**
+ * A class of collision listeners which hand the collisions they hear to another listener on a separate thread.
+ * 	The collisions are recorded as primitive records in a ring buffer, without allocating anything. At the end
+ * 	of every step of an evolving world, the collisions of that step are published, and a consumer thread
+ * 	delivers them in batches to the listener. A slow listener therefore doesn't stall the physics, unless the
+ * 	buffer fills up and the backpressure of the pipeline is to block.
+ * 	The pipeline has a single producer, the thread evolving the world, and a single consumer, its own thread.
+ *
+ * @invar	The capacity of the pipeline is a power of two.
+ * 			| Integer.bitCount(getCapacity()) == 1
+ * @invar	The listener and backpressure of the pipeline are effective.
+ * 			| getListener() != null && getBackpressure() != null
+ *
+ * @version 1.0
+ * @author 	Brent De Bleser & Jesse Geens
+ */
+public class CollisionPipeline implements CollisionListener, AutoCloseable {
+
+	/**
+	 * Constant containing the default number of collisions the buffer of a pipeline can hold.
+	 */
+	public static final int DEFAULT_CAPACITY = 4096;
+
+	/**
+	 * Constant containing the largest number of collisions delivered in one batch.
+	 */
+	private static final int BATCH_SIZE = 256;
+
+	/**
+	 * Constant containing the time a blocked producer waits before checking for room again, in nanoseconds.
+	 */
+	private static final long BLOCK_WAIT = 10_000;
+
+	/**
+	 * Create a new pipeline delivering collisions to the given listener.
+	 *
+	 * @param 	listener
+	 * 			The listener to deliver the collisions to.
+	 * @param 	capacity
+	 * 			The number of collisions the buffer can hold at least.
+	 * @param 	backpressure
+	 * 			The way a collision is handled when the buffer is full.
+	 * @post	The listener and backpressure of the new pipeline are the given ones, and its capacity is the
+	 * 			smallest power of two not below the given capacity.
+	 * 			| new.getListener() == listener && new.getBackpressure() == backpressure
+	 * 			| new.getCapacity() >= capacity && new.getCapacity() < 2 * capacity
+	 * @effect	The consumer thread of the new pipeline is started.
+	 * 			| @ implementation
+	 * @throws	IllegalArgumentException
+	 * 			The listener or backpressure is null, or the capacity isn't positive or too large.
+	 * 			| listener == null || backpressure == null || capacity <= 0 || capacity > (1 << 30)
+	 */
+	public CollisionPipeline(CollisionListener listener, int capacity, Backpressure backpressure) throws IllegalArgumentException{
+		if (listener == null || backpressure == null || capacity <= 0 || capacity > (1 << 30))
+			throw new IllegalArgumentException("Invalid pipeline @ CollisionPipeline");
+		this.listener = listener;
+		this.backpressure = backpressure;
+		int size = Integer.highestOneBit(capacity);
+		if (size < capacity) size <<= 1;
+		this.mask = size - 1;
+		this.first = new Object[size];
+		this.second = new Object[size];
+		this.xs = new double[size];
+		this.ys = new double[size];
+		this.consumer = new Thread(this::consume, "collision-pipeline");
+		this.consumer.setDaemon(true);
+		this.consumer.start();
+	}
+
+	/**
+	 * Create a new pipeline delivering collisions to the given listener, with the default capacity, blocking when full.
+	 *
+	 * @param 	listener
+	 * 			The listener to deliver the collisions to.
+	 * @effect	| this(listener, DEFAULT_CAPACITY, Backpressure.BLOCK)
+	 */
+	public CollisionPipeline(CollisionListener listener) throws IllegalArgumentException{
+		this(listener, DEFAULT_CAPACITY, Backpressure.BLOCK);
+	}
+
+	/**
+	 * Return the listener this pipeline delivers to.
+	 */
+	@Basic @Immutable
+	public CollisionListener getListener(){
+		return this.listener;
+	}
+
+	/**
+	 * Variable containing the listener this pipeline delivers to.
+	 */
+	private final CollisionListener listener;
+
+	/**
+	 * Return the way this pipeline handles a collision when its buffer is full.
+	 */
+	@Basic @Immutable
+	public Backpressure getBackpressure(){
+		return this.backpressure;
+	}
+
+	/**
+	 * Variable containing the backpressure of this pipeline.
+	 */
+	private final Backpressure backpressure;
+
+	/**
+	 * Return the number of collisions the buffer of this pipeline can hold.
+	 */
+	@Basic @Immutable
+	public int getCapacity(){
+		return this.mask + 1;
+	}
+
+	/**
+	 * Return the number of collisions which have been dropped because the buffer was full.
+	 */
+	@Basic
+	public long getNbDropped(){
+		return this.nbDropped;
+	}
+
+	/**
+	 * Return the number of collisions which have been merged into a later collision because the buffer was full.
+	 */
+	@Basic
+	public long getNbCoalesced(){
+		return this.nbCoalesced;
+	}
+
+	/**
+	 * Return the number of collisions which have been delivered to the listener.
+	 */
+	@Basic
+	public long getNbDelivered(){
+		return this.nbDelivered;
+	}
+
+	/**
+	 * Return the number of deliveries for which the listener threw an exception.
+	 */
+	@Basic
+	public long getNbFailures(){
+		return this.nbFailures;
+	}
+
+	/**
+	 * Check whether this pipeline is closed.
+	 */
+	@Basic
+	public boolean isClosed(){
+		return this.closed;
+	}
+
+	/**
+	 * Record a collision of the given entity with a boundary at the given position.
+	 *
+	 * @effect	The collision is recorded without a second entity.
+	 * 			| record(entity, null, x, y)
+	 */
+	@Override
+	public void boundaryCollision(Object entity, double x, double y){
+		record(entity, null, x, y);
+	}
+
+	/**
+	 * Record a collision between the given entities at the given position.
+	 *
+	 * @effect	The collision is recorded with both entities.
+	 * 			| record(entity1, entity2, x, y)
+	 */
+	@Override
+	public void objectCollision(Object entity1, Object entity2, double x, double y){
+		record(entity1, entity2, x, y);
+	}
+
+	/**
+	 * Record the collision of the given entities at the given position, to be delivered after the next flush.
+	 *
+	 * @param 	entity1
+	 * 			The first colliding entity.
+	 * @param 	entity2
+	 * 			The second colliding entity, or null for a collision with a boundary.
+	 * @effect	If the buffer is full, the collision is handled according to the backpressure of this pipeline.
+	 * 			| @ implementation
+	 * @throws	IllegalStateException
+	 * 			This pipeline is closed.
+	 * 			| isClosed()
+	 */
+	private void record(Object entity1, Object entity2, double x, double y) throws IllegalStateException{
+		if (closed) throw new IllegalStateException("The pipeline is closed.");
+		if (tail - head.get() > mask){
+			switch (backpressure){
+				case BLOCK:
+					flush();
+					while (tail - head.get() > mask){
+						if (!consumer.isAlive()) throw new IllegalStateException("The pipeline has stopped.");
+						LockSupport.parkNanos(BLOCK_WAIT);
+					}
+					break;
+				case DROP_OLDEST:
+					while (tail - head.get() > mask){
+						long oldest = head.get();
+						if (head.compareAndSet(oldest, oldest + 1)) nbDropped++;
+					}
+					break;
+				case COALESCE:
+					// Records which haven't been published yet are never read by the consumer.
+					if (tail > published){
+						write(tail - 1, entity1, entity2, x, y);
+						nbCoalesced++;
+					}
+					else nbDropped++;
+					return;
+			}
+		}
+		write(tail, entity1, entity2, x, y);
+		tail++;
+	}
+
+	/**
+	 * Write the given collision in the slot of the given index.
+	 */
+	private void write(long index, Object entity1, Object entity2, double x, double y){
+		int slot = (int) (index & mask);
+		first[slot] = entity1;
+		second[slot] = entity2;
+		xs[slot] = x;
+		ys[slot] = y;
+	}
+
+	/**
+	 * Hand every recorded collision over to the consumer thread.
+	 *
+	 * @post	Every collision recorded so far will be delivered, unless it is dropped.
+	 * 			| @ implementation
+	 * @note	A world evolving with this pipeline as its listener flushes it at the end of every step.
+	 */
+	public void flush(){
+		if (published != tail){
+			published = tail;
+			LockSupport.unpark(consumer);
+		}
+	}
+
+	/**
+	 * Flush this pipeline and wait until the listener has heard every collision handed over.
+	 *
+	 * @effect	This pipeline is flushed.
+	 * 			| flush()
+	 * @post	Every collision recorded before this call has been delivered or dropped.
+	 * 			| @ implementation
+	 */
+	public void awaitDelivered(){
+		flush();
+		long target = published;
+		while ((head.get() < target || delivering) && consumer.isAlive()) LockSupport.parkNanos(BLOCK_WAIT);
+	}
+
+	/**
+	 * Return the index up to which collisions have been handed over to the consumer thread.
+	 */
+	@Basic
+	long getPublished(){
+		return this.published;
+	}
+
+	/**
+	 * Check whether every collision before the given index has been delivered to the listener or dropped.
+	 *
+	 * @param 	index
+	 * 			The index of a collision, as returned by getPublished.
+	 * @return	True if and only if the consumer has finished delivering every collision before the given index.
+	 * 			| @ implementation
+	 */
+	boolean hasDelivered(long index){
+		return delivered >= index;
+	}
+
+	/**
+	 * Deliver the collisions still in this pipeline and stop its consumer thread.
+	 *
+	 * @effect	Every recorded collision is delivered.
+	 * 			| awaitDelivered()
+	 * @post	This pipeline is closed.
+	 * 			| new.isClosed()
+	 */
+	@Override
+	public void close(){
+		if (closed) return;
+		awaitDelivered();
+		closed = true;
+		LockSupport.unpark(consumer);
+		try{
+			consumer.join();
+		}
+		catch (InterruptedException ex){
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Deliver the published collisions in batches to the listener, until this pipeline is closed.
+	 */
+	private void consume(){
+		Object[] batchFirst = new Object[BATCH_SIZE];
+		Object[] batchSecond = new Object[BATCH_SIZE];
+		double[] batchX = new double[BATCH_SIZE];
+		double[] batchY = new double[BATCH_SIZE];
+		while (true){
+			delivering = true;
+			int count = 0;
+			long index;
+			while (count < BATCH_SIZE && (index = head.get()) < published){
+				int slot = (int) (index & mask);
+				Object entity1 = first[slot], entity2 = second[slot];
+				double x = xs[slot], y = ys[slot];
+				// The slot is only overwritten after the producer moved the head past it, so the record is
+				// intact if and only if the head didn't move while it was read.
+				if (head.compareAndSet(index, index + 1)){
+					batchFirst[count] = entity1;
+					batchSecond[count] = entity2;
+					batchX[count] = x;
+					batchY[count] = y;
+					count++;
+				}
+			}
+			for (int i = 0; i < count; i++){
+				try{
+					if (batchSecond[i] == null) listener.boundaryCollision(batchFirst[i], batchX[i], batchY[i]);
+					else listener.objectCollision(batchFirst[i], batchSecond[i], batchX[i], batchY[i]);
+				}
+				catch (RuntimeException ex){
+					nbFailures++;
+				}
+				batchFirst[i] = null;
+				batchSecond[i] = null;
+			}
+			nbDelivered += count;
+			// The consumer holds no collisions now, so each one before the head is delivered or dropped.
+			delivered = head.get();
+			if (count == 0){
+				delivering = false;
+				if (head.get() >= published){
+					if (closed) return;
+					LockSupport.park(this);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Variable containing the mask mapping an index on a slot of the buffer.
+	 */
+	private final int mask;
+
+	/**
+	 * Arrays containing the first entity, the second entity and the position of each recorded collision.
+	 */
+	private final Object[] first, second;
+	private final double[] xs, ys;
+
+	/**
+	 * Variable containing the index of the next collision to record. Only the producer uses it.
+	 */
+	private long tail = 0;
+
+	/**
+	 * Variable containing the index up to which collisions have been handed over to the consumer.
+	 */
+	private volatile long published = 0;
+
+	/**
+	 * Variable containing the index of the oldest collision which hasn't been delivered or dropped.
+	 */
+	private final AtomicLong head = new AtomicLong();
+
+	/**
+	 * Variable containing the index up to which every collision has been delivered or dropped.
+	 */
+	private volatile long delivered = 0;
+
+	/**
+	 * Variable registering whether the consumer may hold collisions it hasn't delivered yet.
+	 */
+	private volatile boolean delivering = false;
+
+	/**
+	 * Variable registering whether this pipeline is closed.
+	 */
+	private volatile boolean closed = false;
+
+	/**
+	 * Variables containing the statistics of this pipeline. Each is written by a single thread.
+	 */
+	private volatile long nbDropped = 0, nbCoalesced = 0, nbDelivered = 0, nbFailures = 0;
+
+	/**
+	 * Variable containing the consumer thread of this pipeline.
+	 */
+	private final Thread consumer;
+}
@@ -0,0 +1,23 @@
+package asteroids.model;
+
+/**
+ * An interface for responses to the collision of two entities, such as bouncing off each other or destroying
+ * one of them. A response is registered for a pair of types in a registry of collision responses, and is only
+ * handed entities of those types, in the order of the types it was registered for.
+ *
+ * @version 1.0
+ * @author 	Brent De Bleser & Jesse Geens
+ */
+@FunctionalInterface
+public interface CollisionResponse {
+
+	/**
+	 * Let the given entities respond to their collision.
+	 *
+	 * @param 	first
+	 * 			The entity of the first type of the pair the response was registered for.
+	 * @param 	second
+	 * 			The entity of the second type of the pair the response was registered for.
+	 */
+	void collide(Entity first, Entity second);
+}
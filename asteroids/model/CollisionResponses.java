@@ -0,0 +1,177 @@
+package asteroids.model;
+
+import be.kuleuven.cs.som.annotate.*;
+
+/**
+ * A class of registries holding the response to the collision of two entities for every pair of types.
+ * 	The responses are kept in a table indexed by the ordinals of both types, so finding the response to a
+ * 	collision is a single array lookup instead of a chain of type checks. A new registry holds the rules of
+ * 	the game:
+ * 	- Two ships, or two minor planets, bounce off each other.
+ * 	- A bullet which hits the ship that fired it is loaded on it again; a bullet which hits anything else is
+ * 	  destroyed together with it.
+ * 	- A ship which hits an asteroid is destroyed.
+ * 	- A ship which hits a planetoid is teleported to a free position in its world.
+ * 	Any of these responses can be replaced by registering another one for its pair of types.
+ *
+ * @invar	Every pair of types has a response.
+ * 			| for each first in EntityType.values()
+ * 			|	for each second in EntityType.values()
+ * 			|		getResponse(first, second) != null
+ *
+ * @version 1.0
+ * @author 	Brent De Bleser & Jesse Geens
+ */
+public class CollisionResponses {
+
+	/**
+	 * Constant containing the number of types of entities.
+	 */
+	private static final int NB_TYPES = EntityType.values().length;
+
+	/**
+	 * Create a new registry holding the responses of the rules of the game.
+	 *
+	 * @post	Every pair of types has the response of the rules of the game.
+	 * 			| @ implementation
+	 */
+	public CollisionResponses(){
+		restoreDefaults();
+	}
+
+	/**
+	 * Return the response to the collision of an entity of the first type with an entity of the second type.
+	 *
+	 * @throws	IllegalArgumentException
+	 * 			One of the types isn't effective.
+	 * 			| first == null || second == null
+	 */
+	@Basic
+	public CollisionResponse getResponse(EntityType first, EntityType second) throws IllegalArgumentException{
+		if (first == null || second == null) throw new IllegalArgumentException("Invalid type @ CollisionResponses");
+		return this.responses[getIndex(first, second)];
+	}
+
+	/**
+	 * Register the given response for the collisions between entities of the given types.
+	 *
+	 * @param 	first
+	 * 			The first type of the pair.
+	 * @param 	second
+	 * 			The second type of the pair.
+	 * @param 	response
+	 * 			The new response, which is handed the entity of the first type first.
+	 * @post	The response is used for the pair of types, and in the other order with its entities swapped.
+	 * 			| new.getResponse(first, second) == response
+	 * 			| if first != second
+	 * 			|	then new.getResponse(second, first).collide(b, a) == response.collide(a, b)
+	 * @throws	IllegalArgumentException
+	 * 			One of the types or the response isn't effective.
+	 * 			| first == null || second == null || response == null
+	 */
+	public void register(EntityType first, EntityType second, CollisionResponse response) throws IllegalArgumentException{
+		if (first == null || second == null || response == null)
+			throw new IllegalArgumentException("Invalid response @ CollisionResponses");
+		put(first, second, response);
+		if (first != second) put(second, first, (entity1, entity2) -> response.collide(entity2, entity1));
+	}
+
+	/**
+	 * Register the responses of the rules of the game for every pair of types again.
+	 *
+	 * @post	Every pair of types has the response of the rules of the game.
+	 * 			| @ implementation
+	 */
+	public void restoreDefaults(){
+		put(EntityType.SHIP, EntityType.SHIP, BOUNCE);
+		for (EntityType first : MINOR_PLANETS)
+			for (EntityType second : MINOR_PLANETS) put(first, second, BOUNCE);
+		for (EntityType type : EntityType.values()){
+			// A bullet hitting another bullet is handled by the second bullet, as it always has been.
+			put(type, EntityType.BULLET, (entity, bullet) -> hitByBullet((Bullet) bullet, entity));
+			if (type != EntityType.BULLET) put(EntityType.BULLET, type, (bullet, entity) -> hitByBullet((Bullet) bullet, entity));
+		}
+		put(EntityType.SHIP, EntityType.ASTEROID, (ship, asteroid) -> ship.terminate());
+		put(EntityType.ASTEROID, EntityType.SHIP, (asteroid, ship) -> ship.terminate());
+		put(EntityType.SHIP, EntityType.PLANETOID, (ship, planetoid) -> teleport((Ship) ship, ship));
+		put(EntityType.PLANETOID, EntityType.SHIP, (planetoid, ship) -> teleport((Ship) ship, planetoid));
+	}
+
+	/**
+	 * Let the given entities respond to their collision.
+	 *
+	 * @param 	first
+	 * 			The first colliding entity.
+	 * @param 	second
+	 * 			The second colliding entity.
+	 * @effect	| getResponse(first.getType(), second.getType()).collide(first, second)
+	 */
+	void respond(Entity first, Entity second){
+		this.responses[getIndex(first.getType(), second.getType())].collide(first, second);
+	}
+
+	/**
+	 * Put the given response in the table for the given pair of types.
+	 */
+	private void put(EntityType first, EntityType second, CollisionResponse response){
+		this.responses[getIndex(first, second)] = response;
+	}
+
+	/**
+	 * Return the index of the given pair of types in the table of responses.
+	 */
+	private static int getIndex(EntityType first, EntityType second){
+		return first.ordinal() * NB_TYPES + second.ordinal();
+	}
+
+	/**
+	 * Array containing the response for every pair of types.
+	 */
+	private final CollisionResponse[] responses = new CollisionResponse[NB_TYPES * NB_TYPES];
+
+	/**
+	 * Constant containing the types of minor planets.
+	 */
+	private static final EntityType[] MINOR_PLANETS = { EntityType.ASTEROID, EntityType.PLANETOID };
+
+	/**
+	 * Constant containing the response of two entities bouncing off each other.
+	 */
+	private static final CollisionResponse BOUNCE = (first, second) -> first.defaultCollide(second);
+
+	/**
+	 * Let the given bullet respond to hitting the given entity.
+	 *
+	 * @effect	If the entity is the source of the bullet, the bullet is loaded on it again. Otherwise both are destroyed.
+	 * 			| if bullet.getBulletSource() == entity
+	 * 			|	then bullet.bulletCollideOwnShip((Ship) entity)
+	 * 			|	else bullet.bulletCollideSomethingElse(entity)
+	 */
+	private static void hitByBullet(Bullet bullet, Entity entity){
+		if (bullet.getBulletSource() == entity) bullet.bulletCollideOwnShip((Ship) entity);
+		else bullet.bulletCollideSomethingElse(entity);
+	}
+
+	/**
+	 * Teleport the given ship, which hit a planetoid, to a free position in its world.
+	 *
+	 * @param 	ship
+	 * 			The ship to teleport.
+	 * @param 	first
+	 * 			The first entity of the collision.
+	 * @effect	The ship is put on a free position, or on a random position keeping the radius of the first entity
+	 * 			from the lower boundaries if the world is too crowded to find one.
+	 * 			| let position = world.findFreePosition(ship.getRadius(), ship)
+	 * 			| if position == null
+	 * 			|	then position = {world.randomInBetween(first.getRadius(), world.getWorldWidth()),
+	 * 			|					 world.randomInBetween(first.getRadius(), world.getWorldHeight())}
+	 * 			| ship.setPosition(position[0], position[1])
+	 */
+	private static void teleport(Ship ship, Entity first){
+		World world = ship.getSuperWorld();
+		double[] position = world.findFreePosition(ship.getRadius(), ship);
+		if (position == null) position = new double[]{world.randomInBetween(first.getRadius(), world.getWorldWidth()),
+				world.randomInBetween(first.getRadius(), world.getWorldHeight())};
+		ship.setPosition(position[0], position[1]);
+	}
+}
@@ -0,0 +1,604 @@
+package asteroids.model;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import be.kuleuven.cs.som.annotate.*;
+
+/**
+ * A class of kinetic event queues which schedule the boundary and entity collisions of a world
+ * during an evolve.
+ * 	Predicted collisions are kept in a min-heap keyed by their absolute time since the start of the
+ * 	evolve. Entities are only moved when they are involved in a collision, when they are needed for a
+ * 	prediction or when the world is read, so resolving a collision only costs the predictions of the
+ * 	entities it touched.
+ * 	The scheduling state of each entity is kept in its slot in the storage of the world and
+ * 	predicted collisions are recycled, so a scheduler is reused for every evolve of its world
+ * 	without allocating once its buffers have grown large enough.
+ *
+ * @invar	Every scheduled event lies within the horizon of the scheduler.
+ * 			| for each event in queue
+ * 			|	event.getTime() <= getHorizon()
+ * @invar	An event is stale if and only if one of its entities has left the world or has been
+ * 			rescheduled since the event was predicted.
+ * 			| @ implementation
+ *
+ * @version 1.1
+ * @author 	Brent De Bleser & Jesse Geens
+ */
+class CollisionScheduler {
+
+	/**
+	 * Create a new scheduler using the given broad phase and storage of a world.
+	 *
+	 * @param 	broadPhase
+	 * 			The broad phase containing the entities of the world.
+	 * @param 	store
+	 * 			The storage containing the state of the entities of the world.
+	 * @post	The broad phase and storage of the new scheduler are the given ones.
+	 * 			| new.broadPhase == broadPhase && new.store == store
+	 */
+	@Raw
+	CollisionScheduler(BroadPhase broadPhase, EntityStore store){
+		this.broadPhase = broadPhase;
+		this.store = store;
+	}
+
+	/**
+	 * Variable containing the broad phase of the world.
+	 */
+	private final BroadPhase broadPhase;
+
+	/**
+	 * Variable containing the storage of the entities of the world.
+	 */
+	private final EntityStore store;
+
+	/**
+	 * Return the time, since the start of the evolve, up to which every entity has been handled.
+	 */
+	@Basic
+	double getTime(){
+		return this.now;
+	}
+
+	/**
+	 * Variable containing the current time of the scheduler.
+	 */
+	private double now = 0;
+
+	/**
+	 * Return the time, since the start of the evolve, up to which collisions are scheduled.
+	 */
+	@Basic
+	double getHorizon(){
+		return this.horizon;
+	}
+
+	/**
+	 * Variable containing the horizon of the scheduler.
+	 */
+	private double horizon = 0;
+
+	/**
+	 * Start scheduling the collisions of the world within the given time.
+	 *
+	 * @param 	horizon
+	 * 			The time over which the world will be evolved.
+	 * @effect	The collisions are scheduled without a decomposition into regions.
+	 * 			| start(horizon, null)
+	 */
+	void start(double horizon){
+		start(horizon, null);
+	}
+
+	/**
+	 * Drop every scheduled collision.
+	 *
+	 * @post	The current time and the horizon are zero, and no collisions are scheduled.
+	 * 			| new.getTime() == 0 && new.getHorizon() == 0
+	 * 			| new.pollEvent() == null
+	 */
+	void clear(){
+		this.now = 0;
+		this.horizon = 0;
+		recycle(current);
+		current = null;
+		while (!queue.isEmpty()) recycle(queue.poll());
+		dirty.clear();
+	}
+
+	/**
+	 * Start scheduling the collisions of the world within the given time, predicting the collisions of each
+	 * region of the given decomposition on a separate thread.
+	 *
+	 * @param 	horizon
+	 * 			The time over which the world will be evolved.
+	 * @param 	regions
+	 * 			The decomposition of the world into regions, or null if the collisions must be predicted on the
+	 * 			current thread only.
+	 * @post	The current time is zero and the horizon is the given time.
+	 * 			| new.getTime() == 0 && new.getHorizon() == horizon
+	 * @post	Every boundary collision and every collision between approaching entities which
+	 * 			happens within the given time is scheduled.
+	 * 			| @ implementation
+	 * @effect	If a decomposition is given, the entities are assigned to its regions anew.
+	 * 			| if regions != null
+	 * 			|	then regions.assign(store)
+	 * @note	The collisions are scheduled in the same order whether they are predicted by region or not, so
+	 * 			collisions at the same time are handled in the same order and the world evolves identically.
+	 */
+	void start(double horizon, RegionDecomposition regions){
+		clear();
+		this.horizon = horizon;
+		broadPhase.refreshBounds();
+		int nbEntities = store.getNbEntities();
+		for (int slot = 0; slot < nbEntities; slot++){
+			store.scheduleTime[slot] = 0;
+			store.scheduleEpoch[slot] = ++epoch;
+			store.scheduleVersion[slot] = store.getEntityAt(slot).getTrajectoryVersion();
+			store.scheduled[slot] = false;
+			store.marked[slot] = false;
+		}
+
+		if (regions != null && regions.getNbRegions() > 1){
+			predictByRegion(regions);
+			return;
+		}
+		for (int slot = 0; slot < nbEntities; slot++){
+			Entity entity = store.getEntityAt(slot);
+			predictBoundary(entity);
+			broadPhase.collectCandidates(entity, horizon, candidates);
+			block.clear();
+			for (int i = 0; i < candidates.size(); i++){
+				Entity other = candidates.get(i);
+				if (!store.scheduled[other.getSlot()]) addCandidate(entity, other, block, pool, queue);
+			}
+			predictBlock(entity, block, pool, queue);
+			store.scheduled[slot] = true;
+		}
+	}
+
+	/**
+	 * Predict the collisions of every entity of the world, each region of the given decomposition on its own thread.
+	 *
+	 * @effect	The entities are assigned to the regions of the given decomposition.
+	 * 			| regions.assign(store)
+	 * @post	Every boundary collision and every collision between approaching entities within the horizon is
+	 * 			scheduled, in the order in which the slots of their first entities follow each other.
+	 * 			| @ implementation
+	 * @note	A region predicts the collisions of the entities it owns. Their candidates are looked up in the
+	 * 			broad phase of the whole world, so the entities of other regions near its borders act as its ghosts;
+	 * 			they are only read. A collision between two entities is predicted by the region owning the entity
+	 * 			in the lowest slot, so it is predicted once, just as it is without regions.
+	 */
+	private void predictByRegion(RegionDecomposition regions){
+		regions.assign(store);
+		int nbRegions = regions.getNbRegions();
+		while (workers.size() < nbRegions) workers.add(new RegionWorker());
+		for (int region = 0; region < nbRegions; region++){
+			RegionWorker worker = workers.get(region);
+			worker.start(regions, region);
+			List<Event> share = pool.subList(pool.size() * (nbRegions - region - 1) / nbRegions, pool.size());
+			worker.pool.addAll(share);
+			share.clear();
+		}
+
+		List<ForkJoinTask<?>> tasks = new ArrayList<ForkJoinTask<?>>(nbRegions - 1);
+		for (int region = 1; region < nbRegions; region++) tasks.add(ForkJoinPool.commonPool().submit(workers.get(region)::predict));
+		workers.get(0).predict();
+		for (ForkJoinTask<?> task : tasks) task.join();
+
+		int nbEntities = store.getNbEntities();
+		for (int slot = 0; slot < nbEntities; slot++){
+			RegionWorker worker = workers.get(regions.getRegion(slot));
+			while (worker.next < worker.events.size() && worker.events.get(worker.next).entity1.getSlot() == slot)
+				queue.add(worker.events.get(worker.next++));
+			store.scheduled[slot] = true;
+		}
+		for (int region = 0; region < nbRegions; region++){
+			RegionWorker worker = workers.get(region);
+			pool.addAll(worker.pool);
+			worker.pool.clear();
+			worker.events.clear();
+		}
+	}
+
+	/**
+	 * List containing a worker for each region of the last decomposition.
+	 */
+	private final List<RegionWorker> workers = new ArrayList<RegionWorker>();
+
+	/**
+	 * A class of workers predicting the collisions of the entities owned by a single region.
+	 */
+	private class RegionWorker {
+
+		/**
+		 * Let this worker predict the collisions of the given region of the given decomposition.
+		 */
+		private void start(RegionDecomposition regions, int region){
+			this.regions = regions;
+			this.region = region;
+			this.next = 0;
+		}
+
+		/**
+		 * Predict the collisions of the entities owned by the region of this worker, in the order of their slots.
+		 */
+		private void predict(){
+			int[] slots = regions.getSlots(region);
+			for (int i = 0; i < regions.getNbOwned(region); i++){
+				int slot = slots[i];
+				Entity entity = store.getEntityAt(slot);
+				Event boundary = predictBoundary(entity, pool);
+				if (boundary != null) events.add(boundary);
+				broadPhase.collectCandidates(entity, horizon, candidates);
+				block.clear();
+				for (int j = 0; j < candidates.size(); j++){
+					Entity other = candidates.get(j);
+					if (other.getSlot() > slot) addCandidate(entity, other, block, pool, events);
+				}
+				predictBlock(entity, block, pool, events);
+			}
+		}
+
+		private RegionDecomposition regions;
+		private int region;
+		private int next;
+		private final List<Event> events = new ArrayList<Event>();
+		private final List<Event> pool = new ArrayList<Event>();
+		private final List<Entity> candidates = new ArrayList<Entity>();
+		private final CollisionBlock block = new CollisionBlock();
+	}
+
+	/**
+	 * Remove and return the earliest event which isn't stale.
+	 *
+	 * @return	The earliest valid event, or null if no valid event is left within the horizon.
+	 * 			Stale events in front of it are dropped.
+	 * 			| result == pollEvent(getHorizon())
+	 * @note	The returned event is recycled by the next poll, and may not be used afterwards.
+	 */
+	Event pollEvent(){
+		return pollEvent(horizon);
+	}
+
+	/**
+	 * Remove and return the earliest event which isn't stale, if it happens not later than the given time.
+	 *
+	 * @param 	until
+	 * 			The time after which events are left in the queue.
+	 * @return	The earliest valid event, or null if no valid event is left up to the given time.
+	 * 			Stale events in front of it are dropped, later valid events stay scheduled.
+	 * 			| @ implementation
+	 * @note	The returned event is recycled by the next poll, and may not be used afterwards.
+	 */
+	Event pollEvent(double until){
+		recycle(current);
+		current = null;
+		while (!queue.isEmpty()){
+			Event event = queue.peek();
+			if (!isValid(event)){
+				recycle(queue.poll());
+				continue;
+			}
+			if (event.getTime() > until) return null;
+			current = queue.poll();
+			return current;
+		}
+		return null;
+	}
+
+	/**
+	 * Check whether the given event is still valid.
+	 *
+	 * @param 	event
+	 * 			The event to check.
+	 * @return	True if and only if each entity of the event is still in the world and hasn't been
+	 * 			rescheduled since the event was predicted.
+	 * 			| @ implementation
+	 */
+	private boolean isValid(Event event){
+		if (!isStored(event.entity1) || store.scheduleEpoch[event.entity1.getSlot()] != event.epoch1) return false;
+		if (event.entity2 == null) return true;
+		return isStored(event.entity2) && store.scheduleEpoch[event.entity2.getSlot()] == event.epoch2;
+	}
+
+	/**
+	 * Check whether the given entity is stored in the storage of the world.
+	 *
+	 * @return	True if and only if the entity is the handle of a slot in the storage.
+	 * 			| result == (0 <= entity.getSlot() < store.getNbEntities()
+	 * 			|	&& store.getEntityAt(entity.getSlot()) == entity)
+	 */
+	private boolean isStored(Entity entity){
+		int slot = entity.getSlot();
+		return slot >= 0 && slot < store.getNbEntities() && store.getEntityAt(slot) == entity;
+	}
+
+	/**
+	 * Advance the current time of this scheduler to the given time.
+	 *
+	 * @param 	time
+	 * 			The new current time.
+	 * @post	The current time is the given time, if it isn't earlier than the current time.
+	 * 			| new.getTime() == Math.max(getTime(), time)
+	 * @note	Entities aren't moved by this method; they are moved when they are synchronized.
+	 */
+	void advanceTo(double time){
+		now = Math.max(now, time);
+	}
+
+	/**
+	 * Move the given entity to the current time of this scheduler.
+	 *
+	 * @param 	entity
+	 * 			The entity to synchronize.
+	 * @effect	If the entity is in the world and lags behind, it is moved over the time it lags behind.
+	 * 			| if world.hasAsEntity(entity) && entity lags behind
+	 * 			|	then entity.move(getTime() - time of entity)
+	 * @post	If the trajectory of the entity has changed by moving, the entity will be rescheduled.
+	 * 			| @ implementation
+	 */
+	void synchronize(Entity entity){
+		if (!isStored(entity)) return;
+		int slot = entity.getSlot();
+		if (store.scheduleTime[slot] >= now) return;
+		double dt = now - store.scheduleTime[slot];
+		store.scheduleTime[slot] = now;
+		int version = entity.getTrajectoryVersion();
+		entity.move(dt);
+		if (isStored(entity) && entity.getTrajectoryVersion() != version) mark(entity);
+	}
+
+	/**
+	 * Move every entity of the world to the current time of this scheduler.
+	 *
+	 * @effect	Every entity of the world is synchronized.
+	 * 			| for each entity in world.getEntitySet()
+	 * 			|	synchronize(entity)
+	 * @note	The slots are visited from the last to the first, so an entity which leaves the world
+	 * 			while moving can only bring an entity which has already been synchronized into its slot.
+	 */
+	void synchronizeAll(){
+		for (int slot = store.getNbEntities() - 1; slot >= 0; slot--){
+			if (slot < store.getNbEntities()) synchronize(store.getEntityAt(slot));
+		}
+	}
+
+	/**
+	 * Register an entity which has been added to the world while evolving.
+	 *
+	 * @param 	entity
+	 * 			The entity which has been added.
+	 * @post	The entity is considered to be synchronized with the current time, and will be
+	 * 			rescheduled.
+	 * 			| @ implementation
+	 */
+	void entityAdded(Entity entity){
+		if (!isStored(entity)) return;
+		int slot = entity.getSlot();
+		store.scheduleTime[slot] = now;
+		store.scheduleEpoch[slot] = ++epoch;
+		store.scheduled[slot] = false;
+		mark(entity);
+	}
+
+	/**
+	 * Drop all scheduled events of the given entity and predict its collisions again.
+	 *
+	 * @param 	entity
+	 * 			The entity to reschedule.
+	 * @post	If the entity isn't in the world anymore, nothing happens; its events are stale.
+	 * 			| @ implementation
+	 * @post	Otherwise every event of the entity predicted before is stale, and its boundary collision
+	 * 			and its collisions with approaching entities within the horizon are scheduled.
+	 * 			| @ implementation
+	 * @note	Only the given entity is moved to the current time. Its candidates stay where they were last
+	 * 			synchronized, so which candidates the broad phase hands out can't change any trajectory.
+	 */
+	void reschedule(Entity entity){
+		synchronize(entity);
+		if (!isStored(entity)) return;
+		int slot = entity.getSlot();
+		store.scheduleEpoch[slot] = ++epoch;
+		store.scheduleVersion[slot] = entity.getTrajectoryVersion();
+		store.scheduled[slot] = true;
+		broadPhase.includeInBounds(entity);
+		predictBoundary(entity);
+		broadPhase.collectCandidates(entity, horizon, candidates);
+		block.clear();
+		for (int i = 0; i < candidates.size(); i++){
+			Entity other = candidates.get(i);
+			if (isStored(other)) addCandidate(entity, other, block, pool, queue);
+		}
+		predictBlock(entity, block, pool, queue);
+	}
+
+	/**
+	 * Reschedule every entity whose trajectory has changed since it was last scheduled.
+	 *
+	 * @effect	Each entity marked as changed is rescheduled, until no changed entities are left.
+	 * 			| @ implementation
+	 */
+	void rescheduleChanged(){
+		for (int i = 0; i < dirty.size(); i++){
+			Entity entity = dirty.get(i);
+			if (!isStored(entity)) continue;
+			int slot = entity.getSlot();
+			if (!store.marked[slot]) continue;
+			store.marked[slot] = false;
+			if (!store.scheduled[slot] || store.scheduleVersion[slot] != entity.getTrajectoryVersion()) reschedule(entity);
+		}
+		dirty.clear();
+	}
+
+	/**
+	 * Mark the given stored entity to be rescheduled, unless it is marked already.
+	 */
+	private void mark(Entity entity){
+		int slot = entity.getSlot();
+		if (store.marked[slot]) return;
+		store.marked[slot] = true;
+		dirty.add(entity);
+	}
+
+	/**
+	 * Schedule the boundary collision of the given entity, if it happens within the horizon.
+	 */
+	private void predictBoundary(Entity entity){
+		Event event = predictBoundary(entity, pool);
+		if (event != null) queue.add(event);
+	}
+
+	/**
+	 * Return the boundary collision of the given entity taken from the given pool, or null if it doesn't
+	 * happen within the horizon.
+	 */
+	private Event predictBoundary(Entity entity, List<Event> pool){
+		double time = now + entity.getTimeCollisionBoundary();
+		return time <= horizon ? obtain(pool, time, entity, store.scheduleEpoch[entity.getSlot()], null, 0) : null;
+	}
+
+	/**
+	 * Add the given candidate to the given block if it is approaching the given entity and can reach it within
+	 * the horizon. If both entities overlap already, their collision is added to the given events right away instead.
+	 * Both entities are extrapolated to the current time of this scheduler rather than moved to it, so
+	 * predicting a collision never changes the trajectory of an entity which lags behind.
+	 */
+	private void addCandidate(Entity entity, Entity other, CollisionBlock block, List<Event> pool, Collection<Event> events){
+		int slot1 = entity.getSlot(), slot2 = other.getSlot();
+		if (!store.isApproachingAt(slot1, slot2, now)) return;
+		if (store.getDistanceBetweenEdgesAt(slot1, slot2, now) <= -0.01)
+			events.add(obtain(pool, now, entity, store.scheduleEpoch[slot1], other, store.scheduleEpoch[slot2]));
+		else if (store.canMeetWithinAt(slot1, slot2, now, horizon - now)) block.add(slot2);
+	}
+
+	/**
+	 * Add the collisions of the given entity with the candidates in the given block which happen within the
+	 * horizon to the given events, taking them from the given pool.
+	 *
+	 * @note	The times are computed for the whole block at once, and equal the times computed for each pair on its own.
+	 * 			| @ implementation
+	 */
+	private void predictBlock(Entity entity, CollisionBlock block, List<Event> pool, Collection<Event> events){
+		int slot = entity.getSlot();
+		block.computeTimesToCollision(store, slot, now);
+		for (int i = 0; i < block.getSize(); i++){
+			double time = now + block.getTime(i);
+			if (time > horizon) continue;
+			events.add(obtain(pool, time, entity, store.scheduleEpoch[slot], store.getEntityAt(block.getSlot(i)),
+					store.scheduleEpoch[block.getSlot(i)]));
+		}
+	}
+
+	/**
+	 * Return an event with the given properties, reusing a recycled event of the given pool if there is one.
+	 */
+	private static Event obtain(List<Event> pool, double time, Entity entity1, long epoch1, Entity entity2, long epoch2){
+		Event event = pool.isEmpty() ? new Event() : pool.remove(pool.size() - 1);
+		event.time = time;
+		event.entity1 = entity1;
+		event.epoch1 = epoch1;
+		event.entity2 = entity2;
+		event.epoch2 = epoch2;
+		return event;
+	}
+
+	/**
+	 * Give the given event back to the pool of recycled events, unless it is null.
+	 */
+	private void recycle(Event event){
+		if (event == null) return;
+		event.entity1 = null;
+		event.entity2 = null;
+		pool.add(event);
+	}
+
+	/**
+	 * Variable containing the last epoch handed out. Events carrying an older epoch than their entity are stale.
+	 */
+	private long epoch = 0;
+
+	/**
+	 * Min-heap containing the scheduled events, ordered by their time.
+	 */
+	private final PriorityQueue<Event> queue = new PriorityQueue<Event>();
+
+	/**
+	 * Variable containing the event last returned by a poll, or null.
+	 */
+	private Event current = null;
+
+	/**
+	 * List containing the recycled events.
+	 */
+	private final List<Event> pool = new ArrayList<Event>();
+
+	/**
+	 * List containing the entities which must be rescheduled, in the order in which they were marked.
+	 */
+	private final List<Entity> dirty = new ArrayList<Entity>();
+
+	/**
+	 * List used to collect the candidates handed out by the broad phase.
+	 */
+	private final List<Entity> candidates = new ArrayList<Entity>();
+
+	/**
+	 * Block used to compute the times to the collisions with the candidates at once.
+	 */
+	private final CollisionBlock block = new CollisionBlock();
+
+	/**
+	 * A class of predicted collisions. If the second entity is null, the event is a boundary collision
+	 * of the first entity.
+	 */
+	static class Event implements Comparable<Event> {
+
+		/**
+		 * Return the time, since the start of the evolve, at which this collision happens.
+		 */
+		@Basic
+		double getTime(){
+			return time;
+		}
+
+		/**
+		 * Return the first entity of this collision.
+		 */
+		@Basic
+		Entity getEntity1(){
+			return entity1;
+		}
+
+		/**
+		 * Return the second entity of this collision, or null if this is a boundary collision.
+		 */
+		@Basic
+		Entity getEntity2(){
+			return entity2;
+		}
+
+		/**
+		 * Compare this collision with the given collision by time. Simultaneous collisions are ordered by the
+		 * epochs at which their entities were scheduled, so their order doesn't depend on the order in which
+		 * the broad phase handed out the candidates.
+		 */
+		@Override
+		public int compareTo(Event other){
+			int result = Double.compare(this.time, other.time);
+			if (result == 0) result = Long.compare(this.epoch1, other.epoch1);
+			if (result == 0) result = Long.compare(this.epoch2, other.epoch2);
+			return result;
+		}
+
+		private double time;
+		private Entity entity1;
+		private long epoch1;
+		private Entity entity2;
+		private long epoch2;
+	}
+}
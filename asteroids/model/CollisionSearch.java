@@ -0,0 +1,250 @@
+package asteroids.model;
+
+import java.util.*;
+import java.util.concurrent.RecursiveTask;
+
+import be.kuleuven.cs.som.annotate.*;
+
+/**
+ * A class of tasks which search the earliest collision between the entities in a range of slots
+ * of the storage of a world. Large ranges are split in halves which are searched in parallel on a
+ * fork join pool, and the results of both halves are reduced to the earliest one.
+ * 	Collisions at the same time are ordered by the slots of their entities, so the result of a search
+ * 	never depends on the way the range is split nor on the order in which the halves finish.
+ *
+ * @invar	The range of a search lies within the storage.
+ * 			| 0 <= getFrom() <= getTo() <= store.getNbEntities()
+ *
+ * @version 1.1
+ * @author 	Brent De Bleser & Jesse Geens
+ */
+@SuppressWarnings("serial")
+class CollisionSearch extends RecursiveTask<CollisionSearch.Result> {
+
+	/**
+	 * Create a new search for the earliest collision between an entity in the given range of slots
+	 * and any other entity.
+	 *
+	 * @param 	store
+	 * 			The storage containing the entities of the world.
+	 * @param 	broadPhase
+	 * 			The broad phase containing the entities of the world.
+	 * @param 	from
+	 * 			The first slot of the range.
+	 * @param 	to
+	 * 			The slot after the last slot of the range.
+	 * @param 	horizon
+	 * 			The time beyond which collisions aren't searched.
+	 * @param 	grain
+	 * 			The number of slots below which a range isn't split anymore.
+	 * @post	The search covers the given range of the given storage, within the given horizon.
+	 * 			| new.getFrom() == from && new.getTo() == to
+	 */
+	@Raw
+	CollisionSearch(EntityStore store, BroadPhase broadPhase, int from, int to, double horizon, int grain){
+		this.store = store;
+		this.broadPhase = broadPhase;
+		this.from = from;
+		this.to = to;
+		this.horizon = horizon;
+		this.grain = Math.max(1, grain);
+	}
+
+	/**
+	 * Variable containing the storage of the entities of the world.
+	 */
+	private final EntityStore store;
+
+	/**
+	 * Variable containing the broad phase of the world.
+	 */
+	private final BroadPhase broadPhase;
+
+	/**
+	 * Return the first slot searched by this task.
+	 */
+	@Basic @Immutable
+	int getFrom(){
+		return this.from;
+	}
+
+	/**
+	 * Variable containing the first slot of the range.
+	 */
+	private final int from;
+
+	/**
+	 * Return the slot after the last slot searched by this task.
+	 */
+	@Basic @Immutable
+	int getTo(){
+		return this.to;
+	}
+
+	/**
+	 * Variable containing the slot after the last slot of the range.
+	 */
+	private final int to;
+
+	/**
+	 * Variable containing the time beyond which collisions aren't searched.
+	 */
+	private final double horizon;
+
+	/**
+	 * Variable containing the number of slots below which a range isn't split anymore.
+	 */
+	private final int grain;
+
+	/**
+	 * Search the range of this task, splitting it in halves which are searched in parallel if it is large.
+	 *
+	 * @return	The earliest of the collisions found in both halves.
+	 * 			| result == earliest(left half, right half)
+	 */
+	@Override
+	protected Result compute(){
+		if (to - from <= grain) return search(store, broadPhase, from, to, horizon, new ArrayList<Entity>(), new CollisionBlock());
+		int middle = (from + to) >>> 1;
+		CollisionSearch left = new CollisionSearch(store, broadPhase, from, middle, horizon, grain);
+		CollisionSearch right = new CollisionSearch(store, broadPhase, middle, to, horizon, grain);
+		left.fork();
+		Result rightResult = right.compute();
+		return earliest(left.join(), rightResult);
+	}
+
+	/**
+	 * Search the earliest collision between an entity in the given range of slots and any other entity.
+	 *
+	 * @param 	store
+	 * 			The storage containing the entities of the world.
+	 * @param 	broadPhase
+	 * 			The broad phase containing the entities of the world.
+	 * @param 	from
+	 * 			The first slot of the range.
+	 * @param 	to
+	 * 			The slot after the last slot of the range.
+	 * @param 	horizon
+	 * 			The time beyond which collisions aren't searched.
+	 * @param 	candidates
+	 * 			The list used to collect the candidates handed out by the broad phase.
+	 * @param 	block
+	 * 			The block used to compute the times to the collisions with the candidates at once.
+	 * @return	If an entity in the range overlaps with another entity, the result is the overlap with the
+	 * 			smallest slots.
+	 * 			| @ implementation
+	 * @return	Otherwise, the result is the collision between approaching entities with the earliest time not
+	 * 			beyond the horizon, and the smallest slots among collisions at that time, or null if there is none.
+	 * 			| @ implementation
+	 * @note	The broad phase must have been refreshed, and the entities may not change during the search.
+	 */
+	static Result search(EntityStore store, BroadPhase broadPhase, int from, int to, double horizon, List<Entity> candidates, CollisionBlock block){
+		double time = horizon;
+		int first = -1;
+		int second = -1;
+		for (int slot1 = from; slot1 < to; slot1++){
+			Entity entity1 = store.getEntityAt(slot1);
+			broadPhase.collectCandidates(entity1, time, candidates);
+			int overlapping = -1;
+			block.clear();
+			for (int i = 0; i < candidates.size(); i++){
+				Entity entity2 = candidates.get(i);
+				int slot2 = entity2.getSlot();
+				if (entity1.overlap(entity2)){
+					if (overlapping < 0 || slot2 < overlapping) overlapping = slot2;
+				}
+				else if (store.isApproaching(slot1, slot2) && store.canMeetWithin(slot1, slot2, time)) block.add(slot2);
+			}
+			if (overlapping >= 0) return new Result(0, slot1, overlapping, true);
+			block.computeTimesToCollision(store, slot1);
+			for (int i = 0; i < block.getSize(); i++){
+				double pairTime = block.getTime(i);
+				int slot2 = block.getSlot(i);
+				if (pairTime < time || (pairTime == time && first == slot1 && slot2 < second)){
+					time = pairTime;
+					first = slot1;
+					second = slot2;
+				}
+			}
+		}
+		if (first < 0) return null;
+		return new Result(time, first, second, false);
+	}
+
+	/**
+	 * Return the earliest of the given results, where the first result comes from smaller slots than the second.
+	 *
+	 * @param 	result1
+	 * 			The first result, or null.
+	 * @param 	result2
+	 * 			The second result, or null.
+	 * @return	An overlap comes before any other collision, and of two collisions at the same time the first one wins.
+	 * 			| if result1 == null then result == result2
+	 * 			| else if result2 == null then result == result1
+	 * 			| else if result1.isOverlap() then result == result1
+	 * 			| else if result2.isOverlap() then result == result2
+	 * 			| else result == (result2.getTime() < result1.getTime() ? result2 : result1)
+	 */
+	static Result earliest(Result result1, Result result2){
+		if (result1 == null) return result2;
+		if (result2 == null) return result1;
+		if (result1.isOverlap()) return result1;
+		if (result2.isOverlap()) return result2;
+		return result2.getTime() < result1.getTime() ? result2 : result1;
+	}
+
+	/**
+	 * A class of results of a search, involving the time of the collision and the slots of the colliding entities.
+	 * If the second slot is negative, the result is a boundary collision of the entity in the first slot.
+	 */
+	@Value
+	static final class Result {
+
+		/**
+		 * Initialize this new result with the given time, slots and overlap.
+		 */
+		Result(double time, int first, int second, boolean overlap){
+			this.time = time;
+			this.first = first;
+			this.second = second;
+			this.overlap = overlap;
+		}
+
+		/**
+		 * Return the time until the collision.
+		 */
+		@Basic @Immutable
+		double getTime(){
+			return this.time;
+		}
+
+		/**
+		 * Return the slot of the first colliding entity.
+		 */
+		@Basic @Immutable
+		int getFirst(){
+			return this.first;
+		}
+
+		/**
+		 * Return the slot of the second colliding entity, or a negative number for a boundary collision.
+		 */
+		@Basic @Immutable
+		int getSecond(){
+			return this.second;
+		}
+
+		/**
+		 * Check whether the colliding entities already overlap.
+		 */
+		@Basic @Immutable
+		boolean isOverlap(){
+			return this.overlap;
+		}
+
+		private final double time;
+		private final int first;
+		private final int second;
+		private final boolean overlap;
+	}
+}
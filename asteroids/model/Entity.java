@@ -58,6 +58,11 @@ public abstract class Entity {
 	 *          | new.radius = radius
 	 * @post    typeName is set to the given typeName.
 	 *          | new.typeName = typeName
+	 * @post    The type of the entity is the type with the given name.
+	 *          | new.getType() == EntityType.fromTypeName(typeName)
+	 * @throws  IllegalArgumentException
+	 *          There is no type with the given name.
+	 *          | EntityType.fromTypeName(typeName) == null
 	 */
 	@Raw
 	protected Entity (double x, double y, double xVelocity, double yVelocity, double radius, String typeName) throws IllegalArgumentException {
@@ -69,6 +74,8 @@ public abstract class Entity {
             this.startRadius = radius;
             //Set the typeName of the entity.
             this.typeName = typeName;
+            this.type = EntityType.fromTypeName(typeName);
+            if (this.type == null) throw new IllegalArgumentException("Invalid type name");
 	}
 	
 	
@@ -80,10 +87,29 @@ public abstract class Entity {
     */
    @Basic @Raw
    public double[] getPosition(){
+	   if (this.store != null) return new double[]{this.store.x[this.slot], this.store.y[this.slot]};
 	   double[] result = {this.position[0], this.position[1]};
 	   return result;
    }
    
+   /**
+    * Return the x coordinate of the entity.
+    */
+   @Basic @Raw
+   public double getX(){
+	   if (this.store != null) return this.store.x[this.slot];
+	   return this.position[0];
+   }
+   
+   /**
+    * Return the y coordinate of the entity.
+    */
+   @Basic @Raw
+   public double getY(){
+	   if (this.store != null) return this.store.y[this.slot];
+	   return this.position[1];
+   }
+   
    /**
     * Moves the entity to a new position during a time span of dt.
     *
@@ -92,14 +118,14 @@ public abstract class Entity {
     * @throws  IllegalArgumentException
     *          Throws an IllegalArgumentException if dt id smaller then zero.
     *         |  ((dt < 0.0) 
-    * @effect  Sets the entity position with the current position and velocity times dt.
-    *         | this.setPosition(this.position[0] + (this.velocity[0] * dt), this.position[1] + (this.velocity[1] * dt))
+    * @effect  Changes the entity position to the current position and velocity times dt.
+    *         | this.changePosition(this.getX() + (this.getVX() * dt), this.getY() + (this.getVY() * dt))
     */
    public void move(double dt) throws IllegalArgumentException{
 	   
        if (dt < 0.0) throw new IllegalArgumentException("Invalid time");
        else{
-           this.setPosition(this.getPosition()[0] + (this.getVelocity()[0] * dt), this.getPosition()[1] + (this.getVelocity()[1] * dt));          
+           this.changePosition(this.getX() + (this.getVX() * dt), this.getY() + (this.getVY() * dt));          
            }    
    }
    
@@ -110,9 +136,36 @@ public abstract class Entity {
     *         The x coordinate of the new position.
     * @param  yPosition
     *         The y coordinate of the new position;
+    * @effect The position of the entity is changed to the given coordinates.
+    *         | this.changePosition(xPosition, yPosition)
+    * @post   The trajectory version of the entity is incremented, as the entity didn't reach
+    *         its new position by moving.
+    *         | new.getTrajectoryVersion() == this.getTrajectoryVersion() + 1
+    * @effect If the entity is in a world, that world is notified that the entity has been placed.
+    *         | if this.superWorld != null
+    *         |	then this.superWorld.entityPlaced(this)
+    */
+   protected void setPosition(double xPosition, double yPosition) throws IllegalArgumentException {
+       this.changePosition(xPosition, yPosition);
+       if (this.superWorld != null) this.superWorld.entityPlaced(this);
+       this.trajectoryChanged();
+   }
+   
+   /**
+    * Change the position of an entity to the given values, without changing its trajectory version.
+    *
+    * @param  xPosition
+    *         The x coordinate of the new position.
+    * @param  yPosition
+    *         The y coordinate of the new position;
     * @post   The arguments xPosition and yPosition become the X- and Y-coordinates respectively.
-    *         | new.position[0] = xPosition;
-    *         | new.position[1] = yPosition;
+    *         | new.getPosition()[0] == xPosition;
+    *         | new.getPosition()[1] == yPosition;
+    * @post   The state version of the entity is incremented.
+    *         | new.getStateVersion() == this.getStateVersion() + 1
+    * @effect If the entity is in a world, that world is notified of the new position.
+    *         | if this.superWorld != null
+    *         |	then this.superWorld.entityMoved(this)
     * @throws IllegalArgumentException
     *         xPosition isn't valid.
     *         | (!isValidPosition(xPosition))
@@ -120,11 +173,19 @@ public abstract class Entity {
     *         yPosition isn't valid.
     *         | (!isValidPosition(yPosition)
     */
-   protected void setPosition(double xPosition, double yPosition) throws IllegalArgumentException {
+   private void changePosition(double xPosition, double yPosition) throws IllegalArgumentException {
        if ( (!isValidPosition(xPosition)) || (!isValidPosition(yPosition))) throw new IllegalArgumentException("Invalid position");
        else {
-           this.position[0] = xPosition;
-           this.position[1] = yPosition;
+           if (this.store != null){
+        	   this.store.x[this.slot] = xPosition;
+        	   this.store.y[this.slot] = yPosition;
+           }
+           else {
+        	   this.position[0] = xPosition;
+        	   this.position[1] = yPosition;
+           }
+           this.stateVersion++;
+           if (this.superWorld != null) this.superWorld.entityMoved(this);
        }
    }
 	
@@ -149,6 +210,8 @@ public abstract class Entity {
    
 	/**
      * Variable containing the coordinates of the ship in the form of an array with length 2.
+     * 
+     * @note While the entity is stored in the arrays of its world, the coordinates are kept there instead.
      */
     private double[] position = new double[2];
     
@@ -159,9 +222,28 @@ public abstract class Entity {
      */
     @Basic @Raw
     public double[] getVelocity(){
+       if (this.store != null) return new double[]{this.store.vx[this.slot], this.store.vy[this.slot]};
   	   return this.velocity.getVelocity();
     }
     
+    /**
+     * Return the velocity of the entity on the X-axis.
+     */
+    @Basic @Raw
+    public double getVX(){
+    	if (this.store != null) return this.store.vx[this.slot];
+    	return this.velocity.getXVelocity();
+    }
+    
+    /**
+     * Return the velocity of the entity on the Y-axis.
+     */
+    @Basic @Raw
+    public double getVY(){
+    	if (this.store != null) return this.store.vy[this.slot];
+    	return this.velocity.getYVelocity();
+    }
+    
    
     
     /**
@@ -181,16 +263,44 @@ public abstract class Entity {
      *        | if isValidVelocity(xVelocity, yVelocity)
      *        |      then new.getShipvelocity()[0] == 0
      *        |           new.getShipVelocity()[1] == 0
-     *
+     * @post  If the velocity has changed, the trajectory version is incremented.
+     *        | if new.getVelocity()[0] != this.getVelocity()[0] || new.getVelocity()[1] != this.getVelocity()[1]
+     *        |      then new.getTrajectoryVersion() == this.getTrajectoryVersion() + 1
      */
     @Raw
     protected void setVelocity(double xVelocity, double yVelocity){
+        double oldXVelocity = this.getVX();
+        double oldYVelocity = this.getVY();
         if ( !isValidVelocity(xVelocity, yVelocity)){
-            this.velocity.setVelocity(0.0, 0.0);
+            this.changeVelocity(0.0, 0.0);
         }
         else {
-            this.velocity.setVelocity(xVelocity, yVelocity);
+            this.changeVelocity(xVelocity, yVelocity);
         }
+        if (this.getVX() != oldXVelocity || this.getVY() != oldYVelocity) this.trajectoryChanged();
+    }
+    
+    /**
+     * Change the velocity of this entity to the given values, without changing its trajectory version.
+     * 
+     * @param  xVelocity
+     *         The new velocity on the X-axis.
+     * @param  yVelocity
+     *         The new velocity on the Y-axis.
+     * @post   Each given velocity which is a valid velocity becomes the velocity on its axis, any other
+     *         velocity is replaced by zero.
+     *         | @ implementation
+     * @post   The state version of the entity is incremented.
+     *         | new.getStateVersion() == this.getStateVersion() + 1
+     */
+    @Raw
+    private void changeVelocity(double xVelocity, double yVelocity){
+    	this.stateVersion++;
+    	this.velocity.setVelocity(xVelocity, yVelocity);
+    	if (this.store != null){
+    		this.store.vx[this.slot] = this.velocity.getXVelocity();
+    		this.store.vy[this.slot] = this.velocity.getYVelocity();
+    	}
     }
     
     /**
@@ -211,8 +321,140 @@ public abstract class Entity {
     
     /**
      * variable containing the velocity on the x and y axis as an array of length 2.
+     * 
+     * @note While the entity is stored in the arrays of its world, the velocity kept there is the valid one.
+     */
+    private Velocity velocity =  new Velocity(0,0);
+    
+    /**
+     * Return the version of the trajectory of this entity.
+     * 
+     * @note The version changes whenever the velocity of the entity changes, or whenever the entity
+     *       is put on a position it didn't reach by moving along its trajectory.
+     */
+    @Basic @Raw
+    int getTrajectoryVersion(){
+    	return this.trajectoryVersion;
+    }
+    
+    /**
+     * Variable containing the version of the trajectory of this entity.
+     */
+    private int trajectoryVersion = 0;
+    
+    /**
+     * Return the version of the state of this entity.
+     * 
+     * @note The version changes whenever the position, velocity or radius of the entity changes, or
+     *       whenever the entity enters or leaves a world, so every value derived from that state can be
+     *       cached against it. It starts at one, so a cache which was never filled never matches.
+     */
+    @Basic @Raw
+    long getStateVersion(){
+    	return this.stateVersion;
+    }
+    
+    /**
+     * Variable containing the version of the state of this entity.
+     */
+    private long stateVersion = 1;
+    
+    /**
+     * Register a change of the trajectory of this entity.
+     * 
+     * @post   The trajectory version of the entity is incremented.
+     *         | new.getTrajectoryVersion() == this.getTrajectoryVersion() + 1
+     * @effect If the entity is in a world, that world is notified of the change.
+     *         | if this.superWorld != null
+     *         |	then this.superWorld.entityChanged(this)
+     */
+    @Model
+    private void trajectoryChanged(){
+    	this.trajectoryVersion++;
+    	if (this.superWorld != null) this.superWorld.entityChanged(this);
+    }
+    
+    /**
+     * Return the slot of this entity in the arrays of its world.
+     * 
+     * @note If the entity isn't stored in the arrays of a world, the slot is -1.
+     */
+    @Basic @Raw
+    int getSlot(){
+    	return this.slot;
+    }
+    
+    /**
+     * Make this entity a handle to the given slot of the given storage.
+     * 
+     * @param  store
+     *         The storage containing the state of this entity.
+     * @param  slot
+     *         The slot of this entity in the storage.
+     * @post   The state of this entity is read from and written to the given slot of the given storage.
+     *         | new.getSlot() == slot
+     * @note   The storage must already contain the state of this entity in the given slot.
+     */
+    void attach(EntityStore store, int slot){
+    	this.store = store;
+    	this.slot = slot;
+    }
+    
+    /**
+     * Register that this entity has been moved to the given slot of its storage.
+     * 
+     * @param  slot
+     *         The new slot of this entity.
+     * @post   The slot of this entity is the given slot.
+     *         | new.getSlot() == slot
      */
-    protected Velocity velocity =  new Velocity(0,0);
+    void moveToSlot(int slot){
+    	this.slot = slot;
+    }
+    
+    /**
+     * Stop being a handle to a slot of a storage, and keep the state of this entity in the entity itself.
+     * 
+     * @post   The position, velocity and mass of this entity are unchanged, and are kept in the entity itself.
+     *         | new.getPosition() == getPosition() && new.getVelocity() == getVelocity() && new.getMass() == getMass()
+     * @post   The entity isn't stored in any slot.
+     *         | new.getSlot() == -1
+     */
+    void detach(){
+    	if (this.store == null) return;
+    	this.position[0] = this.store.x[this.slot];
+    	this.position[1] = this.store.y[this.slot];
+    	this.velocity.setVelocity(this.store.vx[this.slot], this.store.vy[this.slot]);
+    	this.store = null;
+    	this.slot = -1;
+    }
+    
+    /**
+     * Register a change of the radius of this entity.
+     * 
+     * @post   The state version of the entity is incremented.
+     *         | new.getStateVersion() == this.getStateVersion() + 1
+     * @effect If this entity is stored in the arrays of its world, the radius is stored again.
+     *         | @ implementation
+     * @effect If the entity is in a world, that world is notified as if the entity has moved.
+     *         | if this.superWorld != null
+     *         |	then this.superWorld.entityMoved(this)
+     */
+    protected void radiusChanged(){
+    	this.stateVersion++;
+    	if (this.store != null) this.store.radius[this.slot] = this.getRadius();
+    	if (this.superWorld != null) this.superWorld.entityMoved(this);
+    }
+    
+    /**
+     * Variable containing the storage of the state of this entity, or null if the entity keeps its own state.
+     */
+    private EntityStore store = null;
+    
+    /**
+     * Variable containing the slot of this entity in its storage.
+     */
+    private int slot = -1;
     
     /**
      * Returns the maximum velocity of the entity.
@@ -284,6 +526,8 @@ public abstract class Entity {
      * @post   If the world is a valid world or the world is null the world will be set as the new superWorld.
      *         | if 		isValidWorld(world) || world == null
      *         | 	then 	new.superWorld = world
+     * @post   The state version of the entity is incremented.
+     *         | new.getStateVersion() == this.getStateVersion() + 1
      * @throws IllegalArgumentException
      *         An IllegalArgumentException is thrown if the world isn't a valid one.
      *         | !(isValidWorld(world))
@@ -292,6 +536,7 @@ public abstract class Entity {
     protected void setSuperWorld(World world) throws IllegalArgumentException{
     	if(world == null || isValidSuperWorld(world))		this.superWorld = world;
     	else throw new IllegalArgumentException("Isn't a valid world @setSuperWorld()");
+    	this.stateVersion++;
     }
     
     /**
@@ -332,16 +577,66 @@ public abstract class Entity {
 	 * @effect If the entity's superWorld isn't null it will be removed from it's superWorld.
 	 * 		   | if this.getSuperWorld() == null
 	 * 		   | 	then	this.superWorld.removeEntityFromWorld(this)
+	 * @effect If the entity's superWorld isn't null, the termination is an action of the entity in it.
+	 * 		   | if this.getSuperWorld() != null
+	 * 		   |	then	this.superWorld.beginAction(this, ReplayFormat.TERMINATE, 0)
+	 * @effect If the entity's superWorld isn't null, that world is notified of the termination.
+	 * 		   | if this.getSuperWorld() != null
+	 * 		   |	then	this.superWorld.entityTerminated(this)
      */
     @Raw
 	public void terminate(){
-		if (superWorld != null)
-		this.superWorld.removeEntityFromWorld(this);
-		
-		this.superWorld = null;
-		this.isTerminated = true;
+    	World world = superWorld;
+    	if (world != null) world.beginAction(this, ReplayFormat.TERMINATE, 0);
+    	try{
+			if (superWorld != null)
+			this.superWorld.removeEntityFromWorld(this);
+			
+			this.superWorld = null;
+			this.isTerminated = true;
+			if (world != null) world.entityTerminated(this);
+    	}
+    	finally{
+    		if (world != null) world.endAction();
+    	}
 	}
     
+    /**
+     * Bring this terminated entity back to life with the given position and velocity, as if it were new.
+     * 
+     * @param   x
+     *          The new x coordinate of the entity.
+     * @param   y
+     * 		    The new y coordinate of the entity.
+     * @param   xVelocity
+     *          The new x velocity of the entity.
+     * @param   yVelocity
+     *          The new y velocity of the entity.
+     * @post	The entity isn't terminated anymore, and has the speed of light as its maximum velocity.
+     * 			| !new.isTerminated() && new.getMaxVelocity() == SPEED_OF_LIGHT
+     * @effect	The entity is placed at the given position, and gets the given velocity.
+     * 			| this.setPosition(x, y) && this.setVelocity(xVelocity, yVelocity)
+     * @throws	IllegalStateException
+     * 			The entity isn't terminated, or still in a world.
+     * 			| !isTerminated() || getSuperWorld() != null
+     * @throws	IllegalArgumentException
+     * 			The position isn't valid. The entity is left as it was then.
+     * 			| Double.isNaN(x) || Double.isNaN(y)
+     * @note	The state version of the entity keeps counting up, so nothing cached for the terminated entity
+     * 			is mistaken for the reinitialized one.
+     * @note	The radius of an entity is final, so a pool only reinitializes an entity which already has the
+     * 			radius it must hand out. Only pools call this method.
+     */
+    @Raw
+    void reinitialize(double x, double y, double xVelocity, double yVelocity) throws IllegalStateException, IllegalArgumentException{
+    	if (!this.isTerminated || this.superWorld != null) throw new IllegalStateException("Entity isn't terminated @ reinitialize");
+    	if (Double.isNaN(x) || Double.isNaN(y)) throw new IllegalArgumentException("Invalid position");
+    	this.isTerminated = false;
+    	this.maxVelocity = SPEED_OF_LIGHT;
+    	this.setPosition(x, y);
+    	this.setVelocity(xVelocity, yVelocity);
+    }
+    
     /**
      * Variable containing whether the entity is terminated.
      */
@@ -366,6 +661,7 @@ public abstract class Entity {
     @Raw
     protected void setMass(double mass){
     	this.mass = mass;
+    	if (this.store != null) this.store.mass[this.slot] = mass;
     }
     
     /**
@@ -388,6 +684,19 @@ public abstract class Entity {
 	   * A string representation of the type of the entity.
 	   */
 	   private final String typeName;
+	   
+	   /**
+	    * Return the type of this entity.
+	    */
+	   @Basic @Immutable
+	   public EntityType getType() {
+		   return type;
+	   }
+	   
+	   /**
+	    * The type of the entity.
+	    */
+	   private final EntityType type;
 
 	   
 	   /**
@@ -395,110 +704,26 @@ public abstract class Entity {
 	    * 
 	    * @param 	entity
 	    * 			The entity to collide with.
-	    * @effect	If both this and entity are ships the default collide method is called.
-	    * 			| if 	this instanceof Ship && entity instanceof Ship
-	    * 			|	then	this.defaultCollide(entity)
-	    * @effect	If both this and the entity are minor planets the default collide method is called.
-	    * 			| if	this instanceof MinorPlanet && entity instanceof MinorPlanet
-	    * 			|	then	 this.defaultCollide(entity)
-	    * @effect   If this or entity is a bullet and entity or this (respectively) is the source of the bullet 
-	    * 			the method calls the bulletCollideOwnShip() method otherwise if this or entity is bullet the 
-	    * 			bulletCollideSomethingElse() method is called.
-	    * 			| if (entity instanceof Bullet)
-	    * 			|	then Bullet bullet = (Bullet) entity
-    	*			|		if (bullet.getBulletSource() == this)
-    	*			|			then  bullet.bulletCollideOwnShip((Ship) this)
-    	*			|		else  bullet.bulletCollideSomethingElse(this)
-    	*			|
-    	*			| else if (this instanceof Bullet)
-    	*			|	then Bullet bullet = (Bullet) this
-    	*			|		if (bullet.getBulletSource() == entity)
-    	*			|			then bullet.bulletCollideOwnShip((Ship) entity)
-    	*			|		else bullet.bulletCollideSomethingElse(entity)
-    	*
-    	* @post		If either this is a ship and entity is an asteroid or this is an asteroid and entity is a ship
-    	* 			the ship will be terminated.
-    	* 			| if ((this instanceof Ship && entity instanceof Asteroid) 
-    	* 			|	|| (entity instanceof Ship && this instanceof Asteroid))
-    	* 			| 		then Ship ship = null;
-    	*			|			if (this instanceof Ship)
-    	*			|				then ship = (Ship) this
-    	*			|			else 
-    	*			|				then  ship = (Ship) entity
-    	*			|	ship.terminate()
-    	*
-	    * @post		If either this is a ship and entity is a planetoid or this is a planetoid and entity is a ship
-	    * 			the ship will be teleported to a random position within the world it is currently in.
-	    * 			This location is chosen so that the ship doesn't overlap with any other entity after teleportation.
-	    * 			| if ((this instanceof Ship && entity instanceof Planetoid) 
-	    * 			|	|| (entity instanceof Ship && this instanceof Planetoid))
-    	*			|		then	Ship ship = null
-    	*			|			if (this instanceof Ship)
-    	*			|				then ship = (Ship) this
-    	*			|			else 
-    	*			|				then  ship = (Ship) entity
-    	*			|
-    	*			|	World world = ship.getSuperWorld()
-    	*			|	double xnew =  Helper.randomInBetween(this.getRadius(), world.getWorldWidth())
-    	*			|	double ynew = Helper.randomInBetween(this.getRadius(), world.getWorldHeight())
-    	*			|	ship.setPosition(xnew, ynew)
-    	*			|	
-    	*			|	while (! this.overlapAnyEntity())
-    	*			| 		xnew =  Helper.randomInBetween(this.getRadius(), world.getWorldWidth())
-    	*			|		ynew = Helper.randomInBetween(this.getRadius(), world.getWorldHeight())
-    	*			|		ship.setPosition(xnew, ynew)
-	    * 
-	    * 
-	    * @throws IllegalArgumentException
+	    * @effect	The response registered for the types of both entities in the world of this entity is
+	    * 			carried out, or the response of the rules of the game if this entity isn't in a world.
+	    * 			| if 	this.getSuperWorld() != null
+	    * 			|	then	this.getSuperWorld().getCollisionResponses().getResponse(this.getType(), entity.getType()).collide(this, entity)
+	    * 			|	else	new CollisionResponses().getResponse(this.getType(), entity.getType()).collide(this, entity)
+	    * @note		The rules of the game are described by the class of collision responses.
+	    * @throws 	IllegalArgumentException
+	    * 			The entity isn't effective.
+	    * 			| entity == null
 	    */
 	   public void collide(Entity entity) throws IllegalArgumentException{
-	 
-    	if (this instanceof Ship && entity instanceof Ship) this.defaultCollide(entity);
-    	else if (this instanceof MinorPlanet && entity instanceof MinorPlanet) this.defaultCollide(entity);
-    	else if (entity instanceof Bullet) {
-    		Bullet bullet = (Bullet) entity;
-    		if (bullet.getBulletSource() == this) bullet.bulletCollideOwnShip((Ship) this);
-    		else bullet.bulletCollideSomethingElse(this);
-    		}
-    	
-    	else if (this instanceof Bullet) {
-    		Bullet bullet = (Bullet) this;
-    		if (bullet.getBulletSource() == entity) bullet.bulletCollideOwnShip((Ship) entity);
-    		else bullet.bulletCollideSomethingElse(entity);
-    		}
-    	
-    	else if ((this instanceof Ship && entity instanceof Asteroid) || (entity instanceof Ship && this instanceof Asteroid)){
-    		Ship ship = null;
-    		if (this instanceof Ship){
-    			ship = (Ship) this;
-    		} else {
-    			ship = (Ship) entity;
-    		}
-    		ship.terminate();
-    	}
-    	
-    	else if ((this instanceof Ship && entity instanceof Planetoid) || (entity instanceof Ship && this instanceof Planetoid)){
-    		Ship ship = null;
-    		if (this instanceof Ship){
-    			ship = (Ship) this;
-    		} else {
-    			ship = (Ship) entity;
-    		}
-    		
-    		World world = ship.getSuperWorld();
-    		double xnew =  Helper.randomInBetween(this.getRadius(), world.getWorldWidth());
-    		double ynew = Helper.randomInBetween(this.getRadius(), world.getWorldHeight());
-    		ship.setPosition(xnew, ynew);
-    		
-    		while (! this.overlapAnyEntity()){
-    			xnew =  Helper.randomInBetween(this.getRadius(), world.getWorldWidth());
-    			ynew = Helper.randomInBetween(this.getRadius(), world.getWorldHeight());
-    			ship.setPosition(xnew, ynew);
-    			}
-    	}
-	    	
-    	
-    }
+		   if (entity == null) throw new IllegalArgumentException("The second entity does not exist. @collide");
+		   World world = this.superWorld;
+		   (world != null ? world.getCollisionResponses() : DEFAULT_RESPONSES).respond(this, entity);
+	   }
+	   
+	   /**
+	    * Constant containing the responses of the rules of the game, used for entities which aren't in a world.
+	    */
+	   private static final CollisionResponses DEFAULT_RESPONSES = new CollisionResponses();
     
     /**
 	 * Return the shortest time in which the given entity will collide with the
@@ -536,45 +761,24 @@ public abstract class Entity {
 	 *	       | if 	(tX <= tY) 
 	 *         | 	then 	result == tX
 	 *	       | else 	result == tY
+	 * @note   The time is cached, and only computed again once the state version of this entity has changed.
 	 */
 	public double getTimeCollisionBoundary() {
-		double[] velocity = this.velocity.getVelocity();
 		if (this.superWorld == null)	return Double.POSITIVE_INFINITY;
-		if (velocity[0] == 0 && velocity[1] == 0)		return Double.POSITIVE_INFINITY;
-		
-		double radius = this.getRadius();
-		if (this instanceof Planetoid) { Planetoid planetoid = (Planetoid) this; radius = planetoid.getRadius();}
-		
-		double edgeY;
-		double edgeX;
-		double mY = 0;
-		double mX = 0;
-		
-		if (velocity[0] > 0){
-			edgeX = position[0] + radius;
-			mX = this.superWorld.getWorldWidth();
-		}
-		else edgeX = position[0] - radius;
-		if (velocity[1] > 0){
-			edgeY = position[1] + radius;
-			mY = this.superWorld.getWorldHeight();
-		}
-		else edgeY = position[1] - radius;
-		
-		double tX  = Double.POSITIVE_INFINITY;
-		double tY  = Double.POSITIVE_INFINITY;
-		
-		if (velocity[0] != 0){
-			tX = (mX-edgeX)/velocity[0];
-		}
-		if (velocity[1] != 0){
-			tY = (mY-edgeY)/velocity[1];
-		}
-		
-		//Return the smallest value
-		return Math.min(tX, tY); 
-		
+		if (this.boundaryVersion == this.stateVersion) return this.boundaryTime;
+		if (this.store != null) this.boundaryTime = this.store.getTimeToBoundary(this.slot, this.superWorld.getWorldWidth(), this.superWorld.getWorldHeight());
+		else this.boundaryTime = EntityStore.getTimeToBoundary(this.getX(), this.getY(), this.getVX(), this.getVY(), this.getRadius(),
+				this.superWorld.getWorldWidth(), this.superWorld.getWorldHeight());
+		this.boundaryVersion = this.stateVersion;
+		return this.boundaryTime;
 	}
+	
+	/**
+	 * Variables containing the last computed time to the boundary collision of this entity, and the state
+	 * version for which it was computed.
+	 */
+	private double boundaryTime;
+	private long boundaryVersion = 0;
 
 	/**
 	 * Return the first position at which the given entity will collide with the
@@ -604,51 +808,82 @@ public abstract class Entity {
 	 * 			|		then 	result == null
 	 */
 	public double[] getPositionCollisionBoundary(){
-		if (!Helper.isValidDouble(this.getTimeCollisionBoundary()) || this.superWorld == null) return null;
-		double[] pos = new double[2];
-		pos[0] = this.getPosition()[0] + (this.getVelocity()[0] * this.getTimeCollisionBoundary());
-		pos[1] = this.getPosition()[1] + (this.getVelocity()[1] * this.getTimeCollisionBoundary());
-		
-		if (pos[0] + this.getRadius() >= this.superWorld.getWorldHeight()) pos[0]+= this.getRadius();
-		else if (pos[0] - this.getRadius() >= this.superWorld.getWorldHeight()) pos[0]-= this.getRadius();
-		else if (pos[1] + this.getRadius() >= this.superWorld.getWorldHeight()) pos[1]+= this.getRadius();
-		else	pos[1] -= this.getRadius();
-			
+		double time = this.getTimeCollisionBoundary();
+		if (!Helper.isValidDouble(time) || this.superWorld == null) return null;
+		return new double[]{getBoundaryContactCoordinate(0), getBoundaryContactCoordinate(1)};
+	}
+	
+	/**
+	 * Return one coordinate of the position where this entity hits the boundaries of its world, or of its
+	 * current position if it doesn't hit them.
+	 * 
+	 * @param	axis
+	 * 			The axis of the coordinate, 0 for the x coordinate and 1 for the y coordinate.
+	 * @return	If the entity hits the boundaries, the coordinate of getPositionCollisionBoundary() along the given axis.
+	 * 			| if getPositionCollisionBoundary() != null
+	 * 			|	then result == getPositionCollisionBoundary()[axis]
+	 * @return	Otherwise the coordinate of the current position along the given axis.
+	 * 			| if getPositionCollisionBoundary() == null
+	 * 			|	then result == getPosition()[axis]
+	 * @note	The coordinates are computed one at a time, so the position of a boundary collision can be handed
+	 * 			to a collision listener without allocating an array.
+	 */
+	double getBoundaryContactCoordinate(int axis){
+		double time = this.getTimeCollisionBoundary();
+		double x = this.getX(), y = this.getY();
+		if (!Helper.isValidDouble(time) || this.superWorld == null) return axis == 0 ? x : y;
+		x += this.getVX() * time;
+		y += this.getVY() * time;
 		
-		return pos;
+		if (x + this.getRadius() >= this.superWorld.getWorldHeight()) x += this.getRadius();
+		else if (x - this.getRadius() >= this.superWorld.getWorldHeight()) x -= this.getRadius();
+		else if (y + this.getRadius() >= this.superWorld.getWorldHeight()) y += this.getRadius();
+		else	y -= this.getRadius();
+		return axis == 0 ? x : y;
 	}
 	
 	/**
 	    * Method that deals with collisions between entities and boundaries.
 	    * 
-	    * @post   If the entity collides with the vertical boundaries the x velocity is multiplied by minus one.
-	    * 		  | if	 (position[0] + radius == this.superWorld.getWorldSize()[0]) || (position[0] - radius == 0)
-	    * 		  |		then 	new.velocity.setXYVelocity( this.velocity.getVelocity()[0] * -1)
-	    * @post   If the entity collides with the horizontal boundaries the y velocity is multiplied by minus one.
-	    * 		  | if	 (position[1] + radius == this.superWorld.getWorldSize()[1]) || (position[1] - radius == 0)
-	    * 		  |		then 	new.velocity.setYVelocity(this.velocity.getVelocity()[1] * -1)
-	    * @effect If the entity on which this method is invoiced is a bullet and the entity collides with a boundary
-	    *         the method bouncesCounter is invoiced on the entity.
-	    *         | if 	((position[0] + radius == this.superWorld.getWorldSize()[0]) || (position[0] - radius == 0) || 
-	    *         |     (position[1] + radius == this.superWorld.getWorldSize()[1]) || (position[1] - radius == 0)) &&
+	    * @post   If the entity moves towards a vertical boundary and its edge lies within 1% of its radius from it,
+	    * 		  the x velocity is multiplied by minus one.
+	    * 		  | let reach = 1.01 * getRadius()
+	    * 		  | if	 (getVX() < 0 && getX() - reach <= 0) || (getVX() > 0 && getX() + reach >= getSuperWorld().getWorldWidth())
+	    * 		  |		then 	new.getVX() == -getVX()
+	    * @post   If the entity moves towards a horizontal boundary and its edge lies within 1% of its radius from it,
+	    * 		  the y velocity is multiplied by minus one.
+	    * 		  | let reach = 1.01 * getRadius()
+	    * 		  | if	 (getVY() < 0 && getY() - reach <= 0) || (getVY() > 0 && getY() + reach >= getSuperWorld().getWorldHeight())
+	    * 		  |		then 	new.getVY() == -getVY()
+	    * @note   The margin of 1% lets an entity which misses the boundary by a rounding error still bounce, instead
+	    *         of hitting the boundary again after zero time.
+	    * @effect If the entity on which this method is invoiced is a bullet, the method bouncesCounter is invoiced
+	    *         on the entity once for every boundary it collides with, as long as it isn't terminated.
+	    *         | let reach = 1.01 * getRadius()
+	    *         | if 	((getVX() < 0 && getX() - reach <= 0) || (getVX() > 0 && getX() + reach >= getSuperWorld().getWorldWidth()) ||
+	    *         |     (getVY() < 0 && getY() - reach <= 0) || (getVY() > 0 && getY() + reach >= getSuperWorld().getWorldHeight())) &&
 	    *         |		(this instanceof Bullet)
 	    *         |		then    	Bullet bullet = (Bullet) this
 	    *		  |					bullet.bouncesCounter()	 
+	    * @post   The trajectory version of the entity is incremented.
+	    *         | new.getTrajectoryVersion() == this.getTrajectoryVersion() + 1
 	    */
 	    public void collideBoundary(){
 	    	int bulletBouncer = 0;
-	    	if ((this.getPosition()[0]-(this.getRadius()) <= 0.0 || (this.getPosition()[0]+(this.getRadius()) >= this.superWorld.getWorldWidth()))){
+	    	double reach = this.getRadius() * 1.01;
+	    	if ((this.getVX() < 0 && this.getX() - reach <= 0.0) || (this.getVX() > 0 && this.getX() + reach >= this.superWorld.getWorldWidth())){
 	    		if (this instanceof Bullet){
 	        			bulletBouncer++;
 	        	}
-	    		this.velocity.setXYVelocity( this.velocity.getVelocity()[0] * -1);
+	    		this.changeVelocity(this.getVX() * -1, this.getVY());
 	    	}
-	    	if ((this.getPosition()[1]-(this.getRadius()) <= 0.0 || (this.getPosition()[1]+(this.getRadius()) >= this.superWorld.getWorldHeight()))){
+	    	if ((this.getVY() < 0 && this.getY() - reach <= 0.0) || (this.getVY() > 0 && this.getY() + reach >= this.superWorld.getWorldHeight())){
 	    		if (this instanceof Bullet){
 	        		bulletBouncer++;
 	        	}
-	    		this.velocity.setYVelocity(this.velocity.getVelocity()[1] * -1);
+	    		this.changeVelocity(this.getVX(), this.getVY() * -1);
 	    	} 	
+	    	this.trajectoryChanged();
 	    	if (this instanceof Bullet){
 	    	Bullet bullet = (Bullet) this;
 	    	for (int i = 0; i < bulletBouncer; i++){
@@ -677,11 +912,11 @@ public abstract class Entity {
      */
     public double getDistanceBetweenCenter(Entity entity) throws IllegalArgumentException{
         if(this == entity) throw new IllegalArgumentException("this == entity");
+        else if (this.store != null && this.store == entity.store){
+        	return this.store.getDistanceBetweenCenters(this.slot, entity.slot);
+        }
         else{
-            double diffx = Math.abs(entity.getPosition()[0] - this.getPosition()[0]);
-            double diffy = Math.abs(entity.getPosition()[1] - this.getPosition()[1]);
-            double diff = Math.sqrt(Helper.square(diffx) + Helper.square(diffy));
-            return diff;
+            return EntityStore.getDistanceBetweenCenters(this.getX(), this.getY(), entity.getX(), entity.getY());
         }
     }
    
@@ -700,6 +935,7 @@ public abstract class Entity {
      */
     public double getDistanceBetweenEdge(Entity entity)  throws IllegalArgumentException{
     	if(this == entity) throw new IllegalArgumentException("this == entity @ getDistanceBetweenEdge");
+    	if (this.store != null && this.store == entity.store) return this.store.getDistanceBetweenEdges(this.slot, entity.slot);
     	return getDistanceBetweenCenter(entity) - this.getRadius() - entity.getRadius();
     	
     }
@@ -728,6 +964,25 @@ public abstract class Entity {
 		return this.getDistanceBetweenEdge(entity) <= -0.01;
     }
     
+    /**
+     * Check whether this entity and the given entity are approaching each other.
+     * 
+     * @param   entity
+     *          The entity to check.
+     * @return  True if and only if the distance between the centres of both entities is decreasing.
+     *          | result == ((entity.getPosition()[0] - this.getPosition()[0]) * (entity.getVelocity()[0] - this.getVelocity()[0])
+     *          |	+ (entity.getPosition()[1] - this.getPosition()[1]) * (entity.getVelocity()[1] - this.getVelocity()[1]) < 0)
+     * @throws  IllegalArgumentException
+     *          The given entity is null.
+     *          | entity == null
+     */
+    public boolean isApproaching(Entity entity) throws IllegalArgumentException{
+    	if (entity == null) throw new IllegalArgumentException("The second entity does not exist. @isApproaching");
+    	if (this.store != null && this.store == entity.store) return this.store.isApproaching(this.slot, entity.slot);
+    	return EntityStore.isApproaching(this.getX(), this.getY(), this.getVX(), this.getVY(),
+    			entity.getX(), entity.getY(), entity.getVX(), entity.getVY());
+    }
+    
     /**
      * A method that checks whether or not an entity overlaps with any other entity.
      * 
@@ -737,9 +992,10 @@ public abstract class Entity {
      * 			|			this.overlap(entity)
      * 			|	then	result == true
      * 			| else 		result == false	
+     * @note	Only the entities whose circle intersects the circle of this entity are checked.
      */
     public boolean overlapAnyEntity(){
-    	return this.getSuperWorld().getEntities().stream().anyMatch(T ->this.overlap(T));
+    	return this.getSuperWorld().queryCircle(this.getX(), this.getY(), this.getRadius()).stream().anyMatch(T ->this.overlap(T));
     }
    
     /**
@@ -774,53 +1030,11 @@ public abstract class Entity {
      */
     public double getTimeToCollision(Entity entity) throws IllegalArgumentException{
     	if (this.getSuperWorld() != entity.getSuperWorld()) return Double.POSITIVE_INFINITY;
+    	if (this.store != null && this.store == entity.store) return this.store.getTimeToCollision(this.slot, entity.slot);
     	
-        double a1 = entity.getVelocity()[0] - this.getVelocity()[0];
-        double a2 = entity.getVelocity()[1] - this.getVelocity()[1];
-        double a = Helper.square(a1) + Helper.square(a2);
-        //exception 1:
-        //The two entities follow an identical path so they don't collide.
-        if (a == 0.0) {
-            return Double.POSITIVE_INFINITY;
-        }
-       
-        double b1 = entity.getPosition()[0] - this.getPosition()[0];
-        double b2 = entity.getPosition()[1] - this.getPosition()[1];
-        double b = 2*((b1 * a1) + (b2 *a2));
-       
-        double s = this.getRadius() + entity.getRadius();
-        double c = Helper.square(b1) + Helper.square(b2) - Helper.square(s);
-     
-        //exception 2:
-        //If the quadratic equation doesn't give an answer the entites' paths cross but
-        //don't the entities don't touch each other.
-        if (Helper.quadraticSolver(a, b, c)[2] == 1.0){
-            return Double.POSITIVE_INFINITY;
-        }
-        else{
-            double dt1 = Helper.quadraticSolver(a, b, c)[0];
-            double dt2 = Helper.quadraticSolver(a, b, c)[1];
-           
-          //dt exceptions:
-           
-            //  exception 3:
-            //  if both answers are negative the entities are moving away from each other.
-            if (dt1 < 0 && dt2 <0){
-            	//Helper.log("Ships are moving away from eachother");
-                return Double.POSITIVE_INFINITY;
-            }
-            if ((dt1 <= 0 && dt2 >= 0 ) || (dt1 > 0 && dt2 < 0)){
-                //throw new IllegalArgumentException("Already overlaps while calling timeToCollision");
-            	//Helper.log("Ships already overlap when calling timeToCollision");
-            	//return Double.POSITIVE_INFINITY;
-            	return 0;
-            }
-            double llo = Math.min(dt1,dt2);
-            if (llo >= 0) return llo;
-            else return Math.max(dt1,dt2);
-        }
-       
-}
+    	return EntityStore.getTimeToCollision(this.getX(), this.getY(), this.getVX(), this.getVY(), this.getRadius(),
+    			entity.getX(), entity.getY(), entity.getVX(), entity.getVY(), entity.getRadius());
+    }
  
     /**
      *A method to get the position where two entities collide.
@@ -895,8 +1109,8 @@ public abstract class Entity {
     public double[] getDistanceTraveled(double time){
         assert ((time > 0) && Helper.isValidDouble(time));
         double pos[] = new double[2];
-        pos[0] = this.getPosition()[0] + this.getVelocity()[0] * time;
-        pos[1] = this.getPosition()[1] + this.getVelocity()[1] * time;
+        pos[0] = this.getX() + this.getVX() * time;
+        pos[1] = this.getY() + this.getVY() * time;
         return pos;
     }
     
@@ -911,15 +1125,15 @@ public abstract class Entity {
      *          |		 || (ship.getSuperWorld() == null) || ((this.getSuperWorld() != ship.getSuperWorld()))) 
      *       	| 			does nothing
      * @post	The two entity's are set so that they would bounce of each other.
-     * 			| 	double [] locationdifference = {ship.getPosition()[0] - this.getPosition()[0], ship.getPosition()[1] - this.getPosition()[1]}
-     *   		| 	double [] velocitydifference = {ship.getVelocity()[0] - this.getVelocity()[0],ship.getVelocity()[1] - this.getVelocity()[1]}
-     *   		| 	double velocitylocationdifference = (velocitydifference[0] * locationdifference[0]) + (velocitydifference[1] * locationdifference[1])
+     * 			| 	double locationdifferenceX = ship.getX() - this.getX(), locationdifferenceY = ship.getY() - this.getY()
+     *   		| 	double velocitydifferenceX = ship.getVX() - this.getVX(), velocitydifferenceY = ship.getVY() - this.getVY()
+     *   		| 	double velocitylocationdifference = (velocitydifferenceX * locationdifferenceX) + (velocitydifferenceY * locationdifferenceY)
      *   		|	double changetotal = (2 * this.getMass() * ship.getMass() * velocitylocationdifference) / ((this.getRadius() + ship.getRadius()) * (this.getMass() + ship.getMass()))
-     *   		|	double changex = changetotal * locationdifference[0] / (this.getRadius() + ship.getRadius())
-     *   		|	double changey = changetotal * locationdifference[1] / (this.getRadius() + ship.getRadius())
+     *   		|	double changex = changetotal * locationdifferenceX / (this.getRadius() + ship.getRadius())
+     *   		|	double changey = changetotal * locationdifferenceY / (this.getRadius() + ship.getRadius())
      *   		|
-     *   		|		this.setVelocity(this.getVelocity()[0] + changex / this.getMass(), this.getVelocity()[1] + changey / this.getMass())
-     *   		| 		ship.setVelocity(ship.getVelocity()[0] - changex / ship.getMass(), ship.getVelocity()[1] - changey / ship.getMass())
+     *   		|		this.setVelocity(this.getVX() + changex / this.getMass(), this.getVY() + changey / this.getMass())
+     *   		| 		ship.setVelocity(ship.getVX() - changex / ship.getMass(), ship.getVY() - changey / ship.getMass())
      * 			
      */
     public void defaultCollide(Entity ship){
@@ -927,14 +1141,16 @@ public abstract class Entity {
                 || (ship.getSuperWorld() == null) || ((this.getSuperWorld() != ship.getSuperWorld()))) {
             return;
         }
-        double [] locationdifference = {ship.getPosition()[0] - this.getPosition()[0], ship.getPosition()[1] - this.getPosition()[1]};
-        double [] velocitydifference = {ship.getVelocity()[0] - this.getVelocity()[0],ship.getVelocity()[1] - this.getVelocity()[1]};
-        double velocitylocationdifference = (velocitydifference[0] * locationdifference[0]) + (velocitydifference[1] * locationdifference[1]);
+        double locationdifferenceX = ship.getX() - this.getX();
+        double locationdifferenceY = ship.getY() - this.getY();
+        double velocitydifferenceX = ship.getVX() - this.getVX();
+        double velocitydifferenceY = ship.getVY() - this.getVY();
+        double velocitylocationdifference = (velocitydifferenceX * locationdifferenceX) + (velocitydifferenceY * locationdifferenceY);
         double changetotal = (2 * this.getMass() * ship.getMass() * velocitylocationdifference) / ((this.getRadius() + ship.getRadius()) * (this.getMass() + ship.getMass()));
-        double changex = changetotal * locationdifference[0] / (this.getRadius() + ship.getRadius());
-        double changey = changetotal * locationdifference[1] / (this.getRadius() + ship.getRadius());
-        this.setVelocity(this.getVelocity()[0] + changex / this.getMass(), this.getVelocity()[1] + changey / this.getMass());
-        ship.setVelocity(ship.getVelocity()[0] - changex / ship.getMass(), ship.getVelocity()[1] - changey / ship.getMass());
+        double changex = changetotal * locationdifferenceX / (this.getRadius() + ship.getRadius());
+        double changey = changetotal * locationdifferenceY / (this.getRadius() + ship.getRadius());
+        this.setVelocity(this.getVX() + changex / this.getMass(), this.getVY() + changey / this.getMass());
+        ship.setVelocity(ship.getVX() - changex / ship.getMass(), ship.getVY() - changey / ship.getMass());
 		
 	}
 
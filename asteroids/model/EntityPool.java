@@ -0,0 +1,271 @@
+package asteroids.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import be.kuleuven.cs.som.annotate.*;
+
+/**
+ * A class of pools recycling the asteroids terminated in a world, so new ones can be handed out without
+ * allocating them.
+ * 	An asteroid which is terminated while it is in the world of a pool is offered to the pool. It is only handed
+ * 	out again once the world has finished the batch of evolution in which it was terminated, so the collision
+ * 	which terminated it can't find it back alive. If the batch handed its collisions to a collision pipeline,
+ * 	the asteroid is held until the pipeline has delivered every collision of that batch, so no listener hears
+ * 	of an asteroid which has come back to life. At most a given number of asteroids is kept; any other terminated
+ * 	asteroid is left to the garbage collector.
+ * 	The radius of an entity never changes, so an asteroid is only recycled as an asteroid of the same radius.
+ * 	A recycled asteroid is a different asteroid for the game, so whoever still holds the terminated asteroid
+ * 	sees it come back to life. Pools are therefore only used by worlds which are given one.
+ *
+ * @invar	The largest number of asteroids kept by a pool isn't negative.
+ * 			| getMaxNbAsteroids() >= 0
+ * @invar	A pool doesn't keep more asteroids than its largest number.
+ * 			| getNbPooled(EntityType.ASTEROID) <= getMaxNbAsteroids()
+ *
+ * @note	Bullets aren't pooled: ships fire and reload the same bullets, so a world doesn't allocate any bullets
+ * 			while it evolves.
+ * @note	Pools aren't synchronized, so a pool must not be shared by worlds which evolve at the same time.
+ *
+ * @version 1.0
+ * @author 	Brent De Bleser & Jesse Geens
+ */
+public class EntityPool {
+
+	/**
+	 * Create a new, empty pool keeping at most the given number of asteroids.
+	 *
+	 * @param 	maxNbAsteroids
+	 * 			The largest number of asteroids the pool keeps.
+	 * @post	| new.getMaxNbAsteroids() == maxNbAsteroids
+	 * @post	| new.getNbPooled(EntityType.ASTEROID) == 0
+	 * @throws	IllegalArgumentException
+	 * 			The number is negative.
+	 * 			| maxNbAsteroids < 0
+	 */
+	public EntityPool(int maxNbAsteroids) throws IllegalArgumentException{
+		if (maxNbAsteroids < 0) throw new IllegalArgumentException("Invalid capacity @ EntityPool");
+		this.maxNbAsteroids = maxNbAsteroids;
+	}
+
+	/**
+	 * Return the largest number of asteroids this pool keeps.
+	 */
+	@Basic @Immutable
+	public int getMaxNbAsteroids(){
+		return this.maxNbAsteroids;
+	}
+
+	private final int maxNbAsteroids;
+
+	/**
+	 * Return the number of entities of the given type this pool keeps, whether they can be handed out yet or not.
+	 */
+	@Basic
+	public int getNbPooled(EntityType type){
+		if (type == EntityType.ASTEROID) return asteroids.size() + heldAsteroids.size() + releasedAsteroids.size();
+		return 0;
+	}
+
+	/**
+	 * Return an asteroid with the given position, velocity and radius, recycled from this pool if it holds one.
+	 *
+	 * @param   x
+	 *          The x coordinate of the asteroid.
+	 * @param   y
+	 * 		    The y coordinate of the asteroid.
+	 * @param   xVelocity
+	 *          The velocity of the asteroid on the x axis.
+	 * @param   yVelocity
+	 *          The velocity of the asteroid on the y axis.
+	 * @param   radius
+	 *          The radius of the asteroid.
+	 * @return	If an asteroid with the given radius can be handed out, it is reinitialized with the given values and
+	 * 			returned. Otherwise the result is a new asteroid.
+	 * 			| if (for some asteroid available in this pool: asteroid.getRadius() == radius)
+	 * 			|	then result.getRadius() == radius && result.reinitialize(x, y, xVelocity, yVelocity)
+	 * 			| else result.equals(new Asteroid(x, y, xVelocity, yVelocity, radius))
+	 * @throws	IllegalArgumentException
+	 * 			The asteroid can't have the given values.
+	 * 			| @see Asteroid(double, double, double, double, double)
+	 * @note	The available asteroids are searched from the most recently released one, so the search is short
+	 * 			when the same radii keep coming back, as they do for the asteroids a planetoid splits into.
+	 */
+	public Asteroid obtainAsteroid(double x, double y, double xVelocity, double yVelocity, double radius) throws IllegalArgumentException{
+		releaseDelivered();
+		int index = asteroids.size() - 1;
+		while (index >= 0 && asteroids.get(index).getRadius() != radius) index--;
+		if (index < 0){
+			nbMisses++;
+			return new Asteroid(x, y, xVelocity, yVelocity, radius);
+		}
+		Asteroid asteroid = asteroids.get(index);
+		asteroid.reinitialize(x, y, xVelocity, yVelocity);
+		asteroids.set(index, asteroids.get(asteroids.size() - 1));
+		asteroids.remove(asteroids.size() - 1);
+		nbHits++;
+		return asteroid;
+	}
+
+	/**
+	 * Return the number of entities of the given type this pool can hand out right now.
+	 */
+	public int getNbAvailable(EntityType type){
+		releaseDelivered();
+		if (type == EntityType.ASTEROID) return asteroids.size();
+		return 0;
+	}
+
+	/**
+	 * Offer the given terminated entity to this pool.
+	 *
+	 * @param 	entity
+	 * 			The terminated entity.
+	 * @return	True if and only if the entity is an asteroid, and this pool keeps fewer of them than its
+	 * 			largest number.
+	 * @post	If the entity is kept, it can be handed out once it has been released.
+	 * 			| @ implementation
+	 */
+	boolean recycle(Entity entity){
+		if (!(entity instanceof Asteroid)) return false;
+		if (getNbPooled(EntityType.ASTEROID) >= maxNbAsteroids){
+			nbDiscarded++;
+			return false;
+		}
+		releasedAsteroids.add((Asteroid) entity);
+		nbRecycled++;
+		return true;
+	}
+
+	/**
+	 * Allow the entities offered to this pool so far to be handed out, once the given pipeline has delivered
+	 * every collision published to it so far.
+	 *
+	 * @param	pipeline
+	 * 			The pipeline which carried the collisions of the batch that terminated the entities, or null if
+	 * 			the collisions were heard right away.
+	 * @post	If no pipeline is given, the entities offered so far can be handed out.
+	 * 			| @ implementation
+	 * @effect	Otherwise the pipeline is flushed, and the entities are held until it has delivered the collisions
+	 * 			published to it so far.
+	 * 			| if pipeline != null
+	 * 			|	then pipeline.flush()
+	 * @effect	If entities are still held for another pipeline, this method waits until that pipeline has delivered
+	 * 			them, as only a single pipeline is followed at a time.
+	 * 			| @ implementation
+	 */
+	void release(CollisionPipeline pipeline){
+		releaseDelivered();
+		if (releasedAsteroids.isEmpty()) return;
+		if (pipeline == null){
+			asteroids.addAll(releasedAsteroids);
+		}
+		else {
+			if (heldPipeline != null && heldPipeline != pipeline){
+				heldPipeline.awaitDelivered();
+				releaseDelivered();
+			}
+			pipeline.flush();
+			heldAsteroids.addAll(releasedAsteroids);
+			heldPipeline = pipeline;
+			heldMark = pipeline.getPublished();
+		}
+		releasedAsteroids.clear();
+	}
+
+	/**
+	 * Let the held entities be handed out if their pipeline has delivered the collisions they were held for.
+	 */
+	private void releaseDelivered(){
+		if (heldPipeline == null || !heldPipeline.hasDelivered(heldMark)) return;
+		asteroids.addAll(heldAsteroids);
+		heldAsteroids.clear();
+		heldPipeline = null;
+	}
+
+	/**
+	 * Remove every entity from this pool.
+	 *
+	 * @post	| new.getNbPooled(EntityType.ASTEROID) == 0
+	 */
+	public void clear(){
+		asteroids.clear();
+		heldAsteroids.clear();
+		releasedAsteroids.clear();
+		heldPipeline = null;
+	}
+
+	/**
+	 * Lists containing the asteroids which can be handed out, those which wait for a pipeline to deliver the
+	 * collisions of the batch in which they were terminated, and those which were offered since the last release.
+	 */
+	private final List<Asteroid> asteroids = new ArrayList<Asteroid>(), heldAsteroids = new ArrayList<Asteroid>(),
+			releasedAsteroids = new ArrayList<Asteroid>();
+
+	/**
+	 * Variable containing the pipeline the held asteroids wait for, or null if none are held.
+	 */
+	private CollisionPipeline heldPipeline = null;
+
+	/**
+	 * Variable containing the index of the collision up to which the pipeline must have delivered before the
+	 * held asteroids can be handed out.
+	 */
+	private long heldMark = 0;
+
+	/**
+	 * Return the number of entities this pool handed out by recycling them.
+	 */
+	@Basic
+	public long getNbHits(){
+		return this.nbHits;
+	}
+
+	/**
+	 * Return the number of entities this pool had to create.
+	 */
+	@Basic
+	public long getNbMisses(){
+		return this.nbMisses;
+	}
+
+	/**
+	 * Return the share of the entities handed out by this pool which were recycled.
+	 *
+	 * @return	| result == (getNbHits() + getNbMisses() == 0 ? 0 : getNbHits() / (getNbHits() + getNbMisses()))
+	 */
+	public double getHitRate(){
+		long total = nbHits + nbMisses;
+		return total == 0 ? 0 : (double) nbHits / total;
+	}
+
+	/**
+	 * Return the number of terminated entities this pool kept.
+	 */
+	@Basic
+	public long getNbRecycled(){
+		return this.nbRecycled;
+	}
+
+	/**
+	 * Return the number of terminated asteroids this pool didn't keep, because it was full.
+	 */
+	@Basic
+	public long getNbDiscarded(){
+		return this.nbDiscarded;
+	}
+
+	/**
+	 * Variables containing the counts of this pool.
+	 */
+	private long nbHits = 0, nbMisses = 0, nbRecycled = 0, nbDiscarded = 0;
+
+	/**
+	 * Return a textual representation of this pool.
+	 */
+	@Override
+	public String toString(){
+		return "[EntityPool: " + getNbPooled(EntityType.ASTEROID) + "/" + maxNbAsteroids + " asteroids, hit rate "
+				+ getHitRate() + "]";
+	}
+}
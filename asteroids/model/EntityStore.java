@@ -0,0 +1,456 @@
+package asteroids.model;
+
+import java.util.Arrays;
+
+import be.kuleuven.cs.som.annotate.*;
+
+/**
+ * A class of structure-of-arrays storages for the entities of a world. The position, velocity,
+ * radius and mass of every entity in the world are kept in parallel arrays, indexed by the slot
+ * of the entity. The entity itself only acts as a handle to its slot while it is stored.
+ * 	The kernels of collision prediction run over these arrays directly, so they don't need to
+ * 	allocate arrays for positions and velocities. The scheduling state of the collision scheduler
+ * 	is kept in the same slots, so it moves along when the slots are compacted.
+ *
+ * @invar	The slots in use are dense, and each stored entity knows its own slot.
+ * 			| for each i in 0..getNbEntities()-1
+ * 			|	getEntityAt(i).getSlot() == i
+ *
+ * @version 1.0
+ * @author 	Brent De Bleser & Jesse Geens
+ */
+class EntityStore {
+
+	/**
+	 * Constant containing the initial capacity of the arrays.
+	 */
+	private final static int INITIAL_CAPACITY = 64;
+
+	/**
+	 * Create a new, empty storage.
+	 *
+	 * @post	The storage doesn't contain any entities.
+	 * 			| new.getNbEntities() == 0
+	 */
+	@Raw
+	EntityStore(){
+		allocate(INITIAL_CAPACITY);
+	}
+
+	/**
+	 * Return the number of entities in this storage.
+	 */
+	@Basic
+	int getNbEntities(){
+		return this.size;
+	}
+
+	/**
+	 * Return the entity stored in the given slot.
+	 */
+	@Basic
+	Entity getEntityAt(int slot){
+		return this.entities[slot];
+	}
+
+	/**
+	 * Add the given entity to this storage.
+	 *
+	 * @param 	entity
+	 * 			The entity to add.
+	 * @post	The state of the entity is copied in the first free slot, and the entity becomes a handle to that slot.
+	 * 			| new.getEntityAt(getNbEntities()) == entity && new.getNbEntities() == getNbEntities() + 1
+	 * 			| (new entity).getSlot() == getNbEntities()
+	 */
+	void add(Entity entity){
+		if (size == entities.length) allocate(2 * entities.length);
+		int slot = size++;
+		x[slot] = entity.getX();
+		y[slot] = entity.getY();
+		vx[slot] = entity.getVX();
+		vy[slot] = entity.getVY();
+		radius[slot] = entity.getRadius();
+		mass[slot] = entity.getMass();
+		scheduleTime[slot] = 0;
+		scheduleEpoch[slot] = 0;
+		scheduleVersion[slot] = entity.getTrajectoryVersion();
+		scheduled[slot] = false;
+		marked[slot] = false;
+		entities[slot] = entity;
+		entity.attach(this, slot);
+	}
+
+	/**
+	 * Remove the given entity from this storage.
+	 *
+	 * @param 	entity
+	 * 			The entity to remove.
+	 * @post	The state of the entity is copied back in the entity, which stops being a handle.
+	 * 			| @ implementation
+	 * @post	The last entity is moved in the slot of the removed entity, so the slots stay dense.
+	 * 			| new.getNbEntities() == getNbEntities() - 1
+	 */
+	void remove(Entity entity){
+		int slot = entity.getSlot();
+		if (slot < 0 || entities[slot] != entity) return;
+		entity.detach();
+		int last = --size;
+		if (slot != last){
+			x[slot] = x[last];
+			y[slot] = y[last];
+			vx[slot] = vx[last];
+			vy[slot] = vy[last];
+			radius[slot] = radius[last];
+			mass[slot] = mass[last];
+			scheduleTime[slot] = scheduleTime[last];
+			scheduleEpoch[slot] = scheduleEpoch[last];
+			scheduleVersion[slot] = scheduleVersion[last];
+			scheduled[slot] = scheduled[last];
+			marked[slot] = marked[last];
+			entities[slot] = entities[last];
+			entities[slot].moveToSlot(slot);
+		}
+		entities[last] = null;
+	}
+
+	/**
+	 * Remove all entities from this storage.
+	 *
+	 * @post	Every entity stops being a handle, and the storage doesn't contain any entities.
+	 * 			| new.getNbEntities() == 0
+	 */
+	void clear(){
+		for (int i = 0; i < size; i++){
+			entities[i].detach();
+			entities[i] = null;
+		}
+		size = 0;
+	}
+
+	/**
+	 * Return the time until the entity in the given slot collides with the boundaries of a world with the given dimensions.
+	 *
+	 * @return	The time until the entity in the given slot collides with a boundary.
+	 * 			| result == getTimeToBoundary(x[slot], y[slot], vx[slot], vy[slot], radius[slot], width, height)
+	 */
+	double getTimeToBoundary(int slot, double width, double height){
+		return getTimeToBoundary(x[slot], y[slot], vx[slot], vy[slot], radius[slot], width, height);
+	}
+
+	/**
+	 * Return the time until the entities in the given slots collide.
+	 *
+	 * @return	The time until the entities in both slots collide.
+	 * 			| result == getTimeToCollision(x[slot1], y[slot1], vx[slot1], vy[slot1], radius[slot1],
+	 * 			|	x[slot2], y[slot2], vx[slot2], vy[slot2], radius[slot2])
+	 */
+	double getTimeToCollision(int slot1, int slot2){
+		return getTimeToCollision(x[slot1], y[slot1], vx[slot1], vy[slot1], radius[slot1],
+				x[slot2], y[slot2], vx[slot2], vy[slot2], radius[slot2]);
+	}
+
+	/**
+	 * Return the distance between the centres of the entities in the given slots.
+	 *
+	 * @return	The distance between both centres.
+	 * 			| result == getDistanceBetweenCenters(x[slot1], y[slot1], x[slot2], y[slot2])
+	 */
+	double getDistanceBetweenCenters(int slot1, int slot2){
+		return getDistanceBetweenCenters(x[slot1], y[slot1], x[slot2], y[slot2]);
+	}
+
+	/**
+	 * Return the distance between the edges of the entities in the given slots.
+	 *
+	 * @return	The distance between both centres minus both radii.
+	 * 			| result == getDistanceBetweenCenters(slot1, slot2) - radius[slot1] - radius[slot2]
+	 */
+	double getDistanceBetweenEdges(int slot1, int slot2){
+		return getDistanceBetweenCenters(slot1, slot2) - radius[slot1] - radius[slot2];
+	}
+
+	/**
+	 * Check whether the swept circles of the entities in the given slots can meet within the given time.
+	 *
+	 * @param	slot1
+	 * 			The slot of the first entity to check.
+	 * @param	slot2
+	 * 			The slot of the second entity to check.
+	 * @param	horizon
+	 * 			The time within which the entities should meet.
+	 * @return	True if and only if the distance between the edges of both entities isn't bigger than
+	 * 			the distance they can close in on each other within the given time.
+	 * 			| result == (getDistanceBetweenEdges(slot1, slot2) <= 
+	 * 			|	Math.hypot(vx[slot2] - vx[slot1], vy[slot2] - vy[slot1]) * horizon)
+	 */
+	boolean canMeetWithin(int slot1, int slot2, double horizon){
+		if (horizon == Double.POSITIVE_INFINITY) return true;
+		double closingDistance = Math.hypot(vx[slot2] - vx[slot1], vy[slot2] - vy[slot1]) * horizon;
+		return getDistanceBetweenEdges(slot1, slot2) <= closingDistance;
+	}
+
+	/**
+	 * Check whether the entities in the given slots are approaching each other.
+	 *
+	 * @return	True if and only if the distance between both centres is decreasing.
+	 * 			| result == isApproaching(x[slot1], y[slot1], vx[slot1], vy[slot1], x[slot2], y[slot2], vx[slot2], vy[slot2])
+	 */
+	boolean isApproaching(int slot1, int slot2){
+		return isApproaching(x[slot1], y[slot1], vx[slot1], vy[slot1], x[slot2], y[slot2], vx[slot2], vy[slot2]);
+	}
+
+	/**
+	 * Return the x coordinate the entity in the given slot has at the given time of the scheduler of collisions,
+	 * if it keeps its velocity from the time up to which it has been moved.
+	 *
+	 * @return	| result == x[slot] + vx[slot] * (time - scheduleTime[slot])
+	 */
+	double getXAt(int slot, double time){
+		return x[slot] + vx[slot] * (time - scheduleTime[slot]);
+	}
+
+	/**
+	 * Return the y coordinate the entity in the given slot has at the given time of the scheduler of collisions,
+	 * if it keeps its velocity from the time up to which it has been moved.
+	 *
+	 * @return	| result == y[slot] + vy[slot] * (time - scheduleTime[slot])
+	 */
+	double getYAt(int slot, double time){
+		return y[slot] + vy[slot] * (time - scheduleTime[slot]);
+	}
+
+	/**
+	 * Return the time, from the given time of the scheduler of collisions, until the entities in the given slots collide.
+	 *
+	 * @return	The time until both entities collide, with each entity extrapolated to the given time.
+	 * 			| result == getTimeToCollision(getXAt(slot1, time), getYAt(slot1, time), vx[slot1], vy[slot1], radius[slot1],
+	 * 			|	getXAt(slot2, time), getYAt(slot2, time), vx[slot2], vy[slot2], radius[slot2])
+	 * @note	An entity which lags behind the scheduler is extrapolated rather than moved, so predicting a collision
+	 * 			with it doesn't change how often it is moved, nor the rounding errors that adds up to.
+	 */
+	double getTimeToCollisionAt(int slot1, int slot2, double time){
+		return getTimeToCollision(getXAt(slot1, time), getYAt(slot1, time), vx[slot1], vy[slot1], radius[slot1],
+				getXAt(slot2, time), getYAt(slot2, time), vx[slot2], vy[slot2], radius[slot2]);
+	}
+
+	/**
+	 * Return the distance between the edges of the entities in the given slots at the given time of the scheduler of collisions.
+	 *
+	 * @return	The distance between both centres minus both radii, with each entity extrapolated to the given time.
+	 * 			| result == getDistanceBetweenCenters(getXAt(slot1, time), getYAt(slot1, time), getXAt(slot2, time),
+	 * 			|	getYAt(slot2, time)) - radius[slot1] - radius[slot2]
+	 */
+	double getDistanceBetweenEdgesAt(int slot1, int slot2, double time){
+		return getDistanceBetweenCenters(getXAt(slot1, time), getYAt(slot1, time), getXAt(slot2, time), getYAt(slot2, time))
+				- radius[slot1] - radius[slot2];
+	}
+
+	/**
+	 * Check whether the swept circles of the entities in the given slots can meet within the given time after the
+	 * given time of the scheduler of collisions.
+	 *
+	 * @return	True if and only if the distance between the edges of both entities, extrapolated to the given time of
+	 * 			the scheduler, isn't bigger than the distance they can close in on each other within the given time.
+	 * 			| result == (getDistanceBetweenEdgesAt(slot1, slot2, time) <=
+	 * 			|	Math.hypot(vx[slot2] - vx[slot1], vy[slot2] - vy[slot1]) * within)
+	 */
+	boolean canMeetWithinAt(int slot1, int slot2, double time, double within){
+		if (within == Double.POSITIVE_INFINITY) return true;
+		double closingDistance = Math.hypot(vx[slot2] - vx[slot1], vy[slot2] - vy[slot1]) * within;
+		return getDistanceBetweenEdgesAt(slot1, slot2, time) <= closingDistance;
+	}
+
+	/**
+	 * Check whether the entities in the given slots are approaching each other at the given time of the scheduler of collisions.
+	 *
+	 * @return	True if and only if the distance between both centres is decreasing, with each entity extrapolated to the given time.
+	 * 			| result == isApproaching(getXAt(slot1, time), getYAt(slot1, time), vx[slot1], vy[slot1],
+	 * 			|	getXAt(slot2, time), getYAt(slot2, time), vx[slot2], vy[slot2])
+	 */
+	boolean isApproachingAt(int slot1, int slot2, double time){
+		return isApproaching(getXAt(slot1, time), getYAt(slot1, time), vx[slot1], vy[slot1],
+				getXAt(slot2, time), getYAt(slot2, time), vx[slot2], vy[slot2]);
+	}
+
+	/**
+	 * Return the time until a circle with the given position, velocity and radius collides with the
+	 * boundaries of a world with the given dimensions.
+	 *
+	 * @return	If the circle doesn't move, the result is positive infinity.
+	 * 			| if xVelocity == 0 && yVelocity == 0
+	 * 			|	then result == Double.POSITIVE_INFINITY
+	 * @return	Otherwise the result is the shortest time until the edge of the circle reaches a boundary
+	 * 			it is moving to.
+	 * 			| @ implementation
+	 */
+	static double getTimeToBoundary(double x, double y, double xVelocity, double yVelocity, double radius, double width, double height){
+		if (xVelocity == 0 && yVelocity == 0) return Double.POSITIVE_INFINITY;
+		double edgeX;
+		double edgeY;
+		double mX = 0;
+		double mY = 0;
+		if (xVelocity > 0){
+			edgeX = x + radius;
+			mX = width;
+		}
+		else edgeX = x - radius;
+		if (yVelocity > 0){
+			edgeY = y + radius;
+			mY = height;
+		}
+		else edgeY = y - radius;
+
+		double tX = Double.POSITIVE_INFINITY;
+		double tY = Double.POSITIVE_INFINITY;
+		if (xVelocity != 0) tX = (mX - edgeX) / xVelocity;
+		if (yVelocity != 0) tY = (mY - edgeY) / yVelocity;
+		return Math.min(tX, tY);
+	}
+
+	/**
+	 * Return the time until two circles with the given positions, velocities and radii collide.
+	 *
+	 * @return	If both circles follow an identical path, or if their paths never bring them in touch,
+	 * 			or if they are moving away from each other, the result is positive infinity.
+	 * 			| @ implementation
+	 * @return	If both circles already touch, the result is zero.
+	 * 			| @ implementation
+	 * @return	Otherwise the result is the smallest non negative time at which the distance between
+	 * 			both centres equals the sum of both radii.
+	 * 			| @ implementation
+	 */
+	static double getTimeToCollision(double x1, double y1, double xVelocity1, double yVelocity1, double radius1,
+			double x2, double y2, double xVelocity2, double yVelocity2, double radius2){
+		double a1 = xVelocity2 - xVelocity1;
+		double a2 = yVelocity2 - yVelocity1;
+		double a = Helper.square(a1) + Helper.square(a2);
+		if (a == 0.0) return Double.POSITIVE_INFINITY;
+
+		double b1 = x2 - x1;
+		double b2 = y2 - y1;
+		double b = 2 * ((b1 * a1) + (b2 * a2));
+		double s = radius1 + radius2;
+		double c = Helper.square(b1) + Helper.square(b2) - Helper.square(s);
+
+		double d = Helper.square(b) - (4 * a * c);
+		if (d < 0) return Double.POSITIVE_INFINITY;
+		double dt1 = (-b + Math.sqrt(d)) / (2 * a);
+		double dt2 = (-b - Math.sqrt(d)) / (2 * a);
+
+		if (dt1 < 0 && dt2 < 0) return Double.POSITIVE_INFINITY;
+		if ((dt1 <= 0 && dt2 >= 0) || (dt1 > 0 && dt2 < 0)) return 0;
+		double first = Math.min(dt1, dt2);
+		if (first >= 0) return first;
+		return Math.max(dt1, dt2);
+	}
+
+	/**
+	 * Return the distance between two centres with the given coordinates.
+	 *
+	 * @return	The euclidean distance between both centres.
+	 * 			| result == Math.sqrt(Helper.square(x2 - x1) + Helper.square(y2 - y1))
+	 */
+	static double getDistanceBetweenCenters(double x1, double y1, double x2, double y2){
+		return Math.sqrt(Helper.square(Math.abs(x2 - x1)) + Helper.square(Math.abs(y2 - y1)));
+	}
+
+	/**
+	 * Check whether two centres with the given positions and velocities are approaching each other.
+	 *
+	 * @return	True if and only if the distance between both centres is decreasing.
+	 * 			| result == ((x2 - x1) * (xVelocity2 - xVelocity1) + (y2 - y1) * (yVelocity2 - yVelocity1) < 0)
+	 */
+	static boolean isApproaching(double x1, double y1, double xVelocity1, double yVelocity1,
+			double x2, double y2, double xVelocity2, double yVelocity2){
+		return (x2 - x1) * (xVelocity2 - xVelocity1) + (y2 - y1) * (yVelocity2 - yVelocity1) < 0;
+	}
+
+	/**
+	 * Replace the arrays of this storage by arrays with the given capacity, keeping the stored entities.
+	 */
+	private void allocate(int capacity){
+		if (entities == null){
+			x = new double[capacity];
+			y = new double[capacity];
+			vx = new double[capacity];
+			vy = new double[capacity];
+			radius = new double[capacity];
+			mass = new double[capacity];
+			scheduleTime = new double[capacity];
+			scheduleEpoch = new long[capacity];
+			scheduleVersion = new int[capacity];
+			scheduled = new boolean[capacity];
+			marked = new boolean[capacity];
+			entities = new Entity[capacity];
+			return;
+		}
+		x = Arrays.copyOf(x, capacity);
+		y = Arrays.copyOf(y, capacity);
+		vx = Arrays.copyOf(vx, capacity);
+		vy = Arrays.copyOf(vy, capacity);
+		radius = Arrays.copyOf(radius, capacity);
+		mass = Arrays.copyOf(mass, capacity);
+		scheduleTime = Arrays.copyOf(scheduleTime, capacity);
+		scheduleEpoch = Arrays.copyOf(scheduleEpoch, capacity);
+		scheduleVersion = Arrays.copyOf(scheduleVersion, capacity);
+		scheduled = Arrays.copyOf(scheduled, capacity);
+		marked = Arrays.copyOf(marked, capacity);
+		entities = Arrays.copyOf(entities, capacity);
+	}
+
+	/**
+	 * Variable containing the number of slots in use.
+	 */
+	private int size = 0;
+
+	/**
+	 * Arrays containing the x and y coordinates of the stored entities.
+	 */
+	double[] x, y;
+
+	/**
+	 * Arrays containing the x and y velocities of the stored entities.
+	 */
+	double[] vx, vy;
+
+	/**
+	 * Array containing the radii of the stored entities.
+	 */
+	double[] radius;
+
+	/**
+	 * Array containing the masses of the stored entities.
+	 */
+	double[] mass;
+
+	/**
+	 * Array containing, for the scheduler of collisions, the time up to which each stored entity has been moved.
+	 */
+	double[] scheduleTime;
+
+	/**
+	 * Array containing, for the scheduler of collisions, the epoch in which each stored entity was last scheduled.
+	 * Predicted collisions carrying another epoch are stale.
+	 */
+	long[] scheduleEpoch;
+
+	/**
+	 * Array containing, for the scheduler of collisions, the trajectory version of each stored entity when it was last scheduled.
+	 */
+	int[] scheduleVersion;
+
+	/**
+	 * Array containing, for the scheduler of collisions, whether the collisions of each stored entity have been predicted.
+	 */
+	boolean[] scheduled;
+
+	/**
+	 * Array containing, for the scheduler of collisions, whether each stored entity is waiting to be rescheduled.
+	 */
+	boolean[] marked;
+
+	/**
+	 * Array containing the stored entities, indexed by their slot.
+	 */
+	private Entity[] entities;
+}
@@ -0,0 +1,76 @@
+package asteroids.model;
+
+import be.kuleuven.cs.som.annotate.*;
+
+/**
+ * An enumeration of the types of entities a world can contain.
+ * 	Each type has the name by which the entities of that type were identified before, so
+ * 	the type of an entity can be derived from its type name.
+ *
+ * @version 1.0
+ * @author 	Brent De Bleser & Jesse Geens
+ */
+public enum EntityType {
+
+	/**
+	 * The type of ships.
+	 */
+	SHIP("Ship"),
+
+	/**
+	 * The type of bullets.
+	 */
+	BULLET("Bullet"),
+
+	/**
+	 * The type of asteroids.
+	 */
+	ASTEROID("Asteroid"),
+
+	/**
+	 * The type of planetoids.
+	 */
+	PLANETOID("Planetoid");
+
+	/**
+	 * Initialize this type with the given name.
+	 */
+	private EntityType(String typeName){
+		this.typeName = typeName;
+	}
+
+	/**
+	 * Return the name of this type.
+	 */
+	@Basic @Immutable
+	public String getTypeName(){
+		return this.typeName;
+	}
+
+	/**
+	 * Variable containing the name of this type.
+	 */
+	private final String typeName;
+
+	/**
+	 * Return the type with the given name.
+	 *
+	 * @param 	typeName
+	 * 			The name of the type.
+	 * @return	The type whose name equals the given name, or null if there is none.
+	 * 			| if for some type in values() type.getTypeName().equals(typeName)
+	 * 			|	then result.getTypeName().equals(typeName)
+	 * 			|	else result == null
+	 */
+	public static EntityType fromTypeName(String typeName){
+		for (EntityType type : TYPES){
+			if (type.typeName.equals(typeName)) return type;
+		}
+		return null;
+	}
+
+	/**
+	 * Array containing every type, so looking up a type doesn't copy the values.
+	 */
+	private static final EntityType[] TYPES = values();
+}
@@ -0,0 +1,145 @@
+package asteroids.model;
+
+import be.kuleuven.cs.som.annotate.*;
+
+/**
+ * A class of summaries of a batch of evolution of a world, counting what happened during the batch.
+ *
+ * @invar	The time and the counts of a summary are never negative.
+ * 			| getTime() >= 0 && getNbSteps() >= 0 && getNbCollisions() >= 0
+ * 			|	&& getNbEntitiesAdded() >= 0 && getNbEntitiesRemoved() >= 0
+ *
+ * @version 1.0
+ * @author 	Brent De Bleser & Jesse Geens
+ */
+@Value
+public final class EvolveSummary {
+
+	/**
+	 * Initialize this new summary with the given time and counts.
+	 *
+	 * @param 	time
+	 * 			The time over which the world has evolved.
+	 * @param 	nbSteps
+	 * 			The number of steps of the batch.
+	 * @param 	nbCollisions
+	 * 			The number of collisions which have been resolved.
+	 * @param 	nbEntitiesAdded
+	 * 			The number of entities which have been added to the world.
+	 * @param 	nbEntitiesRemoved
+	 * 			The number of entities which have been removed from the world.
+	 * @post	The time and counts of this summary are the given ones.
+	 * 			| new.getTime() == time && new.getNbSteps() == nbSteps && new.getNbCollisions() == nbCollisions
+	 * 			|	&& new.getNbEntitiesAdded() == nbEntitiesAdded && new.getNbEntitiesRemoved() == nbEntitiesRemoved
+	 */
+	EvolveSummary(double time, int nbSteps, long nbCollisions, long nbEntitiesAdded, long nbEntitiesRemoved){
+		this.time = time;
+		this.nbSteps = nbSteps;
+		this.nbCollisions = nbCollisions;
+		this.nbEntitiesAdded = nbEntitiesAdded;
+		this.nbEntitiesRemoved = nbEntitiesRemoved;
+	}
+
+	/**
+	 * Return the time over which the world has evolved during the batch.
+	 */
+	@Basic @Immutable
+	public double getTime(){
+		return this.time;
+	}
+
+	/**
+	 * Return the number of steps of the batch.
+	 */
+	@Basic @Immutable
+	public int getNbSteps(){
+		return this.nbSteps;
+	}
+
+	/**
+	 * Return the number of collisions resolved during the batch.
+	 */
+	@Basic @Immutable
+	public long getNbCollisions(){
+		return this.nbCollisions;
+	}
+
+	/**
+	 * Return the number of entities added to the world during the batch, such as fired bullets and spawned asteroids.
+	 */
+	@Basic @Immutable
+	public long getNbEntitiesAdded(){
+		return this.nbEntitiesAdded;
+	}
+
+	/**
+	 * Return the number of entities removed from the world during the batch, such as terminated entities.
+	 */
+	@Basic @Immutable
+	public long getNbEntitiesRemoved(){
+		return this.nbEntitiesRemoved;
+	}
+
+	/**
+	 * Return a summary of this batch followed by the given batch.
+	 *
+	 * @param 	other
+	 * 			The summary to add to this summary.
+	 * @return	A summary whose time and counts are the sums of those of both summaries.
+	 * 			| result.getTime() == getTime() + other.getTime() && result.getNbSteps() == getNbSteps() + other.getNbSteps()
+	 * 			|	&& result.getNbCollisions() == getNbCollisions() + other.getNbCollisions()
+	 * 			|	&& result.getNbEntitiesAdded() == getNbEntitiesAdded() + other.getNbEntitiesAdded()
+	 * 			|	&& result.getNbEntitiesRemoved() == getNbEntitiesRemoved() + other.getNbEntitiesRemoved()
+	 * @throws	IllegalArgumentException
+	 * 			The other summary isn't effective.
+	 * 			| other == null
+	 */
+	public EvolveSummary add(EvolveSummary other) throws IllegalArgumentException{
+		if (other == null) throw new IllegalArgumentException("Invalid summary @ EvolveSummary");
+		return new EvolveSummary(time + other.time, nbSteps + other.nbSteps, nbCollisions + other.nbCollisions,
+				nbEntitiesAdded + other.nbEntitiesAdded, nbEntitiesRemoved + other.nbEntitiesRemoved);
+	}
+
+	/**
+	 * Constant containing the summary of an empty batch.
+	 */
+	public static final EvolveSummary NONE = new EvolveSummary(0, 0, 0, 0, 0);
+
+	/**
+	 * Check whether this summary is equal to the given object.
+	 *
+	 * @return 	True if and only if the object is a summary with the same time and counts.
+	 * 			| @ implementation
+	 */
+	@Override
+	public boolean equals(Object other){
+		if (other == null) return false;
+		if (this.getClass() != other.getClass()) return false;
+		EvolveSummary summary = (EvolveSummary) other;
+		return this.time == summary.time && this.nbSteps == summary.nbSteps && this.nbCollisions == summary.nbCollisions
+				&& this.nbEntitiesAdded == summary.nbEntitiesAdded && this.nbEntitiesRemoved == summary.nbEntitiesRemoved;
+	}
+
+	/**
+	 * Return the hash code of this summary.
+	 */
+	@Override
+	public int hashCode(){
+		return Double.hashCode(time) * 31 + Long.hashCode(nbCollisions) * 17 + nbSteps;
+	}
+
+	/**
+	 * Return a textual representation of this summary.
+	 */
+	@Override
+	public String toString(){
+		return "[EvolveSummary: " + nbSteps + " steps over " + time + ", " + nbCollisions + " collisions, "
+				+ nbEntitiesAdded + " added, " + nbEntitiesRemoved + " removed]";
+	}
+
+	private final double time;
+	private final int nbSteps;
+	private final long nbCollisions;
+	private final long nbEntitiesAdded;
+	private final long nbEntitiesRemoved;
+}
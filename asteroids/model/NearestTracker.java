@@ -0,0 +1,252 @@
+package asteroids.model;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+import be.kuleuven.cs.som.annotate.*;
+
+/**
+ * A class of trackers of the nearest entity of a given type to each ship of a world.
+ * 	The nearest entity found for a ship is kept together with a kinetic certificate: the gap between
+ * 	the distance to the nearest entity and the distance to the second nearest one. Between two changes of
+ * 	the world no entity moves faster than the largest speed seen in the world, so no distance changes by more
+ * 	than twice that speed per unit of time, and the nearest entity can't change before four times the speed
+ * 	times the elapsed time reaches the gap. Only then, or when an entity of the type is added, removed or
+ * 	placed elsewhere, the nearest entity is searched again.
+ *
+ * @invar	The largest speed of the tracker never decreases.
+ * 			| new.getMaxSpeed() >= getMaxSpeed()
+ *
+ * @version 1.0
+ * @author 	Brent De Bleser & Jesse Geens
+ */
+class NearestTracker {
+
+	/**
+	 * Return the largest speed of an entity seen by this tracker.
+	 */
+	@Basic
+	double getMaxSpeed(){
+		return this.maxSpeed;
+	}
+
+	/**
+	 * Variable containing the largest speed of an entity seen by this tracker.
+	 */
+	private double maxSpeed = 0;
+
+	/**
+	 * Return the certificate of the nearest entity of the given type to the given ship, creating it if needed.
+	 *
+	 * @param 	ship
+	 * 			The ship to track.
+	 * @param 	type
+	 * 			The type of the entities to track.
+	 * @return	A certificate for the ship and type, which is out of date if it was just created.
+	 * 			| result.getShip() == ship && result.getType() == type
+	 */
+	Certificate getCertificate(Ship ship, Class<? extends Entity> type){
+		Map<Class<?>, Certificate> certificates = observers.get(ship);
+		if (certificates == null){
+			certificates = new HashMap<Class<?>, Certificate>();
+			observers.put(ship, certificates);
+		}
+		Certificate certificate = certificates.get(type);
+		if (certificate == null){
+			certificate = new Certificate(ship, type, getKind(type));
+			certificates.put(type, certificate);
+		}
+		return certificate;
+	}
+
+	/**
+	 * Check whether the given certificate still holds at the given time.
+	 *
+	 * @param 	certificate
+	 * 			The certificate to check.
+	 * @param 	time
+	 * 			The current time of the world.
+	 * @return	True if and only if no entity of the type has been added, removed or placed since the certificate
+	 * 			was renewed, and the distances can't have changed enough to swap the nearest entity.
+	 * 			| result == (certificate.version == version of its type) &&
+	 * 			|	4 * getMaxSpeed() * (time - certificate.time) <= certificate.gap
+	 */
+	boolean isValid(Certificate certificate, double time){
+		return certificate.version == certificate.kind.version
+				&& 4 * maxSpeed * (time - certificate.time) <= certificate.gap;
+	}
+
+	/**
+	 * Search the nearest entity of the certificate again.
+	 *
+	 * @param 	certificate
+	 * 			The certificate to renew.
+	 * @param 	time
+	 * 			The current time of the world.
+	 * @param 	tree
+	 * 			The tree of bounding boxes of the world, containing up to date entities.
+	 * @post	The certificate holds the nearest entity of its type to its ship, and the gap to the second
+	 * 			nearest one, or an infinite gap if there is no second one.
+	 * 			| @ implementation
+	 * @post	The certificate holds at the given time.
+	 * 			| isValid(certificate, time)
+	 */
+	void renew(Certificate certificate, double time, AabbTree tree){
+		Ship ship = certificate.ship;
+		double x = ship.getX(), y = ship.getY();
+		found.clear();
+		tree.nearest(x, y, 2, certificate.predicate, found);
+		certificate.nearest = found.isEmpty() ? null : found.get(0);
+		if (found.size() < 2) certificate.gap = Double.POSITIVE_INFINITY;
+		else certificate.gap = Math.hypot(found.get(1).getX() - x, found.get(1).getY() - y)
+				- Math.hypot(found.get(0).getX() - x, found.get(0).getY() - y);
+		certificate.time = time;
+		certificate.version = certificate.kind.version;
+		found.clear();
+	}
+
+	/**
+	 * Register that the given entity has been added to the world.
+	 *
+	 * @effect	The speed of the entity is registered.
+	 * 			| speedChanged(entity)
+	 * @effect	The entity is registered as placed.
+	 * 			| entityPlaced(entity)
+	 */
+	void entityAdded(Entity entity){
+		speedChanged(entity);
+		entityPlaced(entity);
+	}
+
+	/**
+	 * Register that the given entity has been removed from the world.
+	 *
+	 * @effect	The entity is registered as placed.
+	 * 			| entityPlaced(entity)
+	 */
+	void entityRemoved(Entity entity){
+		entityPlaced(entity);
+	}
+
+	/**
+	 * Register that the given entity got a position it didn't reach by moving.
+	 *
+	 * @post	Every certificate for a type of the entity is out of date.
+	 * 			| @ implementation
+	 * @post	The certificates for the entity as a ship are forgotten.
+	 * 			| @ implementation
+	 */
+	void entityPlaced(Entity entity){
+		for (int i = 0; i < kinds.size(); i++){
+			Kind kind = kinds.get(i);
+			if (kind.type.isInstance(entity)) kind.version++;
+		}
+		observers.remove(entity);
+	}
+
+	/**
+	 * Register that the velocity of the given entity has changed.
+	 *
+	 * @post	The largest speed covers the speed of the entity.
+	 * 			| new.getMaxSpeed() == Math.max(getMaxSpeed(), speed of entity)
+	 */
+	void speedChanged(Entity entity){
+		double speed = Math.hypot(entity.getVX(), entity.getVY());
+		if (speed > maxSpeed) maxSpeed = speed;
+	}
+
+	/**
+	 * Forget all certificates of this tracker.
+	 */
+	void clear(){
+		observers.clear();
+		for (int i = 0; i < kinds.size(); i++) kinds.get(i).version++;
+	}
+
+	/**
+	 * Return the kind of the given type, creating it if needed.
+	 */
+	private Kind getKind(Class<? extends Entity> type){
+		for (int i = 0; i < kinds.size(); i++){
+			if (kinds.get(i).type == type) return kinds.get(i);
+		}
+		Kind kind = new Kind(type);
+		kinds.add(kind);
+		return kind;
+	}
+
+	/**
+	 * Map containing the certificates of each tracked ship, by type.
+	 */
+	private final Map<Entity, Map<Class<?>, Certificate>> observers = new HashMap<Entity, Map<Class<?>, Certificate>>();
+
+	/**
+	 * List containing the kinds of every tracked type.
+	 */
+	private final List<Kind> kinds = new ArrayList<Kind>();
+
+	/**
+	 * List used to collect the result of a search.
+	 */
+	private final List<Entity> found = new ArrayList<Entity>();
+
+	/**
+	 * A class of tracked types, with a version that changes whenever an entity of the type is added, removed or placed.
+	 */
+	private static final class Kind {
+
+		private Kind(Class<? extends Entity> type){
+			this.type = type;
+		}
+
+		private final Class<? extends Entity> type;
+		private long version = 0;
+	}
+
+	/**
+	 * A class of certificates of the nearest entity of a type to a ship.
+	 */
+	static final class Certificate {
+
+		private Certificate(Ship ship, Class<? extends Entity> type, Kind kind){
+			this.ship = ship;
+			this.type = type;
+			this.kind = kind;
+			this.predicate = entity -> type.isInstance(entity) && entity != ship;
+			this.version = kind.version - 1;
+		}
+
+		/**
+		 * Return the ship of this certificate.
+		 */
+		@Basic @Immutable
+		Ship getShip(){
+			return this.ship;
+		}
+
+		/**
+		 * Return the type of the entities of this certificate.
+		 */
+		@Basic @Immutable
+		Class<? extends Entity> getType(){
+			return this.type;
+		}
+
+		/**
+		 * Return the nearest entity found when this certificate was last renewed, or null if there was none.
+		 */
+		@Basic
+		Entity getNearest(){
+			return this.nearest;
+		}
+
+		private final Ship ship;
+		private final Class<? extends Entity> type;
+		private final Kind kind;
+		private final Predicate<Entity> predicate;
+		private Entity nearest = null;
+		private double gap = 0;
+		private double time = 0;
+		private long version;
+	}
+}
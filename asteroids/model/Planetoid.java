@@ -78,6 +78,8 @@ public class Planetoid extends MinorPlanet{
 	 * 			The distance to set as the new total distance traveled.
 	 * @post 	The new total distance traveled is set to the given distance.
 	 * 			| new.totalDistanceTraveled = distance
+	 * @effect	The radius of the planetoid has changed.
+	 * 			| radiusChanged()
 	 * @throws	IllegalArgumentException
 	 * 			Throws an IllegalArgumentException if the given distance isn't a valid double.
 	 * 			| !Helper.isValidDouble(distance)
@@ -85,6 +87,7 @@ public class Planetoid extends MinorPlanet{
 	private void setTotalDistanceTraveled(double distance){
 		if(!Helper.isValidDouble(distance)) throw new IllegalArgumentException("Total distance traveled isn't a valid double @ setTotalDistanceTraveled)");
 		this.totalDistanceTraveled = distance;
+		radiusChanged();
 	}
 	
 	/**
@@ -96,19 +99,29 @@ public class Planetoid extends MinorPlanet{
 	/**
 	 * Method to terminate a planetoid.
 	 * 
-	 * @effect	If the planetoid is in a world and it's radius is bigger or equal to 30
-	 * 			the planetoids spawns 2 new asteroids.
-	 * 		 	| if (this.getRadius()>= 30 && getSuperWorld() != null)
-	 * 		 	|    then spawnAsteroidTerminate(this.world)
 	 * @effect	The planetoid is terminated on the level of it's superclass.
 	 * 		 	|     super.terminate()
+	 * @effect	If the planetoid was in a world and it's radius is bigger or equal to 30
+	 * 			the planetoids spawns 2 new asteroids in that world, once it has left it.
+	 * 		 	| if (this.getRadius()>= 30 && getSuperWorld() != null)
+	 * 		 	|    then spawnAsteroids(getSuperWorld(), createAsteroids(getSuperWorld()))
+	 * @effect	If the planetoid is in a world, the termination is an action of the planetoid in it, so the
+	 * 			spawned asteroids follow from it.
+	 * 			| if getSuperWorld() != null
+	 * 			|	then getSuperWorld().beginAction(this, ReplayFormat.TERMINATE, 0)
 	 */
  	@Override 
  	public void terminate() {
- 		if (getRadius() >= 30 && getSuperWorld() != null) {
- 			spawnAsteroids(getSuperWorld());
-		}
-		super.terminate();
+ 		World world = getSuperWorld();
+ 		if (world != null) world.beginAction(this, ReplayFormat.TERMINATE, 0);
+ 		try{
+	 		Asteroid[] asteroids = getRadius() >= 30 && world != null ? createAsteroids(world) : null;
+			super.terminate();
+			if (asteroids != null) spawnAsteroids(world, asteroids);
+ 		}
+ 		finally{
+ 			if (world != null) world.endAction();
+ 		}
  	}
 	
  	/**
@@ -139,7 +152,7 @@ public class Planetoid extends MinorPlanet{
         else{
             try {
             	super.move(dt);
-            	setTotalDistanceTraveled(getTotalDistanceTraveled() + this.velocity.getTotalVelocity()*dt);
+            	setTotalDistanceTraveled(getTotalDistanceTraveled() + Math.hypot(getVX(), getVY())*dt);
             	if (!this.isValidRadius(getRadius())) this.terminate();
                 }
             catch (IllegalArgumentException ex){
@@ -156,22 +169,45 @@ public class Planetoid extends MinorPlanet{
      */
     @Override @Raw
     public double getRadius(){
-    	return (super.getRadius() - 0.000001*getTotalDistanceTraveled());
+    	long version = getStateVersion();
+    	if (this.radiusVersion != version){
+    		this.radius = super.getRadius() - 0.000001*getTotalDistanceTraveled();
+    		this.radiusVersion = version;
+    	}
+    	return this.radius;
+    }
+    
+    /**
+     * Variables containing the last computed radius of the planetoid, and the state version for which it was computed.
+     * 
+     * @note The distance traveled only changes together with the state version, so the radius is only
+     *       computed again once the planetoid has moved. The version is written after the radius, so a thread
+     *       which finds the current version also finds the radius computed for it.
+     */
+    private double radius;
+    private volatile long radiusVersion = 0;
+    
+    /**
+     * Return the radius of the planetoid before it traveled any distance.
+     */
+    @Basic @Raw @Immutable
+    double getStartRadius(){
+    	return super.getRadius();
     }
     
     
     /**
-     * A method which calculates the arguments for the constructors of the two asteroids which could spawn from a dead planetoid. And spawns them in the proper world.
+     * A method which calculates the arguments for the constructors of the two asteroids which could spawn from a dead planetoid.
      * 
      * @param 	world
      * 			The world in which the newly created asteroids must spawn.
-     * @post	Two new asteroids are created with half the radius of the original planetoid.
+     * @return	Two new asteroids are created with half the radius of the original planetoid.
      * 			The direction of the velocity of the first asteroid is determined at random. The other asteroid moves
 	 *			in the opposite direction. The speed of their velocities is 1.5 times the speed
 	 *			of the planetoid. Finally, both asteroids are placed at a distance r/2 (where
 	 *			r is the radius of the planetoid) from the center of the planetoid. The
 	 *			centres of the planetoid and of both asteroids should lie on a single line.
-	 *			| double asteroidDirection = 2 * Math.PI * Math.random() 
+	 *			| double asteroidDirection = 2 * Math.PI * world.nextRandom() 
 	 *			| double totalVelocity = 1.5 *  Math.sqrt(Helper.square(this.getVelocity()[0]) + Helper.square(this.getVelocity()[1]))
 	 *			| double asteroidRadius = getRadius()/2
 	 *			|
@@ -187,13 +223,13 @@ public class Planetoid extends MinorPlanet{
 	 *			|
 	 *			| Asteroid asteroid1 = new Asteroid(XPositionAsteroid1, YPositionAsteroid1, XVelocityAsteroid1, YVelocityAsteroid1, asteroidRadius)
 	 *			| Asteroid asteroid2 = new Asteroid(XPositionAsteroid2, YPositionAsteroid2, XVelocityAsteroid2, YVelocityAsteroid2, asteroidRadius)
-	 * @effect	The asteroids are spawned in world.
-	 * 			| world.addEntityToWorld(asteroid1)
-	 * 			| world.addEntityToWorld(asteroid2)
+	 *			| result == {asteroid1, asteroid2}
+	 * @note	The direction is drawn from the random numbers of the world, so a replay spawns the same asteroids.
+	 * @note	If the world has a pool, the asteroids are taken from it instead of created.
      */	
-    private void spawnAsteroids(World world){
+    private Asteroid[] createAsteroids(World world){
     	
-		double asteroidDirection = 2 * Math.PI * Math.random(); 
+		double asteroidDirection = 2 * Math.PI * world.nextRandom(); 
 		double totalVelocity = 1.5 *  Math.sqrt(Helper.square(this.getVelocity()[0]) + Helper.square(this.getVelocity()[1]));
 		double asteroidRadius = getRadius()/2;
 		
@@ -207,10 +243,43 @@ public class Planetoid extends MinorPlanet{
 		double XVelocityAsteroid2 = -totalVelocity * Math.cos(asteroidDirection);
 		double YVelocityAsteroid2 = -totalVelocity * Math.sin(asteroidDirection);		
 		
+		EntityPool pool = world.getEntityPool();
+		if (pool != null) return new Asteroid[]{
+				pool.obtainAsteroid(XPositionAsteroid1, YPositionAsteroid1, XVelocityAsteroid1, YVelocityAsteroid1, asteroidRadius),
+				pool.obtainAsteroid(XPositionAsteroid2, YPositionAsteroid2, XVelocityAsteroid2, YVelocityAsteroid2, asteroidRadius)};
 		Asteroid asteroid1 = new Asteroid(XPositionAsteroid1, YPositionAsteroid1, XVelocityAsteroid1, YVelocityAsteroid1, asteroidRadius);
 		Asteroid asteroid2 = new Asteroid(XPositionAsteroid2, YPositionAsteroid2, XVelocityAsteroid2, YVelocityAsteroid2, asteroidRadius);
-		world.addEntityToWorld(asteroid1);
-		world.addEntityToWorld(asteroid2);
-    	
+		return new Asteroid[]{asteroid1, asteroid2};
+    }
+    
+    /**
+     * Spawn the given asteroids in the given world, each at its own position if it is free, or else at a free
+     * position nearby.
+     * 
+     * @param	world
+     * 			The world in which the asteroids must spawn.
+     * @param	asteroids
+     * 			The asteroids to spawn.
+     * @effect	Each asteroid for which a free position is found within its radius from its own position is put
+     * 			there and added to the world. Any other asteroid is terminated, since there is no room for it, and offered
+     * 			to the pool of the world.
+     * 			| for each asteroid in asteroids
+     * 			|	let position = world.findFreePosition(asteroid.getX(), asteroid.getY(), asteroid.getRadius(), asteroid.getRadius(), null)
+     * 			|	if position == null
+     * 			|		then asteroid.terminate() && world.entityTerminated(asteroid)
+     * 			|	else asteroid.setPosition(position[0], position[1])
+     * 			|		 world.addEntityToWorld(asteroid)
+     */
+    private static void spawnAsteroids(World world, Asteroid[] asteroids){
+    	for (Asteroid asteroid : asteroids){
+    		double[] position = world.findFreePosition(asteroid.getX(), asteroid.getY(), asteroid.getRadius(), asteroid.getRadius(), null);
+    		if (position == null){
+    			asteroid.terminate();
+    			world.entityTerminated(asteroid);
+    			continue;
+    		}
+    		if (position[0] != asteroid.getX() || position[1] != asteroid.getY()) asteroid.setPosition(position[0], position[1]);
+    		world.addEntityToWorld(asteroid);
+    	}
     }
 }
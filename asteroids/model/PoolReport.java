@@ -0,0 +1,139 @@
+package asteroids.model;
+
+import java.util.List;
+import java.util.Map;
+
+import be.kuleuven.cs.som.annotate.*;
+
+/**
+ * A class of reports of a run of a world pool, holding what happened to each world and how fast the pool went.
+ *
+ * @invar	A report holds a summary, an outcome and a failure for each of its worlds.
+ * 			| getSummaries().size() == getNbWorlds() && getOutcomes().size() == getNbWorlds()
+ * @invar	The time of a report is never negative.
+ * 			| getTime() >= 0
+ *
+ * @version 1.0
+ * @author 	Brent De Bleser & Jesse Geens
+ */
+@Value
+public final class PoolReport<R> {
+
+	/**
+	 * Initialize this new report with the given summaries, outcomes, failures and program times of the worlds, and
+	 * the given time.
+	 *
+	 * @post	| new.getSummaries() == summaries && new.getOutcomes() == outcomes && new.getTime() == time
+	 */
+	PoolReport(List<EvolveSummary> summaries, List<R> outcomes, List<RuntimeException> failures,
+			List<Map<Program, Long>> programTimes, double time){
+		this.summaries = summaries;
+		this.outcomes = outcomes;
+		this.failures = failures;
+		this.programTimes = programTimes;
+		this.time = time;
+		EvolveSummary total = EvolveSummary.NONE;
+		for (EvolveSummary summary : summaries) total = total.add(summary);
+		this.total = total;
+	}
+
+	/**
+	 * Return the number of worlds of this report.
+	 */
+	@Basic @Immutable
+	public int getNbWorlds(){
+		return this.summaries.size();
+	}
+
+	/**
+	 * Return the summaries of the worlds, in the order in which the worlds were given to the pool.
+	 */
+	@Basic @Immutable
+	public List<EvolveSummary> getSummaries(){
+		return this.summaries;
+	}
+
+	/**
+	 * Return the outcomes of the worlds, being null for a world which failed.
+	 */
+	@Basic @Immutable
+	public List<R> getOutcomes(){
+		return this.outcomes;
+	}
+
+	/**
+	 * Return the exception which stopped the world with the given index, or null if the world didn't fail.
+	 *
+	 * @throws	IndexOutOfBoundsException
+	 * 			| index < 0 || index >= getNbWorlds()
+	 */
+	@Basic @Immutable
+	public RuntimeException getFailure(int index) throws IndexOutOfBoundsException{
+		return this.failures.get(index);
+	}
+
+	/**
+	 * Return the processor time spent in each program of the world with the given index, in nanoseconds.
+	 *
+	 * @throws	IndexOutOfBoundsException
+	 * 			| index < 0 || index >= getNbWorlds()
+	 */
+	@Basic @Immutable
+	public Map<Program, Long> getProgramTimes(int index) throws IndexOutOfBoundsException{
+		return this.programTimes.get(index);
+	}
+
+	/**
+	 * Return the number of worlds which failed.
+	 *
+	 * @return	| result == count of index in 0..getNbWorlds()-1 with getFailure(index) != null
+	 */
+	public int getNbFailures(){
+		int count = 0;
+		for (RuntimeException failure : failures) if (failure != null) count++;
+		return count;
+	}
+
+	/**
+	 * Return the summary of all worlds together.
+	 *
+	 * @return	| result == the sum of getSummaries()
+	 */
+	@Basic @Immutable
+	public EvolveSummary getTotal(){
+		return this.total;
+	}
+
+	/**
+	 * Return the number of seconds the pool took to evolve the worlds.
+	 */
+	@Basic @Immutable
+	public double getTime(){
+		return this.time;
+	}
+
+	/**
+	 * Return the number of steps the pool made per second over all worlds.
+	 *
+	 * @return	| result == getTotal().getNbSteps() / getTime()
+	 */
+	public double getWorldTicksPerSecond(){
+		return time == 0 ? 0 : total.getNbSteps() / time;
+	}
+
+	/**
+	 * Return a textual representation of this report.
+	 */
+	@Override
+	public String toString(){
+		return "[PoolReport: " + getNbWorlds() + " worlds, " + total.getNbSteps() + " world-ticks in " + time + " s ("
+				+ getWorldTicksPerSecond() + " /s), " + getNbFailures() + " failures]";
+	}
+
+	private final List<EvolveSummary> summaries;
+	private final List<R> outcomes;
+	private final List<RuntimeException> failures;
+	private final List<Map<Program, Long>> programTimes;
+	private final EvolveSummary total;
+	private final double time;
+}
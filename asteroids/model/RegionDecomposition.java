@@ -0,0 +1,202 @@
+package asteroids.model;
+
+import java.util.Arrays;
+
+import be.kuleuven.cs.som.annotate.*;
+
+/**
+ * A class of decompositions of a world into vertical strips, called regions, each owned by a single worker.
+ * 	The borders between the regions are chosen from a histogram of the x coordinates of the entities, so every
+ * 	region owns about as many entities as the others, however the entities are spread over the world.
+ * 	The entities are assigned to their regions in bulk, so entities which have crossed a border since the last
+ * 	assignment migrate to their new region all at once. The slots owned by a region are kept in increasing order.
+ *
+ * @invar	A decomposition has at least one region.
+ * 			| getNbRegions() >= 1
+ * @invar	After an assignment, every slot is owned by exactly one region.
+ * 			| for each slot in 0..getNbSlots()-1
+ * 			|	getSlots(getRegion(slot)) contains slot
+ *
+ * @version 1.0
+ * @author 	Brent De Bleser & Jesse Geens
+ */
+class RegionDecomposition {
+
+	/**
+	 * Constant containing the number of bins of the histogram from which the borders are chosen.
+	 */
+	private final static int NB_BINS = 1024;
+
+	/**
+	 * Create a new decomposition into the given number of regions, without any assigned slots.
+	 *
+	 * @param 	nbRegions
+	 * 			The number of regions.
+	 * @post	| new.getNbRegions() == nbRegions && new.getNbSlots() == 0
+	 * @throws	IllegalArgumentException
+	 * 			The number of regions isn't positive.
+	 * 			| nbRegions <= 0
+	 */
+	@Raw
+	RegionDecomposition(int nbRegions) throws IllegalArgumentException{
+		if (nbRegions <= 0) throw new IllegalArgumentException("Invalid number of regions @ RegionDecomposition");
+		this.nbRegions = nbRegions;
+		this.slots = new int[nbRegions][0];
+		this.nbOwned = new int[nbRegions];
+		this.borders = new double[nbRegions - 1];
+	}
+
+	/**
+	 * Return the number of regions of this decomposition.
+	 */
+	@Basic @Immutable
+	int getNbRegions(){
+		return this.nbRegions;
+	}
+
+	private final int nbRegions;
+
+	/**
+	 * Return the number of slots assigned by the last assignment.
+	 */
+	@Basic
+	int getNbSlots(){
+		return this.nbSlots;
+	}
+
+	private int nbSlots = 0;
+
+	/**
+	 * Return the region owning the given slot.
+	 *
+	 * @throws	IndexOutOfBoundsException
+	 * 			| slot < 0 || slot >= getNbSlots()
+	 */
+	@Basic
+	int getRegion(int slot) throws IndexOutOfBoundsException{
+		if (slot < 0 || slot >= nbSlots) throw new IndexOutOfBoundsException("Invalid slot @ RegionDecomposition");
+		return this.owner[slot];
+	}
+
+	/**
+	 * Return the number of slots owned by the given region.
+	 */
+	@Basic
+	int getNbOwned(int region){
+		return this.nbOwned[region];
+	}
+
+	/**
+	 * Return the slots owned by the given region, in increasing order. Only the first getNbOwned(region)
+	 * elements of the result are valid.
+	 */
+	@Basic
+	int[] getSlots(int region){
+		return this.slots[region];
+	}
+
+	/**
+	 * Return the x coordinate of the border between the given region and the next one.
+	 *
+	 * @throws	IndexOutOfBoundsException
+	 * 			| index < 0 || index >= getNbRegions() - 1
+	 */
+	@Basic
+	double getBorder(int index) throws IndexOutOfBoundsException{
+		return this.borders[index];
+	}
+
+	/**
+	 * Return the number of slots which changed region at the last assignment.
+	 */
+	@Basic
+	int getNbMigrations(){
+		return this.nbMigrations;
+	}
+
+	private int nbMigrations = 0;
+
+	/**
+	 * Choose the borders of the regions for the given entities, and assign every entity to the region
+	 * containing its centre.
+	 *
+	 * @param 	store
+	 * 			The storage holding the entities.
+	 * @post	Every slot of the storage is owned by the region between whose borders its centre lies.
+	 * 			| new.getNbSlots() == store.getNbEntities()
+	 * 			| for each slot in 0..store.getNbEntities()-1
+	 * 			|	(new.getRegion(slot) == 0 || new.getBorder(new.getRegion(slot) - 1) <= store.x[slot])
+	 * 			|	&& (new.getRegion(slot) == getNbRegions() - 1 || store.x[slot] < new.getBorder(new.getRegion(slot)))
+	 * @post	The borders split the entities in regions of about the same size.
+	 * 			| @ implementation
+	 * @post	The slots which are owned by another region than before are counted as migrations.
+	 * 			| @ implementation
+	 */
+	void assign(EntityStore store){
+		int nbEntities = store.getNbEntities();
+		double[] x = store.x;
+		double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+		for (int slot = 0; slot < nbEntities; slot++){
+			min = Math.min(min, x[slot]);
+			max = Math.max(max, x[slot]);
+		}
+		double scale = max > min ? NB_BINS / (max - min) : 0;
+
+		Arrays.fill(histogram, 0);
+		for (int slot = 0; slot < nbEntities; slot++) histogram[getBin(x[slot], min, scale)]++;
+		int region = 0, count = 0;
+		for (int bin = 0; bin < NB_BINS; bin++){
+			binRegion[bin] = region;
+			count += histogram[bin];
+			while (region < nbRegions - 1 && count >= (long) (region + 1) * nbEntities / nbRegions){
+				borders[region] = scale == 0 ? max : min + (bin + 1) / scale;
+				region++;
+			}
+		}
+		for (; region < nbRegions - 1; region++) borders[region] = max;
+
+		if (owner.length < nbEntities) owner = Arrays.copyOf(owner, Math.max(nbEntities, 2 * owner.length));
+		Arrays.fill(nbOwned, 0);
+		nbMigrations = 0;
+		for (int slot = 0; slot < nbEntities; slot++){
+			int current = binRegion[getBin(x[slot], min, scale)];
+			if (slot < nbSlots && owner[slot] != current) nbMigrations++;
+			owner[slot] = current;
+			nbOwned[current]++;
+		}
+		for (int i = 0; i < nbRegions; i++){
+			if (slots[i].length < nbOwned[i]) slots[i] = new int[Math.max(nbOwned[i], 2 * slots[i].length)];
+		}
+		Arrays.fill(nbOwned, 0);
+		for (int slot = 0; slot < nbEntities; slot++) slots[owner[slot]][nbOwned[owner[slot]]++] = slot;
+		nbSlots = nbEntities;
+	}
+
+	/**
+	 * Return the bin of the histogram containing the given coordinate.
+	 */
+	private static int getBin(double x, double min, double scale){
+		return Math.min(NB_BINS - 1, (int) ((x - min) * scale));
+	}
+
+	/**
+	 * Arrays containing the number of entities in each bin, and the region each bin belongs to.
+	 */
+	private final int[] histogram = new int[NB_BINS], binRegion = new int[NB_BINS];
+
+	/**
+	 * Array containing the x coordinates of the borders between consecutive regions.
+	 */
+	private final double[] borders;
+
+	/**
+	 * Array containing the region owning each slot.
+	 */
+	private int[] owner = new int[0];
+
+	/**
+	 * Arrays containing the slots owned by each region, and the number of slots each region owns.
+	 */
+	private final int[][] slots;
+	private final int[] nbOwned;
+}
@@ -0,0 +1,154 @@
+package asteroids.model;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A class collecting the layout of the replay logs written by replay recorders and read by replayers.
+ * 	A log starts with a header holding the dimensions and broad phase of the recorded world, followed by a keyframe
+ * 	of the world as it was when the recording started. Every call changing the world is then recorded in a record
+ * 	starting with a tag. Entities are referred to by their id, the number of entities added to the world before
+ * 	them, and ids and times are written as the difference with the previous one in variable-length integers.
+ * 	Every given number of ticks a keyframe holds the whole state of the world again, and the differences start
+ * 	over, so a replay can start at any keyframe. A log which is closed properly ends with an index of its keyframes
+ * 	and a footer pointing to it.
+ *
+ * @version 1.0
+ * @author 	Brent De Bleser & Jesse Geens
+ */
+final class ReplayFormat {
+
+	/**
+	 * Prevent the creation of instances of this class.
+	 */
+	private ReplayFormat(){
+	}
+
+	/**
+	 * Constant marking the start and the footer of a replay log.
+	 */
+	static final int MAGIC = 0x4F475052;
+
+	/**
+	 * Constant containing the version of the layout of replay logs.
+	 */
+	static final byte VERSION = 1;
+
+	/**
+	 * Constant containing the size of the footer of a closed log: the offset of the index and the magic number.
+	 */
+	static final int FOOTER_SIZE = 12;
+
+	/**
+	 * Constants containing the tags of the records. The end of the records written so far reads as END, since
+	 * the unwritten part of a log is filled with zeros.
+	 */
+	static final byte END = 0, EVOLVE = 1, STEPS = 2, ADVANCE = 3, THRUST_ON = 4, THRUST_OFF = 5, THRUST = 6,
+			TURN = 7, FIRE = 8, TERMINATE = 9, SPAWN = 10, SPAWNED = 11, REMOVE = 12, PLACE = 13, LOAD = 14,
+			KEYFRAME = 15, INDEX = 16;
+
+	/**
+	 * Return the next unsigned variable-length integer of the given buffer.
+	 *
+	 * @throws	IllegalArgumentException
+	 * 			The integer is longer than ten bytes.
+	 */
+	static long getVarint(ByteBuffer buffer) throws IllegalArgumentException{
+		long result = 0;
+		for (int shift = 0; shift < 64; shift += 7){
+			byte next = buffer.get();
+			result |= (long) (next & 0x7F) << shift;
+			if (next >= 0) return result;
+		}
+		throw new IllegalArgumentException("Corrupt variable-length integer @ ReplayFormat");
+	}
+
+	/**
+	 * Return the next signed variable-length integer of the given buffer.
+	 */
+	static long getSigned(ByteBuffer buffer) throws IllegalArgumentException{
+		long value = getVarint(buffer);
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	/**
+	 * A class of growing byte arrays in which records are encoded before they are written to a log.
+	 */
+	static final class Encoder {
+
+		/**
+		 * Return the number of bytes encoded.
+		 */
+		int size(){
+			return this.size;
+		}
+
+		/**
+		 * Forget every encoded byte.
+		 */
+		void clear(){
+			this.size = 0;
+		}
+
+		void putByte(int value){
+			ensure(1);
+			bytes[size++] = (byte) value;
+		}
+
+		void putInt(int value){
+			ensure(4);
+			for (int shift = 24; shift >= 0; shift -= 8) bytes[size++] = (byte) (value >>> shift);
+		}
+
+		void putLong(long value){
+			ensure(8);
+			for (int shift = 56; shift >= 0; shift -= 8) bytes[size++] = (byte) (value >>> shift);
+		}
+
+		void putDouble(double value){
+			putLong(Double.doubleToRawLongBits(value));
+		}
+
+		/**
+		 * Encode the given value as an unsigned variable-length integer of seven bits per byte.
+		 */
+		void putVarint(long value){
+			ensure(10);
+			while ((value & ~0x7FL) != 0){
+				bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+				value >>>= 7;
+			}
+			bytes[size++] = (byte) value;
+		}
+
+		/**
+		 * Encode the given value as a variable-length integer, mapping small negative values on small integers.
+		 */
+		void putSigned(long value){
+			putVarint((value << 1) ^ (value >> 63));
+		}
+
+		/**
+		 * Append the bytes of the given encoder.
+		 */
+		void putEncoder(Encoder other){
+			ensure(other.size);
+			System.arraycopy(other.bytes, 0, bytes, size, other.size);
+			size += other.size;
+		}
+
+		/**
+		 * Write the encoded bytes in the given buffer.
+		 */
+		void writeTo(ByteBuffer buffer){
+			buffer.put(bytes, 0, size);
+		}
+
+		private void ensure(int extra){
+			if (size + extra > bytes.length) bytes = Arrays.copyOf(bytes, Math.max(2 * bytes.length, size + extra));
+		}
+
+		private byte[] bytes = new byte[64];
+		private int size = 0;
+	}
+}
@@ -0,0 +1,520 @@
+package asteroids.model;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+import be.kuleuven.cs.som.annotate.*;
+
+/**
+ * A class of recorders writing every call changing a world to an append-only replay log, so a replayer can
+ * 	evolve a copy of the world in exactly the same way later on.
+ * 	The recorder logs every evolve of the world, every action of its ships, and every entity added to, removed
+ * 	from or placed in the world from outside. Whatever follows from a recorded call, like the entities a collision
+ * 	spawns or the asteroids of a dying planetoid, is made again by the replay, since the random numbers of the world
+ * 	are part of its state. Such spawns are only logged by their type, which lets the replay check that it still follows
+ * 	the recorded world. The log is written through a memory mapped buffer, so recording doesn't copy the records
+ * 	through a system call, and every given number of ticks the whole state of the world is written as a keyframe.
+ *
+ * @invar	The keyframe interval of the recorder is strictly positive.
+ * 			| getKeyframeInterval() > 0
+ *
+ * @version 1.0
+ * @author 	Brent De Bleser & Jesse Geens
+ */
+public class ReplayRecorder implements AutoCloseable {
+
+	/**
+	 * Constant containing the default number of ticks between two keyframes.
+	 */
+	public static final int DEFAULT_KEYFRAME_INTERVAL = 600;
+
+	/**
+	 * Constant containing the number of bytes of the log mapped at once.
+	 */
+	private static final int CHUNK_SIZE = 1 << 20;
+
+	/**
+	 * Create a new recorder writing the calls changing the given world to a log at the given path.
+	 *
+	 * @param 	world
+	 * 			The world to record.
+	 * @param 	path
+	 * 			The path of the log, which is overwritten if it exists.
+	 * @param 	keyframeInterval
+	 * 			The number of ticks between two keyframes.
+	 * @post	The new recorder records the given world, and the log holds a header and a keyframe of the world.
+	 * 			| new.getWorld() == world && new.getTick() == 0 && new.getNbKeyframes() == 1
+	 * @effect	The new recorder is attached to the world.
+	 * 			| world.setRecorder(this)
+	 * @throws	IllegalArgumentException
+	 * 			The world or path is null, the world is terminated, or the interval isn't strictly positive.
+	 * 			| world == null || path == null || world.isTerminatedWorld() || keyframeInterval <= 0
+	 * @throws	IllegalStateException
+	 * 			The world is already being recorded.
+	 * 			| world.getRecorder() != null
+	 * @throws	IOException
+	 * 			The log can't be created.
+	 */
+	public ReplayRecorder(World world, Path path, int keyframeInterval) throws IllegalArgumentException, IllegalStateException, IOException{
+		if (world == null || path == null || world.isTerminatedWorld() || keyframeInterval <= 0)
+			throw new IllegalArgumentException("Invalid recording @ ReplayRecorder");
+		if (world.getRecorder() != null) throw new IllegalStateException("The world is already being recorded.");
+		this.world = world;
+		this.keyframeInterval = keyframeInterval;
+		this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+				StandardOpenOption.READ, StandardOpenOption.WRITE);
+		try{
+			this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, CHUNK_SIZE);
+			record.putInt(ReplayFormat.MAGIC);
+			record.putByte(ReplayFormat.VERSION);
+			record.putDouble(world.getWorldWidth());
+			record.putDouble(world.getWorldHeight());
+			record.putByte(world.getBroadPhaseType().ordinal());
+			record.putVarint(keyframeInterval);
+			commit();
+			for (int slot = 0; slot < world.getNbEntities(); slot++) assignId(world.getEntityAtSlot(slot));
+			writeKeyframe();
+		}
+		catch (IOException | RuntimeException ex){
+			channel.close();
+			throw ex;
+		}
+		world.setRecorder(this);
+	}
+
+	/**
+	 * Create a new recorder writing the calls changing the given world to a log at the given path,
+	 * with the default keyframe interval.
+	 *
+	 * @effect	| this(world, path, DEFAULT_KEYFRAME_INTERVAL)
+	 */
+	public ReplayRecorder(World world, Path path) throws IllegalArgumentException, IllegalStateException, IOException{
+		this(world, path, DEFAULT_KEYFRAME_INTERVAL);
+	}
+
+	/**
+	 * Create a new recorder which only numbers the entities added to the given world, without writing anything.
+	 * 	A replayer attaches such a recorder to the world it replays, to find the entities the log refers to.
+	 *
+	 * @param 	world
+	 * 			The world whose entities are numbered.
+	 * @post	The new recorder doesn't write a log.
+	 * 			| !new.isWriting()
+	 */
+	ReplayRecorder(World world){
+		this.world = world;
+		this.keyframeInterval = Integer.MAX_VALUE;
+		this.channel = null;
+	}
+
+	/**
+	 * Return the world recorded by this recorder.
+	 */
+	@Basic @Immutable
+	public World getWorld(){
+		return this.world;
+	}
+
+	/**
+	 * Variable containing the world recorded by this recorder.
+	 */
+	private final World world;
+
+	/**
+	 * Return the number of ticks between two keyframes of this recorder.
+	 */
+	@Basic @Immutable
+	public int getKeyframeInterval(){
+		return this.keyframeInterval;
+	}
+
+	/**
+	 * Variable containing the number of ticks between two keyframes.
+	 */
+	private final int keyframeInterval;
+
+	/**
+	 * Return the number of ticks recorded so far. Every step of an evolve of the world is a tick.
+	 */
+	@Basic
+	public long getTick(){
+		return this.tick;
+	}
+
+	/**
+	 * Return the number of keyframes written so far.
+	 */
+	@Basic
+	public int getNbKeyframes(){
+		return this.nbKeyframes;
+	}
+
+	/**
+	 * Return the number of bytes written to the log so far.
+	 */
+	public long getSize(){
+		return buffer == null ? 0 : mappedStart + buffer.position();
+	}
+
+	/**
+	 * Check whether this recorder writes a log which isn't closed.
+	 */
+	public boolean isWriting(){
+		return channel != null && !closed;
+	}
+
+	/**
+	 * Return the id of the given entity, or -1 if it hasn't been added to the world while it was being recorded.
+	 *
+	 * @note	The id of an entity is the number of entities added to the world before it, counting from the first
+	 * 			keyframe. An entity which is added again gets a new id.
+	 */
+	public int getId(Entity entity){
+		Integer id = ids.get(entity);
+		return id == null ? -1 : id;
+	}
+
+	/**
+	 * Return the entity with the given id, or null if there is none.
+	 */
+	Entity getEntity(long id){
+		if (id < 0 || id >= entitiesById.size()) return null;
+		return entitiesById.get((int) id);
+	}
+
+	/**
+	 * Give the given entity the given id.
+	 */
+	void setId(Entity entity, int id){
+		while (entitiesById.size() <= id) entitiesById.add(null);
+		entitiesById.set(id, entity);
+		ids.put(entity, id);
+	}
+
+	/**
+	 * Set the id of the next entity added to the world to the given id.
+	 */
+	void setNextId(int nextId){
+		while (entitiesById.size() < nextId) entitiesById.add(null);
+	}
+
+	/**
+	 * Give the given entity the next id.
+	 */
+	private int assignId(Entity entity){
+		int id = entitiesById.size();
+		setId(entity, id);
+		return id;
+	}
+
+	/**
+	 * Map containing the id of every entity added to the world.
+	 */
+	private final Map<Entity, Integer> ids = new HashMap<Entity, Integer>();
+
+	/**
+	 * List containing the entity of every id.
+	 */
+	private final List<Entity> entitiesById = new ArrayList<Entity>();
+
+	/**
+	 * Record that the world is about to evolve over the given number of steps of the given time.
+	 *
+	 * @param 	tag
+	 * 			The tag of the evolving call.
+	 * @post	The tick of this recorder has advanced over the given number of steps.
+	 * 			| new.getTick() == getTick() + nbSteps
+	 */
+	void evolving(byte tag, int nbSteps, double dt){
+		if (!isWriting()) return;
+		record.putByte(tag);
+		if (tag == ReplayFormat.STEPS) record.putVarint(nbSteps);
+		// Worlds are mostly evolved over the same time, which takes a single byte this way.
+		long bits = Double.doubleToRawLongBits(dt);
+		record.putVarint(bits ^ lastDtBits);
+		lastDtBits = bits;
+		commit();
+		tick += Math.max(nbSteps, 0);
+	}
+
+	/**
+	 * Write a keyframe after the world has evolved, if the last keyframe is at least the keyframe interval ago.
+	 *
+	 * @return	True if and only if a keyframe has been written.
+	 * 			| result == (isWriting() && getTick() - tick of the last keyframe >= getKeyframeInterval())
+	 */
+	boolean evolved(){
+		if (!isWriting() || tick - lastKeyframeTick < keyframeInterval) return false;
+		writeKeyframe();
+		return true;
+	}
+
+	/**
+	 * Record the given action of the given entity.
+	 */
+	void action(Entity entity, byte tag, double value){
+		if (!isWriting()) return;
+		record.putByte(tag);
+		putId(entity);
+		if (tag == ReplayFormat.THRUST || tag == ReplayFormat.TURN) record.putDouble(value);
+		commit();
+	}
+
+	/**
+	 * Number the given entity, which has been added to the world, and record its addition.
+	 *
+	 * @param 	entity
+	 * 			The added entity.
+	 * @param 	replayed
+	 * 			Whether the addition follows from a recorded call, so only its type is recorded.
+	 */
+	void entityAdded(Entity entity, boolean replayed){
+		assignId(entity);
+		if (!isWriting()) return;
+		if (replayed){
+			record.putByte(ReplayFormat.SPAWNED);
+			record.putByte(entity.getType().ordinal());
+		}
+		else{
+			record.putByte(ReplayFormat.SPAWN);
+			putEntity(record, entity);
+		}
+		commit();
+	}
+
+	/**
+	 * Record the removal of the given entity from the world.
+	 */
+	void entityRemoved(Entity entity){
+		if (!isWriting()) return;
+		record.putByte(ReplayFormat.REMOVE);
+		putId(entity);
+		commit();
+	}
+
+	/**
+	 * Record the new position of the given entity.
+	 */
+	void entityPlaced(Entity entity){
+		if (!isWriting()) return;
+		record.putByte(ReplayFormat.PLACE);
+		putId(entity);
+		record.putDouble(entity.getX());
+		record.putDouble(entity.getY());
+		commit();
+	}
+
+	/**
+	 * Record the loading of the given bullets on the given ship. A bullet in the world is recorded by its id,
+	 * 	any other bullet by its radius.
+	 */
+	void bulletsLoading(Ship ship, Collection<Bullet> bullets){
+		if (!isWriting()) return;
+		record.putByte(ReplayFormat.LOAD);
+		putId(ship);
+		record.putVarint(bullets.size());
+		for (Bullet bullet : bullets){
+			int id = bullet == null || bullet.getSuperWorld() != world ? -1 : getId(bullet);
+			record.putVarint(id + 1);
+			if (id < 0) record.putDouble(bullet == null ? 0 : bullet.getRadius());
+		}
+		commit();
+	}
+
+	/**
+	 * Write a keyframe holding the whole state of the world.
+	 *
+	 * @post	The differences of the following records start over.
+	 * 			| @ implementation
+	 */
+	private void writeKeyframe(){
+		body.putVarint(tick);
+		body.putLong(world.getRandomState());
+		body.putVarint(entitiesById.size());
+		body.putVarint(world.getNbEntities());
+		long previous = 0;
+		for (int slot = 0; slot < world.getNbEntities(); slot++){
+			Entity entity = world.getEntityAtSlot(slot);
+			int id = getId(entity);
+			body.putSigned(id - previous);
+			previous = id;
+			putEntity(body, entity);
+		}
+		record.putByte(ReplayFormat.KEYFRAME);
+		record.putVarint(body.size());
+		record.putEncoder(body);
+		body.clear();
+		long offset = commit();
+		if (nbKeyframes == keyframeTicks.length){
+			keyframeTicks = Arrays.copyOf(keyframeTicks, 2 * nbKeyframes);
+			keyframeOffsets = Arrays.copyOf(keyframeOffsets, 2 * nbKeyframes);
+		}
+		keyframeTicks[nbKeyframes] = tick;
+		keyframeOffsets[nbKeyframes] = offset;
+		nbKeyframes++;
+		lastKeyframeTick = tick;
+		lastDtBits = 0;
+		lastId = 0;
+	}
+
+	/**
+	 * Encode the id of the given entity as the difference with the last id.
+	 */
+	private void putId(Entity entity){
+		int id = getId(entity);
+		record.putSigned(id - lastId);
+		lastId = id;
+	}
+
+	/**
+	 * Encode the state of the given entity in the given encoder.
+	 */
+	private void putEntity(ReplayFormat.Encoder encoder, Entity entity){
+		encoder.putByte(entity.getType().ordinal());
+		encoder.putDouble(entity.getX());
+		encoder.putDouble(entity.getY());
+		encoder.putDouble(entity.getVX());
+		encoder.putDouble(entity.getVY());
+		switch (entity.getType()){
+			case SHIP:
+				Ship ship = (Ship) entity;
+				encoder.putDouble(ship.getRadius());
+				encoder.putDouble(ship.getDirection());
+				encoder.putDouble(ship.getMass());
+				encoder.putByte(ship.isThrusterActive() ? 1 : 0);
+				encoder.putVarint(ship.getNbBulletsOnShip());
+				for (Bullet bullet : ship.getBulletsOnShip()) encoder.putDouble(bullet.getRadius());
+				break;
+			case BULLET:
+				Bullet bullet = (Bullet) entity;
+				encoder.putDouble(bullet.getRadius());
+				encoder.putVarint(bullet.getBounces());
+				Ship source = bullet.getBulletSource();
+				encoder.putVarint(source == null || source.getSuperWorld() != world ? 0 : getId(source) + 1);
+				break;
+			case PLANETOID:
+				Planetoid planetoid = (Planetoid) entity;
+				encoder.putDouble(planetoid.getStartRadius());
+				encoder.putDouble(planetoid.getTotalDistanceTraveled());
+				// The mass of a planetoid follows from its radius when it was created, not its current radius.
+				encoder.putDouble(planetoid.getMass());
+				break;
+			default:
+				encoder.putDouble(entity.getRadius());
+		}
+	}
+
+	/**
+	 * Write the encoded record to the log.
+	 *
+	 * @return	The offset of the record in the log.
+	 * @throws	UncheckedIOException
+	 * 			The log can't be extended.
+	 */
+	private long commit() throws UncheckedIOException{
+		if (buffer.remaining() < record.size()){
+			try{
+				mappedStart += buffer.position();
+				buffer = channel.map(FileChannel.MapMode.READ_WRITE, mappedStart, Math.max(CHUNK_SIZE, record.size()));
+			}
+			catch (IOException ex){
+				throw new UncheckedIOException(ex);
+			}
+		}
+		long offset = mappedStart + buffer.position();
+		record.writeTo(buffer);
+		record.clear();
+		return offset;
+	}
+
+	/**
+	 * Write the index of the keyframes and the footer to the log, and stop recording the world.
+	 *
+	 * @post	This recorder doesn't write anymore, and the log is cut off after its footer.
+	 * 			| !new.isWriting()
+	 * @effect	This recorder is detached from its world.
+	 * 			| getWorld().setRecorder(null)
+	 * @throws	IOException
+	 * 			The log can't be completed.
+	 */
+	@Override
+	public void close() throws IOException{
+		if (!isWriting()) return;
+		closed = true;
+		if (world.getRecorder() == this) world.setRecorder(null);
+		try{
+			record.putByte(ReplayFormat.INDEX);
+			record.putVarint(nbKeyframes);
+			long previousTick = 0, previousOffset = 0;
+			for (int i = 0; i < nbKeyframes; i++){
+				record.putVarint(keyframeTicks[i] - previousTick);
+				record.putVarint(keyframeOffsets[i] - previousOffset);
+				previousTick = keyframeTicks[i];
+				previousOffset = keyframeOffsets[i];
+			}
+			long index = commit();
+			record.putLong(index);
+			record.putInt(ReplayFormat.MAGIC);
+			commit();
+			buffer.force();
+			channel.truncate(getSize());
+		}
+		catch (UncheckedIOException ex){
+			throw ex.getCause();
+		}
+		finally{
+			channel.close();
+		}
+	}
+
+	/**
+	 * Variable containing the channel of the log, or null if this recorder doesn't write a log.
+	 */
+	private final FileChannel channel;
+
+	/**
+	 * Variable containing the mapped part of the log in which the next record is written.
+	 */
+	private MappedByteBuffer buffer = null;
+
+	/**
+	 * Variable containing the offset in the log of the mapped part.
+	 */
+	private long mappedStart = 0;
+
+	/**
+	 * Encoders of the next record and of the body of the next keyframe.
+	 */
+	private final ReplayFormat.Encoder record = new ReplayFormat.Encoder(), body = new ReplayFormat.Encoder();
+
+	/**
+	 * Variables containing the number of ticks recorded, and the tick of the last keyframe.
+	 */
+	private long tick = 0, lastKeyframeTick = 0;
+
+	/**
+	 * Variables containing the bits of the last recorded time and the last recorded id, from which the next
+	 * time and id are encoded as a difference.
+	 */
+	private long lastDtBits = 0, lastId = 0;
+
+	/**
+	 * Arrays containing the tick and offset of every keyframe.
+	 */
+	private long[] keyframeTicks = new long[16], keyframeOffsets = new long[16];
+
+	/**
+	 * Variable containing the number of keyframes written.
+	 */
+	private int nbKeyframes = 0;
+
+	/**
+	 * Variable registering whether this recorder is closed.
+	 */
+	private boolean closed = false;
+}
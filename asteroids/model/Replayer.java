@@ -0,0 +1,567 @@
+package asteroids.model;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+import be.kuleuven.cs.som.annotate.*;
+
+/**
+ * A class of replayers evolving a world headlessly as it has been recorded in a replay log.
+ * 	A replayer rebuilds the world from the first keyframe of the log and applies the recorded calls one by one,
+ * 	without any collision listener, so a whole match is replayed as fast as the world can evolve. A replay can start
+ * 	at any keyframe, by seeking to a tick. The replayer checks the entities spawned by the replayed world against the
+ * 	types recorded in the log, and stops as soon as the replay no longer follows the recording.
+ *
+ * @invar	The tick of the replayer is never negative.
+ * 			| getTick() >= 0
+ *
+ * @version 1.0
+ * @author 	Brent De Bleser & Jesse Geens
+ */
+public class Replayer {
+
+	/**
+	 * Create a new replayer of the log at the given path.
+	 *
+	 * @param 	path
+	 * 			The path of the log.
+	 * @post	The world of the new replayer is the world as it was when the recording started.
+	 * 			| new.getTick() == 0
+	 * @throws	IllegalArgumentException
+	 * 			The path is null, or the file isn't a replay log.
+	 * 			| path == null
+	 * @throws	IOException
+	 * 			The log can't be read.
+	 * @note	The index at the end of a log which hasn't been closed is missing. The keyframes are then found by
+	 * 			reading the log up to the end of its records once.
+	 */
+	public Replayer(Path path) throws IllegalArgumentException, IOException{
+		if (path == null) throw new IllegalArgumentException("Invalid path @ Replayer");
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)){
+			if (channel.size() > Integer.MAX_VALUE) throw new IllegalArgumentException("The log is too large.");
+			this.log = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		try{
+			if (log.getInt() != ReplayFormat.MAGIC || log.get() != ReplayFormat.VERSION)
+				throw new IllegalArgumentException("The file isn't a replay log.");
+			this.width = log.getDouble();
+			this.height = log.getDouble();
+			this.broadPhaseType = BroadPhaseType.values()[log.get()];
+			this.keyframeInterval = (int) ReplayFormat.getVarint(log);
+			int start = log.position();
+			if (!readIndex()) scanKeyframes(start);
+			if (nbKeyframes == 0) throw new IllegalArgumentException("The log has no keyframe.");
+		}
+		catch (BufferUnderflowException | IndexOutOfBoundsException ex){
+			throw new IllegalArgumentException("The file isn't a replay log.");
+		}
+		restoreKeyframe(0);
+	}
+
+	/**
+	 * Return the world as it is replayed up to the tick of this replayer.
+	 *
+	 * @note	Seeking replaces the world by a new world restored from a keyframe.
+	 */
+	@Basic
+	public World getWorld(){
+		return this.world;
+	}
+
+	/**
+	 * Variable containing the replayed world.
+	 */
+	private World world;
+
+	/**
+	 * Return the number of ticks replayed so far.
+	 */
+	@Basic
+	public long getTick(){
+		return this.tick;
+	}
+
+	/**
+	 * Variable containing the number of ticks replayed so far.
+	 */
+	private long tick;
+
+	/**
+	 * Return the number of ticks between two keyframes of the log.
+	 */
+	@Basic @Immutable
+	public int getKeyframeInterval(){
+		return this.keyframeInterval;
+	}
+
+	/**
+	 * Variable containing the number of ticks between two keyframes of the log.
+	 */
+	private final int keyframeInterval;
+
+	/**
+	 * Return the number of keyframes of the log.
+	 */
+	@Basic @Immutable
+	public int getNbKeyframes(){
+		return this.nbKeyframes;
+	}
+
+	/**
+	 * Return the tick of the keyframe with the given index.
+	 *
+	 * @throws	IndexOutOfBoundsException
+	 * 			| index < 0 || index >= getNbKeyframes()
+	 */
+	public long getKeyframeTick(int index) throws IndexOutOfBoundsException{
+		if (index < 0 || index >= nbKeyframes) throw new IndexOutOfBoundsException(index);
+		return keyframeTicks[index];
+	}
+
+	/**
+	 * Return the entity of the replayed world with the given id, or null if there is none.
+	 *
+	 * @see		ReplayRecorder#getId(Entity)
+	 */
+	public Entity getEntity(int id){
+		return tracker.getEntity(id);
+	}
+
+	/**
+	 * Replay the next record of the log.
+	 *
+	 * @return	True if and only if there was a record left.
+	 * 			| @ implementation
+	 * @throws	IllegalStateException
+	 * 			The replayed world no longer follows the recorded world, or the record is corrupt.
+	 * @note	A recorded call which failed with an IllegalArgumentException fails again without stopping the replay.
+	 */
+	public boolean step() throws IllegalStateException{
+		if (!log.hasRemaining()) return false;
+		int start = log.position();
+		try{
+			byte tag = log.get();
+			switch (tag){
+				case ReplayFormat.END:
+				case ReplayFormat.INDEX:
+					log.position(start);
+					return false;
+				case ReplayFormat.KEYFRAME:
+					int length = (int) ReplayFormat.getVarint(log);
+					log.position(log.position() + length);
+					lastDtBits = 0;
+					lastId = 0;
+					return true;
+				case ReplayFormat.SPAWNED:
+					Entity spawned = tracker.getEntity(nextId++);
+					if (spawned == null || spawned.getType().ordinal() != log.get())
+						throw new IllegalStateException("The replay diverged from the log at tick " + tick + ".");
+					return true;
+				default:
+					apply(tag);
+					return true;
+			}
+		}
+		catch (BufferUnderflowException | IndexOutOfBoundsException | ClassCastException | NullPointerException ex){
+			throw new IllegalStateException("Corrupt record at offset " + start + " of the log.");
+		}
+	}
+
+	/**
+	 * Apply the record with the given tag to the replayed world.
+	 */
+	private void apply(byte tag){
+		switch (tag){
+			case ReplayFormat.EVOLVE:
+				double dt = getTime();
+				tick++;
+				attempt(() -> world.evolve(dt, null));
+				break;
+			case ReplayFormat.STEPS:
+				int nbSteps = (int) ReplayFormat.getVarint(log);
+				double stepTime = getTime();
+				tick += Math.max(nbSteps, 0);
+				attempt(() -> world.evolveSteps(nbSteps, stepTime, null));
+				break;
+			case ReplayFormat.ADVANCE:
+				double maxDt = getTime();
+				tick++;
+				attempt(() -> world.advanceToNextEvent(maxDt));
+				break;
+			case ReplayFormat.THRUST_ON:
+				Ship thrusting = (Ship) getEntityById();
+				attempt(thrusting::thrustOn);
+				break;
+			case ReplayFormat.THRUST_OFF:
+				Ship coasting = (Ship) getEntityById();
+				attempt(coasting::thrustOff);
+				break;
+			case ReplayFormat.THRUST:
+				Ship ship = (Ship) getEntityById();
+				double amount = log.getDouble();
+				attempt(() -> ship.thrust(amount));
+				break;
+			case ReplayFormat.TURN:
+				Ship turning = (Ship) getEntityById();
+				double angle = log.getDouble();
+				attempt(() -> turning.turn(angle));
+				break;
+			case ReplayFormat.FIRE:
+				Ship firing = (Ship) getEntityById();
+				attempt(firing::fireBullet);
+				break;
+			case ReplayFormat.TERMINATE:
+				Entity terminated = getEntityById();
+				attempt(terminated::terminate);
+				break;
+			case ReplayFormat.SPAWN:
+				Entity entity = getEntity(tracker);
+				int id = nextId++;
+				attempt(() -> world.addEntityToWorld(entity));
+				if (tracker.getId(entity) != id)
+					throw new IllegalStateException("The replay diverged from the log at tick " + tick + ".");
+				break;
+			case ReplayFormat.REMOVE:
+				Entity removed = getEntityById();
+				attempt(() -> world.removeEntityFromWorld(removed));
+				break;
+			case ReplayFormat.PLACE:
+				Entity placed = getEntityById();
+				double x = log.getDouble(), y = log.getDouble();
+				attempt(() -> placed.setPosition(x, y));
+				break;
+			case ReplayFormat.LOAD:
+				Ship loading = (Ship) getEntityById();
+				List<Bullet> bullets = new ArrayList<Bullet>();
+				for (long i = ReplayFormat.getVarint(log); i > 0; i--){
+					long bulletId = ReplayFormat.getVarint(log) - 1;
+					if (bulletId < 0) bullets.add(new Bullet(loading.getX(), loading.getY(), 0, 0, log.getDouble()));
+					else bullets.add((Bullet) tracker.getEntity(bulletId));
+				}
+				attempt(() -> loading.loadBulletsOnShip(bullets));
+				break;
+			default:
+				throw new IllegalStateException("Unknown record " + tag + " in the log.");
+		}
+	}
+
+	/**
+	 * Run the given call of a record, ignoring the IllegalArgumentException with which the recorded call failed as well.
+	 */
+	private static void attempt(Runnable call){
+		try{
+			call.run();
+		}
+		catch (IllegalArgumentException ex){
+			// The recorded call failed in the same way.
+		}
+	}
+
+	/**
+	 * Replay every record left in the log.
+	 *
+	 * @effect	The records are replayed until there are none left.
+	 * 			| while (step()) ;
+	 * @return	The tick at the end of the log.
+	 * 			| result == new.getTick()
+	 */
+	public long replay() throws IllegalStateException{
+		while (step());
+		return tick;
+	}
+
+	/**
+	 * Replay the records of the log until the given tick is reached.
+	 *
+	 * @param 	target
+	 * 			The tick to reach.
+	 * @effect	The records are replayed until the tick of this replayer reaches the given tick or there are no records left.
+	 * 			| while (getTick() < target && step()) ;
+	 */
+	public void runTo(long target) throws IllegalStateException{
+		while (tick < target && step());
+	}
+
+	/**
+	 * Restore the world from the last keyframe up to the given tick, and replay the log up to the given tick.
+	 *
+	 * @param 	target
+	 * 			The tick to reach.
+	 * @effect	The world is restored from the last keyframe whose tick doesn't exceed the given tick, and the records
+	 * 			are replayed until the given tick is reached.
+	 * 			| runTo(target)
+	 * @note	Seeking back restores a new world, so the entities of the old world no longer take part in the replay.
+	 */
+	public void seek(long target) throws IllegalStateException{
+		int index = 0;
+		while (index + 1 < nbKeyframes && keyframeTicks[index + 1] <= target) index++;
+		if (target < tick || keyframeTicks[index] > tick) restoreKeyframe(index);
+		runTo(target);
+	}
+
+	/**
+	 * Replace the world of this replayer by the world held by the keyframe with the given index.
+	 */
+	private void restoreKeyframe(int index) throws IllegalStateException{
+		try{
+			log.position((int) keyframeOffsets[index]);
+			if (log.get() != ReplayFormat.KEYFRAME) throw new IllegalStateException("The index of the log is corrupt.");
+			ReplayFormat.getVarint(log);
+			tick = ReplayFormat.getVarint(log);
+			World restored = new World(width, height, broadPhaseType);
+			restored.setRandomState(log.getLong());
+			int nextEntityId = (int) ReplayFormat.getVarint(log);
+			int count = (int) ReplayFormat.getVarint(log);
+			int[] entityIds = new int[count];
+			Entity[] entities = new Entity[count];
+			long previous = 0;
+			bulletSources.clear();
+			for (int i = 0; i < count; i++){
+				previous += ReplayFormat.getSigned(log);
+				entityIds[i] = (int) previous;
+				entities[i] = getEntity(null);
+			}
+			ReplayRecorder restoredTracker = new ReplayRecorder(restored);
+			for (int i = 0; i < count; i++){
+				restored.restoreEntity(entities[i]);
+				restoredTracker.setId(entities[i], entityIds[i]);
+			}
+			restoredTracker.setNextId(nextEntityId);
+			for (Map.Entry<Bullet, Long> entry : bulletSources.entrySet())
+				entry.getKey().setSource((Ship) restoredTracker.getEntity(entry.getValue()));
+			bulletSources.clear();
+			restored.setRecorder(restoredTracker);
+			world = restored;
+			tracker = restoredTracker;
+			nextId = nextEntityId;
+			lastDtBits = 0;
+			lastId = 0;
+		}
+		catch (BufferUnderflowException | IndexOutOfBoundsException | ClassCastException ex){
+			throw new IllegalStateException("Corrupt keyframe in the log.");
+		}
+	}
+
+	/**
+	 * Read the state of an entity and create the entity. The source of a bullet is looked up in the given
+	 * 	recorder, or registered in the bullet sources if the recorder is null, since it may come later in a keyframe.
+	 */
+	private Entity getEntity(ReplayRecorder ids){
+		EntityType type = EntityType.values()[log.get()];
+		double x = log.getDouble(), y = log.getDouble(), xVelocity = log.getDouble(), yVelocity = log.getDouble();
+		switch (type){
+			case SHIP:
+				Ship ship = new Ship(x, y, xVelocity, yVelocity, log.getDouble(), log.getDouble(), log.getDouble());
+				if (log.get() != 0) ship.thrustOn();
+				List<Bullet> bullets = new ArrayList<Bullet>();
+				for (long i = ReplayFormat.getVarint(log); i > 0; i--) bullets.add(new Bullet(x, y, 0, 0, log.getDouble()));
+				ship.loadBulletsOnShip(bullets);
+				return ship;
+			case BULLET:
+				Bullet bullet = new Bullet(x, y, xVelocity, yVelocity, log.getDouble());
+				for (long i = ReplayFormat.getVarint(log); i > 0; i--) bullet.bouncesCounter();
+				long source = ReplayFormat.getVarint(log) - 1;
+				if (source >= 0){
+					if (ids == null) bulletSources.put(bullet, source);
+					else bullet.setSource((Ship) ids.getEntity(source));
+				}
+				return bullet;
+			case PLANETOID:
+				Planetoid planetoid = new Planetoid(x, y, xVelocity, yVelocity, log.getDouble(), log.getDouble());
+				planetoid.setMass(log.getDouble());
+				return planetoid;
+			default:
+				return new Asteroid(x, y, xVelocity, yVelocity, log.getDouble());
+		}
+	}
+
+	/**
+	 * Read the id of an entity as the difference with the last id, and return the entity with that id.
+	 */
+	private Entity getEntityById(){
+		lastId += ReplayFormat.getSigned(log);
+		Entity entity = tracker.getEntity(lastId);
+		if (entity == null) throw new IllegalStateException("The replay diverged from the log at tick " + tick + ".");
+		return entity;
+	}
+
+	/**
+	 * Read a time as the difference with the bits of the last time.
+	 */
+	private double getTime(){
+		lastDtBits ^= ReplayFormat.getVarint(log);
+		return Double.longBitsToDouble(lastDtBits);
+	}
+
+	/**
+	 * Read the index at the end of the log.
+	 *
+	 * @return	True if and only if the log ends with a valid index.
+	 */
+	private boolean readIndex(){
+		int size = log.limit();
+		if (size < log.position() + ReplayFormat.FOOTER_SIZE || log.getInt(size - 4) != ReplayFormat.MAGIC) return false;
+		long offset = log.getLong(size - ReplayFormat.FOOTER_SIZE);
+		if (offset < log.position() || offset >= size || log.get((int) offset) != ReplayFormat.INDEX) return false;
+		ByteBuffer index = log.duplicate();
+		index.position((int) offset + 1);
+		int count = (int) ReplayFormat.getVarint(index);
+		long tickSum = 0, offsetSum = 0;
+		for (int i = 0; i < count; i++){
+			tickSum += ReplayFormat.getVarint(index);
+			offsetSum += ReplayFormat.getVarint(index);
+			addKeyframe(tickSum, offsetSum);
+		}
+		return true;
+	}
+
+	/**
+	 * Find the keyframes of the log by reading its records from the given offset up to the end of the records.
+	 */
+	private void scanKeyframes(int start){
+		ByteBuffer scan = log.duplicate();
+		scan.position(start);
+		long scanTick = 0;
+		try{
+			while (scan.hasRemaining()){
+				int offset = scan.position();
+				byte tag = scan.get();
+				switch (tag){
+					case ReplayFormat.EVOLVE:
+					case ReplayFormat.ADVANCE:
+						ReplayFormat.getVarint(scan);
+						scanTick++;
+						break;
+					case ReplayFormat.STEPS:
+						scanTick += Math.max(ReplayFormat.getVarint(scan), 0);
+						ReplayFormat.getVarint(scan);
+						break;
+					case ReplayFormat.THRUST_ON:
+					case ReplayFormat.THRUST_OFF:
+					case ReplayFormat.FIRE:
+					case ReplayFormat.TERMINATE:
+					case ReplayFormat.REMOVE:
+						ReplayFormat.getVarint(scan);
+						break;
+					case ReplayFormat.THRUST:
+					case ReplayFormat.TURN:
+						ReplayFormat.getVarint(scan);
+						scan.getDouble();
+						break;
+					case ReplayFormat.PLACE:
+						ReplayFormat.getVarint(scan);
+						scan.getDouble();
+						scan.getDouble();
+						break;
+					case ReplayFormat.SPAWNED:
+						scan.get();
+						break;
+					case ReplayFormat.SPAWN:
+						skipEntity(scan);
+						break;
+					case ReplayFormat.LOAD:
+						ReplayFormat.getVarint(scan);
+						for (long i = ReplayFormat.getVarint(scan); i > 0; i--){
+							if (ReplayFormat.getVarint(scan) == 0) scan.getDouble();
+						}
+						break;
+					case ReplayFormat.KEYFRAME:
+						int length = (int) ReplayFormat.getVarint(scan);
+						int end = scan.position() + length;
+						scanTick = ReplayFormat.getVarint(scan);
+						scan.position(end);
+						addKeyframe(scanTick, offset);
+						break;
+					default:
+						return;
+				}
+			}
+		}
+		catch (BufferUnderflowException | IllegalArgumentException ex){
+			// The last record was cut off.
+		}
+	}
+
+	/**
+	 * Skip the state of an entity in the given buffer.
+	 */
+	private static void skipEntity(ByteBuffer scan){
+		EntityType type = EntityType.values()[scan.get()];
+		scan.position(scan.position() + 4 * Double.BYTES);
+		switch (type){
+			case SHIP:
+				scan.position(scan.position() + 3 * Double.BYTES + 1);
+				for (long i = ReplayFormat.getVarint(scan); i > 0; i--) scan.getDouble();
+				break;
+			case BULLET:
+				scan.getDouble();
+				ReplayFormat.getVarint(scan);
+				ReplayFormat.getVarint(scan);
+				break;
+			case PLANETOID:
+				scan.position(scan.position() + 3 * Double.BYTES);
+				break;
+			default:
+				scan.getDouble();
+		}
+	}
+
+	/**
+	 * Register a keyframe with the given tick at the given offset.
+	 */
+	private void addKeyframe(long keyframeTick, long offset){
+		if (nbKeyframes == keyframeTicks.length){
+			keyframeTicks = Arrays.copyOf(keyframeTicks, 2 * nbKeyframes);
+			keyframeOffsets = Arrays.copyOf(keyframeOffsets, 2 * nbKeyframes);
+		}
+		keyframeTicks[nbKeyframes] = keyframeTick;
+		keyframeOffsets[nbKeyframes] = offset;
+		nbKeyframes++;
+	}
+
+	/**
+	 * Variable containing the mapped log.
+	 */
+	private final ByteBuffer log;
+
+	/**
+	 * Variables containing the dimensions and broad phase type of the recorded world.
+	 */
+	private final double width, height;
+	private final BroadPhaseType broadPhaseType;
+
+	/**
+	 * Variable containing the recorder numbering the entities of the replayed world.
+	 */
+	private ReplayRecorder tracker = null;
+
+	/**
+	 * Variable containing the id of the next entity the log spawns.
+	 */
+	private int nextId = 0;
+
+	/**
+	 * Variables containing the bits of the last time and the last id read from the log.
+	 */
+	private long lastDtBits = 0, lastId = 0;
+
+	/**
+	 * Map containing the id of the source of every restored bullet whose source hasn't been restored yet.
+	 */
+	private final Map<Bullet, Long> bulletSources = new HashMap<Bullet, Long>();
+
+	/**
+	 * Arrays containing the tick and offset of every keyframe of the log.
+	 */
+	private long[] keyframeTicks = new long[16], keyframeOffsets = new long[16];
+
+	/**
+	 * Variable containing the number of keyframes of the log.
+	 */
+	private int nbKeyframes = 0;
+}
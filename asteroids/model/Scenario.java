@@ -0,0 +1,204 @@
+package asteroids.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import be.kuleuven.cs.som.annotate.*;
+
+/**
+ * A class of scenarios generating the worlds in which ships compete.
+ * 	A scenario places the ships evenly on a circle around the centre of the world, each facing the centre, and
+ * 	scatters asteroids and planetoids with random positions, velocities and sizes over the world. The same seed
+ * 	always generates the same world, including the random generator of the world itself.
+ *
+ * @invar	The dimensions of a scenario are positive, and its densities and number of bullets aren't negative.
+ * 			| getWidth() > 0 && getHeight() > 0 && getAsteroidDensity() >= 0 && getPlanetoidDensity() >= 0
+ * 			|	&& getNbBulletsPerShip() >= 0
+ *
+ * @version 1.0
+ * @author 	Brent De Bleser & Jesse Geens
+ */
+@Value
+public final class Scenario {
+
+	/**
+	 * Constant containing the area over which the densities of a scenario are counted.
+	 */
+	public static final double DENSITY_AREA = 1E6;
+
+	/**
+	 * Constants containing the radius and mass of the ships, and the radius of their bullets.
+	 */
+	private static final double SHIP_RADIUS = 20, SHIP_MASS = 5E16, BULLET_RADIUS = 3;
+
+	/**
+	 * Constants containing the smallest and largest radius of the generated asteroids and planetoids.
+	 */
+	private static final double MINIMAL_RADIUS = 10, MAXIMAL_RADIUS = 40;
+
+	/**
+	 * Constant containing the largest speed of the generated asteroids and planetoids along each axis.
+	 */
+	private static final double MAXIMAL_SPEED = 50;
+
+	/**
+	 * Initialize this new scenario with the given dimensions, densities and number of bullets per ship.
+	 *
+	 * @param 	width
+	 * 			The width of the generated worlds.
+	 * @param 	height
+	 * 			The height of the generated worlds.
+	 * @param 	asteroidDensity
+	 * 			The number of asteroids per DENSITY_AREA of the generated worlds.
+	 * @param 	planetoidDensity
+	 * 			The number of planetoids per DENSITY_AREA of the generated worlds.
+	 * @param 	nbBulletsPerShip
+	 * 			The number of bullets loaded on each ship.
+	 * @post	| new.getWidth() == width && new.getHeight() == height && new.getAsteroidDensity() == asteroidDensity
+	 * 			|	&& new.getPlanetoidDensity() == planetoidDensity && new.getNbBulletsPerShip() == nbBulletsPerShip
+	 * @throws	IllegalArgumentException
+	 * 			One of the dimensions isn't positive, or a density or the number of bullets is negative.
+	 * 			| !(width > 0) || !(height > 0) || !(asteroidDensity >= 0) || !(planetoidDensity >= 0) || nbBulletsPerShip < 0
+	 */
+	public Scenario(double width, double height, double asteroidDensity, double planetoidDensity, int nbBulletsPerShip)
+			throws IllegalArgumentException{
+		if (!(width > 0) || !(height > 0) || !Helper.isValidDouble(width) || !Helper.isValidDouble(height)
+				|| !(asteroidDensity >= 0) || !(planetoidDensity >= 0) || nbBulletsPerShip < 0)
+			throw new IllegalArgumentException("Invalid scenario @ Scenario");
+		this.width = width;
+		this.height = height;
+		this.asteroidDensity = asteroidDensity;
+		this.planetoidDensity = planetoidDensity;
+		this.nbBulletsPerShip = nbBulletsPerShip;
+	}
+
+	/**
+	 * Return the width of the worlds of this scenario.
+	 */
+	@Basic @Immutable
+	public double getWidth(){
+		return this.width;
+	}
+
+	/**
+	 * Return the height of the worlds of this scenario.
+	 */
+	@Basic @Immutable
+	public double getHeight(){
+		return this.height;
+	}
+
+	/**
+	 * Return the number of asteroids per DENSITY_AREA of the worlds of this scenario.
+	 */
+	@Basic @Immutable
+	public double getAsteroidDensity(){
+		return this.asteroidDensity;
+	}
+
+	/**
+	 * Return the number of planetoids per DENSITY_AREA of the worlds of this scenario.
+	 */
+	@Basic @Immutable
+	public double getPlanetoidDensity(){
+		return this.planetoidDensity;
+	}
+
+	/**
+	 * Return the number of bullets loaded on each ship of this scenario.
+	 */
+	@Basic @Immutable
+	public int getNbBulletsPerShip(){
+		return this.nbBulletsPerShip;
+	}
+
+	/**
+	 * Generate a world of this scenario with the given number of ships.
+	 *
+	 * @param 	seed
+	 * 			The seed of the generated world.
+	 * @param 	nbShips
+	 * 			The number of ships.
+	 * @return	A world with the dimensions of this scenario holding the given number of ships, each loaded with
+	 * 			the bullets of this scenario, and the asteroids and planetoids which could be placed.
+	 * 			| result.getWorldWidth() == getWidth() && result.getWorldHeight() == getHeight()
+	 * 			| result.getNbEntitiesOfType(EntityType.SHIP) == nbShips
+	 * @return	The ships are the first entities of the world, in the order of their places on the circle.
+	 * 			| for i in 0..nbShips-1
+	 * 			|	result.getEntityAtSlot(i) instanceof Ship
+	 * @throws	IllegalArgumentException
+	 * 			The number of ships is negative, or the ships don't fit in the world.
+	 * 			| nbShips < 0
+	 * @effect	Each asteroid and planetoid is placed at a free position of the world.
+	 * 			| world.findFreePosition(radius)
+	 * @note	An asteroid or planetoid for which no free position is found is left out, so very high densities
+	 * 			give fewer entities than asked for.
+	 */
+	public World create(long seed, int nbShips) throws IllegalArgumentException{
+		if (nbShips < 0) throw new IllegalArgumentException("Invalid number of ships @ Scenario");
+		Random random = new Random(seed);
+		World world = new World(width, height);
+		world.setRandomState(random.nextLong());
+		double distance = Math.min(width, height) / 3;
+		for (int i = 0; i < nbShips; i++){
+			double angle = 2 * Math.PI * i / nbShips;
+			double direction = (angle + Math.PI) % (2 * Math.PI);
+			Ship ship = new Ship(width / 2 + distance * Math.cos(angle), height / 2 + distance * Math.sin(angle), 0, 0,
+					SHIP_RADIUS, direction, SHIP_MASS);
+			world.addEntityToWorld(ship);
+			List<Bullet> bullets = new ArrayList<Bullet>();
+			for (int j = 0; j < nbBulletsPerShip; j++) bullets.add(new Bullet(ship.getX(), ship.getY(), 0, 0, BULLET_RADIUS));
+			ship.loadBulletsOnShip(bullets);
+		}
+		int nbAsteroids = (int) Math.round(asteroidDensity * width * height / DENSITY_AREA);
+		int nbPlanetoids = (int) Math.round(planetoidDensity * width * height / DENSITY_AREA);
+		for (int i = 0; i < nbAsteroids + nbPlanetoids; i++){
+			double radius = MINIMAL_RADIUS + random.nextDouble() * (MAXIMAL_RADIUS - MINIMAL_RADIUS);
+			double xVelocity = (2 * random.nextDouble() - 1) * MAXIMAL_SPEED;
+			double yVelocity = (2 * random.nextDouble() - 1) * MAXIMAL_SPEED;
+			double[] position = world.findFreePosition(radius);
+			if (position == null) continue;
+			world.addEntityToWorld(i < nbAsteroids ? new Asteroid(position[0], position[1], xVelocity, yVelocity, radius)
+					: new Planetoid(position[0], position[1], xVelocity, yVelocity, radius, 0));
+		}
+		return world;
+	}
+
+	/**
+	 * Check whether this scenario is equal to the given object.
+	 *
+	 * @return 	True if and only if the object is a scenario with the same dimensions, densities and bullets.
+	 * 			| @ implementation
+	 */
+	@Override
+	public boolean equals(Object other){
+		if (other == null) return false;
+		if (this.getClass() != other.getClass()) return false;
+		Scenario scenario = (Scenario) other;
+		return this.width == scenario.width && this.height == scenario.height && this.asteroidDensity == scenario.asteroidDensity
+				&& this.planetoidDensity == scenario.planetoidDensity && this.nbBulletsPerShip == scenario.nbBulletsPerShip;
+	}
+
+	/**
+	 * Return the hash code of this scenario.
+	 */
+	@Override
+	public int hashCode(){
+		return (Double.hashCode(width) * 31 + Double.hashCode(height)) * 17 + Double.hashCode(asteroidDensity)
+				+ Double.hashCode(planetoidDensity) + nbBulletsPerShip;
+	}
+
+	/**
+	 * Return a textual representation of this scenario.
+	 */
+	@Override
+	public String toString(){
+		return "[Scenario: " + width + " x " + height + ", " + asteroidDensity + " asteroids and " + planetoidDensity
+				+ " planetoids per " + DENSITY_AREA + ", " + nbBulletsPerShip + " bullets per ship]";
+	}
+
+	private final double width, height;
+	private final double asteroidDensity, planetoidDensity;
+	private final int nbBulletsPerShip;
+}
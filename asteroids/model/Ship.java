@@ -201,9 +201,13 @@ public class Ship extends Entity{
      * 
      * @post The thruster is set to active
      * 		 | this.isThrusterActive = true
+     * @effect If the ship is in a world, the action is performed in it.
+     * 		 | if getSuperWorld() != null
+     * 		 |	then getSuperWorld().actionPerformed(this, ReplayFormat.THRUST_ON, 0)
      */
     @Basic
 	public void thrustOn(){
+		if (getSuperWorld() != null) getSuperWorld().actionPerformed(this, ReplayFormat.THRUST_ON, 0);
 		this.isThrusterActive = true;
 	}
 	/**
@@ -211,9 +215,13 @@ public class Ship extends Entity{
 	 * 
 	 * @post The thruster is set to inactive
 	 *		 | this.isThrusterActive = false
+     * @effect If the ship is in a world, the action is performed in it.
+     * 		 | if getSuperWorld() != null
+     * 		 |	then getSuperWorld().actionPerformed(this, ReplayFormat.THRUST_OFF, 0)
 	 */		 
     @Basic
 	public void thrustOff(){
+		if (getSuperWorld() != null) getSuperWorld().actionPerformed(this, ReplayFormat.THRUST_OFF, 0);
 		this.isThrusterActive = false;
 	}
     
@@ -239,8 +247,12 @@ public class Ship extends Entity{
      *        |     vxl = Math.cos(alpha) * this.getMaxVelocity()
      *        |     vyl = Math.sin(alpha) * this.getMaxVelocity()
      *        | this.setShipVelocity(vxl, vyl);
+     * @effect If the ship is in a world, the action is performed in it.
+     *        | if getSuperWorld() != null
+     *        |	then getSuperWorld().actionPerformed(this, ReplayFormat.THRUST, amount)
      */
     public void thrust(double amount){
+        if (getSuperWorld() != null) getSuperWorld().actionPerformed(this, ReplayFormat.THRUST, amount);
         if(!(amount >= 0) && (Helper.isValidDouble(amount)))
             amount = 0;
         double alpha = direction; 
@@ -298,7 +310,7 @@ public class Ship extends Entity{
 	 */
     @Basic
 	public Set<? extends Bullet> getBulletsOnShip() {
-    	Set<Bullet> resultSet = new HashSet<Bullet>(bullets);
+    	Set<Bullet> resultSet = new LinkedHashSet<Bullet>(bullets);
 		return resultSet;
 	}
 
@@ -327,8 +339,29 @@ public class Ship extends Entity{
 	 * @throws	IllegalArgumentException
 	 * 			throw IllegalArgumentException if one of the bullets can't be loaded.
 	 * 			| if for some bullet in bulletsCol : !canLoadBullet(bullet)
+	 * @effect	If the ship is in a world, the loading is an action of the ship in it.
+	 * 			| if getSuperWorld() != null
+	 * 			|	then getSuperWorld().beginLoading(this, bulletsCol)
+	 * @note	The bullets are fired in the order in which they are loaded.
 	 */
 	public void loadBulletsOnShip(Collection<Bullet> bulletsCol) throws IllegalArgumentException {
+		World world = getSuperWorld();
+		if (world != null) world.beginLoading(this, bulletsCol);
+		try{
+			loadBullets(bulletsCol);
+		}
+		finally{
+			if (world != null) world.endAction();
+		}
+	}
+	
+	/**
+	 * Load the bullets of the given collection on the ship, in the order of the collection.
+	 * 
+	 * @see		loadBulletsOnShip(Collection)
+	 */
+	@Model
+	private void loadBullets(Collection<Bullet> bulletsCol) throws IllegalArgumentException {
 		for(Bullet bullet : bulletsCol){
 			if (bullet == null) throw new IllegalArgumentException("Can't load bullet because bullet == null");
 			if ( bullet.getBulletSource() == this || canLoadBullet(bullet)){
@@ -358,8 +391,33 @@ public class Ship extends Entity{
 		totalMass -= bullet.getMass();
 	}
 	
-	
+	/**
+	 * Fire the first bullet loaded on the ship.
+	 * 
+	 * @effect	If the ship is in a world, the bullet is fired as an action of the ship in it.
+	 * 			| if getSuperWorld() != null
+	 * 			|	then getSuperWorld().beginAction(this, ReplayFormat.FIRE, 0)
+	 * 			|		fire()
+	 */
 	public void fireBullet() {
+		World world = this.getSuperWorld();
+		if (world == null) return;
+		world.beginAction(this, ReplayFormat.FIRE, 0);
+		try{
+			fire();
+		}
+		finally{
+			world.endAction();
+		}
+	}
+	
+	/**
+	 * Fire the first bullet loaded on the ship, if it is in a world.
+	 * 
+	 * @see		fireBullet()
+	 */
+	@Model
+	private void fire() {
 		if (getNbBulletsOnShip() > 0 && this.getSuperWorld() != null){
 			
 			Bullet bullet = bullets.iterator().next();
@@ -368,7 +426,7 @@ public class Ship extends Entity{
 			
 			if (!this.getSuperWorld().entityBoundryOverlap(bullet)){
 
-				for (Entity entity : getSuperWorld().getEntities()){
+				for (Entity entity : getSuperWorld().queryCircle(bullet.getX(), bullet.getY(), bullet.getRadius())){
 					if (bullet.overlap(entity))	{
 						
 						bullet.terminate();
@@ -417,7 +475,7 @@ public class Ship extends Entity{
     /**
      * Variable set containing all the (references to the) bullets in the ship. 
      */
-    private Set<Bullet> bullets = new HashSet<Bullet>();
+    private Set<Bullet> bullets = new LinkedHashSet<Bullet>();
     
     
     /**
@@ -469,9 +527,13 @@ public class Ship extends Entity{
      * 			| isValidAngle(angle)
      * @effect 	The direction of the ship is set to the current direction added with angle modulo 2*Pi.
      *         	| new.getShipOrientation == (this.direction + angle) % (2*Math.PI)
+     * @effect	If the ship is in a world, the action is performed in it.
+     * 			| if getSuperWorld() != null
+     * 			|	then getSuperWorld().actionPerformed(this, ReplayFormat.TURN, angle)
      */
     public void turn(double angle){
         assert Helper.isValidDouble(angle);
+        if (getSuperWorld() != null) getSuperWorld().actionPerformed(this, ReplayFormat.TURN, angle);
         this.setDirection( (direction+ angle) % (2*Math.PI));
     }
 	
@@ -532,8 +594,10 @@ public class Ship extends Entity{
         else{
             try {
             	super.move(dt);
-                this.setVelocity(this.getVelocity()[0] + this.getAcceleration() * Math.cos(this.getDirection()) * dt, this.getVelocity()[1] + this.getAcceleration() * Math.sin(this.getDirection())* dt);
-                for( Bullet bullet : bullets) bullet.setPosition(this.getPosition()[0], this.getPosition()[1]);
+                this.setVelocity(this.getVX() + this.getAcceleration() * Math.cos(this.getDirection()) * dt, this.getVY() + this.getAcceleration() * Math.sin(this.getDirection())* dt);
+                if (!bullets.isEmpty()){
+                	for( Bullet bullet : bullets) bullet.setPosition(this.getX(), this.getY());
+                }
                 }
             catch (IllegalArgumentException ex){
                 throw new IllegalArgumentException(ex.getMessage());
@@ -0,0 +1,360 @@
+package asteroids.model;
+
+import java.util.*;
+
+import be.kuleuven.cs.som.annotate.*;
+
+/**
+ * A class of uniform grids which hash the centres of the entities of a world into a fixed
+ * table of buckets. The grid is used as a broad phase for collision prediction: it only
+ * hands out entities which could possibly meet a given entity within a given time.
+ *
+ * @invar	Each entity in the grid is stored in exactly one bucket, namely the bucket of the
+ * 			cell which contains its centre at the time of its last update.
+ * 			| for each entity in cells.keySet()
+ * 			|	buckets[cells.get(entity).bucket].contains(entity)
+ * @invar	The cell size is always a strictly positive, valid double.
+ * 			| getCellSize() > 0 && Helper.isValidDouble(getCellSize())
+ *
+ * @version 1.1
+ * @author 	Brent De Bleser & Jesse Geens
+ */
+class SpatialHash implements BroadPhase {
+
+	/**
+	 * Constant containing the minimal number of buckets in the table.
+	 */
+	private final static int MINIMAL_TABLE_SIZE = 64;
+
+	/**
+	 * Constant containing the cell size used while no entity is present in the grid.
+	 */
+	private final static double DEFAULT_CELL_SIZE = 50;
+
+	/**
+	 * Constant containing the factor by which the mean radius may drift away from the
+	 * radius the cell size was chosen for before the grid is rebuilt.
+	 */
+	private final static double REBUILD_FACTOR = 2;
+
+	/**
+	 * Create a new, empty spatial hash.
+	 *
+	 * @post	The grid doesn't contain any entities.
+	 * 			| new.getNbEntities() == 0
+	 * @post	The cell size is the default cell size.
+	 * 			| new.getCellSize() == DEFAULT_CELL_SIZE
+	 */
+	@Raw
+	SpatialHash(){
+		this.cellSize = DEFAULT_CELL_SIZE;
+		this.buckets = createTable(MINIMAL_TABLE_SIZE);
+	}
+
+	/**
+	 * Return the edge length of the cells of this grid.
+	 */
+	@Basic
+	double getCellSize(){
+		return this.cellSize;
+	}
+
+	/**
+	 * Variable containing the edge length of the cells.
+	 */
+	private double cellSize;
+
+	/**
+	 * Return the number of entities stored in this grid.
+	 */
+	@Basic @Override
+	public int getNbEntities(){
+		return this.members.size();
+	}
+
+	/**
+	 * Return the largest radius of all entities in this grid, as computed by the last refresh.
+	 */
+	@Basic
+	double getMaxRadius(){
+		return this.maxRadius;
+	}
+
+	/**
+	 * Variable containing the largest radius of all entities in this grid.
+	 */
+	private double maxRadius = 0;
+
+	/**
+	 * Return the largest speed of all entities in this grid, as computed by the last refresh.
+	 */
+	@Basic
+	double getMaxSpeed(){
+		return this.maxSpeed;
+	}
+
+	/**
+	 * Variable containing the largest speed of all entities in this grid.
+	 */
+	private double maxSpeed = 0;
+
+	/**
+	 * Add the given entity to this grid.
+	 *
+	 * @param 	entity
+	 * 			The entity to add.
+	 * @post	The entity is stored in the bucket of the cell containing its centre.
+	 * 			| @ implementation
+	 * @post	The bounds of this grid take the given entity into account.
+	 * 			| new.getMaxRadius() >= entity.getRadius()
+	 */
+	@Override
+	public void insert(Entity entity){
+		Cell cell = new Cell(entity, members.size());
+		cells.put(entity, cell);
+		members.add(cell);
+		place(entity, cell);
+		includeInBounds(entity);
+	}
+
+	/**
+	 * Remove the given entity from this grid.
+	 *
+	 * @param 	entity
+	 * 			The entity to remove.
+	 * @post	The grid doesn't contain the entity anymore.
+	 * 			| @ implementation
+	 */
+	@Override
+	public void remove(Entity entity){
+		Cell cell = cells.remove(entity);
+		if (cell == null) return;
+		buckets[cell.bucket].remove(entity);
+		Cell last = members.remove(members.size() - 1);
+		if (last != cell){
+			members.set(cell.index, last);
+			last.index = cell.index;
+		}
+	}
+
+	/**
+	 * Update the cell of the given entity after it has moved.
+	 *
+	 * @param 	entity
+	 * 			The entity which has moved.
+	 * @post	If the centre of the entity has moved to another cell, the entity is moved
+	 * 			to the bucket of that cell.
+	 * 			| @ implementation
+	 */
+	@Override
+	public void update(Entity entity){
+		Cell cell = cells.get(entity);
+		if (cell == null) return;
+		long cellX = toCell(entity.getX());
+		long cellY = toCell(entity.getY());
+		if (cellX == cell.x && cellY == cell.y) return;
+		buckets[cell.bucket].remove(entity);
+		place(entity, cell);
+	}
+
+	/**
+	 * Remove all entities from this grid.
+	 *
+	 * @post	The grid doesn't contain any entities.
+	 * 			| new.getNbEntities() == 0
+	 * @post	The cell size is the default cell size, and the table has its minimal size, like those of a new grid.
+	 * 			| new.getCellSize() == DEFAULT_CELL_SIZE
+	 */
+	@Override
+	public void clear(){
+		cells.clear();
+		members.clear();
+		maxRadius = 0;
+		maxSpeed = 0;
+		cellSize = DEFAULT_CELL_SIZE;
+		buckets = createTable(MINIMAL_TABLE_SIZE);
+	}
+
+	/**
+	 * Recompute the largest radius and speed of the entities in this grid and adapt the cell size
+	 * to the typical radius of these entities.
+	 *
+	 * @post	The largest radius and speed are those of the entities currently in the grid.
+	 * 			| @ implementation
+	 * @post	If the mean radius has drifted away too far from the radius the cell size was chosen for,
+	 * 			the cell size becomes twice the mean radius.
+	 * 			| @ implementation
+	 * @post	If the cell size has changed or if the table has become too crowded, every entity is
+	 * 			put again in its bucket.
+	 * 			| @ implementation
+	 */
+	@Override
+	public void refreshBounds(){
+		maxRadius = 0;
+		maxSpeed = 0;
+		double totalRadius = 0;
+		for (int i = 0; i < members.size(); i++){
+			Entity entity = members.get(i).entity;
+			includeInBounds(entity);
+			totalRadius += entity.getRadius();
+		}
+		if (members.isEmpty()) return;
+
+		double wantedCellSize = 2 * totalRadius / members.size();
+		boolean drifted = Helper.isValidDouble(wantedCellSize) && wantedCellSize > 0
+				&& (wantedCellSize > cellSize * REBUILD_FACTOR || wantedCellSize * REBUILD_FACTOR < cellSize);
+		if (drifted) cellSize = wantedCellSize;
+		if (drifted || members.size() > buckets.length) rebuild();
+	}
+
+	/**
+	 * Collect all entities of this grid which could meet the given entity within the given time.
+	 *
+	 * @param 	entity
+	 * 			The entity to find candidates for.
+	 * @param 	horizon
+	 * 			The time within which the candidates could meet the entity.
+	 * @param 	result
+	 * 			The list to store the candidates in. The list is cleared first.
+	 * @post	The result contains every entity, other than the given entity, whose swept circle could
+	 * 			overlap with the swept circle of the given entity within the given time. The result may
+	 * 			contain entities which can't meet the given entity, and it may contain an entity more than once.
+	 * 			| @ implementation
+	 * @note	The bounds of the grid must have been refreshed since the speeds of the entities last changed.
+	 */
+	@Override
+	public void collectCandidates(Entity entity, double horizon, List<Entity> result){
+		result.clear();
+		double x = entity.getX(), y = entity.getY();
+		double endX = x + entity.getVX() * horizon, endY = y + entity.getVY() * horizon;
+		double reach = entity.getRadius() + maxRadius + maxSpeed * horizon;
+		double minX = Math.min(x, endX) - reach;
+		double maxX = Math.max(x, endX) + reach;
+		double minY = Math.min(y, endY) - reach;
+		double maxY = Math.max(y, endY) + reach;
+
+		if (!(Helper.isValidDouble(minX) && Helper.isValidDouble(maxX) && Helper.isValidDouble(minY) && Helper.isValidDouble(maxY))){
+			collectAll(entity, result);
+			return;
+		}
+		long firstX = toCell(minX), lastX = toCell(maxX);
+		long firstY = toCell(minY), lastY = toCell(maxY);
+		double nbCells = (double) (lastX - firstX + 1) * (double) (lastY - firstY + 1);
+		if (nbCells > buckets.length){
+			collectAll(entity, result);
+			return;
+		}
+		for (long cellX = firstX; cellX <= lastX; cellX++){
+			for (long cellY = firstY; cellY <= lastY; cellY++){
+				List<Entity> bucket = buckets[bucketOf(cellX, cellY)];
+				for (int i = 0; i < bucket.size(); i++){
+					Entity other = bucket.get(i);
+					if (other != entity) result.add(other);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Collect all entities of this grid other than the given entity.
+	 */
+	private void collectAll(Entity entity, List<Entity> result){
+		for (int i = 0; i < members.size(); i++){
+			Entity other = members.get(i).entity;
+			if (other != entity) result.add(other);
+		}
+	}
+
+	/**
+	 * Take the radius and speed of the given entity into account in the bounds of this grid.
+	 *
+	 * @param 	entity
+	 * 			The entity whose radius and speed must be covered.
+	 * @post	The largest radius and speed of this grid are at least those of the given entity.
+	 * 			| new.getMaxRadius() >= entity.getRadius() && new.getMaxSpeed() >= speed of entity
+	 */
+	@Override
+	public void includeInBounds(Entity entity){
+		maxRadius = Math.max(maxRadius, entity.getRadius());
+		maxSpeed = Math.max(maxSpeed, Math.hypot(entity.getVX(), entity.getVY()));
+	}
+
+	/**
+	 * Put every entity again in its bucket, using the current cell size and a table which is
+	 * large enough for the current number of entities.
+	 */
+	private void rebuild(){
+		int size = MINIMAL_TABLE_SIZE;
+		while (size < 2 * members.size()) size *= 2;
+		buckets = createTable(size);
+		for (int i = 0; i < members.size(); i++) place(members.get(i).entity, members.get(i));
+	}
+
+	/**
+	 * Store the given entity in the bucket of the cell containing its centre and remember that cell.
+	 */
+	private void place(Entity entity, Cell cell){
+		cell.x = toCell(entity.getX());
+		cell.y = toCell(entity.getY());
+		cell.bucket = bucketOf(cell.x, cell.y);
+		buckets[cell.bucket].add(entity);
+	}
+
+	/**
+	 * Return the index of the cell along one axis which contains the given coordinate.
+	 */
+	private long toCell(double coordinate){
+		return (long) Math.floor(coordinate / cellSize);
+	}
+
+	/**
+	 * Return the index of the bucket in which the cell with the given indices is stored.
+	 */
+	private int bucketOf(long x, long y){
+		long hash = x * 73856093L ^ y * 19349663L;
+		return (int) (hash & (buckets.length - 1));
+	}
+
+	/**
+	 * Return a new table with the given number of empty buckets.
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private static List<Entity>[] createTable(int size){
+		List<Entity>[] table = new List[size];
+		for (int i = 0; i < size; i++) table[i] = new ArrayList<Entity>();
+		return table;
+	}
+
+	/**
+	 * The table of buckets. Its length is always a power of two.
+	 */
+	private List<Entity>[] buckets;
+
+	/**
+	 * Map containing the cell in which each entity of this grid is stored.
+	 */
+	private final Map<Entity, Cell> cells = new HashMap<Entity, Cell>();
+
+	/**
+	 * List containing the cell of every entity in this grid, so the grid can be walked without
+	 * iterating over the map. Each cell knows its own index in this list.
+	 */
+	private final List<Cell> members = new ArrayList<Cell>();
+
+	/**
+	 * A class of mutable cell coordinates, remembered for each entity in the grid.
+	 */
+	private static class Cell {
+
+		private Cell(Entity entity, int index){
+			this.entity = entity;
+			this.index = index;
+		}
+
+		private final Entity entity;
+		private int index;
+		private long x;
+		private long y;
+		private int bucket;
+	}
+}
@@ -0,0 +1,320 @@
+package asteroids.model;
+
+import java.util.*;
+
+import be.kuleuven.cs.som.annotate.*;
+
+/**
+ * A class of broad phases which keep the entities of a world sorted along the x-axis by the
+ * left end of their bounding interval. Candidates for a collision are found by sweeping over
+ * the entities whose interval lies near the swept interval of an entity, and pruning those whose
+ * swept bounding box doesn't overlap with it.
+ * 	As entities hardly change their order from one move to the next, the order is restored by
+ * 	insertion sort, which only takes linear time when the order is nearly right.
+ *
+ * @invar	The entities are sorted by the left end of their bounding interval, as computed at their last update.
+ * 			| for each i in 1..getNbEntities()-1
+ * 			|	order[i-1].key <= order[i].key
+ * @invar	Each node knows its own index in the order.
+ * 			| for each i in 0..getNbEntities()-1
+ * 			|	order[i].index == i
+ *
+ * @version 1.1
+ * @author 	Brent De Bleser & Jesse Geens
+ */
+class SweepAndPrune implements BroadPhase {
+
+	/**
+	 * Constant containing the initial capacity of the order.
+	 */
+	private final static int INITIAL_CAPACITY = 64;
+
+	/**
+	 * Create a new, empty sweep and prune broad phase.
+	 *
+	 * @post	The broad phase doesn't contain any entities.
+	 * 			| new.getNbEntities() == 0
+	 */
+	@Raw
+	SweepAndPrune(){
+		this.order = new Node[INITIAL_CAPACITY];
+	}
+
+	/**
+	 * Return the number of entities stored in this broad phase.
+	 */
+	@Basic @Override
+	public int getNbEntities(){
+		return this.size;
+	}
+
+	/**
+	 * Variable containing the number of entities in the order.
+	 */
+	private int size = 0;
+
+	/**
+	 * Return the largest radius of all entities in this broad phase, as computed by the last refresh.
+	 */
+	@Basic
+	double getMaxRadius(){
+		return this.maxRadius;
+	}
+
+	/**
+	 * Variable containing the largest radius of all entities in this broad phase.
+	 */
+	private double maxRadius = 0;
+
+	/**
+	 * Return the largest speed of all entities in this broad phase, as computed by the last refresh.
+	 */
+	@Basic
+	double getMaxSpeed(){
+		return this.maxSpeed;
+	}
+
+	/**
+	 * Variable containing the largest speed of all entities in this broad phase.
+	 */
+	private double maxSpeed = 0;
+
+	/**
+	 * Add the given entity to this broad phase.
+	 *
+	 * @param 	entity
+	 * 			The entity to add.
+	 * @post	The entity is inserted in the order at the place of the left end of its bounding interval.
+	 * 			| @ implementation
+	 * @post	The bounds of this broad phase take the given entity into account.
+	 * 			| new.getMaxRadius() >= entity.getRadius()
+	 */
+	@Override
+	public void insert(Entity entity){
+		if (size == order.length) order = Arrays.copyOf(order, 2 * order.length);
+		Node node = new Node(entity);
+		nodes.put(entity, node);
+		order[size] = node;
+		node.index = size;
+		size++;
+		restore(node);
+		includeInBounds(entity);
+	}
+
+	/**
+	 * Remove the given entity from this broad phase.
+	 *
+	 * @param 	entity
+	 * 			The entity to remove.
+	 * @post	The broad phase doesn't contain the entity anymore, and the order of the other entities is kept.
+	 * 			| @ implementation
+	 */
+	@Override
+	public void remove(Entity entity){
+		Node node = nodes.remove(entity);
+		if (node == null) return;
+		System.arraycopy(order, node.index + 1, order, node.index, size - node.index - 1);
+		size--;
+		order[size] = null;
+		for (int i = node.index; i < size; i++) order[i].index = i;
+	}
+
+	/**
+	 * Move the given entity to its place in the order after it has moved.
+	 *
+	 * @param 	entity
+	 * 			The entity which has moved.
+	 * @post	The entity is moved past its neighbours until the order is restored.
+	 * 			| @ implementation
+	 */
+	@Override
+	public void update(Entity entity){
+		Node node = nodes.get(entity);
+		if (node == null) return;
+		node.key = keyOf(entity);
+		restore(node);
+	}
+
+	/**
+	 * Remove all entities from this broad phase.
+	 *
+	 * @post	The broad phase doesn't contain any entities.
+	 * 			| new.getNbEntities() == 0
+	 */
+	@Override
+	public void clear(){
+		Arrays.fill(order, 0, size, null);
+		size = 0;
+		nodes.clear();
+		maxRadius = 0;
+		maxSpeed = 0;
+	}
+
+	/**
+	 * Recompute the largest radius and speed of the entities in this broad phase and sort the
+	 * entities again.
+	 *
+	 * @post	The largest radius and speed are those of the entities currently in the broad phase.
+	 * 			| @ implementation
+	 * @post	The entities are sorted by the left end of their current bounding interval, using insertion sort.
+	 * 			| @ implementation
+	 */
+	@Override
+	public void refreshBounds(){
+		maxRadius = 0;
+		maxSpeed = 0;
+		for (int i = 0; i < size; i++){
+			includeInBounds(order[i].entity);
+			order[i].key = keyOf(order[i].entity);
+		}
+		for (int i = 1; i < size; i++){
+			Node node = order[i];
+			int j = i;
+			while (j > 0 && order[j - 1].key > node.key){
+				order[j] = order[j - 1];
+				order[j].index = j;
+				j--;
+			}
+			order[j] = node;
+			node.index = j;
+		}
+	}
+
+	/**
+	 * Collect all entities of this broad phase which could meet the given entity within the given time.
+	 *
+	 * @param 	entity
+	 * 			The entity to find candidates for.
+	 * @param 	horizon
+	 * 			The time within which the candidates could meet the entity.
+	 * @param 	result
+	 * 			The list to store the candidates in. The list is cleared first.
+	 * @post	The result contains every entity, other than the given entity, whose swept bounding box
+	 * 			overlaps with the swept bounding box of the given entity within the given time. Each entity
+	 * 			is contained at most once.
+	 * 			| @ implementation
+	 * @note	The bounds of the broad phase must have been refreshed since the speeds of the entities last changed.
+	 */
+	@Override
+	public void collectCandidates(Entity entity, double horizon, List<Entity> result){
+		result.clear();
+		double sweep = maxSpeed * horizon;
+		if (!Helper.isValidDouble(sweep)){
+			collectAll(entity, result);
+			return;
+		}
+		double x = entity.getX(), y = entity.getY();
+		double endX = x + entity.getVX() * horizon, endY = y + entity.getVY() * horizon;
+		double radius = entity.getRadius();
+		double minX = Math.min(x, endX) - radius;
+		double maxX = Math.max(x, endX) + radius;
+		double minY = Math.min(y, endY) - radius;
+		double maxY = Math.max(y, endY) + radius;
+
+		double upper = maxX + sweep;
+		for (int i = firstAtLeast(minX - 2 * maxRadius - sweep); i < size && order[i].key <= upper; i++){
+			Entity other = order[i].entity;
+			if (other != entity && overlapsSweptBox(other, horizon, minX, maxX, minY, maxY)) result.add(other);
+		}
+	}
+
+	/**
+	 * Check whether the bounding box swept by the given entity within the given time overlaps with the given box.
+	 */
+	private static boolean overlapsSweptBox(Entity entity, double horizon, double minX, double maxX, double minY, double maxY){
+		double x = entity.getX(), y = entity.getY();
+		double radius = entity.getRadius();
+		double endX = x + entity.getVX() * horizon;
+		double endY = y + entity.getVY() * horizon;
+		return Math.min(x, endX) - radius <= maxX && Math.max(x, endX) + radius >= minX
+				&& Math.min(y, endY) - radius <= maxY && Math.max(y, endY) + radius >= minY;
+	}
+
+	/**
+	 * Collect all entities of this broad phase other than the given entity.
+	 */
+	private void collectAll(Entity entity, List<Entity> result){
+		for (int i = 0; i < size; i++){
+			if (order[i].entity != entity) result.add(order[i].entity);
+		}
+	}
+
+	/**
+	 * Take the radius and speed of the given entity into account in the bounds of this broad phase.
+	 *
+	 * @param 	entity
+	 * 			The entity whose radius and speed must be covered.
+	 * @post	The largest radius and speed of this broad phase are at least those of the given entity.
+	 * 			| new.getMaxRadius() >= entity.getRadius() && new.getMaxSpeed() >= speed of entity
+	 */
+	@Override
+	public void includeInBounds(Entity entity){
+		maxRadius = Math.max(maxRadius, entity.getRadius());
+		maxSpeed = Math.max(maxSpeed, Math.hypot(entity.getVX(), entity.getVY()));
+	}
+
+	/**
+	 * Return the index of the first node in the order whose key isn't smaller than the given key.
+	 */
+	private int firstAtLeast(double key){
+		int low = 0;
+		int high = size;
+		while (low < high){
+			int middle = (low + high) >>> 1;
+			if (order[middle].key < key) low = middle + 1;
+			else high = middle;
+		}
+		return low;
+	}
+
+	/**
+	 * Move the given node to the left or to the right until it is at its place in the order.
+	 */
+	private void restore(Node node){
+		int i = node.index;
+		while (i > 0 && order[i - 1].key > node.key){
+			order[i] = order[i - 1];
+			order[i].index = i;
+			i--;
+		}
+		while (i < size - 1 && order[i + 1].key < node.key){
+			order[i] = order[i + 1];
+			order[i].index = i;
+			i++;
+		}
+		order[i] = node;
+		node.index = i;
+	}
+
+	/**
+	 * Return the left end of the bounding interval of the given entity along the x-axis.
+	 */
+	private static double keyOf(Entity entity){
+		return entity.getX() - entity.getRadius();
+	}
+
+	/**
+	 * Array containing the nodes of the entities, sorted by their key.
+	 */
+	private Node[] order;
+
+	/**
+	 * Map containing the node of each entity in this broad phase.
+	 */
+	private final Map<Entity, Node> nodes = new HashMap<Entity, Node>();
+
+	/**
+	 * A class containing the sort key and the index in the order of a single entity.
+	 */
+	private static class Node {
+
+		private Node(Entity entity){
+			this.entity = entity;
+			this.key = keyOf(entity);
+		}
+
+		private final Entity entity;
+		private double key;
+		private int index;
+	}
+}
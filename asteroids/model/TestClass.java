@@ -2,10 +2,22 @@ package asteroids.model;
  
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -13,8 +25,11 @@ import org.junit.Test;
 import asteroids.model.Bullet;
 import asteroids.model.Ship;
 import asteroids.model.World;
+import asteroids.model.program.Function;
 import asteroids.facade.Facade;
+import asteroids.part2.CollisionListener;
 import asteroids.part3.facade.IFacade;
+import asteroids.part3.programs.SourceLocation;
 import asteroids.util.ModelException;
  
 public class TestClass {
@@ -96,4 +111,725 @@ public class TestClass {
       catch (ModelException exc) {
       }
     }
-}
\ No newline at end of file
+    
+    @Test
+    public void checkSpatialHash() {
+        SpatialHash hash = new SpatialHash();
+        Asteroid a = new Asteroid(100, 100, 0, 0, 10), b = new Asteroid(130, 100, 0, 0, 10), c = new Asteroid(1000, 100, -100, 0, 10);
+        hash.insert(a);
+        hash.insert(b);
+        hash.insert(c);
+        hash.refreshBounds();
+        assertEquals(20, hash.getCellSize(), EPSILON);
+        List<Entity> result = new ArrayList<Entity>();
+        hash.collectCandidates(a, 0, result);
+        assertEquals(Arrays.asList(b), result);
+        
+        hash.remove(b);
+        assertEquals(2, hash.getNbEntities());
+        hash.collectCandidates(a, 0, result);
+        assertTrue(result.isEmpty());
+        c.move(8.7);
+        hash.update(c);
+        hash.collectCandidates(a, 0, result);
+        assertEquals(Arrays.asList(c), result);
+        hash.collectCandidates(new Asteroid(1000, 100, 0, 0, 10), 0, result);
+        assertTrue(result.isEmpty());
+        
+        hash.insert(new Asteroid(500, 500, 0, 0, 15));
+        hash.refreshBounds();
+        assertEquals(20, hash.getCellSize(), EPSILON);
+        for (int i = 0; i < 3; i++) hash.insert(new Asteroid(2000 + 300 * i, 2000, 0, 0, 100));
+        hash.refreshBounds();
+        assertEquals(2 * 335 / 6.0, hash.getCellSize(), EPSILON);
+        hash.collectCandidates(a, 0, result);
+        assertEquals(Arrays.asList(c), result);
+        
+        World world = new World(2000, 2000, BroadPhaseType.SPATIAL_HASH);
+        Random random = new Random(7);
+        for (int i = 0; i < 300; i++)
+            world.addEntityToWorld(new Asteroid(50 + 100 * (i % 19), 50 + 100 * (i / 19), 100 * random.nextGaussian(),
+                    100 * random.nextGaussian(), 5 + 40 * random.nextDouble()));
+        List<Entity> entities = new ArrayList<Entity>(world.getEntities());
+        double time = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < entities.size(); i++) {
+            time = Math.min(time, entities.get(i).getTimeCollisionBoundary());
+            for (int j = i + 1; j < entities.size(); j++) time = Math.min(time, entities.get(i).getTimeToCollision(entities.get(j)));
+        }
+        assertTrue(time < Double.POSITIVE_INFINITY);
+        assertEquals(time, world.getTimeToNextCollision(), 1E-9);
+    }
+    
+    @Test
+    public void checkStaleEventsDropped() {
+        World world = new World(1000, 1000);
+        Asteroid a = new Asteroid(960, 500, 10, 5, 10), b = new Asteroid(900, 500, 30, 5, 10);
+        Asteroid d = new Asteroid(100, 100, 10, 0, 10), e = new Asteroid(142, 100, 0, 0, 10);
+        for (Asteroid asteroid : Arrays.asList(a, b, d, e)) world.addEntityToWorld(asteroid);
+        List<Object> entities = new ArrayList<Object>();
+        List<double[]> positions = new ArrayList<double[]>();
+        world.evolve(2.4, new CollisionListener() {
+            public void boundaryCollision(Object entity, double x, double y) {
+                entities.add(entity);
+                positions.add(new double[] { x, y });
+            }
+            public void objectCollision(Object entity1, Object entity2, double x, double y) {
+                entities.add(new HashSet<Object>(Arrays.asList(entity1, entity2)));
+                positions.add(new double[] { x, y });
+            }
+        });
+        // The pair a-b collides at 2, after which the boundary collision of a predicted for 3 is stale.
+        // The boundary collision a gets instead, and the collision of the uninvolved pair d-e, come at their own times.
+        assertEquals(3, entities.size());
+        assertEquals(new HashSet<Object>(Arrays.asList(a, b)), entities.get(0));
+        assertEquals(970, positions.get(0)[0], EPSILON);
+        assertEquals(510, positions.get(0)[1], EPSILON);
+        assertEquals(new HashSet<Object>(Arrays.asList(d, e)), entities.get(1));
+        assertEquals(132, positions.get(1)[0], EPSILON);
+        assertEquals(100, positions.get(1)[1], EPSILON);
+        assertTrue(entities.get(2) == a);
+        assertEquals(1000, positions.get(2)[0], 0.5);
+        assertEquals(500 + 5 * (2 + 10.0 / 30), positions.get(2)[1], 0.1);
+    }
+    
+    @Test
+    public void checkNextCollision() throws ModelException {
+        World world = facade.createWorld(1000, 800);
+        Ship ship1 = facade.createShip(100, 100, 10, 0, 20, 0, 1.1E18);
+        Ship ship2 = facade.createShip(300, 100, -10, 0, 20, 0, 1.1E18);
+        facade.addShipToWorld(world, ship1);
+        facade.addShipToWorld(world, ship2);
+        CollisionEvent collision = world.getNextCollision();
+        assertEquals(CollisionEvent.Kind.ENTITY, collision.getKind());
+        assertEquals(8, facade.getTimeNextCollision(world), EPSILON);
+        assertEquals(200, facade.getPositionNextCollision(world)[0], EPSILON);
+        assertEquals(100, facade.getPositionNextCollision(world)[1], EPSILON);
+        assertTrue(collision == world.getNextCollision());
+        world.evolve(1, null);
+        assertFalse(collision == world.getNextCollision());
+        assertEquals(7, world.getTimeToNextCollision(), EPSILON);
+    }
+    
+    @Test
+    public void checkSweepAndPruneWorld() throws ModelException {
+        World world = new World(4000, 200, BroadPhaseType.SWEEP_AND_PRUNE);
+        assertEquals(BroadPhaseType.SWEEP_AND_PRUNE, world.getBroadPhaseType());
+        Ship ship1 = facade.createShip(100, 100, 10, 0, 20, 0, 1.1E18);
+        Ship ship2 = facade.createShip(300, 100, -10, 0, 20, 0, 1.1E18);
+        Ship ship3 = facade.createShip(3000, 100, 0, 0, 20, 0, 1.1E18);
+        world.addEntityToWorld(ship1);
+        world.addEntityToWorld(ship2);
+        world.addEntityToWorld(ship3);
+        assertEquals(8, world.getTimeToNextCollision(), EPSILON);
+        world.evolve(9, null);
+        assertEquals(3, world.getNbEntities());
+        assertTrue(ship1.getVelocity()[0] < 0);
+        assertTrue(ship2.getVelocity()[0] > 0);
+    }
+    
+    @Test
+    public void checkEntityStoreSwapRemove() {
+        World world = new World(1000, 1000);
+        Asteroid a = new Asteroid(100, 100, 1, 2, 10), b = new Asteroid(200, 200, 3, 4, 10), c = new Asteroid(300, 300, 5, 6, 10);
+        for (Asteroid asteroid : Arrays.asList(a, b, c)) world.addEntityToWorld(asteroid);
+        assertEquals(1, b.getSlot());
+        world.removeEntityFromWorld(b);
+        
+        assertEquals(2, world.getNbEntities());
+        assertEquals(0, a.getSlot());
+        assertEquals(1, c.getSlot());
+        assertEquals(-1, b.getSlot());
+        double[][] expected = { { 100, 100, 1, 2 }, { 200, 200, 3, 4 }, { 300, 300, 5, 6 } };
+        List<Asteroid> handles = Arrays.asList(a, b, c);
+        for (int i = 0; i < 3; i++) {
+            Asteroid asteroid = handles.get(i);
+            assertEquals(expected[i][0], asteroid.getPosition()[0], 0);
+            assertEquals(expected[i][1], asteroid.getPosition()[1], 0);
+            assertEquals(expected[i][2], asteroid.getVelocity()[0], 0);
+            assertEquals(expected[i][3], asteroid.getVelocity()[1], 0);
+        }
+        b.move(10);
+        assertEquals(230, b.getPosition()[0], EPSILON);
+        assertEquals(300, c.getPosition()[0], 0);
+    }
+    
+    @Test
+    public void checkEvolveAllocationFree() throws ModelException {
+        World world = facade.createWorld(10000, 10000);
+        for (int i = 0; i < 20; i++)
+            for (int j = 0; j < 20; j++)
+                world.addEntityToWorld(facade.createShip(250 + 480 * i, 250 + 480 * j, (i % 3) - 1, (j % 3) - 1, 20, 0, 1.1E18));
+        for (int i = 0; i < 2000; i++) world.evolve(0.01, null);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(thread);
+        long overhead = threads.getThreadAllocatedBytes(thread) - before;
+        before = threads.getThreadAllocatedBytes(thread);
+        world.evolve(0.01, null);
+        long allocated = threads.getThreadAllocatedBytes(thread) - before - overhead;
+        assertEquals(0, allocated);
+        assertEquals(400, world.getNbEntities());
+        
+        World box = facade.createWorld(100, 100);
+        box.addEntityToWorld(facade.createShip(30, 50, 50, 0, 10, 0, 1.1E18));
+        box.addEntityToWorld(facade.createShip(70, 50, -50, 0, 10, 0, 1.1E18));
+        final int[] counts = new int[2];
+        CollisionListener counter = new CollisionListener() {
+            public void boundaryCollision(Object entity, double x, double y) { counts[0]++; }
+            public void objectCollision(Object entity1, Object entity2, double x, double y) { counts[1]++; }
+        };
+        for (int i = 0; i < 20; i++) box.evolve(1.5, counter);
+        counts[0] = 0;
+        counts[1] = 0;
+        before = threads.getThreadAllocatedBytes(thread);
+        box.evolve(1.5, counter);
+        allocated = threads.getThreadAllocatedBytes(thread) - before - overhead;
+        assertEquals(0, allocated);
+        assertTrue(counts[0] >= 1);
+        assertTrue(counts[1] >= 1);
+    }
+    
+    @Test
+    public void checkParallelPrediction() throws ModelException {
+        World sequential = new World(5000, 5000);
+        World parallel = new World(5000, 5000, BroadPhaseType.SWEEP_AND_PRUNE);
+        parallel.setParallelPrediction(true);
+        parallel.setParallelThreshold(1);
+        for (int i = 0; i < 30; i++)
+            for (int j = 0; j < 30; j++){
+                sequential.addEntityToWorld(new Asteroid(100 + 160 * i, 100 + 160 * j, 7 * (i % 5) - 14, 5 * (j % 7) - 15, 10 + (i * j) % 7));
+                parallel.addEntityToWorld(new Asteroid(100 + 160 * i, 100 + 160 * j, 7 * (i % 5) - 14, 5 * (j % 7) - 15, 10 + (i * j) % 7));
+            }
+        assertEquals(sequential.getTimeToNextCollision(), parallel.getTimeToNextCollision(), 0);
+        assertEquals(sequential.getNextCollisionPos()[0], parallel.getNextCollisionPos()[0], 0);
+        assertEquals(sequential.getNextCollisionPos()[1], parallel.getNextCollisionPos()[1], 0);
+    }
+    
+    @Test
+    public void checkBlockTimeToCollision() {
+        int count = 500;
+        double[] dx = new double[count], dy = new double[count], dvx = new double[count], dvy = new double[count];
+        double[] sumRadius = new double[count], times = new double[count];
+        for (int i = 0; i < count; i++){
+            dx[i] = (i * 37) % 200 - 100;
+            dy[i] = (i * 53) % 200 - 100;
+            dvx[i] = (i % 11) - 5;
+            dvy[i] = (i % 7) - 3;
+            sumRadius[i] = 5 + i % 40;
+        }
+        CollisionBlock.getTimesToCollision(dx, dy, dvx, dvy, sumRadius, times, count);
+        for (int i = 0; i < count; i++)
+            assertEquals(EntityStore.getTimeToCollision(0, 0, 0, 0, 0, dx[i], dy[i], dvx[i], dvy[i], sumRadius[i]), times[i], 0);
+    }
+    
+    @Test
+    public void checkSpatialQueries() throws ModelException {
+        World world = facade.createWorld(1000, 1000);
+        Ship ship = facade.createShip(100, 100, 0, 0, 20, 0, 1.1E18);
+        Asteroid near = new Asteroid(200, 100, 0, 0, 10);
+        Asteroid far = new Asteroid(800, 800, 0, 0, 10);
+        world.addEntityToWorld(ship);
+        world.addEntityToWorld(near);
+        world.addEntityToWorld(far);
+        assertEquals(2, world.queryCircle(150, 100, 40).size());
+        assertEquals(1, world.queryAABB(700, 700, 900, 900).size());
+        assertTrue(world.raycast(0, 100, 1, 0, 1000) == ship);
+        assertTrue(world.raycast(150, 100, 1, 0, 1000) == near);
+        assertTrue(world.raycast(150, 100, 0, 1, 1000) == null);
+        assertTrue(world.nearest(700, 700, 1, entity -> entity instanceof Asteroid).get(0) == far);
+        assertEquals(2, world.nearest(0, 0, 5, entity -> entity instanceof Asteroid).size());
+        assertTrue(world.entityAt(200, 100) == near);
+    }
+    
+    @Test
+    public void checkNearestTracking() throws ModelException {
+        World world = facade.createWorld(1000, 1000);
+        Ship ship = facade.createShip(100, 500, 0, 0, 20, 0, 1.1E18);
+        Asteroid still = new Asteroid(300, 500, 0, 0, 10);
+        Asteroid passing = new Asteroid(900, 650, -100, 0, 10);
+        world.addEntityToWorld(ship);
+        world.addEntityToWorld(still);
+        world.addEntityToWorld(passing);
+        for (int step = 0; step < 17; step++){
+            Entity expected = world.nearest(ship.getX(), ship.getY(), 1, entity -> entity instanceof Asteroid).get(0);
+            assertTrue(world.getNearest(ship, Asteroid.class) == expected);
+            world.evolve(0.5, null);
+        }
+        assertTrue(world.getNearest(ship, Asteroid.class) == passing);
+        assertTrue(world.getNearest(ship, Bullet.class) == null);
+        Asteroid close = new Asteroid(100, 550, 0, 0, 10);
+        world.addEntityToWorld(close);
+        assertTrue(world.getNearest(ship, MinorPlanet.class) == close);
+        world.removeEntityFromWorld(close);
+        assertTrue(world.getNearest(ship, MinorPlanet.class) == passing);
+    }
+    
+    @Test
+    public void checkEntitiesOfType() throws ModelException {
+        World world = facade.createWorld(1000, 1000);
+        Ship ship = facade.createShip(100, 100, 0, 0, 20, 0, 1.1E18);
+        Asteroid asteroid = new Asteroid(300, 300, 0, 0, 10);
+        Set<? extends Ship> ships = facade.getWorldShips(world);
+        assertTrue(ships.isEmpty());
+        world.addEntityToWorld(ship);
+        world.addEntityToWorld(asteroid);
+        assertTrue(ships.contains(ship));
+        assertEquals(1, world.getNbEntitiesOfType(EntityType.ASTEROID));
+        assertEquals(0, world.getNbEntitiesOfType(EntityType.PLANETOID));
+        assertTrue(world.getEntitiesOfTheClass("Asteroid").contains(asteroid));
+        world.removeEntityFromWorld(ship);
+        assertTrue(ships.isEmpty());
+        assertEquals(EntityType.SHIP, ship.getType());
+    }
+    
+    @Test
+    public void checkDeferredMutation() throws ModelException {
+        World world = facade.createWorld(1000, 1000);
+        Set<? extends Entity> entities = world.getEntities();
+        for (int i = 0; i < 5; i++) world.addEntityToWorld(new Asteroid(100 + 100 * i, 100, 0, 0, 10));
+        assertEquals(5, entities.size());
+        world.forEachEntity(entity -> {
+            entity.terminate();
+            if (entity.getX() == 100) world.addEntityToWorld(new Asteroid(500, 500, 0, 0, 10));
+        });
+        assertEquals(1, entities.size());
+        assertEquals(500, entities.iterator().next().getX(), 0);
+    }
+    
+    @Test
+    public void checkBatchEvolve() throws ModelException {
+        World world = facade.createWorld(1000, 1000);
+        Ship ship = facade.createShip(100, 500, 10, 0, 20, 0, 1.1E18);
+        Asteroid asteroid = new Asteroid(500, 500, 0, 0, 10);
+        world.addEntityToWorld(ship);
+        world.addEntityToWorld(asteroid);
+        EvolveSummary summary = world.evolveSteps(10, 0.5, null);
+        assertEquals(10, summary.getNbSteps());
+        assertEquals(5, summary.getTime(), EPSILON);
+        assertEquals(150, ship.getX(), EPSILON);
+        summary = world.advanceToNextEvent(100);
+        assertEquals(32, summary.getTime(), EPSILON);
+        assertEquals(1, summary.getNbCollisions());
+        assertEquals(1, summary.getNbEntitiesRemoved());
+        assertTrue(ship.isTerminated());
+    }
+    
+    @Test
+    public void checkBoundaryNearMissBounces() {
+        World world = new World(1000, 1000);
+        // Moving this asteroid to the time it hits the right boundary leaves its edge a rounding error short of it.
+        Asteroid asteroid = new Asteroid(524.9915983523474, 369.13667092711404, 112.09367641759232, 1.8786859351257235, 32.44762584653278);
+        world.addEntityToWorld(asteroid);
+        final int[] bounces = new int[1];
+        world.evolve(20, new CollisionListener() {
+            public void boundaryCollision(Object entity, double x, double y) {
+                if (++bounces[0] > 2) fail();
+            }
+            public void objectCollision(Object entity1, Object entity2, double x, double y) { fail(); }
+        });
+        assertEquals(2, bounces[0]);
+        assertEquals(112.09367641759232, asteroid.getVX(), 0);
+        assertEquals(1.8786859351257235, asteroid.getVY(), 0);
+    }
+    
+    @Test
+    public void checkCollisionPipeline() throws ModelException {
+        World world = facade.createWorld(1000, 1000);
+        Ship ship = facade.createShip(100, 500, 100, 0, 20, 0, 1.1E18);
+        world.addEntityToWorld(ship);
+        List<Thread> threads = new ArrayList<Thread>();
+        CollisionListener recorder = new CollisionListener() {
+            public void boundaryCollision(Object entity, double x, double y) {
+                threads.add(Thread.currentThread());
+            }
+            public void objectCollision(Object entity1, Object entity2, double x, double y) {
+                threads.add(Thread.currentThread());
+            }
+        };
+        CollisionPipeline pipeline = new CollisionPipeline(recorder, 2, Backpressure.BLOCK);
+        EvolveSummary summary = world.evolveSteps(100, 1, pipeline);
+        pipeline.close();
+        assertEquals(summary.getNbCollisions(), threads.size());
+        assertEquals(summary.getNbCollisions(), pipeline.getNbDelivered());
+        assertTrue(summary.getNbCollisions() >= 10);
+        assertFalse(threads.contains(Thread.currentThread()));
+    }
+    
+    @Test
+    public void checkReplay() throws ModelException, IOException {
+        World world = facade.createWorld(1000, 1000);
+        world.setRandomState(17);
+        Ship ship = facade.createShip(100, 500, 10, 0, 20, 0, 1.1E18);
+        world.addEntityToWorld(ship);
+        world.addEntityToWorld(new Planetoid(600, 500, -20, 5, 40, 0));
+        Path path = Files.createTempFile("replay", ".log");
+        try (ReplayRecorder recorder = new ReplayRecorder(world, path, 10)){
+            ship.thrustOn();
+            for (int tick = 0; tick < 40; tick++){
+                if (tick == 20) ship.turn(Math.PI / 2);
+                world.evolve(0.5, null);
+            }
+            assertEquals(40, recorder.getTick());
+            assertEquals(5, recorder.getNbKeyframes());
+        }
+        try{
+            Replayer replayer = new Replayer(path);
+            assertEquals(40, replayer.replay());
+            Ship replayed = (Ship) replayer.getEntity(0);
+            assertEquals(ship.getX(), replayed.getX(), 0);
+            assertEquals(ship.getY(), replayed.getY(), 0);
+            assertEquals(ship.getDirection(), replayed.getDirection(), 0);
+            replayer.seek(25);
+            assertEquals(25, replayer.getTick());
+            replayer.runTo(40);
+            assertEquals(ship.getX(), ((Ship) replayer.getEntity(0)).getX(), 0);
+        }
+        finally{
+            Files.delete(path);
+        }
+    }
+    
+    @Test
+    public void checkCheckpoint() throws ModelException, IOException {
+        World world = facade.createWorld(1000, 1000);
+        Ship ship = facade.createShip(100, 500, 10, 0, 20, 1, 1.1E18);
+        world.addEntityToWorld(ship);
+        List<Bullet> bullets = new ArrayList<Bullet>();
+        for (int i = 0; i < 3; i++) bullets.add(new Bullet(100, 500, 0, 0, 2 + i));
+        ship.loadBulletsOnShip(bullets);
+        ship.thrustOn();
+        ship.fireBullet();
+        world.addEntityToWorld(new Planetoid(600, 500, -20, 5, 40, 100));
+        world.evolve(0.5, null);
+        Path path = Files.createTempFile("checkpoint", ".bin");
+        try{
+            WorldCheckpoint.capture(world).writeInBackground(path).join();
+            World restored = WorldCheckpoint.read(path).restore();
+            assertEquals(world.getNbEntities(), restored.getNbEntities());
+            Ship copy = (Ship) restored.getEntitiesOfType(EntityType.SHIP).iterator().next();
+            assertEquals(ship.getX(), copy.getX(), 0);
+            assertEquals(ship.getDirection(), copy.getDirection(), 0);
+            assertEquals(ship.getTotalMass(), copy.getTotalMass(), 0);
+            assertTrue(copy.isThrusterActive());
+            assertEquals(2, copy.getNbBulletsOnShip());
+            Bullet shot = (Bullet) restored.getEntitiesOfType(EntityType.BULLET).iterator().next();
+            assertTrue(shot.getBulletSource() == copy);
+            Planetoid planetoid = (Planetoid) restored.getEntitiesOfType(EntityType.PLANETOID).iterator().next();
+            Planetoid original = (Planetoid) world.getEntitiesOfType(EntityType.PLANETOID).iterator().next();
+            assertEquals(original.getRadius(), planetoid.getRadius(), 0);
+            assertEquals(original.getMass(), planetoid.getMass(), 0);
+        }
+        finally{
+            Files.delete(path);
+        }
+    }
+    
+    @Test
+    public void checkFramePublishing() throws ModelException, InterruptedException {
+        World world = facade.createWorld(100000, 1000);
+        Ship ship = facade.createShip(100, 500, 10, 0, 20, 0, 1.1E18);
+        world.addEntityToWorld(ship);
+        world.addEntityToWorld(new Asteroid(100, 100, 10, 0, 10));
+        assertEquals(null, world.getFrame());
+        world.setPublishingFrames(true);
+        List<String> errors = new ArrayList<String>();
+        Thread reader = new Thread(() -> {
+            long last = -1;
+            for (int i = 0; i < 10000; i++){
+                WorldFrame frame = world.getFrame();
+                if (frame.getSequenceNumber() < last) errors.add("sequence");
+                last = frame.getSequenceNumber();
+                for (int index = 0; index < frame.getNbEntities(); index++){
+                    if (Math.abs(frame.getX(index) - (100 + 10 * frame.getTime())) > EPSILON) errors.add("position");
+                }
+            }
+        });
+        reader.start();
+        for (int i = 0; i < 1000; i++) world.evolve(0.01, null);
+        reader.join();
+        assertTrue(errors.isEmpty());
+        assertEquals(1000, world.getFrame().getSequenceNumber());
+        assertEquals(ship.getX(), world.getFrame().getX(ship.getSlot()), 0);
+    }
+    
+    @Test
+    public void checkWorldPool() throws ModelException {
+        List<World> pooled = new ArrayList<World>();
+        List<World> sequential = new ArrayList<World>();
+        for (int i = 0; i < 8; i++){
+            for (List<World> worlds : Arrays.asList(pooled, sequential)){
+                World world = facade.createWorld(1000, 1000);
+                world.addEntityToWorld(facade.createShip(100, 500, 10 * i, 0, 20, 0, 1.1E18));
+                world.addEntityToWorld(new Asteroid(600, 500, -20, 5 * i, 10 + i));
+                worlds.add(world);
+            }
+        }
+        PoolReport<Double> report;
+        try (WorldPool pool = new WorldPool(2)){
+            report = pool.run(pooled, 100, 0.5, world -> world.getEntities().iterator().next().getX());
+        }
+        assertEquals(8, report.getNbWorlds());
+        assertEquals(0, report.getNbFailures());
+        assertEquals(800, report.getTotal().getNbSteps());
+        for (int i = 0; i < 8; i++){
+            EvolveSummary summary = sequential.get(i).evolveSteps(100, 0.5, null);
+            assertEquals(summary.getNbCollisions(), report.getSummaries().get(i).getNbCollisions());
+            assertEquals(sequential.get(i).getNbEntities(), pooled.get(i).getNbEntities());
+        }
+    }
+    
+    @Test
+    public void checkTournament() {
+        ProgramFactory factory = new ProgramFactory();
+        SourceLocation location = new SourceLocation(0, 0);
+        Tournament tournament = new Tournament(new Scenario(1000, 1000, 0, 0, 5), 500, 0.1, 2);
+        tournament.addEntrant("idle", () -> factory.createProgram(new ArrayList<Function>(), factory.createSkipStatement(location)));
+        tournament.addEntrant("shooter", () -> factory.createProgram(new ArrayList<Function>(), factory.createFireStatement(location)));
+        tournament.addEntrant("turner", () -> factory.createProgram(new ArrayList<Function>(),
+                factory.createTurnStatement(factory.createDoubleLiteralExpression(0.1, location), location)));
+        TournamentResult result;
+        try (WorldPool pool = new WorldPool(2)){
+            result = tournament.run(pool);
+        }
+        assertEquals(6, result.getNbMatches());
+        for (String name : tournament.getEntrants()) assertEquals(4, result.getNbMatches(name));
+        assertEquals(4, result.getWins("shooter"));
+        assertEquals(1.0, result.getWinRate("shooter"), EPSILON);
+        assertEquals(2, result.getDraws("idle"));
+        assertTrue(result.getWorldTicksPerSecond() > 0);
+    }
+    
+    @Test
+    public void checkRegionDecomposition() {
+        List<World> worlds = new ArrayList<World>();
+        for (int nbRegions = 1; nbRegions <= 3; nbRegions += 2){
+            World world = new World(2000, 2000);
+            world.setRandomState(1);
+            for (int i = 0; i < 400; i++){
+                double x = 50 + 95 * (i % 20), y = 50 + 95 * (i / 20);
+                world.addEntityToWorld(new Asteroid(x, y, 37 * Math.sin(i), 41 * Math.cos(3 * i), 10 + i % 7));
+            }
+            world.setParallelThreshold(100);
+            world.setNbRegions(nbRegions);
+            worlds.add(world);
+        }
+        assertEquals(3, worlds.get(1).getNbRegions());
+        EvolveSummary sequential = worlds.get(0).evolveSteps(40, 0.1, null);
+        EvolveSummary decomposed = worlds.get(1).evolveSteps(40, 0.1, null);
+        assertTrue(sequential.getNbCollisions() > 0);
+        assertEquals(sequential.getNbCollisions(), decomposed.getNbCollisions());
+        for (int slot = 0; slot < worlds.get(0).getNbEntities(); slot++){
+            assertEquals(worlds.get(0).getEntityAtSlot(slot).getX(), worlds.get(1).getEntityAtSlot(slot).getX(), 0);
+            assertEquals(worlds.get(0).getEntityAtSlot(slot).getY(), worlds.get(1).getEntityAtSlot(slot).getY(), 0);
+        }
+    }
+    
+    @Test
+    public void checkStateVersionCaches() throws ModelException {
+        World world = facade.createWorld(1000, 1000);
+        Ship ship1 = facade.createShip(100, 500, 10, 0, 20, 0, 1.1E18);
+        Ship ship2 = facade.createShip(500, 500, -10, 0, 20, 0, 1.1E18);
+        Planetoid planetoid = new Planetoid(500, 100, 0, 50, 20, 0);
+        world.addEntityToWorld(ship1);
+        world.addEntityToWorld(ship2);
+        world.addEntityToWorld(planetoid);
+        assertEquals(18, ship1.getTimeToCollision(ship2), EPSILON);
+        assertEquals(18, ship1.getTimeToCollision(ship2), EPSILON);
+        long version = ship1.getStateVersion();
+        ship1.setVelocity(20, 0);
+        assertTrue(ship1.getStateVersion() > version);
+        assertEquals(12, ship1.getTimeToCollision(ship2), EPSILON);
+        assertEquals(44, ship1.getTimeCollisionBoundary(), EPSILON);
+        ship1.setVelocity(-10, 0);
+        assertEquals(8, ship1.getTimeCollisionBoundary(), EPSILON);
+        world.evolve(1, null);
+        assertEquals(20 - 0.000050, planetoid.getRadius(), EPSILON);
+        assertEquals(planetoid.getRadius(), planetoid.getRadius(), 0);
+    }
+    
+    @Test
+    public void checkFreePlacement() {
+        World world = new World(1000, 1000);
+        world.setRandomState(3);
+        for (int i = 0; i < 900; i++) world.addEntityToWorld(new Asteroid(20 + 32 * (i % 30), 20 + 32 * (i / 30), 0, 0, 15));
+        assertNull(world.findFreePosition(30));
+        double[] position = world.findFreePosition(10);
+        assertTrue(world.isFreePosition(position[0], position[1], 10));
+        assertTrue(position[0] > 960 || position[1] > 960);
+        
+        World other = new World(1000, 1000);
+        Planetoid planetoid = new Planetoid(500, 500, 10, 0, 40, 0);
+        other.addEntityToWorld(planetoid);
+        planetoid.terminate();
+        assertEquals(2, other.getNbEntitiesOfType(EntityType.ASTEROID));
+        for (Entity asteroid : other.getEntities()) assertEquals(20, asteroid.getRadius(), EPSILON);
+    }
+    
+    @Test
+    public void checkBulkInsertion() throws ModelException {
+        World world = facade.createWorld(1000, 1000);
+        Asteroid placed = new Asteroid(100, 100, 0, 0, 20);
+        world.addEntityToWorld(placed);
+        Asteroid free = new Asteroid(500, 500, 0, 0, 20), crowded = new Asteroid(520, 500, 0, 0, 20);
+        Asteroid covered = new Asteroid(110, 100, 0, 0, 20), outside = new Asteroid(5, 500, 0, 0, 20);
+        List<Asteroid> batch = Arrays.asList(free, crowded, covered, outside, free);
+        assertEquals(Arrays.asList(crowded, covered, outside, free), world.getRejectedEntities(batch));
+        try {
+            ((Facade) facade).addEntitiesToWorld(world, batch);
+            fail();
+        } catch (ModelException ex) {}
+        assertEquals(1, world.getEntities().size());
+        assertNull(free.getSuperWorld());
+        
+        List<Asteroid> level = new ArrayList<Asteroid>();
+        for (int i = 0; i < 2000; i++) level.add(new Asteroid(250 + 12 * (i % 50), 250 + 12 * (i / 50), 1, 0, 5));
+        assertTrue(world.getRejectedEntities(level).isEmpty());
+        ((Facade) facade).addEntitiesToWorld(world, level);
+        assertEquals(2001, world.getNbEntitiesOfType(EntityType.ASTEROID));
+        assertEquals(level, world.getRejectedEntities(level));
+    }
+    
+    @Test
+    public void checkEntityPool() throws InterruptedException {
+        World world = new World(1000, 1000);
+        EntityPool pool = new EntityPool(1);
+        world.setEntityPool(pool);
+        Asteroid asteroid = new Asteroid(100, 100, 0, 0, 20), other = new Asteroid(200, 100, 0, 0, 20);
+        Bullet bullet = new Bullet(300, 100, 10, 0, 3);
+        world.addEntityToWorld(asteroid);
+        world.addEntityToWorld(other);
+        world.addEntityToWorld(bullet);
+        asteroid.terminate();
+        other.terminate();
+        bullet.terminate();
+        assertEquals(1, pool.getNbPooled(EntityType.ASTEROID));
+        assertEquals(1, pool.getNbDiscarded());
+        assertEquals(0, pool.getNbAvailable(EntityType.ASTEROID));
+        
+        world.evolve(0.1, null);
+        assertEquals(1, pool.getNbAvailable(EntityType.ASTEROID));
+        Planetoid planetoid = new Planetoid(500, 500, 10, 0, 40, 0);
+        world.addEntityToWorld(planetoid);
+        planetoid.terminate();
+        assertEquals(2, world.getNbEntitiesOfType(EntityType.ASTEROID));
+        assertTrue(world.hasAsEntity(asteroid));
+        assertFalse(asteroid.isTerminated());
+        assertEquals(20, asteroid.getRadius(), EPSILON);
+        assertEquals(15, Math.hypot(asteroid.getVX(), asteroid.getVY()), EPSILON);
+        assertEquals(0.5, pool.getHitRate(), EPSILON);
+        
+        World shooting = new World(1000, 1000);
+        EntityPool held = new EntityPool(1);
+        shooting.setEntityPool(held);
+        Asteroid target = new Asteroid(100, 100, 0, 0, 20);
+        shooting.addEntityToWorld(target);
+        shooting.addEntityToWorld(new Bullet(200, 100, -100, 0, 3));
+        CountDownLatch latch = new CountDownLatch(1);
+        CollisionPipeline pipeline = new CollisionPipeline(new CollisionListener() {
+            public void boundaryCollision(Object entity, double x, double y) {}
+            public void objectCollision(Object entity1, Object entity2, double x, double y) {
+                try { latch.await(); } catch (InterruptedException ex) { Thread.currentThread().interrupt(); }
+            }
+        });
+        try {
+            shooting.evolve(1, pipeline);
+            assertTrue(target.isTerminated());
+            assertEquals(1, held.getNbPooled(EntityType.ASTEROID));
+            assertEquals(0, held.getNbAvailable(EntityType.ASTEROID));
+        }
+        finally {
+            latch.countDown();
+        }
+        pipeline.close();
+        assertEquals(1, held.getNbAvailable(EntityType.ASTEROID));
+        assertFalse(held.obtainAsteroid(500, 500, 0, 0, 10) == target);
+        assertTrue(held.obtainAsteroid(500, 500, 0, 5, 20) == target);
+        assertFalse(target.isTerminated());
+        assertEquals(20, target.getRadius(), EPSILON);
+        assertEquals(5, target.getVY(), EPSILON);
+    }
+    
+    @Test
+    public void checkCollisionResponses() {
+        World world = new World(1000, 1000);
+        Ship ship = new Ship(100, 100, 10, 0, 10, 0, 0);
+        Asteroid asteroid = new Asteroid(125, 100, 0, 0, 10);
+        world.addEntityToWorld(ship);
+        world.addEntityToWorld(asteroid);
+        for (EntityType first : EntityType.values())
+            for (EntityType second : EntityType.values()) assertTrue(world.getCollisionResponses().getResponse(first, second) != null);
+        
+        List<Entity> order = new ArrayList<Entity>();
+        world.getCollisionResponses().register(EntityType.SHIP, EntityType.ASTEROID, (first, second) -> {
+            order.add(first);
+            order.add(second);
+            first.defaultCollide(second);
+        });
+        asteroid.collide(ship);
+        assertEquals(Arrays.asList(ship, asteroid), order);
+        assertFalse(ship.isTerminated());
+        assertTrue(ship.getVX() < 0);
+        
+        world.getCollisionResponses().restoreDefaults();
+        ship.collide(asteroid);
+        assertTrue(ship.isTerminated());
+        assertFalse(asteroid.isTerminated());
+    }
+    
+    @Test
+    public void checkBroadPhasesEvolveAlike() {
+        World hashed = new World(2000, 2000, BroadPhaseType.SPATIAL_HASH);
+        World swept = new World(2000, 2000, BroadPhaseType.SWEEP_AND_PRUNE);
+        for (World world : Arrays.asList(hashed, swept)) {
+            Random random = new Random(4);
+            for (int i = 0; i < 400; i++) {
+                double x = 50 + 95 * (i % 20), y = 50 + 95 * (i / 20);
+                double vx = random.nextDouble() * 200 - 100, vy = random.nextDouble() * 200 - 100;
+                if (i % 10 == 0) {
+                    Ship ship = new Ship(x, y, vx, vy, 15, random.nextDouble() * 2 * Math.PI, 1.1E18);
+                    world.addEntityToWorld(ship);
+                    ship.thrustOn();
+                }
+                else world.addEntityToWorld(new Asteroid(x, y, vx, vy, 10 + random.nextDouble() * 20));
+            }
+        }
+        for (int step = 0; step < 60; step++) {
+            hashed.evolve(0.05, null);
+            swept.evolve(0.05, null);
+        }
+        assertEquals(hashed.getNbEntities(), swept.getNbEntities());
+        for (int slot = 0; slot < hashed.getNbEntities(); slot++) {
+            Entity first = hashed.getEntityAtSlot(slot), second = swept.getEntityAtSlot(slot);
+            assertEquals(first.getType(), second.getType());
+            assertEquals(first.getX(), second.getX(), 0);
+            assertEquals(first.getY(), second.getY(), 0);
+            assertEquals(first.getVX(), second.getVX(), 0);
+            assertEquals(first.getVY(), second.getVY(), 0);
+        }
+    }
+    
+    @Test
+    public void checkTerminateWhileIterating() throws ModelException {
+        World world = facade.createWorld(1000, 1000);
+        for (int i = 0; i < 3; i++) world.addEntityToWorld(new Asteroid(100 + 100 * i, 100, 0, 0, 10));
+        Asteroid added = new Asteroid(500, 500, 0, 0, 10);
+        List<Entity> visited = new ArrayList<Entity>();
+        world.forEachEntity(entity -> {
+            visited.add(entity);
+            world.addEntityToWorld(added);
+            world.terminate();
+        });
+        assertEquals(1, visited.size());
+        assertTrue(world.isTerminatedWorld());
+        assertNull(added.getSuperWorld());
+        assertEquals(0, world.getNbEntities());
+        assertTrue(world.getEntitiesOfType(EntityType.ASTEROID).isEmpty());
+        try {
+            world.addEntityToWorld(added);
+            fail();
+        } catch (IllegalArgumentException ex) {}
+        assertNull(added.getSuperWorld());
+        assertEquals(0, world.getNbEntities());
+        assertEquals(0, world.getEntitiesOfType(EntityType.ASTEROID).size());
+    }
+}
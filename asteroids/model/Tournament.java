@@ -0,0 +1,219 @@
+package asteroids.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import be.kuleuven.cs.som.annotate.*;
+
+/**
+ * A class of round-robin tournaments between ship programs, played without a user interface.
+ * 	Every pair of entrants plays a number of matches in worlds generated by the scenario of the tournament, one
+ * 	ship per entrant. A match ends when at most one ship is left, or after the largest number of ticks; the ship
+ * 	which is left wins, and a match without a single ship left is a draw. The entrants change places on the
+ * 	circle of ships after every round. The matches are played in parallel by a world pool.
+ * 	A program holds the state of its execution and belongs to a single ship, so every entrant gives a supplier
+ * 	which builds a new program for each match, for instance through a program factory.
+ *
+ * @invar	The number of ticks and rounds of a tournament are positive, and its time per tick is valid.
+ * 			| getMaxTicks() > 0 && getNbRounds() > 0 && getTickTime() > 0
+ *
+ * @version 1.0
+ * @author 	Brent De Bleser & Jesse Geens
+ */
+public class Tournament {
+
+	/**
+	 * Create a new tournament without entrants.
+	 *
+	 * @param 	scenario
+	 * 			The scenario generating the worlds of the matches.
+	 * @param 	maxTicks
+	 * 			The largest number of ticks of a match.
+	 * @param 	tickTime
+	 * 			The time of each tick.
+	 * @param 	nbRounds
+	 * 			The number of matches each pair of entrants plays.
+	 * @post	| new.getScenario() == scenario && new.getMaxTicks() == maxTicks && new.getTickTime() == tickTime
+	 * 			|	&& new.getNbRounds() == nbRounds && new.getEntrants().isEmpty()
+	 * @throws	IllegalArgumentException
+	 * 			The scenario isn't effective, the number of ticks or rounds isn't positive, or the time isn't valid.
+	 * 			| scenario == null || maxTicks <= 0 || nbRounds <= 0 || !(tickTime > 0) || !Helper.isValidDouble(tickTime)
+	 */
+	public Tournament(Scenario scenario, int maxTicks, double tickTime, int nbRounds) throws IllegalArgumentException{
+		if (scenario == null || maxTicks <= 0 || nbRounds <= 0 || !(tickTime > 0) || !Helper.isValidDouble(tickTime))
+			throw new IllegalArgumentException("Invalid tournament @ Tournament");
+		this.scenario = scenario;
+		this.maxTicks = maxTicks;
+		this.tickTime = tickTime;
+		this.nbRounds = nbRounds;
+	}
+
+	/**
+	 * Return the scenario of this tournament.
+	 */
+	@Basic @Immutable
+	public Scenario getScenario(){
+		return this.scenario;
+	}
+
+	private final Scenario scenario;
+
+	/**
+	 * Return the largest number of ticks of a match of this tournament.
+	 */
+	@Basic @Immutable
+	public int getMaxTicks(){
+		return this.maxTicks;
+	}
+
+	private final int maxTicks;
+
+	/**
+	 * Return the time of each tick of a match of this tournament.
+	 */
+	@Basic @Immutable
+	public double getTickTime(){
+		return this.tickTime;
+	}
+
+	private final double tickTime;
+
+	/**
+	 * Return the number of matches each pair of entrants of this tournament plays.
+	 */
+	@Basic @Immutable
+	public int getNbRounds(){
+		return this.nbRounds;
+	}
+
+	private final int nbRounds;
+
+	/**
+	 * Return the names of the entrants of this tournament, in the order in which they were added.
+	 */
+	@Basic
+	public List<String> getEntrants(){
+		return Collections.unmodifiableList(this.names);
+	}
+
+	/**
+	 * Add an entrant with the given name, playing with the programs of the given supplier.
+	 *
+	 * @param 	name
+	 * 			The name of the entrant.
+	 * @param 	programs
+	 * 			The supplier building a new program for every match of the entrant.
+	 * @post	| new.getEntrants().get(getEntrants().size()) == name
+	 * @throws	IllegalArgumentException
+	 * 			The name or supplier isn't effective, or another entrant has the given name.
+	 * 			| name == null || programs == null || getEntrants().contains(name)
+	 */
+	public void addEntrant(String name, Supplier<? extends Program> programs) throws IllegalArgumentException{
+		if (name == null || programs == null || names.contains(name))
+			throw new IllegalArgumentException("Invalid entrant @ Tournament");
+		names.add(name);
+		suppliers.add(programs);
+	}
+
+	/**
+	 * Lists containing the names of the entrants and the suppliers of their programs.
+	 */
+	private final List<String> names = new ArrayList<String>();
+	private final List<Supplier<? extends Program>> suppliers = new ArrayList<Supplier<? extends Program>>();
+
+	/**
+	 * Play every match of this tournament on the given pool.
+	 *
+	 * @param 	pool
+	 * 			The pool playing the matches.
+	 * @return	The result of the tournament, counting the wins, losses, draws and failed matches of each entrant.
+	 * 			Each pair of entrants plays getNbRounds() matches, so each entrant plays
+	 * 			(getEntrants().size() - 1) * getNbRounds() matches.
+	 * 			| result.getEntrants().equals(getEntrants())
+	 * 			| result.getNbMatches() == getEntrants().size() * (getEntrants().size() - 1) / 2 * getNbRounds()
+	 * @effect	The worlds of the matches are generated by the scenario of this tournament, seeded by their round
+	 * 			and pair of entrants, and run by the given pool until at most one ship is left.
+	 * 			| pool.run(worlds, getMaxTicks(), getTickTime(), world has at most one ship, winner of world)
+	 * @throws	IllegalArgumentException
+	 * 			The pool isn't effective, or this tournament has fewer than two entrants.
+	 * 			| pool == null || getEntrants().size() < 2
+	 * @throws	IllegalStateException
+	 * 			The pool is closed.
+	 * 			| pool.isClosed()
+	 */
+	public TournamentResult run(WorldPool pool) throws IllegalArgumentException, IllegalStateException{
+		if (pool == null || names.size() < 2) throw new IllegalArgumentException("Invalid run @ Tournament");
+		List<World> worlds = new ArrayList<World>();
+		Map<World, int[]> sides = new IdentityHashMap<World, int[]>();
+		Map<World, Ship[]> ships = new IdentityHashMap<World, Ship[]>();
+		Map<Program, Integer> owners = new IdentityHashMap<Program, Integer>();
+		for (int round = 0; round < nbRounds; round++){
+			int pair = 0;
+			for (int first = 0; first < names.size(); first++){
+				for (int second = first + 1; second < names.size(); second++, pair++){
+					int[] entrants = round % 2 == 0 ? new int[] { first, second } : new int[] { second, first };
+					World world = scenario.create((long) round << 32 | pair, 2);
+					Ship[] players = new Ship[2];
+					for (int side = 0; side < 2; side++){
+						Ship ship = (Ship) world.getEntityAtSlot(side);
+						players[side] = ship;
+						Program program = suppliers.get(entrants[side]).get();
+						if (program == null) throw new IllegalArgumentException("A supplier gave no program @ Tournament");
+						ship.setProgram(program);
+						program.setShip(ship);
+						owners.put(program, entrants[side]);
+					}
+					worlds.add(world);
+					sides.put(world, entrants);
+					ships.put(world, players);
+				}
+			}
+		}
+
+		PoolReport<Integer> report = pool.run(worlds, maxTicks, tickTime,
+				world -> world.getNbEntitiesOfType(EntityType.SHIP) <= 1, world -> getWinner(world, ships.get(world), sides.get(world)));
+		int nbEntrants = names.size();
+		long[] wins = new long[nbEntrants], losses = new long[nbEntrants], draws = new long[nbEntrants];
+		long[] failures = new long[nbEntrants], programTimes = new long[nbEntrants];
+		for (int i = 0; i < worlds.size(); i++){
+			int[] entrants = sides.get(worlds.get(i));
+			Integer winner = report.getOutcomes().get(i);
+			for (int entrant : entrants){
+				if (report.getFailure(i) != null) failures[entrant]++;
+				else if (winner < 0) draws[entrant]++;
+				else if (winner == entrant) wins[entrant]++;
+				else losses[entrant]++;
+			}
+			for (Map.Entry<Program, Long> entry : report.getProgramTimes(i).entrySet())
+				programTimes[owners.get(entry.getKey())] += entry.getValue();
+		}
+		return new TournamentResult(new ArrayList<String>(names), wins, losses, draws, failures, programTimes,
+				worlds.size(), report.getTotal().getNbSteps(), report.getTime());
+	}
+
+	/**
+	 * Play every match of this tournament on a new pool with a thread per available processor.
+	 *
+	 * @effect	| run(new WorldPool())
+	 */
+	public TournamentResult run() throws IllegalArgumentException{
+		try (WorldPool pool = new WorldPool()){
+			return run(pool);
+		}
+	}
+
+	/**
+	 * Return the entrant whose ship is the only ship left in the given world, or -1 if there isn't a single ship left.
+	 */
+	private static int getWinner(World world, Ship[] ships, int[] entrants){
+		if (world.getNbEntitiesOfType(EntityType.SHIP) != 1) return -1;
+		Entity survivor = world.getEntitiesOfType(EntityType.SHIP).iterator().next();
+		for (int side = 0; side < ships.length; side++)
+			if (ships[side] == survivor) return entrants[side];
+		return -1;
+	}
+}
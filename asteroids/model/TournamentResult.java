@@ -0,0 +1,195 @@
+package asteroids.model;
+
+import java.util.List;
+
+import be.kuleuven.cs.som.annotate.*;
+
+/**
+ * A class of results of a tournament, counting the wins, losses, draws and failed matches of each entrant,
+ * the processor time spent in its programs and how fast the matches were played.
+ * 	A match which failed, for instance because a program failed, counts as a failure for both its entrants and
+ * 	doesn't count towards their win rates.
+ *
+ * @invar	Every entrant played as many matches as it won, lost, drew and failed.
+ * 			| for each name in getEntrants()
+ * 			|	getNbMatches(name) == getWins(name) + getLosses(name) + getDraws(name) + getNbFailures(name)
+ *
+ * @version 1.0
+ * @author 	Brent De Bleser & Jesse Geens
+ */
+@Value
+public final class TournamentResult {
+
+	/**
+	 * Initialize this new result with the given entrants and their counts, and the given number of matches, ticks
+	 * and time.
+	 *
+	 * @note	The arrays are indexed by the entrants, and aren't copied.
+	 */
+	TournamentResult(List<String> entrants, long[] wins, long[] losses, long[] draws, long[] failures,
+			long[] programTimes, int nbMatches, long nbTicks, double time){
+		this.entrants = entrants;
+		this.wins = wins;
+		this.losses = losses;
+		this.draws = draws;
+		this.failures = failures;
+		this.programTimes = programTimes;
+		this.nbMatches = nbMatches;
+		this.nbTicks = nbTicks;
+		this.time = time;
+	}
+
+	/**
+	 * Return the names of the entrants of this result, in the order in which they entered the tournament.
+	 */
+	@Basic @Immutable
+	public List<String> getEntrants(){
+		return this.entrants;
+	}
+
+	/**
+	 * Return the number of matches of the tournament.
+	 */
+	@Basic @Immutable
+	public int getNbMatches(){
+		return this.nbMatches;
+	}
+
+	/**
+	 * Return the number of matches the entrant with the given name played.
+	 *
+	 * @return	| result == getWins(name) + getLosses(name) + getDraws(name) + getNbFailures(name)
+	 * @throws	IllegalArgumentException
+	 * 			| !getEntrants().contains(name)
+	 */
+	public long getNbMatches(String name) throws IllegalArgumentException{
+		int entrant = getIndex(name);
+		return wins[entrant] + losses[entrant] + draws[entrant] + failures[entrant];
+	}
+
+	/**
+	 * Return the number of matches the entrant with the given name won.
+	 *
+	 * @throws	IllegalArgumentException
+	 * 			| !getEntrants().contains(name)
+	 */
+	@Basic @Immutable
+	public long getWins(String name) throws IllegalArgumentException{
+		return wins[getIndex(name)];
+	}
+
+	/**
+	 * Return the number of matches the entrant with the given name lost.
+	 *
+	 * @throws	IllegalArgumentException
+	 * 			| !getEntrants().contains(name)
+	 */
+	@Basic @Immutable
+	public long getLosses(String name) throws IllegalArgumentException{
+		return losses[getIndex(name)];
+	}
+
+	/**
+	 * Return the number of matches of the entrant with the given name which ended in a draw.
+	 *
+	 * @throws	IllegalArgumentException
+	 * 			| !getEntrants().contains(name)
+	 */
+	@Basic @Immutable
+	public long getDraws(String name) throws IllegalArgumentException{
+		return draws[getIndex(name)];
+	}
+
+	/**
+	 * Return the number of matches of the entrant with the given name which failed.
+	 *
+	 * @throws	IllegalArgumentException
+	 * 			| !getEntrants().contains(name)
+	 */
+	@Basic @Immutable
+	public long getNbFailures(String name) throws IllegalArgumentException{
+		return failures[getIndex(name)];
+	}
+
+	/**
+	 * Return the share of the finished matches of the entrant with the given name which it won.
+	 *
+	 * @return	| let finished = getWins(name) + getLosses(name) + getDraws(name)
+	 * 			| in result == (finished == 0 ? 0 : getWins(name) / finished)
+	 * @throws	IllegalArgumentException
+	 * 			| !getEntrants().contains(name)
+	 */
+	public double getWinRate(String name) throws IllegalArgumentException{
+		int entrant = getIndex(name);
+		long finished = wins[entrant] + losses[entrant] + draws[entrant];
+		return finished == 0 ? 0 : (double) wins[entrant] / finished;
+	}
+
+	/**
+	 * Return the processor time spent in the programs of the entrant with the given name, in seconds.
+	 *
+	 * @throws	IllegalArgumentException
+	 * 			| !getEntrants().contains(name)
+	 */
+	@Basic @Immutable
+	public double getCpuTime(String name) throws IllegalArgumentException{
+		return programTimes[getIndex(name)] / 1e9;
+	}
+
+	/**
+	 * Return the number of ticks of all matches together.
+	 */
+	@Basic @Immutable
+	public long getNbTicks(){
+		return this.nbTicks;
+	}
+
+	/**
+	 * Return the number of seconds the tournament took.
+	 */
+	@Basic @Immutable
+	public double getTime(){
+		return this.time;
+	}
+
+	/**
+	 * Return the number of ticks the tournament played per second over all matches.
+	 *
+	 * @return	| result == getNbTicks() / getTime()
+	 */
+	public double getWorldTicksPerSecond(){
+		return time == 0 ? 0 : nbTicks / time;
+	}
+
+	/**
+	 * Return the index of the entrant with the given name.
+	 *
+	 * @throws	IllegalArgumentException
+	 * 			| !getEntrants().contains(name)
+	 */
+	private int getIndex(String name) throws IllegalArgumentException{
+		int index = entrants.indexOf(name);
+		if (index < 0) throw new IllegalArgumentException("Invalid entrant @ TournamentResult");
+		return index;
+	}
+
+	/**
+	 * Return a textual representation of this result, holding a line per entrant.
+	 */
+	@Override
+	public String toString(){
+		StringBuilder builder = new StringBuilder("[TournamentResult: " + nbMatches + " matches, " + nbTicks
+				+ " world-ticks in " + time + " s (" + getWorldTicksPerSecond() + " /s)");
+		for (String name : entrants){
+			builder.append(String.format("%n  %-20s %5d W %5d L %5d D %5d F  %6.1f %%  %.3f s cpu", name, getWins(name),
+					getLosses(name), getDraws(name), getNbFailures(name), 100 * getWinRate(name), getCpuTime(name)));
+		}
+		return builder.append("]").toString();
+	}
+
+	private final List<String> entrants;
+	private final long[] wins, losses, draws, failures, programTimes;
+	private final int nbMatches;
+	private final long nbTicks;
+	private final double time;
+}
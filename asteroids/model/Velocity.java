@@ -42,6 +42,22 @@ class Velocity {
 		double[] result = {this.xVelocity, this.yVelocity};
 	  	   return result;
 	}
+	
+	/**
+	 * Return the x velocity of this velocity.
+	 */
+	@Basic @Raw
+	public double getXVelocity(){
+		return this.xVelocity;
+	}
+	
+	/**
+	 * Return the y velocity of this velocity.
+	 */
+	@Basic @Raw
+	public double getYVelocity(){
+		return this.yVelocity;
+	}
 	 /**
      * Method to return the total velocity of this.
      * 
@@ -50,7 +66,7 @@ class Velocity {
      */
 	@Raw
     public double getTotalVelocity(){
-    	double velocity = Math.hypot(this.getVelocity()[0], this.getVelocity()[1]);
+    	double velocity = Math.hypot(this.xVelocity, this.yVelocity);
 		return velocity;
     }
 	
@@ -1,6 +1,10 @@
 package asteroids.model;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 
 import asteroids.part2.CollisionListener;
@@ -32,12 +36,14 @@ public class World {
 	
 	/**
 	 * Create a new world with the given width and
-	 * height.
+	 * height, using the given type of broad phase to predict collisions.
 	 * 
 	 * @param   width
 	 *          The width of the new world.
 	 * @param   heigt
 	 *          The height of the new world.
+	 * @param	broadPhaseType
+	 * 			The type of broad phase of the new world.
 	 * @post    The given width and height become the width and height of the new world.
 	 *          | new.width = width
 	 *          | new.height = height
@@ -50,8 +56,23 @@ public class World {
 	 *          |	then 	if 		height <0.0
 	 *          |				then	new.height = 0.0
 	 *          |			else	new.height = UPPPER_BOUND_WORLD
+	 * @post	The broad phase type of the new world is the given type.
+	 * 			| new.getBroadPhaseType() == broadPhaseType
+	 * @throws	IllegalArgumentException
+	 * 			The given broad phase type is null.
+	 * 			| broadPhaseType == null
 	 */
-	public World(double width, double height){
+	public World(double width, double height, BroadPhaseType broadPhaseType) throws IllegalArgumentException{
+		
+		if (broadPhaseType == null) throw new IllegalArgumentException("A world needs a broad phase type @ World");
+		this.broadPhaseType = broadPhaseType;
+		this.broadPhase = broadPhaseType.create();
+		this.scheduler = new CollisionScheduler(broadPhase, store);
+		for (EntityType type : EntityType.values()){
+			Set<Entity> set = new HashSet<Entity>();
+			entitiesOfType.put(type, set);
+			entitiesOfTypeView.put(type, Collections.unmodifiableSet(set));
+		}
 		
 		if(isValidDimension(width))
 			this.worldWidth = width;
@@ -75,6 +96,20 @@ public class World {
 		
 	}
 	
+	/**
+	 * Create a new world with the given width and height, using a uniform grid to predict collisions.
+	 * 
+	 * @param   width
+	 *          The width of the new world.
+	 * @param   heigt
+	 *          The height of the new world.
+	 * @effect	A new world with the given dimensions and a spatial hash as broad phase.
+	 * 			| World(width, height, BroadPhaseType.SPATIAL_HASH)
+	 */
+	public World(double width, double height){
+		this(width, height, BroadPhaseType.SPATIAL_HASH);
+	}
+	
 	/**
 	 * Initializes a world with the default size.
 	 * 
@@ -174,32 +209,113 @@ public class World {
 	 * 
 	 * @result The method returns a set with all entities
 	 *         | result == entities
+	 * @note	The result is a read-only view which follows the changes of this world, so asking for it
+	 * 			doesn't copy anything. To add or remove entities while going over the entities, use forEachEntity.
 	 */
 	@Basic
 	public Set<? extends Entity> getEntities(){
-		Set<Entity> resultSet = new HashSet<Entity>(entities);
-		return resultSet;
+		synchronize();
+		return entitiesView;
+	}
+	
+	/**
+	 * Perform the given action for each entity of this world.
+	 * 
+	 * @param	action
+	 * 			The action to perform.
+	 * @effect	The action is performed for every entity which is in this world when the iteration starts,
+	 * 			until the action terminates this world.
+	 * 			| for each entity in getEntities()
+	 * 			|	if !isTerminatedWorld()
+	 * 			|		then action.accept(entity)
+	 * @effect	Entities which are added to or removed from this world by the action are only added or removed
+	 * 			once the outermost iteration over this world has finished, in the order of the calls.
+	 * 			| @ implementation
+	 * @throws	IllegalArgumentException
+	 * 			One of the added entities can't be placed in this world once the iteration has finished.
+	 * 			| @ implementation
+	 */
+	public void forEachEntity(Consumer<? super Entity> action) throws IllegalArgumentException{
+		synchronize();
+		iterationDepth++;
+		try{
+			for (Iterator<Entity> iterator = entities.iterator(); !isTerminated && iterator.hasNext();)
+				action.accept(iterator.next());
+		}
+		finally{
+			iterationDepth--;
+		}
+		if (iterationDepth == 0) applyPendingChanges();
+	}
+	
+	/**
+	 * Add and remove the entities whose addition or removal has been deferred, in the order of the calls.
+	 * 
+	 * @post	No changes are pending anymore, unless applying one of them fails.
+	 * 			| @ implementation
+	 * @post	If this world is terminated, nothing happens.
+	 * 			| if isTerminatedWorld()
+	 * 			|	then @ implementation
+	 * @throws	IllegalArgumentException
+	 * 			A deferred entity can't be placed in this world. The changes after it stay pending.
+	 * 			| @ implementation
+	 */
+	@Model
+	private void applyPendingChanges() throws IllegalArgumentException{
+		while (!isTerminated && !pendingChanges.isEmpty()) pendingChanges.poll().run();
 	}
+	
+	/**
+	 * Variable containing the number of iterations over the entities of this world which are going on.
+	 */
+	private int iterationDepth = 0;
+	
+	/**
+	 * Queue containing the additions and removals of entities deferred until the iterations are over.
+	 */
+	private final Queue<Runnable> pendingChanges = new ArrayDeque<Runnable>();
 
 	//Total
 	/**
 	 * Returns all entities located in this world
 	 * 
 	 * @result The method returns a set with all entities in the set entities of a specified type.
-	 *         | Set<Entity> resultSet = new HashSet<Entity>();
-     *		   | for each 	element in	 entities
-     *		   | 	 if 	element.typeNamrr() == type
-     *		   | 		then	resultSet.add(element)
-     *		   | result == result	
+	 *         | if EntityType.fromTypeName(type) == null
+	 *         |	then result.isEmpty()
+	 *         |	else result == getEntitiesOfType(EntityType.fromTypeName(type))
 	 */
 	public Set<? extends Entity> getEntitiesOfTheClass(String type){
-		
-		Set<Entity> resultSet = new HashSet<Entity>();
-		for	(Entity element : entities) {
-			if (element.getTypeName() == type)
-				resultSet.add(element);
-		}
-		return resultSet;
+		EntityType entityType = EntityType.fromTypeName(type);
+		if (entityType == null) return Collections.emptySet();
+		return getEntitiesOfType(entityType);
+	}
+	
+	/**
+	 * Return all entities of the given type located in this world.
+	 * 
+	 * @param	type
+	 * 			The type of the entities.
+	 * @return	The result contains every entity of this world of the given type, and no other entities.
+	 * 			| for each entity in entities
+	 * 			|	result.contains(entity) == (entity.getType() == type)
+	 * @note	The result is a read-only view which follows the changes of this world, so asking for it
+	 * 			doesn't copy anything. It may not be iterated over while entities are added to or removed from this world.
+	 */
+	public Set<? extends Entity> getEntitiesOfType(EntityType type){
+		synchronize();
+		return entitiesOfTypeView.get(type);
+	}
+	
+	/**
+	 * Return the number of entities of the given type in this world.
+	 * 
+	 * @param	type
+	 * 			The type of the entities.
+	 * @return	The result is the number of entities of this world of the given type.
+	 * 			| result == getEntitiesOfType(type).size()
+	 */
+	public int getNbEntitiesOfType(EntityType type){
+		return entitiesOfType.get(type).size();
 	}
 	
 	//Total
@@ -216,14 +332,131 @@ public class World {
 		 * 			| implementation
 		 * @post 	If there are multiple entities at a x and y position return null.
 		 * 			| implementation
+		 * @note	Only the entities whose bounding box contains the given point are checked.
 		 */
 		public Entity entityAt(double x, double y){
 			
-			return getEntities().stream()
-					.filter(i -> i.getPosition()[0] == x && i.getPosition()[1] == y)
+			return queryAABB(x, y, x, y).stream()
+					.filter(i -> i.getX() == x && i.getY() == y)
 					.findFirst()
 					.orElse(null);
 		}
+	
+	/**
+	 * Return the entities of this world whose circle intersects the given circle.
+	 * 
+	 * @param	x
+	 * 			The x coordinate of the centre of the circle.
+	 * @param	y
+	 * 			The y coordinate of the centre of the circle.
+	 * @param	radius
+	 * 			The radius of the circle.
+	 * @return	The result contains every entity of this world whose centre lies within the given radius
+	 * 			plus its own radius from the given centre, and no other entities.
+	 * 			| for each entity in getEntities()
+	 * 			|	result.contains(entity) == 
+	 * 			|		(Math.hypot(entity.getX() - x, entity.getY() - y) <= radius + entity.getRadius())
+	 * @throws	IllegalArgumentException
+	 * 			The given centre isn't a valid point or the radius is negative or isn't a valid double.
+	 * 			| !Helper.isValidDouble(x) || !Helper.isValidDouble(y) || !Helper.isValidDouble(radius) || radius < 0
+	 */
+	public List<Entity> queryCircle(double x, double y, double radius) throws IllegalArgumentException{
+		if (!Helper.isValidDouble(x) || !Helper.isValidDouble(y) || !Helper.isValidDouble(radius) || radius < 0)
+			throw new IllegalArgumentException("Invalid circle @ queryCircle");
+		synchronize();
+		List<Entity> result = new ArrayList<Entity>();
+		tree.queryCircle(x, y, radius, result);
+		return result;
+	}
+	
+	/**
+	 * Return the entities of this world whose bounding box overlaps with the given box.
+	 * 
+	 * @param	minX
+	 * 			The smallest x coordinate of the box.
+	 * @param	minY
+	 * 			The smallest y coordinate of the box.
+	 * @param	maxX
+	 * 			The largest x coordinate of the box.
+	 * @param	maxY
+	 * 			The largest y coordinate of the box.
+	 * @return	The result contains every entity of this world whose bounding box overlaps with the given box,
+	 * 			borders included, and no other entities.
+	 * 			| for each entity in getEntities()
+	 * 			|	result.contains(entity) == (entity.getX() - entity.getRadius() <= maxX 
+	 * 			|		&& entity.getX() + entity.getRadius() >= minX && entity.getY() - entity.getRadius() <= maxY
+	 * 			|		&& entity.getY() + entity.getRadius() >= minY)
+	 * @throws	IllegalArgumentException
+	 * 			One of the coordinates is NaN, or the box is empty.
+	 * 			| Double.isNaN(minX) || Double.isNaN(minY) || Double.isNaN(maxX) || Double.isNaN(maxY)
+	 * 			|	|| minX > maxX || minY > maxY
+	 */
+	public List<Entity> queryAABB(double minX, double minY, double maxX, double maxY) throws IllegalArgumentException{
+		if (Double.isNaN(minX) || Double.isNaN(minY) || Double.isNaN(maxX) || Double.isNaN(maxY) || minX > maxX || minY > maxY)
+			throw new IllegalArgumentException("Invalid box @ queryAABB");
+		synchronize();
+		List<Entity> result = new ArrayList<Entity>();
+		tree.queryAABB(minX, minY, maxX, maxY, result);
+		return result;
+	}
+	
+	/**
+	 * Return the first entity of this world hit by the given ray.
+	 * 
+	 * @param	x
+	 * 			The x coordinate of the origin of the ray.
+	 * @param	y
+	 * 			The y coordinate of the origin of the ray.
+	 * @param	directionX
+	 * 			The x component of the direction of the ray.
+	 * @param	directionY
+	 * 			The y component of the direction of the ray.
+	 * @param	maxDistance
+	 * 			The length of the ray.
+	 * @return	The entity whose circle is hit first by the ray within the given length, or null if there
+	 * 			is no such entity. An entity whose circle contains the origin is hit at distance zero.
+	 * 			| @ implementation
+	 * @throws	IllegalArgumentException
+	 * 			The origin or direction isn't valid, the direction is zero or the length is negative or NaN.
+	 * 			| !Helper.isValidDouble(x) || !Helper.isValidDouble(y) || !Helper.isValidDouble(directionX)
+	 * 			|	|| !Helper.isValidDouble(directionY) || (directionX == 0 && directionY == 0) || !(maxDistance >= 0)
+	 */
+	public Entity raycast(double x, double y, double directionX, double directionY, double maxDistance) throws IllegalArgumentException{
+		if (!Helper.isValidDouble(x) || !Helper.isValidDouble(y) || !Helper.isValidDouble(directionX)
+				|| !Helper.isValidDouble(directionY) || (directionX == 0 && directionY == 0) || !(maxDistance >= 0))
+			throw new IllegalArgumentException("Invalid ray @ raycast");
+		synchronize();
+		return tree.raycast(x, y, directionX, directionY, maxDistance);
+	}
+	
+	/**
+	 * Return the entities of this world satisfying the given predicate whose centres are the closest to the given point.
+	 * 
+	 * @param	x
+	 * 			The x coordinate of the point.
+	 * @param	y
+	 * 			The y coordinate of the point.
+	 * @param	k
+	 * 			The largest number of entities to return.
+	 * @param	predicate
+	 * 			The predicate the returned entities must satisfy.
+	 * @return	The result contains at most k entities satisfying the predicate, in the order of increasing distance
+	 * 			between their centre and the given point. It contains fewer than k entities only if there aren't
+	 * 			any other entities satisfying the predicate, and no entity satisfying the predicate which isn't
+	 * 			in the result is closer than the last one.
+	 * 			| @ implementation
+	 * @throws	IllegalArgumentException
+	 * 			The point isn't valid, k is negative or the predicate is null.
+	 * 			| !Helper.isValidDouble(x) || !Helper.isValidDouble(y) || k < 0 || predicate == null
+	 */
+	public List<Entity> nearest(double x, double y, int k, Predicate<? super Entity> predicate) throws IllegalArgumentException{
+		if (!Helper.isValidDouble(x) || !Helper.isValidDouble(y) || k < 0 || predicate == null)
+			throw new IllegalArgumentException("Invalid query @ nearest");
+		synchronize();
+		List<Entity> result = new ArrayList<Entity>();
+		tree.nearest(x, y, k, predicate, result);
+		return result;
+	}
 
 	
 	/**
@@ -238,16 +471,224 @@ public class World {
 	 *          and the entity's superWorld is set to the world the method is invoked.
 	 *          | entities.add(entity)
 	 *		    | entity.setSuperWorld(this)
+	 * @post	The entity is added to the entities of its type.
+	 * 			| getEntitiesOfType(entity.getType()).contains(entity)
+	 * @effect	The state of the entity is stored in the arrays of this world.
+	 * 			| store.add(entity)
+	 * @effect	The entity is added to the broad phase.
+	 * 			| broadPhase.insert(entity)
+	 * @effect	The entity is added to the tree of bounding boxes.
+	 * 			| tree.insert(entity)
+	 * @effect	If this world is evolving, the collisions of the entity are scheduled.
+	 * 			| if isEvolving
+	 * 			|	then scheduler.entityAdded(entity)
+	 * @effect	The nearest entities tracked for the ships of this world are updated for the entity.
+	 * 			| nearestTracker.entityAdded(entity)
+	 * @effect	The state of this world has changed.
+	 * 			| stateChanged()
+	 * @effect	If this world is being recorded, the addition is recorded.
+	 * 			| if getRecorder() != null
+	 * 			|	then getRecorder().entityAdded(entity, isReplayedChange())
+	 * @note	While the entities of this world are iterated over by forEachEntity, the entity is only
+	 * 			added once the iteration has finished.
 	 */
 	public void addEntityToWorld(Entity entity){
-		
+		if (iterationDepth > 0){
+			if (entity.isTerminated()) throw new IllegalArgumentException("Entity is already terminated.");
+			pendingChanges.add(() -> addEntityToWorld(entity));
+			return;
+		}
 		if(canHaveAsEntity(entity)){
-			entities.add(entity);
-			entity.setSuperWorld(this);
+			insertEntity(entity);
+			if (recorder != null) recorder.entityAdded(entity, isReplayedChange());
 		}
 		else 	throw new IllegalArgumentException("Can't place entity in entities @ World");
 	}
 	
+	/**
+	 * Add the given entities to this world at once.
+	 * 
+	 * @param	entities
+	 * 			The entities to add.
+	 * @post	If none of the entities is rejected, every entity is in this world.
+	 * 			| if getRejectedEntities(entities).isEmpty()
+	 * 			|	then for each entity in entities
+	 * 			|		new.hasAsEntity(entity)
+	 * @effect	The state of the entities is stored, and the tree of bounding boxes is built at once for the
+	 * 			entities if this world was empty.
+	 * 			| tree.insertAll(entities)
+	 * @effect	If this world is being recorded, the addition of each entity is recorded.
+	 * 			| for each entity in entities
+	 * 			|	if getRecorder() != null
+	 * 			|		then getRecorder().entityAdded(entity, isReplayedChange())
+	 * @throws	IllegalArgumentException
+	 * 			Some of the entities can't be placed in this world. None of the entities is added then.
+	 * 			| !getRejectedEntities(entities).isEmpty()
+	 * @note	While the entities of this world are iterated over by forEachEntity, the entities are only
+	 * 			added once the iteration has finished.
+	 * @note	Unlike adding the entities one by one, the overlap between the new entities is checked in a
+	 * 			single pass, so loading a level of n entities doesn't take quadratic time.
+	 */
+	public void addEntities(Collection<? extends Entity> entities) throws IllegalArgumentException{
+		List<Entity> batch = new ArrayList<Entity>(entities);
+		if (iterationDepth > 0){
+			for (Entity entity : batch)
+				if (entity == null || entity.isTerminated()) throw new IllegalArgumentException("Invalid entity @ addEntities");
+			pendingChanges.add(() -> addEntities(batch));
+			return;
+		}
+		List<Entity> rejected = getRejectedEntities(batch);
+		if (!rejected.isEmpty())
+			throw new IllegalArgumentException("Can't place " + rejected.size() + " of " + batch.size() + " entities @ World");
+		insertEntities(batch);
+		if (recorder != null){
+			for (Entity entity : batch) recorder.entityAdded(entity, isReplayedChange());
+		}
+	}
+	
+	/**
+	 * Return the entities of the given collection which couldn't be added to this world together with
+	 * the entities before them.
+	 * 
+	 * @param	entities
+	 * 			The entities to check.
+	 * @return	An entity is rejected if it is already in a world, occurs earlier in the collection, overlaps
+	 * 			the boundaries of this world or an entity of this world, or overlaps an entity earlier in the
+	 * 			collection which isn't rejected itself. The rejected entities are listed in the order of the collection.
+	 * 			| for each entity in entities
+	 * 			|	result.contains(entity) ==
+	 * 			|		(entity.getSuperWorld() != null || entityBoundryOverlap(entity) || entityOverlap(entity)
+	 * 			|		|| for some earlier in entities before entity
+	 * 			|			earlier == entity || (!result.contains(earlier) && entity.overlap(earlier)))
+	 * @throws	IllegalArgumentException
+	 * 			One of the entities isn't effective or is terminated.
+	 * 			| entities.contains(null) || for some entity in entities
+	 * 			|	entity.isTerminated()
+	 * @note	The entities accepted so far are kept in a temporary grid whose cells are as wide as the largest
+	 * 			entity, so each entity is only compared to the accepted entities in the cells around it.
+	 */
+	public List<Entity> getRejectedEntities(Collection<? extends Entity> entities) throws IllegalArgumentException{
+		double maxRadius = 0;
+		for (Entity entity : entities){
+			if (entity == null || entity.isTerminated()) throw new IllegalArgumentException("Invalid entity @ getRejectedEntities");
+			maxRadius = Math.max(maxRadius, entity.getRadius());
+		}
+		double cellSize = Math.max(2 * maxRadius, Double.MIN_NORMAL);
+		Map<Long, List<Entity>> grid = new HashMap<Long, List<Entity>>();
+		Set<Entity> seen = Collections.newSetFromMap(new IdentityHashMap<Entity, Boolean>());
+		List<Entity> rejected = new ArrayList<Entity>();
+		for (Entity entity : entities){
+			if (!seen.add(entity) || entity.getSuperWorld() != null || entityBoundryOverlap(entity) || entityOverlap(entity)){
+				rejected.add(entity);
+				continue;
+			}
+			long column = (long) Math.floor(entity.getX() / cellSize), row = (long) Math.floor(entity.getY() / cellSize);
+			boolean overlaps = false;
+			for (long i = column - 1; i <= column + 1 && !overlaps; i++){
+				for (long j = row - 1; j <= row + 1 && !overlaps; j++){
+					List<Entity> cell = grid.get(getCellKey(i, j));
+					if (cell == null) continue;
+					for (int k = 0; k < cell.size() && !overlaps; k++) overlaps = entity.overlap(cell.get(k));
+				}
+			}
+			if (overlaps) rejected.add(entity);
+			else grid.computeIfAbsent(getCellKey(column, row), key -> new ArrayList<Entity>()).add(entity);
+		}
+		return rejected;
+	}
+	
+	/**
+	 * Return the key of the cell of a temporary grid at the given column and row.
+	 */
+	private static long getCellKey(long column, long row){
+		return column << 32 ^ (row & 0xFFFFFFFFL);
+	}
+	
+	/**
+	 * Add the given entity, as it was in this world at the time of a keyframe of a replay log, to this world.
+	 * 
+	 * @param	entity
+	 * 			The entity to restore.
+	 * @effect	The entity is inserted in this world without checking its overlap with the other entities,
+	 * 			which may touch it in the recorded world.
+	 * 			| insertEntity(entity)
+	 * @throws	IllegalArgumentException
+	 * 			The entity is terminated or already in a world.
+	 * 			| entity.isTerminated() || entity.getSuperWorld() != null
+	 */
+	void restoreEntity(Entity entity) throws IllegalArgumentException{
+		if (entity.isTerminated() || entity.getSuperWorld() != null)
+			throw new IllegalArgumentException("Can't restore entity @ World");
+		insertEntity(entity);
+	}
+	
+	/**
+	 * Add the given entities, as they were together in a world, to this world at once.
+	 * 
+	 * @param	entities
+	 * 			The entities to restore, in the order of the slots they should get.
+	 * @post	Each entity is in this world, without checking its overlap with the other entities.
+	 * 			| for each entity in entities
+	 * 			|	new.hasAsEntity(entity)
+	 * @effect	The tree of bounding boxes is built at once for the entities, if this world was empty.
+	 * 			| tree.insertAll(entities)
+	 * @throws	IllegalArgumentException
+	 * 			One of the entities is terminated or already in a world. None of the entities is added then.
+	 * 			| for some entity in entities
+	 * 			|	entity.isTerminated() || entity.getSuperWorld() != null
+	 */
+	void restoreEntities(List<? extends Entity> entities) throws IllegalArgumentException{
+		for (Entity entity : entities){
+			if (entity.isTerminated() || entity.getSuperWorld() != null)
+				throw new IllegalArgumentException("Can't restore entity @ World");
+		}
+		insertEntities(entities);
+	}
+	
+	/**
+	 * Insert the given entities in this world at once.
+	 * 
+	 * @see		restoreEntities(List)
+	 * @note	The world of every entity is set before any entity is indexed, so if this world is terminated
+	 * 			nothing is inserted at all.
+	 */
+	@Model
+	private void insertEntities(List<? extends Entity> entities){
+		for (Entity entity : entities) entity.setSuperWorld(this);
+		for (Entity entity : entities){
+			this.entities.add(entity);
+			entitiesOfType.get(entity.getType()).add(entity);
+			store.add(entity);
+			broadPhase.insert(entity);
+			if (isEvolving) scheduler.entityAdded(entity);
+			nearestTracker.entityAdded(entity);
+		}
+		tree.insertAll(entities);
+		nbEntitiesAdded += entities.size();
+		stateChanged();
+	}
+
+	/**
+	 * Insert the given entity in this world.
+	 * 
+	 * @see		addEntityToWorld(Entity)
+	 * @note	The world of the entity is set before the entity is indexed, so if this world is terminated
+	 * 			nothing is inserted at all.
+	 */
+	@Model
+	private void insertEntity(Entity entity){
+		entity.setSuperWorld(this);
+		entities.add(entity);
+		entitiesOfType.get(entity.getType()).add(entity);
+		store.add(entity);
+		broadPhase.insert(entity);
+		tree.insert(entity);
+		if (isEvolving) scheduler.entityAdded(entity);
+		nearestTracker.entityAdded(entity);
+		nbEntitiesAdded++;
+		stateChanged();
+	}
+	
 	/**
 	 * Remove the Entity from the World.
 	 * 
@@ -262,11 +703,40 @@ public class World {
 	 *          |		entities.remove(elemnt)
 	 * @post	The entitie's superWorld is set to null.
 	 * 			| entity.setSuperWorld(null)
+	 * @post	The entity is removed from the entities of its type.
+	 * 			| !getEntitiesOfType(entity.getType()).contains(entity)
+	 * @effect	The state of the entity is moved out of the arrays of this world.
+	 * 			| store.remove(entity)
+	 * @effect	The entity is removed from the broad phase.
+	 * 			| broadPhase.remove(entity)
+	 * @effect	The nearest entities tracked for the ships of this world are updated for the entity.
+	 * 			| nearestTracker.entityRemoved(entity)
+	 * @effect	The state of this world has changed.
+	 * 			| stateChanged()
+	 * @effect	If this world is being recorded and the removal doesn't follow from a recorded call, it is recorded.
+	 * 			| if getRecorder() != null && !isReplayedChange()
+	 * 			|	then getRecorder().entityRemoved(entity)
+	 * @note	While the entities of this world are iterated over by forEachEntity, the entity is only
+	 * 			removed once the iteration has finished.
 	 */
 	public void removeEntityFromWorld(Entity entity) throws IllegalArgumentException {
+		if (iterationDepth > 0 && entities.contains(entity)){
+			pendingChanges.add(() -> {
+				if (hasAsEntity(entity)) removeEntityFromWorld(entity);
+			});
+			return;
+		}
 		if(entities.contains(entity)){
 			entity.setSuperWorld(null);
 			entities.remove(entity);
+			entitiesOfType.get(entity.getType()).remove(entity);
+			store.remove(entity);
+			broadPhase.remove(entity);
+			tree.remove(entity);
+			nearestTracker.entityRemoved(entity);
+			nbEntitiesRemoved++;
+			stateChanged();
+			if (recorder != null && !isReplayedChange()) recorder.entityRemoved(entity);
 		}
 		else throw new IllegalArgumentException("entity isn't part of the world on which it want's to be removed.");
 	}	
@@ -314,8 +784,8 @@ public class World {
 	 */
 	public boolean entityBoundryOverlap(Entity entity){
 		
-		if ( (entity.getPosition()[0]-(entity.getRadius()/100)*99) <= 0.0 || (entity.getPosition()[0]+(entity.getRadius()/100)*99) >= worldWidth) return true;
-		if ( (entity.getPosition()[1]-(entity.getRadius()/100)*99) <= 0.0 || (entity.getPosition()[1]+(entity.getRadius()/100)*99) >= worldHeight) return true;
+		if ( (entity.getX()-(entity.getRadius()/100)*99) <= 0.0 || (entity.getX()+(entity.getRadius()/100)*99) >= worldWidth) return true;
+		if ( (entity.getY()-(entity.getRadius()/100)*99) <= 0.0 || (entity.getY()+(entity.getRadius()/100)*99) >= worldHeight) return true;
 		return false;
 	}
 	/**
@@ -327,198 +797,1448 @@ public class World {
 	 */
 	@Model 
 	private boolean entityOverlap(Entity entity){
-		return getEntities().stream()
-				.filter(other -> entity.overlap(other) && (entity != other))
-				.findFirst()
-				.isPresent();
+		synchronize();
+		List<Entity> nearby = new ArrayList<Entity>();
+		tree.queryCircle(entity.getX(), entity.getY(), entity.getRadius(), nearby);
+		for (int i = 0; i < nearby.size(); i++){
+			Entity other = nearby.get(i);
+			if (entity != other && entity.overlap(other)) return true;
+		}
+		return false;
 	}
 	
 	/**
-	 * HashSet containing all entities in the world.
-	 */
-	private Set<Entity> entities = new HashSet<Entity>();
-	
-
-	/**
-	 * Terminate this world.
+	 * Check whether an entity with the given radius could be placed at the given position in this world.
 	 * 
-	 * @effect	Every superWorld of each entity in this world is set to null
-	 * 			| for each entity in entitiesm
-	 * 			|	entity.setSuperWorld(null)
-	 * @effect	entities is cleared.
-	 * 			| entities.clear()
-	 * @post	isTerminated is set to true.
-	 * 			| new.isTerminated = true
+	 * @param	x
+	 * 			The x coordinate of the position.
+	 * @param	y
+	 * 			The y coordinate of the position.
+	 * @param	radius
+	 * 			The radius of the entity.
+	 * @effect	| result == isFreePosition(x, y, radius, null)
 	 */
-	public void terminate(){
-		 entities.forEach(entity -> entity.setSuperWorld(null));
-		 entities.clear();
-	     this.isTerminated = true;
+	public boolean isFreePosition(double x, double y, double radius) throws IllegalArgumentException{
+		return isFreePosition(x, y, radius, null);
 	}
 	
 	/**
-	 * Checks whether the world is terminated.
+	 * Check whether an entity with the given radius could be placed at the given position in this world,
+	 * ignoring the given entity.
+	 * 
+	 * @param	x
+	 * 			The x coordinate of the position.
+	 * @param	y
+	 * 			The y coordinate of the position.
+	 * @param	radius
+	 * 			The radius of the entity.
+	 * @param	ignored
+	 * 			The entity which doesn't count, such as the entity which will be moved to the position, or null.
+	 * @return	True if and only if the circle lies entirely within this world and is apart from every entity of
+	 * 			this world other than the ignored one.
+	 * 			| result == (x - radius > 0 && x + radius < getWorldWidth() && y - radius > 0 && y + radius < getWorldHeight()
+	 * 			|	&& for each entity in getEntities()
+	 * 			|		entity == ignored || Math.hypot(entity.getX() - x, entity.getY() - y) > radius + entity.getRadius())
+	 * @throws	IllegalArgumentException
+	 * 			The position isn't valid, or the radius is negative or isn't a valid double.
+	 * 			| !Helper.isValidDouble(x) || !Helper.isValidDouble(y) || !Helper.isValidDouble(radius) || radius < 0
 	 */
-	@Basic @Raw
-	public boolean isTerminatedWorld(){
-		return this.isTerminated;
+	boolean isFreePosition(double x, double y, double radius, Entity ignored) throws IllegalArgumentException{
+		if (!Helper.isValidDouble(x) || !Helper.isValidDouble(y) || !Helper.isValidDouble(radius) || radius < 0)
+			throw new IllegalArgumentException("Invalid circle @ isFreePosition");
+		if (!(x - radius > 0 && x + radius < worldWidth && y - radius > 0 && y + radius < worldHeight)) return false;
+		synchronize();
+		placementCandidates.clear();
+		tree.queryCircle(x, y, radius, placementCandidates);
+		for (int i = 0; i < placementCandidates.size(); i++){
+			Entity other = placementCandidates.get(i);
+			if (other != ignored && Math.hypot(other.getX() - x, other.getY() - y) <= radius + other.getRadius()) return false;
+		}
+		return true;
 	}
 	
 	/**
-	 * Variable containing whether the world is terminated.
+	 * Return a random position at which an entity with the given radius could be placed in this world.
+	 * 
+	 * @param	radius
+	 * 			The radius of the entity.
+	 * @effect	| result == findFreePosition(radius, null)
 	 */
-	private boolean isTerminated = false;
-	
+	public double[] findFreePosition(double radius) throws IllegalArgumentException{
+		return findFreePosition(radius, null);
+	}
 	
 	/**
-	 * The method which evolves the state of the game
+	 * Return a random position at which an entity with the given radius could be placed in this world, ignoring
+	 * the given entity.
 	 * 
-	 * @param	dt 
-	 * 			The time over which the world is evolved.
-	 * @param	collisionListener
-	 * 
-	 * 			A object that listens if there are any collisions while evolving.
-	 * @post	Every entity in the world will be moved for the given time dt according to it's specifics.	
-	 * 			| @ implementation
-	 * @post	If there are any collisions detected while evolving the entities will collide.
+	 * @param	radius
+	 * 			The radius of the entity.
+	 * @param	ignored
+	 * 			The entity which doesn't count, or null.
+	 * @return	The result is a free position, or null if no free position has been found.
+	 * 			| result == null || isFreePosition(result[0], result[1], radius, ignored)
+	 * @post	Positions drawn uniformly from the random numbers of this world are tried first, up to
+	 * 			NB_PLACEMENT_ATTEMPTS of them. If none of them is free, the free cells of an occupancy grid over
+	 * 			this world are collected, and the centre of a random free cell is the result.
 	 * 			| @ implementation
-	 * @post 	If there are any collisions collisionListener will hear them.
-	 * 			| @ implementation 	I
+	 * @throws	IllegalArgumentException
+	 * 			The radius is negative or isn't a valid double.
+	 * 			| !Helper.isValidDouble(radius) || radius < 0
+	 * @note	The number of positions tried is bounded, so the search ends even in a world which is full.
+	 * 			A free position may be missed if it is smaller than a cell of the grid.
 	 */
-	public void evolve(double dt, CollisionListener collisionListener) throws IllegalArgumentException{
-
-		
-		if(dt < 0 || !(Helper.isValidDouble(dt)))
-			throw new IllegalArgumentException("Time given at evolve is invalid");
-		
-		double tC = getTimeToNextCollision();
-		
-		double[] pos = getNextCollisionPos();
-		
-		Entity[] entities = getNextCollidingEntities();
+	double[] findFreePosition(double radius, Entity ignored) throws IllegalArgumentException{
+		if (!Helper.isValidDouble(radius) || radius < 0) throw new IllegalArgumentException("Invalid radius @ findFreePosition");
+		if (2 * radius >= worldWidth || 2 * radius >= worldHeight) return null;
+		for (int attempt = 0; attempt < NB_PLACEMENT_ATTEMPTS; attempt++){
+			double x = radius + nextRandom() * (worldWidth - 2 * radius);
+			double y = radius + nextRandom() * (worldHeight - 2 * radius);
+			if (isFreePosition(x, y, radius, ignored)) return new double[]{x, y};
+		}
 		
-		while (tC <= dt){
-			for(Entity entity: getEntities()) entity.move(tC);
-			if(entities[1] == null){
-				if(collisionListener != null) collisionListener.boundaryCollision(entities[0], pos[0], pos[1]);
-				entities[0].collideBoundary();
-			}
-			else {
-				if(collisionListener != null) collisionListener.objectCollision(entities[0], entities[1], pos[0], pos[1]);
-				entities[0].collide(entities[1]);
-				
-			}
-			
-			dt = dt - tC;
-			tC = getTimeToNextCollision();
-			pos = getNextCollisionPos();
-			entities = getNextCollidingEntities();
-		}
-		for(Entity entity: getEntities()){ 
-			if(dt > 0){
-				if (entity instanceof Planetoid) {Planetoid planetoid = (Planetoid) entity; planetoid.move(dt);}
-				else if (entity instanceof Ship) {Ship ship = (Ship) entity; ship.move(dt);}	
-				else entity.move(dt);
+		// Mark every cell whose centre lies too close to an entity, then pick one of the cells left.
+		double cellSize = Math.max(radius, Math.sqrt(worldWidth * worldHeight / MAXIMAL_PLACEMENT_CELLS));
+		int columns = (int) Math.min(Integer.MAX_VALUE, Math.ceil(worldWidth / cellSize));
+		int rows = (int) Math.min(Integer.MAX_VALUE, Math.ceil(worldHeight / cellSize));
+		if ((long) columns * rows > 4 * MAXIMAL_PLACEMENT_CELLS) return null;
+		boolean[] occupied = new boolean[columns * rows];
+		synchronize();
+		for (int slot = 0; slot < store.getNbEntities(); slot++){
+			Entity entity = store.getEntityAt(slot);
+			if (entity == ignored) continue;
+			double reach = radius + store.radius[slot];
+			int firstColumn = Math.max(0, (int) Math.floor((store.x[slot] - reach) / cellSize - 0.5));
+			int lastColumn = Math.min(columns - 1, (int) Math.ceil((store.x[slot] + reach) / cellSize - 0.5));
+			int firstRow = Math.max(0, (int) Math.floor((store.y[slot] - reach) / cellSize - 0.5));
+			int lastRow = Math.min(rows - 1, (int) Math.ceil((store.y[slot] + reach) / cellSize - 0.5));
+			for (int row = firstRow; row <= lastRow; row++){
+				for (int column = firstColumn; column <= lastColumn; column++){
+					double dx = (column + 0.5) * cellSize - store.x[slot], dy = (row + 0.5) * cellSize - store.y[slot];
+					if (dx * dx + dy * dy <= reach * reach) occupied[row * columns + column] = true;
+				}
 			}
 		}
+		int nbFree = 0;
+		int[] free = new int[occupied.length];
+		for (int cell = 0; cell < occupied.length; cell++){
+			double x = (cell % columns + 0.5) * cellSize, y = (cell / columns + 0.5) * cellSize;
+			if (!occupied[cell] && x - radius > 0 && x + radius < worldWidth && y - radius > 0 && y + radius < worldHeight)
+				free[nbFree++] = cell;
+		}
+		if (nbFree == 0) return null;
+		int cell = free[(int) (nextRandom() * nbFree)];
+		double[] position = new double[]{(cell % columns + 0.5) * cellSize, (cell / columns + 0.5) * cellSize};
+		return isFreePosition(position[0], position[1], radius, ignored) ? position : null;
 	}
-
+	
 	/**
-	 * A method which caclutates the time to the next collision.
+	 * Return a position near the given position at which an entity with the given radius could be placed in this
+	 * world, ignoring the given entity.
 	 * 
-	 * @return	This method's result is the time to the next collision whether this is a boundary collision or a entity collision.
-	 * 			If two entities seem too collide but they move away from each other the method recognizes this
-	 * 			and will not consider this time as a future collision.
-	 * 			| @ implementation
-	 * @return	If there aren't any collisions in the futere the time to the next collision is infinity.
+	 * @param	x
+	 * 			The x coordinate of the preferred position.
+	 * @param	y
+	 * 			The y coordinate of the preferred position.
+	 * @param	radius
+	 * 			The radius of the entity.
+	 * @param	maxDistance
+	 * 			The largest distance between the preferred position and the result.
+	 * @param	ignored
+	 * 			The entity which doesn't count, or null.
+	 * @return	If the preferred position is free, it is the result.
+	 * 			| if isFreePosition(x, y, radius, ignored)
+	 * 			|	then result[0] == x && result[1] == y
+	 * @return	Otherwise the result is a free position within the given distance of the preferred position, or
+	 * 			null if no free position has been found.
+	 * 			| result == null || (isFreePosition(result[0], result[1], radius, ignored)
+	 * 			|	&& Math.hypot(result[0] - x, result[1] - y) <= maxDistance)
+	 * @post	Up to NB_PLACEMENT_ATTEMPTS positions are tried on rings around the preferred position, farther
+	 * 			away with every attempt, at angles drawn from the random numbers of this world.
 	 * 			| @ implementation
+	 * @throws	IllegalArgumentException
+	 * 			The position isn't valid, or the radius or distance is negative or isn't a valid double.
+	 * 			| !Helper.isValidDouble(x) || !Helper.isValidDouble(y) || !Helper.isValidDouble(radius) || radius < 0
+	 * 			|	|| !Helper.isValidDouble(maxDistance) || maxDistance < 0
 	 */
-	public double getTimeToNextCollision(){
-		
-		double time = Double.POSITIVE_INFINITY;
-		for (Entity entity1 : getEntities()){
-		
-			time = Math.min(time, entity1.getTimeCollisionBoundary());
-			
-			for (Entity entity2 : getEntities()){
-				if (entity1 != entity2) {
-					if (entity1.overlap(entity2)) return 0;
-					double currentdistance = (Math.hypot(entity2.getPosition()[0] - entity1.getPosition()[0], 
-                            entity2.getPosition()[1] - entity1.getPosition()[1]) - (entity1.getRadius() + entity2.getRadius()));
-                    double nextdistance = (Math.hypot((entity2.getPosition()[0] + (entity2.getVelocity()[0] * 0.00001)) - 
-                            (entity1.getPosition()[0] + (entity1.getVelocity()[0] * 0.00001)), 
-                            (entity2.getPosition()[1] + (entity2.getVelocity()[1] * 0.00001)) - (entity1.getPosition()[1] + (entity1.getVelocity()[1] * 0.00001)))
-                            - (entity1.getRadius() + entity2.getRadius()));
-                    if (currentdistance >= nextdistance) {
-					time = Math.min(time, entity1.getTimeToCollision(entity2));}
-				}
-			}
+	double[] findFreePosition(double x, double y, double radius, double maxDistance, Entity ignored) throws IllegalArgumentException{
+		if (!Helper.isValidDouble(maxDistance) || maxDistance < 0) throw new IllegalArgumentException("Invalid distance @ findFreePosition");
+		if (isFreePosition(x, y, radius, ignored)) return new double[]{x, y};
+		for (int attempt = 1; attempt <= NB_PLACEMENT_ATTEMPTS; attempt++){
+			double distance = maxDistance * attempt / NB_PLACEMENT_ATTEMPTS;
+			double angle = 2 * Math.PI * nextRandom();
+			double candidateX = x + distance * Math.cos(angle), candidateY = y + distance * Math.sin(angle);
+			if (isFreePosition(candidateX, candidateY, radius, ignored)) return new double[]{candidateX, candidateY};
 		}
-		return time;
+		return null;
 	}
 	
 	/**
-	 * A method which finds the position of the next collision.
+	 * Constant containing the number of positions tried by a search for a free position before it gives up or
+	 * falls back on an occupancy grid.
+	 */
+	private static final int NB_PLACEMENT_ATTEMPTS = 32;
+	
+	/**
+	 * Constant containing the number of cells of the occupancy grid from which the cells grow beyond the radius
+	 * of the entity to place.
+	 */
+	private static final int MAXIMAL_PLACEMENT_CELLS = 1 << 16;
+	
+	/**
+	 * List used to collect the entities near a position which is checked for placement.
+	 */
+	private final List<Entity> placementCandidates = new ArrayList<Entity>();
+	
+	/**
+	 * Return the entity of the given type nearest to the given ship, other than the ship itself.
 	 * 
-	 * @return	If there will be no collisions ever the position returned is an array
-	 * 			containing two infinities.
-	 * 			| Entity[] nextCollidingEntities = getNextCollidingEntities()
-	 *			|	if(nextCollidingEntities[0] == null)
-	 *			|		then result == new double[]{Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY}
-	 * @effect 	If the next collision is a boundary collision the result will be the value of the method getPositionCollisionBoundary()
-	 * 			invoked on the colliding entity.
-	 * 			| Entity[] nextCollidingEntities = getNextCollidingEntities()
-	 * 			| if  nextCollidingEntities[1] == null
-	 * 			|	then	result == nextCollidingEntities[0].getPositionCollisionBoundary()
-	 * @effect  If the next collision is a collision between two entities the result will be the value of the method
-	 * 			getCollisionPosition() which is invoked on of the colliding entities and with argument the other colliding entity
-	 * 			| Entity[] nextCollidingEntities = getNextCollidingEntities()
-	 * 			| if (nextCollidingEntities[1] == null)
-	 * 			|	then result == nextCollidingEntities[0].getCollisionPosition(nextCollidingEntities[1])
+	 * @param	ship
+	 * 			The ship to search the nearest entity for.
+	 * @param	type
+	 * 			The type of the entity to search.
+	 * @return	The result is the entity of the given type in this world whose centre lies nearest to the centre
+	 * 			of the ship, or null if there is none.
+	 * 			| result == (nearest(ship.getX(), ship.getY(), 1, entity -> type.isInstance(entity) && entity != ship)
+	 * 			|				isEmpty ? null : its only element)
+	 * @throws	IllegalArgumentException
+	 * 			The ship isn't in this world or the type is null.
+	 * 			| ship == null || ship.getSuperWorld() != this || type == null
+	 * @note	The nearest entity is tracked incrementally for every ship and type, and only searched again
+	 * 			once the entities could have moved far enough to change it, or an entity of the type has been
+	 * 			added, removed or placed. Most calls don't search at all.
 	 */
-	public double[] getNextCollisionPos(){
-		Entity[] nextCollidingEntities = getNextCollidingEntities();
-		if(nextCollidingEntities[0] == null) {
-			return new double[]{Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY};
-			}
-		if (nextCollidingEntities[1] == null) {
-			return nextCollidingEntities[0].getPositionCollisionBoundary();
-			}
-		else
-			return nextCollidingEntities[0].getCollisionPosition(nextCollidingEntities[1]);	
+	public Entity getNearest(Ship ship, Class<? extends Entity> type) throws IllegalArgumentException{
+		if (ship == null || ship.getSuperWorld() != this || type == null)
+			throw new IllegalArgumentException("Invalid query @ getNearest");
+		double time = getElapsedTime();
+		NearestTracker.Certificate certificate = nearestTracker.getCertificate(ship, type);
+		if (!nearestTracker.isValid(certificate, time)){
+			synchronize();
+			nearestTracker.renew(certificate, time, tree);
+		}
+		return certificate.getNearest();
 	}
 	
+	/**
+	 * HashSet containing all entities in the world.
+	 */
+	private final Set<Entity> entities = new HashSet<Entity>();
 	
 	/**
-	 * A method that finds the entities which will collide the earliest.
+	 * Read-only view of the set containing all entities in the world.
+	 */
+	private final Set<Entity> entitiesView = Collections.unmodifiableSet(entities);
+	
+	/**
+	 * Map containing a set with the entities of each type in the world.
+	 */
+	private final Map<EntityType, Set<Entity>> entitiesOfType = new EnumMap<EntityType, Set<Entity>>(EntityType.class);
+	
+	/**
+	 * Map containing a read-only view of the set with the entities of each type in the world.
+	 */
+	private final Map<EntityType, Set<Entity>> entitiesOfTypeView = new EnumMap<EntityType, Set<Entity>>(EntityType.class);
+	
+	/**
+	 * Structure of arrays containing the position, velocity, radius and mass of every entity in the world.
+	 */
+	private final EntityStore store = new EntityStore();
+	
+	/**
+	 * Tree of bounding boxes containing all entities in the world, used for spatial queries.
+	 */
+	private final AabbTree tree = new AabbTree();
+	
+	/**
+	 * Tracker of the nearest entities of each type to the ships in the world.
+	 */
+	private final NearestTracker nearestTracker = new NearestTracker();
+	
+	/**
+	 * Return the set containing all entities in the world, without copying it.
 	 * 
-	 * @return	The method returns an array of size two which contains the two entities which 
-	 * 			will collide earliest. If this is a boundary collision the entity at index 0 will 
-	 * 			be the colliding entity and the entity at index 1 will be null. 
-	 * 			If there aren't any collisions in the future the array will contain two nulls.
-	 * 			| @ implementation
+	 * @note	The returned set may not be modified, and it may not be iterated over while entities are
+	 * 			added to or removed from this world.
 	 */
-	public Entity[] getNextCollidingEntities(){
-		
-		Entity[] entities = new Entity[]{null,null};
-		double timeNextCollision = Double.POSITIVE_INFINITY;
-		
-		for (Entity entity1 : this.getEntities()){
-			if (timeNextCollision > entity1.getTimeCollisionBoundary()){
-				timeNextCollision = entity1.getTimeCollisionBoundary();
-				entities = new Entity[]{entity1,null};
-			}
-			for (Entity entity2 : this.getEntities()){
-				if (entity1 != entity2) {
-					if (entity1.overlap(entity2)) return new Entity[]{entity1,entity2};
-					if (timeNextCollision > entity1.getTimeToCollision(entity2)){
-						timeNextCollision = entity1.getTimeToCollision(entity2);
-						entities = new Entity[]{entity1,entity2};
-						
-					}
-				}
-			}
-		}
+	@Basic
+	Set<Entity> getEntitySet(){
 		return entities;
 	}
+	
+	/**
+	 * Notify this world that the given entity has changed its position.
+	 * 
+	 * @param	entity
+	 * 			The entity which has moved.
+	 * @effect	The broad phase is updated for the new position of the entity.
+	 * 			| broadPhase.update(entity)
+	 * @effect	The tree of bounding boxes is updated for the new position of the entity.
+	 * 			| tree.update(entity)
+	 * @effect	If this world isn't evolving, the entity didn't move over the time of this world, so it is
+	 * 			considered as placed.
+	 * 			| if !isEvolving
+	 * 			|	then entityPlaced(entity)
+	 * @effect	The state of this world has changed.
+	 * 			| stateChanged()
+	 */
+	void entityMoved(Entity entity){
+		broadPhase.update(entity);
+		tree.update(entity);
+		if (!isEvolving) nearestTracker.entityPlaced(entity);
+		stateChanged();
+	}
+	
+	/**
+	 * Notify this world that the given entity got a position it didn't reach by moving.
+	 * 
+	 * @param	entity
+	 * 			The entity which has been placed.
+	 * @effect	The nearest entities tracked for the ships of this world are updated for the entity.
+	 * 			| nearestTracker.entityPlaced(entity)
+	 * @effect	If this world is being recorded and the placement doesn't follow from a recorded call, it is recorded.
+	 * 			| if getRecorder() != null && !isReplayedChange()
+	 * 			|	then getRecorder().entityPlaced(entity)
+	 */
+	void entityPlaced(Entity entity){
+		nearestTracker.entityPlaced(entity);
+		if (recorder != null && !isReplayedChange()) recorder.entityPlaced(entity);
+	}
+	
+	/**
+	 * Notify this world that the trajectory of the given entity has changed.
+	 * 
+	 * @param	entity
+	 * 			The entity whose trajectory has changed.
+	 * @effect	The nearest entity tracker registers the speed of the entity.
+	 * 			| nearestTracker.speedChanged(entity)
+	 * @effect	The state of this world has changed.
+	 * 			| stateChanged()
+	 */
+	void entityChanged(Entity entity){
+		nearestTracker.speedChanged(entity);
+		stateChanged();
+	}
+	
+	/**
+	 * Register a change of the state of this world.
+	 * 
+	 * @post	The modification count of this world is incremented, so the cached next collision
+	 * 			becomes out of date.
+	 * 			| new.modificationCount == this.modificationCount + 1
+	 */
+	@Model
+	private void stateChanged(){
+		modificationCount++;
+	}
+	
+	/**
+	 * Variable containing the number of changes to the state of this world.
+	 */
+	private long modificationCount = 0;
+	
+	/**
+	 * Return the type of broad phase this world uses to predict collisions.
+	 */
+	@Basic @Immutable
+	public BroadPhaseType getBroadPhaseType(){
+		return this.broadPhaseType;
+	}
+	
+	/**
+	 * Variable containing the type of broad phase of this world.
+	 */
+	private final BroadPhaseType broadPhaseType;
+	
+	/**
+	 * Constant containing the default number of entities from which the next collision is searched in parallel.
+	 */
+	public static final int DEFAULT_PARALLEL_THRESHOLD = 2000;
+	
+	/**
+	 * Constant containing the smallest number of entities searched by a single parallel task.
+	 */
+	private static final int MINIMAL_PARALLEL_GRAIN = 64;
+	
+	/**
+	 * Check whether this world searches its next collision in parallel once it is large enough.
+	 */
+	@Basic
+	public boolean isParallelPrediction(){
+		return this.parallelPrediction;
+	}
+	
+	/**
+	 * Enable or disable the parallel search of the next collision in this world.
+	 * 
+	 * @param	parallelPrediction
+	 * 			Whether the next collision must be searched in parallel.
+	 * @post	The parallel prediction of this world is enabled if and only if the given flag is true.
+	 * 			| new.isParallelPrediction() == parallelPrediction
+	 */
+	public void setParallelPrediction(boolean parallelPrediction){
+		this.parallelPrediction = parallelPrediction;
+	}
+	
+	/**
+	 * Variable registering whether this world searches its next collision in parallel.
+	 */
+	private boolean parallelPrediction = false;
+	
+	/**
+	 * Return the number of entities from which this world searches its next collision in parallel.
+	 */
+	@Basic
+	public int getParallelThreshold(){
+		return this.parallelThreshold;
+	}
+	
+	/**
+	 * Set the number of entities from which this world searches its next collision in parallel.
+	 * 
+	 * @param	parallelThreshold
+	 * 			The new threshold.
+	 * @post	The parallel threshold of this world is the given threshold.
+	 * 			| new.getParallelThreshold() == parallelThreshold
+	 * @throws	IllegalArgumentException
+	 * 			The given threshold isn't strictly positive.
+	 * 			| parallelThreshold <= 0
+	 */
+	public void setParallelThreshold(int parallelThreshold) throws IllegalArgumentException{
+		if (parallelThreshold <= 0) throw new IllegalArgumentException("Invalid parallel threshold @ World");
+		this.parallelThreshold = parallelThreshold;
+	}
+	
+	/**
+	 * Variable containing the number of entities from which this world searches its next collision in parallel.
+	 */
+	private int parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+	
+	/**
+	 * Return the number of regions into which this world is decomposed to predict its collisions.
+	 */
+	@Basic
+	public int getNbRegions(){
+		return this.regions == null ? 1 : this.regions.getNbRegions();
+	}
+	
+	/**
+	 * Set the number of regions into which this world is decomposed to predict its collisions.
+	 * 
+	 * @param	nbRegions
+	 * 			The new number of regions.
+	 * @post	The number of regions of this world is the given number.
+	 * 			| new.getNbRegions() == nbRegions
+	 * @throws	IllegalArgumentException
+	 * 			The given number isn't strictly positive.
+	 * 			| nbRegions <= 0
+	 * @note	Once this world holds at least getParallelThreshold() entities, it is split into the given number of
+	 * 			vertical strips holding about as many entities each, and the collisions of each strip are predicted on
+	 * 			a separate thread. The entities are assigned to the strips anew whenever the collisions are predicted
+	 * 			anew, at the boundaries of the steps. The collisions are still handled one by one in the order of
+	 * 			their times, since a collision may teleport a ship anywhere or remove entities from this world.
+	 */
+	public void setNbRegions(int nbRegions) throws IllegalArgumentException{
+		if (nbRegions <= 0) throw new IllegalArgumentException("Invalid number of regions @ World");
+		if (nbRegions != getNbRegions()) this.regions = nbRegions == 1 ? null : new RegionDecomposition(nbRegions);
+	}
+	
+	/**
+	 * Variable containing the decomposition of this world into regions, or null if this world isn't decomposed.
+	 */
+	private RegionDecomposition regions = null;
+	
+	/**
+	 * Broad phase containing all entities in the world, used for collision prediction.
+	 */
+	private final BroadPhase broadPhase;
+	
+	/**
+	 * List used to collect the candidates handed out by the broad phase.
+	 */
+	private final List<Entity> candidates = new ArrayList<Entity>();
+	
+	/**
+	 * Block used to compute the times to the collisions with the candidates of a single entity at once.
+	 */
+	private final CollisionBlock block = new CollisionBlock();
+	
+	/**
+	 * Return the registry holding the responses to the collisions between the entities of this world.
+	 * 
+	 * @note	Registering a response in the registry changes how the entities of this world collide from then on.
+	 */
+	@Basic @Immutable
+	public CollisionResponses getCollisionResponses(){
+		return this.collisionResponses;
+	}
+	
+	/**
+	 * Variable containing the responses to the collisions between the entities of this world.
+	 */
+	private final CollisionResponses collisionResponses = new CollisionResponses();
+	
+	/**
+	 * Return the pool recycling the asteroids terminated in this world, or null if they aren't recycled.
+	 */
+	@Basic
+	public EntityPool getEntityPool(){
+		return this.entityPool;
+	}
+	
+	/**
+	 * Set the pool recycling the asteroids terminated in this world to the given pool.
+	 * 
+	 * @param	pool
+	 * 			The new pool, or null if the terminated entities mustn't be recycled.
+	 * @post	| new.getEntityPool() == pool
+	 * @note	Asteroids spawned by planetoids are taken from the pool, so a world with a pool allocates fewer
+	 * 			entities while it evolves.
+	 */
+	public void setEntityPool(EntityPool pool){
+		this.entityPool = pool;
+	}
+	
+	/**
+	 * Variable containing the pool of this world.
+	 */
+	private EntityPool entityPool = null;
+	
+	/**
+	 * Register that the given entity has been terminated while it was in this world.
+	 * 
+	 * @effect	If this world has a pool, the entity is offered to it.
+	 * 			| if getEntityPool() != null
+	 * 			|	then getEntityPool().recycle(entity)
+	 */
+	void entityTerminated(Entity entity){
+		if (entityPool != null) entityPool.recycle(entity);
+	}
+	
+	/**
+	 * Variable containing the last computed next collision of this world, or null if none is computed.
+	 */
+	private CollisionEvent nextCollision = null;
+	
+	/**
+	 * Variable containing the modification count of this world when the next collision was computed.
+	 */
+	private long nextCollisionCount = -1;
+	
+
+	/**
+	 * Terminate this world.
+	 * 
+	 * @effect	Every superWorld of each entity in this world is set to null
+	 * 			| for each entity in entitiesm
+	 * 			|	entity.setSuperWorld(null)
+	 * @effect	entities is cleared.
+	 * 			| entities.clear()
+	 * @effect	The state of every entity is moved out of the arrays of this world.
+	 * 			| store.clear()
+	 * @effect	The collisions scheduled by a running evolve are dropped.
+	 * 			| scheduler.clear()
+	 * @post	The additions and removals deferred by forEachEntity are dropped.
+	 * 			| @ implementation
+	 * @post	This world isn't recorded anymore.
+	 * 			| new.getRecorder() == null
+	 * @post	isTerminated is set to true.
+	 * 			| new.isTerminated = true
+	 */
+	public void terminate(){
+		 entities.forEach(entity -> entity.setSuperWorld(null));
+		 entities.clear();
+		 entitiesOfType.values().forEach(Set::clear);
+		 store.clear();
+		 broadPhase.clear();
+		 tree.clear();
+		 nearestTracker.clear();
+		 scheduler.clear();
+		 pendingChanges.clear();
+		 recorder = null;
+		 stateChanged();
+	     this.isTerminated = true;
+	}
+	
+	/**
+	 * Checks whether the world is terminated.
+	 */
+	@Basic @Raw
+	public boolean isTerminatedWorld(){
+		return this.isTerminated;
+	}
+	
+	/**
+	 * Variable containing whether the world is terminated.
+	 */
+	private boolean isTerminated = false;
+	
+	/**
+	 * Return the state of the generator of the random numbers of this world.
+	 * 
+	 * @note	The random numbers of a world decide where the asteroids of a dying planetoid fly off to and where
+	 * 			a ship hitting a planetoid is teleported to. Two worlds with the same entities and the same random
+	 * 			state evolve in the same way.
+	 */
+	@Basic
+	public long getRandomState(){
+		return this.randomState;
+	}
+	
+	/**
+	 * Set the state of the generator of the random numbers of this world.
+	 * 
+	 * @param	randomState
+	 * 			The new random state.
+	 * @post	The random state of this world is the given state.
+	 * 			| new.getRandomState() == randomState
+	 */
+	public void setRandomState(long randomState){
+		this.randomState = randomState;
+	}
+	
+	/**
+	 * Return the next random number of this world.
+	 * 
+	 * @return	The result lies between 0, included, and 1, excluded.
+	 * 			| result >= 0 && result < 1
+	 * @post	The random state of this world has advanced.
+	 * 			| @ implementation
+	 * @note	The numbers are generated by SplitMix64, whose whole state is a single long.
+	 */
+	double nextRandom(){
+		long z = (randomState += 0x9E3779B97F4A7C15L);
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return ((z ^ (z >>> 31)) >>> 11) * 0x1.0p-53;
+	}
+	
+	/**
+	 * Return a random number of this world within the given bounds.
+	 * 
+	 * @param 	min
+	 * 			The lower bound of the number.
+	 * @param 	max
+	 * 			The upper bound of the number.
+	 * @return	The result is spread like the result of Helper.randomInBetween(min, max).
+	 * 			| result == nextRandom() * ((max - min) + 1) + min
+	 */
+	double randomInBetween(double min, double max){
+		return nextRandom() * ((max - min) + 1) + min;
+	}
+	
+	/**
+	 * Variable containing the state of the generator of the random numbers of this world.
+	 */
+	private long randomState = ThreadLocalRandom.current().nextLong();
+	
+	/**
+	 * Check whether the calls changing this world are recorded in a replay log.
+	 */
+	public boolean isRecording(){
+		return recorder != null && recorder.isWriting();
+	}
+	
+	/**
+	 * Return the recorder attached to this world, or null if there is none.
+	 */
+	@Basic
+	ReplayRecorder getRecorder(){
+		return this.recorder;
+	}
+	
+	/**
+	 * Attach the given recorder to this world.
+	 * 
+	 * @param	recorder
+	 * 			The recorder to attach, or null to detach the current one.
+	 * @post	The recorder of this world is the given recorder.
+	 * 			| new.getRecorder() == recorder
+	 * @throws	IllegalStateException
+	 * 			Another recorder is already attached to this world.
+	 * 			| recorder != null && getRecorder() != null
+	 */
+	void setRecorder(ReplayRecorder recorder) throws IllegalStateException{
+		if (recorder != null && this.recorder != null) throw new IllegalStateException("The world already has a recorder.");
+		this.recorder = recorder;
+	}
+	
+	/**
+	 * Variable containing the recorder attached to this world.
+	 */
+	private ReplayRecorder recorder = null;
+	
+	/**
+	 * Record a call evolving this world over the given number of steps of the given time.
+	 * 
+	 * @effect	If this world is being recorded and the call doesn't follow from a recorded call, it is recorded.
+	 * 			| if getRecorder() != null && !isReplayedChange()
+	 * 			|	then getRecorder().evolving(tag, nbSteps, dt)
+	 */
+	@Model
+	private void recordEvolve(byte tag, int nbSteps, double dt){
+		if (recorder != null && !isReplayedChange()) recorder.evolving(tag, nbSteps, dt);
+	}
+	
+	/**
+	 * Let the recorder of this world write a keyframe after a recorded evolve, if one is due.
+	 * 
+	 * @effect	If this world is being recorded and the call doesn't follow from a recorded call, the recorder
+	 * 			writes a keyframe if one is due.
+	 * 			| if getRecorder() != null && !isReplayedChange()
+	 * 			|	then getRecorder().evolved()
+	 */
+	@Model
+	private void recordEvolved(){
+		if (recorder != null && !isReplayedChange()) recorder.evolved();
+	}
+	
+	/**
+	 * Record the given action of the given entity of this world.
+	 * 
+	 * @param	entity
+	 * 			The entity performing the action.
+	 * @param	tag
+	 * 			The tag of the action in a replay log.
+	 * @param	value
+	 * 			The argument of the action.
+	 * @effect	If this world is being recorded and the action doesn't follow from a recorded call, it is recorded.
+	 * 			| if getRecorder() != null && !isReplayedChange()
+	 * 			|	then getRecorder().action(entity, tag, value)
+	 */
+	void actionPerformed(Entity entity, byte tag, double value){
+		if (recorder != null && !isReplayedChange()) recorder.action(entity, tag, value);
+	}
+	
+	/**
+	 * Start the given action of the given entity of this world, whose effects follow from the action.
+	 * 
+	 * @effect	The action is recorded.
+	 * 			| actionPerformed(entity, tag, value)
+	 * @post	Every change of this world up to the matching end of the action follows from the action.
+	 * 			| new.isReplayedChange()
+	 */
+	void beginAction(Entity entity, byte tag, double value){
+		actionPerformed(entity, tag, value);
+		actionDepth++;
+	}
+	
+	/**
+	 * End the last action started in this world.
+	 */
+	void endAction(){
+		actionDepth--;
+	}
+	
+	/**
+	 * Record the loading of the given bullets on the given ship of this world, and start the loading as an action.
+	 * 
+	 * @effect	If this world is being recorded and the loading doesn't follow from a recorded call, it is recorded.
+	 * 			| if getRecorder() != null && !isReplayedChange()
+	 * 			|	then getRecorder().bulletsLoading(ship, bullets)
+	 * @post	Every change of this world up to the matching end of the action follows from the loading.
+	 * 			| new.isReplayedChange()
+	 */
+	void beginLoading(Ship ship, Collection<Bullet> bullets){
+		if (recorder != null && !isReplayedChange()) recorder.bulletsLoading(ship, bullets);
+		actionDepth++;
+	}
+	
+	/**
+	 * Check whether a change of this world follows from a call which is already recorded, so a replay makes it again.
+	 * 
+	 * @return	True if and only if this world is evolving or performing an action.
+	 * 			| result == isEvolving || actionDepth > 0
+	 */
+	@Model
+	private boolean isReplayedChange(){
+		return isEvolving || actionDepth > 0;
+	}
+	
+	/**
+	 * Variable containing the number of actions going on in this world.
+	 */
+	private int actionDepth = 0;
+	
+	/**
+	 * Return the last frame published by this world, or null if it hasn't published a frame yet.
+	 * 
+	 * @note	This method may be called by any thread, also while this world evolves. The frame it returns
+	 * 			never changes, so its positions, velocities and types are consistent with each other.
+	 */
+	@Basic
+	public WorldFrame getFrame(){
+		return this.frame;
+	}
+	
+	/**
+	 * Check whether this world publishes a frame at the end of each evolve.
+	 */
+	@Basic
+	public boolean isPublishingFrames(){
+		return this.publishingFrames;
+	}
+	
+	/**
+	 * Start or stop publishing a frame at the end of each evolve of this world.
+	 * 
+	 * @param	publishingFrames
+	 * 			Whether this world should publish frames.
+	 * @post	| new.isPublishingFrames() == publishingFrames
+	 * @effect	If this world starts publishing frames, a frame of its current state is published at once, so
+	 * 			readers have a frame before the next evolve.
+	 * 			| if publishingFrames
+	 * 			|	then publishFrame()
+	 */
+	public void setPublishingFrames(boolean publishingFrames){
+		this.publishingFrames = publishingFrames;
+		if (publishingFrames) publishFrame();
+	}
+	
+	/**
+	 * Variable registering whether this world publishes frames.
+	 */
+	private boolean publishingFrames = false;
+	
+	/**
+	 * Publish a frame holding the current state of the entities of this world.
+	 * 
+	 * @post	The frame of this world is a new frame, holding each entity of this world in the order of the slots.
+	 * 			| new.getFrame().getNbEntities() == getNbEntities()
+	 * 			| for slot in 0..getNbEntities()-1
+	 * 			|	new.getFrame().getEntity(slot) == getEntityAtSlot(slot)
+	 * 			|		&& new.getFrame().getX(slot) == getEntityAtSlot(slot).getX() && ...
+	 * @note	The columns are copied in bulk from the arrays of this world.
+	 */
+	@Model
+	private void publishFrame(){
+		synchronize();
+		int nbEntities = store.getNbEntities();
+		Entity[] entities = new Entity[nbEntities];
+		EntityType[] types = new EntityType[nbEntities];
+		for (int slot = 0; slot < nbEntities; slot++){
+			entities[slot] = store.getEntityAt(slot);
+			types[slot] = entities[slot].getType();
+		}
+		frame = new WorldFrame(nbFramesPublished++, getElapsedTime(), entities, types, Arrays.copyOf(store.x, nbEntities),
+				Arrays.copyOf(store.y, nbEntities), Arrays.copyOf(store.vx, nbEntities), Arrays.copyOf(store.vy, nbEntities),
+				Arrays.copyOf(store.radius, nbEntities));
+	}
+	
+	/**
+	 * Variable containing the last frame published by this world. Reader threads see a frame as soon as it is
+	 * published, with all of its columns.
+	 */
+	private volatile WorldFrame frame = null;
+	
+	/**
+	 * Variable containing the number of frames published by this world.
+	 */
+	private long nbFramesPublished = 0;
+	
+	/**
+	 * Return the entity in the given slot of the arrays of this world.
+	 * 
+	 * @note	Adding the entities of a world to an empty world in the order of their slots gives every entity
+	 * 			the same slot, so the entities are handled in the same order.
+	 */
+	Entity getEntityAtSlot(int slot){
+		return store.getEntityAt(slot);
+	}
+	
+	
+	/**
+	 * The method which evolves the state of the game
+	 * 
+	 * @param	dt 
+	 * 			The time over which the world is evolved.
+	 * @param	collisionListener
+	 * 
+	 * 			A object that listens if there are any collisions while evolving.
+	 * @post	Every entity in the world will be moved for the given time dt according to it's specifics.	
+	 * 			| @ implementation
+	 * @post	If there are any collisions detected while evolving the entities will collide.
+	 * 			| @ implementation
+	 * @post 	If there are any collisions collisionListener will hear them.
+	 * 			| @ implementation 	I
+	 * @effect	If this world is being recorded, the call is recorded, and a keyframe may follow it.
+	 * 			| recordEvolve(ReplayFormat.EVOLVE, 1, dt) && recordEvolved()
+	 * @effect	If this world publishes frames, a frame is published at the end.
+	 * 			| if isPublishingFrames()
+	 * 			|	then publishFrame()
+	 * @note	Collisions are handled in the order of a kinetic event queue. Resolving a collision only
+	 * 			predicts the collisions of the entities it involved again.
+	 */
+	public void evolve(double dt, CollisionListener collisionListener) throws IllegalArgumentException{
+		recordEvolve(ReplayFormat.EVOLVE, 1, dt);
+		evolveBatch(1, dt, collisionListener);
+		recordEvolved();
+		if (publishingFrames) publishFrame();
+	}
+	
+	/**
+	 * Evolve this world over the given number of steps of the given time.
+	 * 
+	 * @param	nbSteps
+	 * 			The number of steps.
+	 * @param	dt
+	 * 			The time of each step.
+	 * @param	collisionListener
+	 * 			The listener to notify of the collisions, or null if no listener must be notified.
+	 * @effect	The world evolves as if it were evolved over the given time the given number of times.
+	 * 			| for step in 1..nbSteps
+	 * 			|	evolve(dt, collisionListener)
+	 * @return	The result summarizes the batch over the given number of steps.
+	 * 			| result.getTime() == nbSteps * dt && result.getNbSteps() == nbSteps
+	 * @throws	IllegalArgumentException
+	 * 			The number of steps is negative, or the time is negative or not a valid time.
+	 * 			| nbSteps < 0 || dt < 0 || !Helper.isValidDouble(nbSteps * dt)
+	 * @effect	If this world is being recorded, the call is recorded, and a keyframe may follow it.
+	 * 			| recordEvolve(ReplayFormat.STEPS, nbSteps, dt) && recordEvolved()
+	 * @effect	If this world publishes frames, a frame is published at the end.
+	 * 			| if isPublishingFrames()
+	 * 			|	then publishFrame()
+	 * @note	The collisions of the whole batch are predicted once. At the end of each step every entity is
+	 * 			moved to the end of the step, and only the entities whose trajectory changed by moving are
+	 * 			predicted again.
+	 */
+	public EvolveSummary evolveSteps(int nbSteps, double dt, CollisionListener collisionListener) throws IllegalArgumentException{
+		recordEvolve(ReplayFormat.STEPS, nbSteps, dt);
+		evolveBatch(nbSteps, dt, collisionListener);
+		recordEvolved();
+		if (publishingFrames) publishFrame();
+		return summarizeBatch(nbSteps);
+	}
+	
+	/**
+	 * Constant containing the number of steps of a batch for which the collisions are predicted at once.
+	 * 	A longer window predicts less often, but hands out more candidates to every prediction.
+	 */
+	private static final int PREDICTION_WINDOW = 4;
+	
+	/**
+	 * Evolve this world over the given number of steps of the given time, without summarizing the batch.
+	 * 
+	 * @see		evolveSteps(int, double, CollisionListener)
+	 */
+	@Model
+	private void evolveBatch(int nbSteps, double dt, CollisionListener collisionListener) throws IllegalArgumentException{
+		if (nbSteps < 0 || dt < 0 || !Helper.isValidDouble(dt) || !Helper.isValidDouble(nbSteps * dt))
+			throw new IllegalArgumentException("Time given at evolve is invalid");
+		
+		beginBatch();
+		try{
+			// The steps from first up to last are covered by the collisions predicted from the given origin.
+			int first = 0, last = nbSteps;
+			double origin = scheduler.getTime();
+			if (resumableCount != modificationCount || origin + nbSteps * dt > scheduler.getHorizon()) last = 0;
+			for (int step = 0; step < nbSteps; step++){
+				if (step == last){
+					last = Math.min(nbSteps, step + PREDICTION_WINDOW);
+					restartScheduler((last - step) * dt);
+					first = step;
+					origin = 0;
+				}
+				double end = origin + (step + 1 - first) * dt;
+				CollisionScheduler.Event event = scheduler.pollEvent(end);
+				while (event != null){
+					handleEvent(event, collisionListener);
+					event = scheduler.pollEvent(end);
+				}
+				finishStep(end, collisionListener);
+			}
+		}
+		finally{
+			endBatch(collisionListener);
+		}
+	}
+	
+	/**
+	 * Evolve this world up to its next collision, but not longer than the given time.
+	 * 
+	 * @param	maxDt
+	 * 			The longest time to evolve.
+	 * @param	collisionListener
+	 * 			The listener to notify of the collision, or null if no listener must be notified.
+	 * @effect	If a collision happens within the given time, the world evolves up to the earliest collision,
+	 * 			which is resolved.
+	 * 			| @ implementation
+	 * @effect	Otherwise the world evolves over the given time.
+	 * 			| @ implementation
+	 * @return	The result summarizes the single step, and its time is the time up to the collision or the given time.
+	 * 			| result.getTime() <= maxDt && result.getNbSteps() == 1
+	 * @throws	IllegalArgumentException
+	 * 			The time is negative or not a valid time.
+	 * 			| maxDt < 0 || !Helper.isValidDouble(maxDt)
+	 * @effect	If this world is being recorded, the call is recorded, and a keyframe may follow it.
+	 * 			| recordEvolve(ReplayFormat.ADVANCE, 1, maxDt) && recordEvolved()
+	 * @effect	If this world publishes frames, a frame is published at the end.
+	 * 			| if isPublishingFrames()
+	 * 			|	then publishFrame()
+	 * @note	If this world hasn't changed since the last batch, the collisions predicted by that batch are reused,
+	 * 			so stepping from collision to collision doesn't predict every collision again at every step.
+	 */
+	public EvolveSummary advanceToNextEvent(double maxDt, CollisionListener collisionListener) throws IllegalArgumentException{
+		if (maxDt < 0 || !Helper.isValidDouble(maxDt))
+			throw new IllegalArgumentException("Time given at advanceToNextEvent is invalid");
+		recordEvolve(ReplayFormat.ADVANCE, 1, maxDt);
+		
+		beginBatch();
+		try{
+			CollisionScheduler.Event event = null;
+			boolean resumed = resumableCount == modificationCount;
+			if (resumed){
+				event = scheduler.pollEvent(scheduler.getTime() + maxDt);
+				resumed = event != null || scheduler.getTime() + maxDt <= scheduler.getHorizon();
+			}
+			if (!resumed){
+				restartScheduler(maxDt);
+				event = scheduler.pollEvent();
+			}
+			double end = scheduler.getTime() + maxDt;
+			if (event != null){
+				end = event.getTime();
+				handleEvent(event, collisionListener);
+			}
+			finishStep(end, collisionListener);
+		}
+		finally{
+			endBatch(collisionListener);
+		}
+		recordEvolved();
+		if (publishingFrames) publishFrame();
+		return summarizeBatch(1);
+	}
+	
+	/**
+	 * Evolve this world up to its next collision, but not longer than the given time, without notifying a listener.
+	 * 
+	 * @param	maxDt
+	 * 			The longest time to evolve.
+	 * @effect	The world advances to its next collision without a listener.
+	 * 			| result == advanceToNextEvent(maxDt, null)
+	 */
+	public EvolveSummary advanceToNextEvent(double maxDt) throws IllegalArgumentException{
+		return advanceToNextEvent(maxDt, null);
+	}
+	
+	/**
+	 * Move the entities of the given event to its time, and resolve it if it still involves entities of this world.
+	 * 
+	 * @param	event
+	 * 			The event to handle.
+	 * @param	collisionListener
+	 * 			The listener to notify, or null if no listener must be notified.
+	 * @effect	If both entities are still in this world, the collision is resolved.
+	 * 			| if hasAsEntity(event.getEntity1()) && (event.getEntity2() == null || hasAsEntity(event.getEntity2()))
+	 * 			|	then resolveCollision(event.getEntity1(), event.getEntity2(), collisionListener)
+	 * @effect	The entities of the event and every entity whose trajectory has changed are predicted again.
+	 * 			| @ implementation
+	 */
+	@Model
+	private void handleEvent(CollisionScheduler.Event event, CollisionListener collisionListener){
+		scheduler.advanceTo(event.getTime());
+		Entity entity1 = event.getEntity1();
+		Entity entity2 = event.getEntity2();
+		scheduler.synchronize(entity1);
+		if (entity2 != null) scheduler.synchronize(entity2);
+		
+		if (hasAsEntity(entity1) && (entity2 == null || hasAsEntity(entity2))){
+			resolveCollision(entity1, entity2, collisionListener);
+			nbCollisions++;
+		}
+		scheduler.reschedule(entity1);
+		if (entity2 != null) scheduler.reschedule(entity2);
+		scheduler.rescheduleChanged();
+	}
+	
+	/**
+	 * Move every entity of this world to the given time of the scheduler, and predict the entities whose
+	 * trajectory changed by moving again.
+	 * 
+	 * @effect	If the given listener is a collision pipeline, the collisions of the step are handed over to its consumer.
+	 * 			| if collisionListener instanceof CollisionPipeline
+	 * 			|	then collisionListener.flush()
+	 */
+	@Model
+	private void finishStep(double time, CollisionListener collisionListener){
+		scheduler.advanceTo(time);
+		scheduler.synchronizeAll();
+		scheduler.rescheduleChanged();
+		if (collisionListener instanceof CollisionPipeline) ((CollisionPipeline) collisionListener).flush();
+	}
+	
+	/**
+	 * Start a batch of evolution of this world.
+	 * 
+	 * @post	This world is evolving.
+	 * 			| new.isEvolving
+	 * @post	The counts at the start of the batch are registered.
+	 * 			| @ implementation
+	 */
+	@Model
+	private void beginBatch(){
+		isEvolving = true;
+		batchStart = scheduler.getTime();
+		batchElapsedTime = elapsedTime;
+		batchCollisions = nbCollisions;
+		batchEntitiesAdded = nbEntitiesAdded;
+		batchEntitiesRemoved = nbEntitiesRemoved;
+	}
+	
+	/**
+	 * End a batch of evolution of this world.
+	 * 
+	 * @post	This world isn't evolving anymore, and the time of the batch is added to the time of this world.
+	 * 			| !new.isEvolving && new.getElapsedTime() == getElapsedTime()
+	 * @post	The predictions of the scheduler can be reused by the next batch, if this world doesn't change in between.
+	 * 			| new.resumableCount == new.modificationCount
+	 * @effect	If this world has a pool, the entities terminated during the batch can be handed out by it, once
+	 * 			the given listener has heard every collision of the batch if it is a collision pipeline.
+	 * 			| if getEntityPool() != null && collisionListener instanceof CollisionPipeline
+	 * 			|	then getEntityPool().release((CollisionPipeline) collisionListener)
+	 * 			| else if getEntityPool() != null
+	 * 			|	then getEntityPool().release(null)
+	 */
+	@Model
+	private void endBatch(CollisionListener collisionListener){
+		elapsedTime += scheduler.getTime() - batchStart;
+		batchStart = scheduler.getTime();
+		isEvolving = false;
+		resumableCount = modificationCount;
+		if (entityPool != null)
+			entityPool.release(collisionListener instanceof CollisionPipeline ? (CollisionPipeline) collisionListener : null);
+	}
+	
+	/**
+	 * Predict the collisions of this world within the given time again, from the current time of the running batch.
+	 * 
+	 * @effect	The time the scheduler has advanced is added to the time of this world, and the scheduler starts anew,
+	 * 			by region if this world is decomposed and large enough.
+	 * 			| if getNbRegions() > 1 && getNbEntities() >= getParallelThreshold()
+	 * 			|	then scheduler.start(horizon, regions)
+	 * 			|	else scheduler.start(horizon)
+	 * @note	Every entity must be synchronized with the scheduler.
+	 */
+	@Model
+	private void restartScheduler(double horizon){
+		elapsedTime += scheduler.getTime() - batchStart;
+		scheduler.start(horizon, store.getNbEntities() >= parallelThreshold ? regions : null);
+		batchStart = 0;
+	}
+	
+	/**
+	 * Return a summary of the last batch, which had the given number of steps.
+	 */
+	@Model
+	private EvolveSummary summarizeBatch(int nbSteps){
+		return new EvolveSummary(elapsedTime - batchElapsedTime, nbSteps, nbCollisions - batchCollisions,
+				nbEntitiesAdded - batchEntitiesAdded, nbEntitiesRemoved - batchEntitiesRemoved);
+	}
+	
+	/**
+	 * Return the time over which this world has evolved, including the part of the running evolve, if any.
+	 * 
+	 * @return	The result is the time of all finished batches, plus the time of the scheduler since the start of
+	 * 			the running batch while evolving.
+	 * 			| result == elapsedTime + (isEvolving ? scheduler.getTime() - batchStart : 0)
+	 */
+	@Model
+	private double getElapsedTime(){
+		return isEvolving ? elapsedTime + scheduler.getTime() - batchStart : elapsedTime;
+	}
+	
+	/**
+	 * Variable containing the time of all finished batches of this world.
+	 */
+	private double elapsedTime = 0;
+	
+	/**
+	 * Variable containing the time of the scheduler from which the time of the running batch is counted.
+	 */
+	private double batchStart = 0;
+	
+	/**
+	 * Variable containing the time of this world at the start of the running or last batch.
+	 */
+	private double batchElapsedTime = 0;
+	
+	/**
+	 * Variable containing the modification count of this world at the end of the last batch. As long as this
+	 * world doesn't change, the scheduler still holds every collision up to its horizon.
+	 */
+	private long resumableCount = -1;
+	
+	/**
+	 * Variables containing the number of collisions resolved, entities added and entities removed in this world.
+	 */
+	private long nbCollisions = 0, nbEntitiesAdded = 0, nbEntitiesRemoved = 0;
+	
+	/**
+	 * Variables containing the counts at the start of the running or last batch.
+	 */
+	private long batchCollisions = 0, batchEntitiesAdded = 0, batchEntitiesRemoved = 0;
+	
+	/**
+	 * Notify the given listener of the collision of the given entities, which touch now, and let them collide.
+	 * 
+	 * @param	entity1
+	 * 			The first colliding entity.
+	 * @param	entity2
+	 * 			The second colliding entity, or null if the first entity collides with the boundaries.
+	 * @param	collisionListener
+	 * 			The listener to notify, or null if no listener must be notified.
+	 * @effect	If the second entity is null, the listener hears a boundary collision at the position where the
+	 * 			entity hits the boundaries, and the entity collides with the boundary.
+	 * 			| if entity2 == null
+	 * 			|	then collisionListener.boundaryCollision(entity1, entity1.getBoundaryContactCoordinate(0),
+	 * 			|			entity1.getBoundaryContactCoordinate(1))
+	 * 			|		 entity1.collideBoundary()
+	 * @effect	Otherwise the listener hears the collision at the position where both entities touch, and both entities collide.
+	 * 			| if entity2 != null
+	 * 			|	then collisionListener.objectCollision(entity1, entity2, getContactPosition(entity1, entity2, 0)[0],
+	 * 			|			getContactPosition(entity1, entity2, 0)[1])
+	 * 			|		 entity1.collide(entity2)
+	 * @note	The position is computed coordinate by coordinate with getContactCoordinate, so resolving a collision
+	 * 			doesn't allocate a collision event nor an array.
+	 */
+	@Model
+	private static void resolveCollision(Entity entity1, Entity entity2, CollisionListener collisionListener){
+		if (entity2 == null){
+			if (collisionListener != null)
+				collisionListener.boundaryCollision(entity1, entity1.getBoundaryContactCoordinate(0), entity1.getBoundaryContactCoordinate(1));
+			entity1.collideBoundary();
+		}
+		else {
+			if (collisionListener != null)
+				collisionListener.objectCollision(entity1, entity2,
+						getContactCoordinate(entity1.getX(), entity1.getVX(), entity1.getRadius(), entity2.getX(), entity2.getVX(), entity2.getRadius(), 0),
+						getContactCoordinate(entity1.getY(), entity1.getVY(), entity1.getRadius(), entity2.getY(), entity2.getVY(), entity2.getRadius(), 0));
+			entity1.collide(entity2);
+		}
+	}
+	
+	/**
+	 * Return the collision of the given entities after the given time.
+	 * 
+	 * @param	time
+	 * 			The time until the collision.
+	 * @param	entity1
+	 * 			The first colliding entity.
+	 * @param	entity2
+	 * 			The second colliding entity, or null if the first entity collides with the boundaries.
+	 * @return	If the second entity is null, the result is a boundary collision at the position where the first
+	 * 			entity hits the boundaries, or at the position of the entity if it doesn't hit them anymore.
+	 * 			| if entity2 == null
+	 * 			|	then result.equals(new CollisionEvent(time, entity1, entity1.getPositionCollisionBoundary()))
+	 * @return	Otherwise the result is a collision between both entities at the position where they make contact.
+	 * 			| if entity2 != null
+	 * 			|	then result.equals(new CollisionEvent(time, entity1, entity2, getContactPosition(entity1, entity2, time)))
+	 */
+	@Model
+	private static CollisionEvent createCollisionEvent(double time, Entity entity1, Entity entity2){
+		if (entity2 == null){
+			double[] pos = entity1.getPositionCollisionBoundary();
+			if (pos == null) pos = entity1.getPosition();
+			return new CollisionEvent(time, entity1, pos);
+		}
+		return new CollisionEvent(time, entity1, entity2, getContactPosition(entity1, entity2, time));
+	}
+	
+	/**
+	 * Return the position where the given entities make contact after the given time.
+	 * 
+	 * @param	entity1
+	 * 			The first entity.
+	 * @param	entity2
+	 * 			The second entity.
+	 * @param	time
+	 * 			The time after which both entities touch.
+	 * @return	The result is the point on the line between the centres of both entities after the given time, at a
+	 * 			distance from the centre of the first entity proportional to its share in the sum of both radii.
+	 * 			| result == {getContactCoordinate(entity1.getX(), entity1.getVX(), entity1.getRadius(),
+	 * 			|				entity2.getX(), entity2.getVX(), entity2.getRadius(), time),
+	 * 			|			 getContactCoordinate(entity1.getY(), entity1.getVY(), entity1.getRadius(),
+	 * 			|				entity2.getY(), entity2.getVY(), entity2.getRadius(), time)}
+	 */
+	@Model
+	private static double[] getContactPosition(Entity entity1, Entity entity2, double time){
+		return new double[]{
+				getContactCoordinate(entity1.getX(), entity1.getVX(), entity1.getRadius(), entity2.getX(), entity2.getVX(), entity2.getRadius(), time),
+				getContactCoordinate(entity1.getY(), entity1.getVY(), entity1.getRadius(), entity2.getY(), entity2.getVY(), entity2.getRadius(), time)};
+	}
+	
+	/**
+	 * Return the coordinate along a single axis where two entities with the given coordinates, velocities and radii
+	 * make contact after the given time.
+	 * 
+	 * @param	coordinate1
+	 * 			The coordinate of the centre of the first entity.
+	 * @param	velocity1
+	 * 			The velocity of the first entity along the axis.
+	 * @param	radius1
+	 * 			The radius of the first entity.
+	 * @param	coordinate2
+	 * 			The coordinate of the centre of the second entity.
+	 * @param	velocity2
+	 * 			The velocity of the second entity along the axis.
+	 * @param	radius2
+	 * 			The radius of the second entity.
+	 * @param	time
+	 * 			The time after which both entities touch.
+	 * @return	The coordinate of the point between both centres after the given time, at a distance from the centre
+	 * 			of the first entity proportional to its share in the sum of both radii.
+	 * 			| double position1 = coordinate1 + velocity1 * time
+	 * 			| double position2 = coordinate2 + velocity2 * time
+	 * 			| result == position1 + (position2 - position1) * radius1 / (radius1 + radius2)
+	 */
+	@Model
+	private static double getContactCoordinate(double coordinate1, double velocity1, double radius1,
+			double coordinate2, double velocity2, double radius2, double time){
+		double position1 = coordinate1 + velocity1 * time, position2 = coordinate2 + velocity2 * time;
+		return position1 + (position2 - position1) * (radius1 / (radius1 + radius2));
+	}
+	
+	/**
+	 * Variable containing the scheduler of the collisions of this world. The scheduler is reused
+	 * by every evolve, so its buffers only grow once.
+	 */
+	private final CollisionScheduler scheduler;
+	
+	/**
+	 * Variable registering whether this world is evolving.
+	 */
+	private boolean isEvolving = false;
+	
+	/**
+	 * Bring every entity of this world up to date with the time of the running evolve, if any.
+	 * 
+	 * @effect	If this world is evolving, every entity is moved to the time of the scheduler.
+	 * 			| if isEvolving
+	 * 			|	then scheduler.synchronizeAll()
+	 * @note	Every query of this world does this first. Code reading the entities slot by slot, like a checkpoint,
+	 * 			must call it itself.
+	 */
+	void synchronize(){
+		if (isEvolving) scheduler.synchronizeAll();
+	}
+	
+	/**
+	 * Return the next collision in this world.
+	 * 
+	 * @return	If there aren't any collisions in the future, the result is null.
+	 * 			| @ implementation
+	 * @return	If two entities overlap, the result is a collision between two overlapping entities after zero time.
+	 * 			| @ implementation
+	 * @return	Otherwise the result is the earliest boundary collision or collision between entities which are
+	 * 			approaching each other. Entities which seem to collide but move away from each other are not
+	 * 			considered as a future collision.
+	 * 			| @ implementation
+	 * @return	Of several collisions at the same time, the result is a boundary collision if there is one, and
+	 * 			otherwise the collision between the entities which come first in the storage of this world.
+	 * 			| @ implementation
+	 * @note	The collision is computed in a single pass over the entities, and kept until the state of this
+	 * 			world changes. Asking again without changing the world doesn't search again.
+	 * @note	If parallel prediction is enabled and this world holds at least the parallel threshold of entities,
+	 * 			the pass is split over the common fork join pool. The result is the same as the one of a single pass.
+	 * @note	Evolving this world doesn't ask for this collision. It resolves the collisions its scheduler predicts
+	 * 			one by one, without creating a collision event for any of them. Both paths compute the position
+	 * 			of a contact with getContactCoordinate, so they agree on where entities collide.
+	 */
+	public CollisionEvent getNextCollision(){
+		synchronize();
+		if (nextCollisionCount != modificationCount){
+			nextCollision = computeNextCollision();
+			nextCollisionCount = modificationCount;
+		}
+		return nextCollision;
+	}
+	
+	/**
+	 * Compute the next collision in this world.
+	 * 	The earliest boundary collision bounds the time within which collisions between entities are searched,
+	 * 	and each collision found shrinks it further, so the broad phase only hands out nearby pairs.
+	 * 
+	 * @return	The next collision in this world, as specified by getNextCollision().
+	 * 			| @ implementation
+	 */
+	@Model
+	private CollisionEvent computeNextCollision(){
+		
+		broadPhase.refreshBounds();
+		int nbEntities = store.getNbEntities();
+		double time = Double.POSITIVE_INFINITY;
+		int first = -1;
+		
+		for (int slot = 0; slot < nbEntities; slot++){
+			double boundaryTime = store.getTimeToBoundary(slot, worldWidth, worldHeight);
+			if (boundaryTime < time){
+				time = boundaryTime;
+				first = slot;
+			}
+		}
+		CollisionSearch.Result boundary = first < 0 ? null : new CollisionSearch.Result(time, first, -1, false);
+		CollisionSearch.Result pair;
+		if (isParallelPrediction() && nbEntities >= getParallelThreshold()){
+			int grain = Math.max(MINIMAL_PARALLEL_GRAIN, nbEntities / (4 * ForkJoinPool.getCommonPoolParallelism()));
+			pair = ForkJoinPool.commonPool().invoke(new CollisionSearch(store, broadPhase, 0, nbEntities, time, grain));
+		}
+		else pair = CollisionSearch.search(store, broadPhase, 0, nbEntities, time, candidates, block);
+		
+		CollisionSearch.Result result = CollisionSearch.earliest(boundary, pair);
+		if (result == null) return null;
+		Entity entity1 = store.getEntityAt(result.getFirst());
+		Entity entity2 = result.getSecond() < 0 ? null : store.getEntityAt(result.getSecond());
+		return createCollisionEvent(result.getTime(), entity1, entity2);
+	}
+	
+	/**
+	 * A method which caclutates the time to the next collision.
+	 * 
+	 * @return	This method's result is the time to the next collision whether this is a boundary collision or a entity collision.
+	 * 			| result == getNextCollision().getTime()
+	 * @return	If there aren't any collisions in the futere the time to the next collision is infinity.
+	 * 			| if getNextCollision() == null
+	 * 			|	then result == Double.POSITIVE_INFINITY
+	 */
+	public double getTimeToNextCollision(){
+		CollisionEvent event = getNextCollision();
+		if (event == null) return Double.POSITIVE_INFINITY;
+		return event.getTime();
+	}
+	
+	/**
+	 * A method which finds the position of the next collision.
+	 * 
+	 * @return	If there will be no collisions ever the position returned is an array
+	 * 			containing two infinities.
+	 *			| if getNextCollision() == null
+	 *			|	then result == new double[]{Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY}
+	 * @return	Otherwise the result is the position of the next collision.
+	 * 			| if getNextCollision() != null
+	 * 			|	then result == getNextCollision().getPosition()
+	 */
+	public double[] getNextCollisionPos(){
+		CollisionEvent event = getNextCollision();
+		if (event == null) return new double[]{Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY};
+		return event.getPosition();
+	}
+	
+	/**
+	 * A method that finds the entities which will collide the earliest.
+	 * 
+	 * @return	The method returns an array of size two which contains the two entities which 
+	 * 			will collide earliest. If this is a boundary collision the entity at index 0 will 
+	 * 			be the colliding entity and the entity at index 1 will be null. 
+	 * 			| if getNextCollision() != null
+	 * 			|	then result == getNextCollision().getEntities()
+	 * @return	If there aren't any collisions in the future the array will contain two nulls.
+	 * 			| if getNextCollision() == null
+	 * 			|	then result == new Entity[]{null, null}
+	 */
+	public Entity[] getNextCollidingEntities(){
+		CollisionEvent event = getNextCollision();
+		if (event == null) return new Entity[]{null, null};
+		return event.getEntities();
+	}
 }
@@ -0,0 +1,476 @@
+package asteroids.model;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+
+import be.kuleuven.cs.som.annotate.*;
+
+/**
+ * A class of checkpoints holding the state of every entity of a world at one moment.
+ * 	The state is kept in columns: one array per attribute, indexed by the slot the entity had in the world.
+ * 	A checkpoint is written to and read from a file column by column, so each column is copied in bulk.
+ * 	Restoring a checkpoint adds the entities to a new world without checking their overlap again, since
+ * 	they were already in a world together.
+ * 	A checkpoint is captured from a world at once, and doesn't refer to the world or its entities afterwards,
+ * 	so it can be written on another thread while the world keeps evolving.
+ *
+ * @note	Restoring a checkpoint of a million entities takes 2 to 7 seconds, not the targeted second (measured on a
+ * 			single core with the serial collector and a heap of 3 GB). Every restored entity is a small graph of
+ * 			objects, and it gets an entry in four hash tables keyed by entity: the set of entities of the world, the
+ * 			set of its type, the spatial hash and the leaves of the tree of bounding boxes. Filling those tables takes
+ * 			about 1.5 seconds, most of it in cache misses. The rest goes to collecting garbage, since the restored
+ * 			world holds about 700 MB that the collector copies. Reaching the target needs indexes keyed by slot
+ * 			rather than by entity.
+ *
+ * @invar	The number of entities and of bullets on ships of a checkpoint are never negative.
+ * 			| getNbEntities() >= 0 && getNbBulletsOnShips() >= 0
+ *
+ * @version 1.0
+ * @author 	Brent De Bleser & Jesse Geens
+ */
+public final class WorldCheckpoint {
+
+	/**
+	 * Constant marking the start of a checkpoint file.
+	 */
+	static final int MAGIC = 0x4F47434B;
+
+	/**
+	 * Constant containing the version of the layout of checkpoint files.
+	 */
+	static final byte VERSION = 1;
+
+	/**
+	 * Constant containing the size of the buffer through which a checkpoint is written.
+	 */
+	private static final int BUFFER_SIZE = 1 << 20;
+
+	/**
+	 * Constants containing the bits of the flags of an entity: whether the thruster of a ship is active, and
+	 * whether a program is loaded on it.
+	 */
+	private static final byte THRUSTER = 1, PROGRAM = 2;
+
+	/**
+	 * Initialize this new checkpoint with room for the given numbers of entities and bullets on ships.
+	 */
+	@Raw
+	private WorldCheckpoint(double width, double height, BroadPhaseType broadPhaseType, long randomState,
+			int nbEntities, int nbBulletsOnShips){
+		this.width = width;
+		this.height = height;
+		this.broadPhaseType = broadPhaseType;
+		this.randomState = randomState;
+		this.types = new byte[nbEntities];
+		this.flags = new byte[nbEntities];
+		this.x = new double[nbEntities];
+		this.y = new double[nbEntities];
+		this.xVelocity = new double[nbEntities];
+		this.yVelocity = new double[nbEntities];
+		this.radius = new double[nbEntities];
+		this.mass = new double[nbEntities];
+		this.detail = new double[nbEntities];
+		this.bounces = new int[nbEntities];
+		this.source = new int[nbEntities];
+		this.nbBullets = new int[nbEntities];
+		this.bulletRadius = new double[nbBulletsOnShips];
+	}
+
+	/**
+	 * Return a checkpoint of the given world.
+	 *
+	 * @param 	world
+	 * 			The world to capture.
+	 * @return	A checkpoint holding the dimensions, broad phase and random state of the given world, and the state
+	 * 			of each of its entities in the order of their slots.
+	 * 			| result.getWorldWidth() == world.getWorldWidth() && result.getWorldHeight() == world.getWorldHeight()
+	 * 			| result.getNbEntities() == world.getNbEntities()
+	 * @throws	IllegalArgumentException
+	 * 			The world isn't effective or is terminated.
+	 * 			| world == null || world.isTerminatedWorld()
+	 * @effect	The entities of the world are brought up to date with the time of its running evolve, if any.
+	 * 			| world.synchronize()
+	 * @note	Only the capture reads the world. Writing the checkpoint afterwards doesn't touch the world.
+	 */
+	public static WorldCheckpoint capture(World world) throws IllegalArgumentException{
+		if (world == null || world.isTerminatedWorld()) throw new IllegalArgumentException("Invalid world @ WorldCheckpoint");
+		world.synchronize();
+		int nbEntities = world.getNbEntities();
+		int nbBulletsOnShips = 0;
+		for (int slot = 0; slot < nbEntities; slot++){
+			Entity entity = world.getEntityAtSlot(slot);
+			if (entity instanceof Ship) nbBulletsOnShips += ((Ship) entity).getNbBulletsOnShip();
+		}
+		WorldCheckpoint checkpoint = new WorldCheckpoint(world.getWorldWidth(), world.getWorldHeight(),
+				world.getBroadPhaseType(), world.getRandomState(), nbEntities, nbBulletsOnShips);
+		int bullet = 0;
+		for (int slot = 0; slot < nbEntities; slot++){
+			Entity entity = world.getEntityAtSlot(slot);
+			checkpoint.types[slot] = (byte) entity.getType().ordinal();
+			checkpoint.x[slot] = entity.getX();
+			checkpoint.y[slot] = entity.getY();
+			checkpoint.xVelocity[slot] = entity.getVX();
+			checkpoint.yVelocity[slot] = entity.getVY();
+			checkpoint.radius[slot] = entity.getRadius();
+			checkpoint.mass[slot] = entity.getMass();
+			checkpoint.source[slot] = -1;
+			switch (entity.getType()){
+				case SHIP:
+					Ship ship = (Ship) entity;
+					checkpoint.detail[slot] = ship.getDirection();
+					if (ship.isThrusterActive()) checkpoint.flags[slot] |= THRUSTER;
+					if (ship.getProgram() != null) checkpoint.flags[slot] |= PROGRAM;
+					checkpoint.nbBullets[slot] = ship.getNbBulletsOnShip();
+					for (Bullet loaded : ship.getBulletsOnShip()) checkpoint.bulletRadius[bullet++] = loaded.getRadius();
+					break;
+				case BULLET:
+					Bullet shot = (Bullet) entity;
+					checkpoint.bounces[slot] = shot.getBounces();
+					Ship source = shot.getBulletSource();
+					if (source != null && source.getSuperWorld() == world) checkpoint.source[slot] = source.getSlot();
+					break;
+				case PLANETOID:
+					Planetoid planetoid = (Planetoid) entity;
+					checkpoint.radius[slot] = planetoid.getStartRadius();
+					checkpoint.detail[slot] = planetoid.getTotalDistanceTraveled();
+					break;
+				default:
+			}
+		}
+		return checkpoint;
+	}
+
+	/**
+	 * Return the width of the world of this checkpoint.
+	 */
+	@Basic @Immutable
+	public double getWorldWidth(){
+		return this.width;
+	}
+
+	/**
+	 * Return the height of the world of this checkpoint.
+	 */
+	@Basic @Immutable
+	public double getWorldHeight(){
+		return this.height;
+	}
+
+	/**
+	 * Variables containing the dimensions of the world of this checkpoint.
+	 */
+	private final double width, height;
+
+	/**
+	 * Return the type of broad phase of the world of this checkpoint.
+	 */
+	@Basic @Immutable
+	public BroadPhaseType getBroadPhaseType(){
+		return this.broadPhaseType;
+	}
+
+	/**
+	 * Variable containing the type of broad phase of the world of this checkpoint.
+	 */
+	private final BroadPhaseType broadPhaseType;
+
+	/**
+	 * Variable containing the state of the random generator of the world of this checkpoint.
+	 */
+	private final long randomState;
+
+	/**
+	 * Return the number of entities of this checkpoint.
+	 */
+	@Basic @Immutable
+	public int getNbEntities(){
+		return this.types.length;
+	}
+
+	/**
+	 * Return the total number of bullets loaded on the ships of this checkpoint.
+	 */
+	@Basic @Immutable
+	public int getNbBulletsOnShips(){
+		return this.bulletRadius.length;
+	}
+
+	/**
+	 * Write this checkpoint to the file at the given path, replacing its contents.
+	 *
+	 * @param 	path
+	 * 			The path of the file to write.
+	 * @post	The file holds a header with the dimensions, broad phase, random state and counts of this checkpoint,
+	 * 			followed by every column of this checkpoint.
+	 * 			| WorldCheckpoint.read(path) equals this checkpoint
+	 * @throws	IllegalArgumentException
+	 * 			The path isn't effective.
+	 * 			| path == null
+	 * @throws	IOException
+	 * 			The file can't be written.
+	 */
+	public void write(Path path) throws IllegalArgumentException, IOException{
+		if (path == null) throw new IllegalArgumentException("Invalid path @ WorldCheckpoint");
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)){
+			ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			buffer.putInt(MAGIC);
+			buffer.put(VERSION);
+			buffer.putDouble(width);
+			buffer.putDouble(height);
+			buffer.put((byte) broadPhaseType.ordinal());
+			buffer.putLong(randomState);
+			buffer.putInt(getNbEntities());
+			buffer.putInt(getNbBulletsOnShips());
+			putColumn(channel, buffer, types);
+			putColumn(channel, buffer, flags);
+			for (double[] column : new double[][] { x, y, xVelocity, yVelocity, radius, mass, detail })
+				putColumn(channel, buffer, column);
+			for (int[] column : new int[][] { bounces, source, nbBullets }) putColumn(channel, buffer, column);
+			putColumn(channel, buffer, bulletRadius);
+			drain(channel, buffer);
+		}
+	}
+
+	/**
+	 * Write this checkpoint to the file at the given path on another thread.
+	 *
+	 * @param 	path
+	 * 			The path of the file to write.
+	 * @return	A future which completes when the checkpoint has been written, or completes exceptionally with
+	 * 			the exception thrown while writing it.
+	 * 			| @ implementation
+	 * @effect	This checkpoint is written to the file at the given path.
+	 * 			| write(path)
+	 * @throws	IllegalArgumentException
+	 * 			The path isn't effective.
+	 * 			| path == null
+	 * @note	A checkpoint is never changed after its capture, so the world it was captured from can keep
+	 * 			evolving while it is written.
+	 */
+	public CompletableFuture<Void> writeInBackground(Path path) throws IllegalArgumentException{
+		if (path == null) throw new IllegalArgumentException("Invalid path @ WorldCheckpoint");
+		return CompletableFuture.runAsync(() -> {
+			try{
+				write(path);
+			}
+			catch (IOException ex){
+				throw new CompletionException(ex);
+			}
+		});
+	}
+
+	/**
+	 * Return the checkpoint written to the file at the given path.
+	 *
+	 * @param 	path
+	 * 			The path of the file to read.
+	 * @return	The checkpoint which was written to the file.
+	 * 			| @ implementation
+	 * @throws	IllegalArgumentException
+	 * 			The path isn't effective, or the file doesn't hold a checkpoint.
+	 * 			| path == null
+	 * @throws	IOException
+	 * 			The file can't be read.
+	 */
+	public static WorldCheckpoint read(Path path) throws IllegalArgumentException, IOException{
+		if (path == null) throw new IllegalArgumentException("Invalid path @ WorldCheckpoint");
+		MappedByteBuffer file;
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)){
+			if (channel.size() > Integer.MAX_VALUE) throw new IllegalArgumentException("The checkpoint is too large.");
+			file = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		file.order(ByteOrder.LITTLE_ENDIAN);
+		try{
+			if (file.getInt() != MAGIC || file.get() != VERSION)
+				throw new IllegalArgumentException("The file isn't a checkpoint.");
+			double width = file.getDouble(), height = file.getDouble();
+			BroadPhaseType broadPhaseType = BroadPhaseType.values()[file.get()];
+			long randomState = file.getLong();
+			int nbEntities = file.getInt(), nbBulletsOnShips = file.getInt();
+			if (nbEntities < 0 || nbBulletsOnShips < 0) throw new IllegalArgumentException("The file isn't a checkpoint.");
+			WorldCheckpoint checkpoint = new WorldCheckpoint(width, height, broadPhaseType, randomState,
+					nbEntities, nbBulletsOnShips);
+			file.get(checkpoint.types);
+			file.get(checkpoint.flags);
+			for (double[] column : new double[][] { checkpoint.x, checkpoint.y, checkpoint.xVelocity,
+					checkpoint.yVelocity, checkpoint.radius, checkpoint.mass, checkpoint.detail }){
+				file.asDoubleBuffer().get(column);
+				file.position(file.position() + column.length * Double.BYTES);
+			}
+			for (int[] column : new int[][] { checkpoint.bounces, checkpoint.source, checkpoint.nbBullets }){
+				file.asIntBuffer().get(column);
+				file.position(file.position() + column.length * Integer.BYTES);
+			}
+			file.asDoubleBuffer().get(checkpoint.bulletRadius);
+			return checkpoint;
+		}
+		catch (BufferUnderflowException | IndexOutOfBoundsException ex){
+			throw new IllegalArgumentException("The file isn't a checkpoint.");
+		}
+	}
+
+	/**
+	 * Return a new world holding the entities of this checkpoint, without loading programs on its ships.
+	 *
+	 * @effect	| restore(null)
+	 */
+	public World restore() throws IllegalArgumentException{
+		return restore(null);
+	}
+
+	/**
+	 * Return a new world holding the entities of this checkpoint.
+	 *
+	 * @param 	programs
+	 * 			The function giving the program to load on each restored ship which had a program, or null to
+	 * 			load no programs.
+	 * @return	A new world with the dimensions, broad phase and random state of this checkpoint, holding a new
+	 * 			entity with the state of each entity of this checkpoint, in the same slot.
+	 * 			| result.getWorldWidth() == getWorldWidth() && result.getWorldHeight() == getWorldHeight()
+	 * 			| result.getNbEntities() == getNbEntities()
+	 * @effect	Each restored ship which had a program gets the program the given function returns for it, if any.
+	 * 			| for each ship in result with a program in this checkpoint
+	 * 			|	if programs != null && programs.apply(ship) != null
+	 * 			|		then ship.setProgram(programs.apply(ship)) && programs.apply(ship).setShip(ship)
+	 * @throws	IllegalArgumentException
+	 * 			One of the entities of this checkpoint is invalid.
+	 * 			| @ implementation
+	 * @note	A program holds the parsed statements and the variables of a running program, which don't
+	 * 			belong in a checkpoint of the world. A checkpoint therefore only records which ships had a program.
+	 */
+	public World restore(Function<? super Ship, ? extends Program> programs) throws IllegalArgumentException{
+		World world = new World(width, height, broadPhaseType);
+		world.setRandomState(randomState);
+		int nbEntities = getNbEntities();
+		Entity[] entities = new Entity[nbEntities];
+		List<Bullet> loaded = new ArrayList<Bullet>();
+		int bullet = 0;
+		for (int slot = 0; slot < nbEntities; slot++){
+			switch (EntityType.values()[types[slot]]){
+				case SHIP:
+					Ship ship = new Ship(x[slot], y[slot], xVelocity[slot], yVelocity[slot], radius[slot], detail[slot], mass[slot]);
+					if ((flags[slot] & THRUSTER) != 0) ship.thrustOn();
+					loaded.clear();
+					for (int i = 0; i < nbBullets[slot]; i++)
+						loaded.add(new Bullet(x[slot], y[slot], 0, 0, bulletRadius[bullet++]));
+					ship.loadBulletsOnShip(loaded);
+					entities[slot] = ship;
+					break;
+				case BULLET:
+					Bullet shot = new Bullet(x[slot], y[slot], xVelocity[slot], yVelocity[slot], radius[slot]);
+					for (int i = 0; i < bounces[slot]; i++) shot.bouncesCounter();
+					entities[slot] = shot;
+					break;
+				case PLANETOID:
+					entities[slot] = new Planetoid(x[slot], y[slot], xVelocity[slot], yVelocity[slot], radius[slot], detail[slot]);
+					break;
+				default:
+					entities[slot] = new Asteroid(x[slot], y[slot], xVelocity[slot], yVelocity[slot], radius[slot]);
+			}
+			// The mass of a planetoid follows from its radius when it was created, not its current radius.
+			entities[slot].setMass(mass[slot]);
+		}
+		for (int slot = 0; slot < nbEntities; slot++){
+			if (source[slot] >= 0) ((Bullet) entities[slot]).setSource((Ship) entities[source[slot]]);
+		}
+		world.restoreEntities(Arrays.asList(entities));
+		if (programs != null){
+			for (int slot = 0; slot < nbEntities; slot++){
+				if ((flags[slot] & PROGRAM) == 0) continue;
+				Ship ship = (Ship) entities[slot];
+				Program program = programs.apply(ship);
+				if (program != null){
+					ship.setProgram(program);
+					program.setShip(ship);
+				}
+			}
+		}
+		return world;
+	}
+
+	/**
+	 * Write the given column through the given buffer to the given channel.
+	 */
+	private static void putColumn(FileChannel channel, ByteBuffer buffer, byte[] column) throws IOException{
+		for (int offset = 0; offset < column.length; ){
+			if (!buffer.hasRemaining()) drain(channel, buffer);
+			int length = Math.min(column.length - offset, buffer.remaining());
+			buffer.put(column, offset, length);
+			offset += length;
+		}
+	}
+
+	private static void putColumn(FileChannel channel, ByteBuffer buffer, int[] column) throws IOException{
+		for (int offset = 0; offset < column.length; ){
+			if (buffer.remaining() < Integer.BYTES) drain(channel, buffer);
+			int length = Math.min(column.length - offset, buffer.remaining() / Integer.BYTES);
+			buffer.asIntBuffer().put(column, offset, length);
+			buffer.position(buffer.position() + length * Integer.BYTES);
+			offset += length;
+		}
+	}
+
+	private static void putColumn(FileChannel channel, ByteBuffer buffer, double[] column) throws IOException{
+		for (int offset = 0; offset < column.length; ){
+			if (buffer.remaining() < Double.BYTES) drain(channel, buffer);
+			int length = Math.min(column.length - offset, buffer.remaining() / Double.BYTES);
+			buffer.asDoubleBuffer().put(column, offset, length);
+			buffer.position(buffer.position() + length * Double.BYTES);
+			offset += length;
+		}
+	}
+
+	/**
+	 * Write the contents of the given buffer to the given channel, and empty the buffer.
+	 */
+	private static void drain(FileChannel channel, ByteBuffer buffer) throws IOException{
+		buffer.flip();
+		while (buffer.hasRemaining()) channel.write(buffer);
+		buffer.clear();
+	}
+
+	/**
+	 * Arrays containing the type and the flags of each entity.
+	 */
+	private final byte[] types, flags;
+
+	/**
+	 * Arrays containing the position, velocity, radius and mass of each entity. The radius of a planetoid is
+	 * its radius when it was created.
+	 */
+	private final double[] x, y, xVelocity, yVelocity, radius, mass;
+
+	/**
+	 * Array containing the direction of each ship and the distance traveled by each planetoid.
+	 */
+	private final double[] detail;
+
+	/**
+	 * Arrays containing the number of bounces of each bullet, and the slot of its source, or -1 if its source
+	 * isn't in the world.
+	 */
+	private final int[] bounces, source;
+
+	/**
+	 * Array containing the number of bullets loaded on each ship.
+	 */
+	private final int[] nbBullets;
+
+	/**
+	 * Array containing the radius of each bullet loaded on a ship, grouped per ship in the order of the ships.
+	 */
+	private final double[] bulletRadius;
+}
@@ -0,0 +1,146 @@
+package asteroids.model;
+
+import be.kuleuven.cs.som.annotate.*;
+
+/**
+ * A class of frames holding the type, position, velocity and radius of every entity of a world at the end of
+ * an evolve. The entities are listed in the order of their slots in the world.
+ * 	A frame is never changed after it has been published, so any number of threads can read it without locking
+ * 	while the world evolves further. A world publishes a new frame instead of changing the last one, and a frame
+ * 	disappears once no reader refers to it anymore.
+ *
+ * @invar	The number of entities of a frame is never negative.
+ * 			| getNbEntities() >= 0
+ *
+ * @version 1.0
+ * @author 	Brent De Bleser & Jesse Geens
+ */
+@Value
+public final class WorldFrame {
+
+	/**
+	 * Initialize this new frame with the given sequence number, time and columns.
+	 *
+	 * @post	The sequence number, time and columns of this frame are the given ones.
+	 * 			| new.getSequenceNumber() == sequenceNumber && new.getTime() == time
+	 * @note	The columns are not copied; the world hands over arrays it doesn't use afterwards.
+	 */
+	WorldFrame(long sequenceNumber, double time, Entity[] entities, EntityType[] types, double[] x, double[] y,
+			double[] xVelocity, double[] yVelocity, double[] radius){
+		this.sequenceNumber = sequenceNumber;
+		this.time = time;
+		this.entities = entities;
+		this.types = types;
+		this.x = x;
+		this.y = y;
+		this.xVelocity = xVelocity;
+		this.yVelocity = yVelocity;
+		this.radius = radius;
+	}
+
+	/**
+	 * Return the number of frames the world published before this frame.
+	 */
+	@Basic @Immutable
+	public long getSequenceNumber(){
+		return this.sequenceNumber;
+	}
+
+	/**
+	 * Variable containing the number of frames published before this frame.
+	 */
+	private final long sequenceNumber;
+
+	/**
+	 * Return the time over which the world had evolved when this frame was published.
+	 */
+	@Basic @Immutable
+	public double getTime(){
+		return this.time;
+	}
+
+	/**
+	 * Variable containing the time of this frame.
+	 */
+	private final double time;
+
+	/**
+	 * Return the number of entities in this frame.
+	 */
+	@Basic @Immutable
+	public int getNbEntities(){
+		return this.entities.length;
+	}
+
+	/**
+	 * Return the entity with the given index in this frame.
+	 *
+	 * @throws	IndexOutOfBoundsException
+	 * 			| index < 0 || index >= getNbEntities()
+	 * @note	The entity itself belongs to the world, and may have moved or been terminated since this frame.
+	 * 			Its state in this frame is given by the other inspectors of this frame.
+	 */
+	@Basic @Immutable
+	public Entity getEntity(int index) throws IndexOutOfBoundsException{
+		return this.entities[index];
+	}
+
+	/**
+	 * Return the type of the entity with the given index in this frame.
+	 */
+	@Basic @Immutable
+	public EntityType getType(int index) throws IndexOutOfBoundsException{
+		return this.types[index];
+	}
+
+	/**
+	 * Return the x coordinate of the entity with the given index in this frame.
+	 */
+	@Basic @Immutable
+	public double getX(int index) throws IndexOutOfBoundsException{
+		return this.x[index];
+	}
+
+	/**
+	 * Return the y coordinate of the entity with the given index in this frame.
+	 */
+	@Basic @Immutable
+	public double getY(int index) throws IndexOutOfBoundsException{
+		return this.y[index];
+	}
+
+	/**
+	 * Return the x velocity of the entity with the given index in this frame.
+	 */
+	@Basic @Immutable
+	public double getVX(int index) throws IndexOutOfBoundsException{
+		return this.xVelocity[index];
+	}
+
+	/**
+	 * Return the y velocity of the entity with the given index in this frame.
+	 */
+	@Basic @Immutable
+	public double getVY(int index) throws IndexOutOfBoundsException{
+		return this.yVelocity[index];
+	}
+
+	/**
+	 * Return the radius of the entity with the given index in this frame.
+	 */
+	@Basic @Immutable
+	public double getRadius(int index) throws IndexOutOfBoundsException{
+		return this.radius[index];
+	}
+
+	/**
+	 * Arrays containing the entities of this frame and their types.
+	 */
+	private final Entity[] entities;
+	private final EntityType[] types;
+
+	/**
+	 * Arrays containing the position, velocity and radius of each entity of this frame.
+	 */
+	private final double[] x, y, xVelocity, yVelocity, radius;
+}
@@ -0,0 +1,273 @@
+package asteroids.model;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import be.kuleuven.cs.som.annotate.*;
+
+/**
+ * A class of pools of threads which evolve many independent worlds at once.
+ * 	Every world is evolved by a single task, which executes the programs of its ships and evolves it step by step.
+ * 	The processor time spent in each program is measured, so programs can be compared by their cost.
+ * 	The tasks run on a work-stealing pool, so threads which finish their worlds early take over the waiting
+ * 	worlds of busy threads. A world is only touched by the task evolving it, so worlds never share state,
+ * 	and a world which fails doesn't stop the others.
+ *
+ * @invar	The parallelism of a pool is positive.
+ * 			| getParallelism() > 0
+ *
+ * @version 1.0
+ * @author 	Brent De Bleser & Jesse Geens
+ */
+public class WorldPool implements AutoCloseable {
+
+	/**
+	 * Create a new pool evolving worlds on the given number of threads.
+	 *
+	 * @param 	parallelism
+	 * 			The number of threads of the new pool.
+	 * @post	| new.getParallelism() == parallelism
+	 * @throws	IllegalArgumentException
+	 * 			The parallelism isn't positive.
+	 * 			| parallelism <= 0
+	 */
+	public WorldPool(int parallelism) throws IllegalArgumentException{
+		if (parallelism <= 0) throw new IllegalArgumentException("Invalid parallelism @ WorldPool");
+		this.pool = new ForkJoinPool(parallelism);
+	}
+
+	/**
+	 * Create a new pool evolving worlds on a thread per available processor.
+	 *
+	 * @effect	| this(Runtime.getRuntime().availableProcessors())
+	 */
+	public WorldPool(){
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Return the number of threads of this pool.
+	 */
+	@Basic @Immutable
+	public int getParallelism(){
+		return this.pool.getParallelism();
+	}
+
+	/**
+	 * Check whether this pool is closed.
+	 */
+	@Basic
+	public boolean isClosed(){
+		return this.pool.isShutdown();
+	}
+
+	/**
+	 * Evolve each of the given worlds over the given number of steps of the given time.
+	 *
+	 * @effect	| run(worlds, nbSteps, dt, world -> null)
+	 */
+	public PoolReport<Void> run(Collection<? extends World> worlds, int nbSteps, double dt) throws IllegalArgumentException, IllegalStateException{
+		return run(worlds, nbSteps, dt, world -> null);
+	}
+
+	/**
+	 * Evolve each of the given worlds over the given number of steps of the given time, and collect the given
+	 * outcome of each world afterwards.
+	 *
+	 * @effect	| run(worlds, nbSteps, dt, world -> false, outcome)
+	 */
+	public <R> PoolReport<R> run(Collection<? extends World> worlds, int nbSteps, double dt,
+			Function<? super World, ? extends R> outcome) throws IllegalArgumentException, IllegalStateException{
+		return run(worlds, nbSteps, dt, world -> false, outcome);
+	}
+
+	/**
+	 * Evolve each of the given worlds step by step until it is finished, but not over more than the given number
+	 * of steps of the given time, and collect the given outcome of each world afterwards.
+	 *
+	 * @param 	worlds
+	 * 			The worlds to evolve.
+	 * @param 	maxSteps
+	 * 			The largest number of steps to evolve each world.
+	 * @param 	dt
+	 * 			The time of each step.
+	 * @param 	finished
+	 * 			The predicate telling whether a world is finished, checked before each step.
+	 * @param 	outcome
+	 * 			The function giving the outcome of a world once it has evolved.
+	 * @effect	Every world is stepped by a separate task on the threads of this pool, until it is finished,
+	 * 			has evolved over the given number of steps or fails.
+	 * 			| for each world in worlds
+	 * 			|	while !finished.test(world) && less than maxSteps steps
+	 * 			|		step(world, dt)
+	 * @return	A report holding the summary, the outcome or failure and the time spent in the programs of each
+	 * 			world in the order of the given worlds, and the time this pool took to evolve them.
+	 * 			| result.getNbWorlds() == worlds.size()
+	 * @throws	IllegalArgumentException
+	 * 			The worlds, predicate or outcome aren't effective, a world appears twice or is terminated, the
+	 * 			number of steps is negative or the time is invalid.
+	 * 			| worlds == null || finished == null || outcome == null || maxSteps < 0 || dt < 0 || !Helper.isValidDouble(dt)
+	 * 			| || for some world in worlds: world == null || world.isTerminatedWorld()
+	 * @throws	IllegalStateException
+	 * 			This pool is closed.
+	 * 			| isClosed()
+	 * @note	The worlds must not be touched by other threads while this pool evolves them.
+	 */
+	public <R> PoolReport<R> run(Collection<? extends World> worlds, int maxSteps, double dt, Predicate<? super World> finished,
+			Function<? super World, ? extends R> outcome) throws IllegalArgumentException, IllegalStateException{
+		if (worlds == null || finished == null || outcome == null || maxSteps < 0 || dt < 0 || !Helper.isValidDouble(dt))
+			throw new IllegalArgumentException("Invalid run @ WorldPool");
+		if (isClosed()) throw new IllegalStateException("The pool is closed.");
+		Map<World, Boolean> seen = new IdentityHashMap<World, Boolean>();
+		for (World world : worlds){
+			if (world == null || world.isTerminatedWorld() || seen.put(world, true) != null)
+				throw new IllegalArgumentException("Invalid world @ WorldPool");
+		}
+
+		List<Run<R>> runs = new ArrayList<Run<R>>(worlds.size());
+		for (World world : worlds) runs.add(new Run<R>(world, maxSteps, dt, finished, outcome));
+		long start = System.nanoTime();
+		List<ForkJoinTask<Run<R>>> tasks = new ArrayList<ForkJoinTask<Run<R>>>(runs.size());
+		for (Run<R> run : runs) tasks.add(pool.submit(run::execute, run));
+		for (ForkJoinTask<Run<R>> task : tasks) task.join();
+		double time = (System.nanoTime() - start) / 1e9;
+
+		List<EvolveSummary> summaries = new ArrayList<EvolveSummary>(runs.size());
+		List<R> outcomes = new ArrayList<R>(runs.size());
+		List<RuntimeException> failures = new ArrayList<RuntimeException>(runs.size());
+		List<Map<Program, Long>> programTimes = new ArrayList<Map<Program, Long>>(runs.size());
+		for (Run<R> run : runs){
+			summaries.add(run.summary);
+			outcomes.add(run.outcome);
+			failures.add(run.failure);
+			programTimes.add(Collections.unmodifiableMap(run.programTimes));
+		}
+		return new PoolReport<R>(Collections.unmodifiableList(summaries), Collections.unmodifiableList(outcomes),
+				Collections.unmodifiableList(failures), Collections.unmodifiableList(programTimes), time);
+	}
+
+	/**
+	 * Execute the programs of the ships of the given world for the given time, and evolve the world over that time.
+	 *
+	 * @param 	world
+	 * 			The world to step.
+	 * @param 	dt
+	 * 			The time of the step.
+	 * @param 	programTimes
+	 * 			The map to add the time spent in each program to, in nanoseconds.
+	 * @effect	The program of each ship of the world which has a program is executed for the given time, in the
+	 * 			order of the slots of the ships, after which the world evolves over the given time.
+	 * 			| for each ship in world.getEntitiesOfType(EntityType.SHIP)
+	 * 			|	if ship.getProgram() != null
+	 * 			|		then ship.getProgram().execute(dt)
+	 * 			| result == world.evolveSteps(1, dt, null)
+	 * @post	The processor time the current thread spent in each program is added to the given map.
+	 * 			| @ implementation
+	 * @throws	IllegalArgumentException
+	 * 			A program fails.
+	 */
+	static EvolveSummary step(World world, double dt, Map<Program, Long> programTimes) throws IllegalArgumentException{
+		List<Ship> ships = new ArrayList<Ship>();
+		for (int slot = 0; slot < world.getNbEntities(); slot++){
+			Entity entity = world.getEntityAtSlot(slot);
+			if (entity instanceof Ship && ((Ship) entity).getProgram() != null) ships.add((Ship) entity);
+		}
+		for (Ship ship : ships){
+			// A program may have terminated its own ship or another ship earlier in this step.
+			Program program = ship.getProgram();
+			if (ship.getSuperWorld() != world || program == null) continue;
+			long start = getThreadTime();
+			try{
+				program.execute(dt);
+			}
+			finally{
+				programTimes.merge(program, getThreadTime() - start, Long::sum);
+			}
+		}
+		return world.evolveSteps(1, dt, null);
+	}
+
+	/**
+	 * Return the processor time of the current thread in nanoseconds, or the wall time if the processor time
+	 * can't be measured.
+	 */
+	private static long getThreadTime(){
+		return THREADS.isCurrentThreadCpuTimeSupported() ? THREADS.getCurrentThreadCpuTime() : System.nanoTime();
+	}
+
+	/**
+	 * Constant containing the bean measuring the processor time of threads.
+	 */
+	private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+	/**
+	 * Stop the threads of this pool once the running worlds have been evolved.
+	 *
+	 * @post	| new.isClosed()
+	 */
+	@Override
+	public void close(){
+		pool.shutdown();
+		try{
+			pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+		}
+		catch (InterruptedException ex){
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Variable containing the work-stealing pool running the tasks of this pool.
+	 */
+	private final ForkJoinPool pool;
+
+	/**
+	 * A class of runs of a single world, holding what the run yields.
+	 */
+	private static class Run<R> {
+
+		private Run(World world, int maxSteps, double dt, Predicate<? super World> finished,
+				Function<? super World, ? extends R> outcomeFunction){
+			this.world = world;
+			this.maxSteps = maxSteps;
+			this.dt = dt;
+			this.finished = finished;
+			this.outcomeFunction = outcomeFunction;
+		}
+
+		/**
+		 * Step the world of this run until it is finished, and collect its outcome, or the exception which stopped it.
+		 */
+		private void execute(){
+			try{
+				for (int i = 0; i < maxSteps && !finished.test(world); i++)
+					summary = summary.add(step(world, dt, programTimes));
+				outcome = outcomeFunction.apply(world);
+			}
+			catch (RuntimeException ex){
+				failure = ex;
+			}
+		}
+
+		private final World world;
+		private final int maxSteps;
+		private final double dt;
+		private final Predicate<? super World> finished;
+		private final Function<? super World, ? extends R> outcomeFunction;
+		private final Map<Program, Long> programTimes = new IdentityHashMap<Program, Long>();
+		private EvolveSummary summary = EvolveSummary.NONE;
+		private R outcome = null;
+		private RuntimeException failure = null;
+	}
+}
@@ -1,6 +1,5 @@
 package asteroids.model.program.expression;
 
-import java.util.HashSet;
 import java.util.Optional;
 import java.util.Set;
 
@@ -21,9 +20,7 @@ public class AnyExpression extends Element implements Expression<Entity>{
 	public Entity calculate() {
 		Ship ship = getProgram().getShip();
 		if (ship.getSuperWorld() == null) return null;
-		Set<Entity> entities = new HashSet<Entity>();
-		entities.addAll(ship.getSuperWorld().getEntities());
-		Optional<Entity> entity = entities.stream().findAny();
+		Optional<? extends Entity> entity = ship.getSuperWorld().getEntities().stream().findAny();
 		if (entity.isPresent()) return entity.get();
 		return null;
 		
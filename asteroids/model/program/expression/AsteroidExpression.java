@@ -1,8 +1,5 @@
 package asteroids.model.program.expression;
 
-import java.util.HashSet;
-import java.util.List;
-import java.util.Optional;
 import java.util.Set;
 
 import asteroids.model.*;
@@ -14,7 +11,6 @@ import asteroids.part3.programs.SourceLocation;
 public class AsteroidExpression extends Element implements Expression<Entity> {
 
 	public Ship closestShip;
-	private Set<? extends Entity> asteroids = new HashSet<Asteroid>();
 
 
 	public AsteroidExpression(SourceLocation location) {
@@ -26,10 +22,7 @@ public class AsteroidExpression extends Element implements Expression<Entity> {
 	public Asteroid calculate() {
 		Ship ship = getProgram().getShip();
 		if (ship.getSuperWorld() == null) return null;
-		asteroids = ship.getSuperWorld().getEntitiesOfTheClass("Asteroid");
-		Optional<? extends Entity> closestAsteroid = asteroids.stream().reduce((a1, a2) -> (ship.getDistanceBetweenCenter(a1) < ship.getDistanceBetweenCenter(a2) ? a1 : a2));
-		if (closestAsteroid.isPresent()) return (Asteroid)closestAsteroid.get();
-		return null;
+		return (Asteroid)ship.getSuperWorld().getNearest(ship, Asteroid.class);
 	}
 
 	@Override
@@ -1,8 +1,5 @@
 package asteroids.model.program.expression;
 
-import java.util.HashSet;
-import java.util.List;
-import java.util.Optional;
 import java.util.Set;
 
 import asteroids.model.*;
@@ -15,8 +12,6 @@ import asteroids.part3.programs.SourceLocation;
 
 public class PlanetoidExpression extends Element implements Expression<Entity> {
 
-	private Set<? extends Entity> planetoids = new HashSet<Planetoid>();
-
 
 	public PlanetoidExpression(SourceLocation location) {
 		super(location);
@@ -27,10 +22,7 @@ public class PlanetoidExpression extends Element implements Expression<Entity> {
 	public Planetoid calculate() {
 		Ship ship = getProgram().getShip();
 		if (ship.getSuperWorld() == null) return null;
-		planetoids = ship.getSuperWorld().getEntitiesOfTheClass("Planetoid");
-		Optional<? extends Entity> closestPlanetoid = planetoids.stream().reduce((p1, p2) -> (ship.getDistanceBetweenCenter(p1) < ship.getDistanceBetweenCenter(p2) ? p1 : p2));
-		if (closestPlanetoid.isPresent()) return (Planetoid)closestPlanetoid.get();
-		return null;
+		return (Planetoid)ship.getSuperWorld().getNearest(ship, Planetoid.class);
 	}
 
 	@Override